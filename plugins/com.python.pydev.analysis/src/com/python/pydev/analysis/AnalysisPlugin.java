@@ -15,6 +15,7 @@ import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
+import org.python.pydev.builder.pep8.Pep8InterpreterPool;
 import org.python.pydev.core.ICodeCompletionASTManager;
 import org.python.pydev.core.ICompletionCache;
 import org.python.pydev.core.IDefinition;
@@ -27,6 +28,7 @@ import org.python.pydev.editor.refactoring.PyRefactoringFindDefinition;
 import org.python.pydev.shared_ui.ImageCache;
 import org.python.pydev.shared_ui.UIConstants;
 
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo;
 import com.python.pydev.analysis.additionalinfo.IInfo;
 
 /**
@@ -103,6 +105,8 @@ public class AnalysisPlugin extends AbstractUIPlugin {
      * This method is called when the plug-in is stopped
      */
     public void stop(BundleContext context) throws Exception {
+        Pep8InterpreterPool.disposeInstance();
+        AbstractAdditionalTokensInfo.saveDefinitionsCache();
         super.stop(context);
         plugin = null;
     }
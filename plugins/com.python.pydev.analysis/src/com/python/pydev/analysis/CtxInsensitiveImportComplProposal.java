@@ -13,6 +13,7 @@ import java.util.List;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
@@ -40,6 +41,8 @@ import org.python.pydev.plugin.preferences.PydevPrefs;
 import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.ui.importsconf.ImportsPreferencesPage;
 
+import com.python.pydev.analysis.additionalinfo.FuzzyNamesIndex;
+
 /**
  * This is the proposal that should be used to do a completion that can have a related import. 
  * 
@@ -79,6 +82,12 @@ public class CtxInsensitiveImportComplProposal extends AbstractPyCompletionPropo
      */
     private boolean addLocalImport = false;
 
+    /**
+     * If it was found by a fuzzy match (i.e.: 'CCD' for 'CubeColourDialog'), in which case it's kept while the
+     * qualifier still matches it in a fuzzy way (and not only while the qualifier is a prefix).
+     */
+    private boolean fuzzyMatch = false;
+
     public CtxInsensitiveImportComplProposal(String replacementString, int replacementOffset, int replacementLength,
             int cursorPosition, Image image, String displayString, IContextInformation contextInformation,
             String additionalProposalInfo, int priority, String realImportRep) {
@@ -92,6 +101,22 @@ public class CtxInsensitiveImportComplProposal extends AbstractPyCompletionPropo
         this.addLocalImport = b;
     }
 
+    public void setFuzzyMatch(boolean b) {
+        this.fuzzyMatch = b;
+    }
+
+    @Override
+    public boolean validate(IDocument document, int offset, DocumentEvent event) {
+        if (!fuzzyMatch) {
+            return super.validate(document, offset, event);
+        }
+        String[] strs = PySelection.getActivationTokenAndQual(document, offset, false);
+        if (strs[1].length() == 0) {
+            return false;
+        }
+        return FuzzyNamesIndex.score(strs[1], fReplacementString) >= 0;
+    }
+
     /**
      * This is the apply that should actually be called!
      */
@@ -16,15 +16,18 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.python.pydev.core.FastBufferedReader;
 import org.python.pydev.core.FileUtilsFileBuffer;
 import org.python.pydev.core.MisconfigurationException;
@@ -32,16 +35,26 @@ import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
 import org.python.pydev.core.ObjectsPool;
 import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+import org.python.pydev.core.cache.ClassHierarchyIndex;
 import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.cache.CompleteIndexValue;
 import org.python.pydev.core.cache.DiskCache;
+import org.python.pydev.core.cache.InvertedTokenIndex;
 import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
 import org.python.pydev.logging.DebugSettings;
+import org.python.pydev.parser.fastparser.FastDefinitionsCache;
 import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.exprType;
+import org.python.pydev.parser.visitors.NodeUtils;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+import org.python.pydev.parser.visitors.scope.EasyASTIteratorVisitor;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.FastStringBuffer;
@@ -77,6 +90,69 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
      */
     public DiskCache completeIndex;
 
+    /**
+     * Inverted index with the tokens found in the modules of the completeIndex (token -> modules), so that
+     * we can get the modules which have some token without having to go through all the modules.
+     * 
+     * It's persisted along with the completeIndex and kept up-to-date when modules are added/removed (the
+     * tokens of a module whose contents are not available when it's added are computed on the next request).
+     */
+    protected InvertedTokenIndex tokensIndex = new InvertedTokenIndex();
+
+    /**
+     * Index with the classes (and their bases) defined in the modules of the completeIndex, so that the subclasses
+     * of some class can be gotten without having to parse the modules.
+     * 
+     * It's persisted along with the completeIndex and kept up-to-date when the ast info of a module is added (the
+     * modules which are not there -- i.e.: restored from a delta -- are indexed on the next request).
+     */
+    protected ClassHierarchyIndex classesIndex = new ClassHierarchyIndex();
+
+    /**
+     * The modules whose tokens/classes may not be up-to-date with their contents (i.e.: changed in the builder or
+     * restored without them). Only those have their time checked (and are indexed again if needed) when the
+     * tokens/classes indexes are queried.
+     */
+    private final Set<String> staleModules = new HashSet<String>();
+
+    /**
+     * Whether all the modules must be checked on the next query (i.e.: the tokens/classes indexes restored weren't
+     * saved along with the times restored -- because of a crash while saving or a cache in an older format).
+     */
+    private boolean allModulesStale;
+
+    /**
+     * The stamps of the tokens and classes indexes read from the saved info (set while loading it and used to
+     * check whether the indexes restored match it).
+     */
+    private long[] savedIndexesStamps;
+
+    /**
+     * The job which is indexing the stale modules (null if not scheduled).
+     */
+    private Job staleModulesJob;
+
+    /**
+     * If there are more stale modules than this, they're indexed in a background job (and queries wait for it
+     * without holding the lock).
+     */
+    private static final int MAX_STALE_MODULES_TO_CHECK_IN_QUERY = 20;
+
+    /**
+     * Interval to check whether a query waiting for the stale modules to be indexed was cancelled.
+     */
+    private static final long STALE_MODULES_WAIT_CHECK_CANCEL_MILLIS = 200;
+
+    /**
+     * The number of modules indexed by the background job before releasing the lock.
+     */
+    private static final int STALE_MODULES_BATCH_SIZE = 50;
+
+    /**
+     * Header of the line with the stamps of the tokens and classes indexes in the saved info.
+     */
+    private static final String INDEXES_STAMPS_HEADER = "-- INDEXES STAMPS ";
+
     /**
      * default constructor
      * @throws MisconfigurationException 
@@ -155,10 +231,31 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         return persistingFolder;
     }
 
+    /**
+     * @return the file where the tokens index should be persisted
+     * @throws MisconfigurationException 
+     */
+    protected File getTokensIndexPersistingLocation() throws MisconfigurationException {
+        return new File(getCompleteIndexPersistingFolder(), "tokens.v1_index");
+    }
+
+    /**
+     * @return the file where the classes index should be persisted
+     * @throws MisconfigurationException 
+     */
+    protected File getClassesIndexPersistingLocation() throws MisconfigurationException {
+        return new File(getCompleteIndexPersistingFolder(), "classes.v1_index");
+    }
+
     @Override
     public void clearAllInfo() {
+        waitUntilLoadedToChange();
         synchronized (lock) {
             super.clearAllInfo();
+            tokensIndex.clear();
+            classesIndex.clear();
+            staleModules.clear();
+            allModulesStale = false;
             try {
                 completeIndex.clear();
             } catch (NullPointerException e) {
@@ -168,6 +265,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
     }
 
     public void updateKeysIfNeededAndSave(PyPublicTreeMap<ModulesKey, ModulesKey> keysFound) {
+        waitUntilLoadedToChange();
         Map<CompleteIndexKey, CompleteIndexKey> keys = this.completeIndex.keys();
 
         ArrayList<ModulesKey> newKeys = new ArrayList<ModulesKey>();
@@ -242,7 +340,6 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     @Override
     public List<ModulesKey> getModulesWithToken(String token, IProgressMonitor monitor) {
-        FastStringBuffer temp = new FastStringBuffer();
         ArrayList<ModulesKey> ret = new ArrayList<ModulesKey>();
         if (monitor == null) {
             monitor = new NullProgressMonitor();
@@ -256,164 +353,444 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 throw new RuntimeException(org.python.pydev.shared_core.string.StringUtils.format("Token: %s is not a valid token to search for.", token));
             }
         }
+        if (!waitForStaleModules(monitor)) {
+            return ret;
+        }
+        synchronized (lock) {
+            if (!updateIndexes("Get modules with token", monitor)) {
+                return ret;
+            }
+            Map<CompleteIndexKey, CompleteIndexKey> keys = completeIndex.keys();
+
+            CompleteIndexKey tempKey = new CompleteIndexKey((ModulesKey) null);
+            for (String moduleName : tokensIndex.getModulesWithToken(token)) {
+                tempKey.key = new ModulesKey(moduleName, null);
+                CompleteIndexKey indexKey = keys.get(tempKey);
+                if (indexKey != null) {
+                    ret.add(indexKey.key);
+                } else {
+                    //It's no longer in the complete index (so, it shouldn't be in the tokens index either).
+                    tokensIndex.removeModule(moduleName);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param baseName the name of the base class (without the module).
+     * @return a list with the module and the name of the classes which have the given base (note that only the last
+     * part of the base is matched -- i.e.: 'class A(mod.Base)' is returned when 'Base' is requested).
+     */
+    public List<Tuple<ModulesKey, String>> getSubclasses(String baseName, IProgressMonitor monitor) {
+        ArrayList<Tuple<ModulesKey, String>> ret = new ArrayList<Tuple<ModulesKey, String>>();
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        if (baseName == null || baseName.length() == 0) {
+            return ret;
+        }
+        if (!waitForStaleModules(monitor)) {
+            return ret;
+        }
+        synchronized (lock) {
+            if (!updateIndexes("Get subclasses", monitor)) {
+                return ret;
+            }
+            Map<CompleteIndexKey, CompleteIndexKey> keys = completeIndex.keys();
+
+            CompleteIndexKey tempKey = new CompleteIndexKey((ModulesKey) null);
+            for (Tuple<String, String> subclass : classesIndex.getSubclasses(baseName)) {
+                tempKey.key = new ModulesKey(subclass.o1, null);
+                CompleteIndexKey indexKey = keys.get(tempKey);
+                if (indexKey != null) {
+                    ret.add(new Tuple<ModulesKey, String>(indexKey.key, subclass.o2));
+                } else {
+                    //It's no longer in the complete index (so, it shouldn't be in the classes index either).
+                    classesIndex.removeModule(subclass.o1);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Marks a module as changed (so that its tokens/classes are checked against its contents on the next query).
+     * 
+     * Called by the builder for the resources in its deltas (usually the module is also analyzed and its info
+     * updated, but this makes sure it's checked even if that doesn't happen).
+     */
+    public void markModuleChanged(String moduleName) {
         synchronized (lock) {
-            FastStringBuffer bufProgress = new FastStringBuffer();
-            //Note that this operation is not as fast as the others, as it relies on a cache that is optimized
-            //for space and not for speed (but still, should be faster than having to do a text-search to know the 
-            //tokens when the cache is available).
+            staleModules.add(moduleName);
+        }
+    }
 
-            Tuple<List<Tuple<CompleteIndexKey, CompleteIndexValue>>, Collection<CompleteIndexKey>> memoryInfo = completeIndex
-                    .getInMemoryInfo();
+    /**
+     * Waits until the stale modules are indexed by the job which indexes them in the background when there are too
+     * many of those to be checked in a query (i.e.: after the indexes are restored from an older version or
+     * didn't match the saved info).
+     * 
+     * Must be called without the lock held (so that other clients may still use the info meanwhile).
+     * 
+     * @return false if the monitor was cancelled.
+     */
+    private boolean waitForStaleModules(IProgressMonitor monitor) {
+        Job job;
+        synchronized (lock) {
+            if (!allModulesStale && staleModules.size() <= MAX_STALE_MODULES_TO_CHECK_IN_QUERY) {
+                return true;
+            }
+            if (SharedCorePlugin.inTestMode()) {
+                job = null;
+            } else {
+                scheduleStaleModulesIndexing();
+                job = staleModulesJob;
+            }
+        }
+        if (job == null) {
+            indexStaleModules(monitor);
+            return !monitor.isCanceled();
+        }
+        monitor.setTaskName("Waiting for the modules to be indexed...");
+        synchronized (lock) {
+            //The job notifies the lock when it finishes (the timeout is only used to check the monitor).
+            while (staleModulesJob == job) {
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                try {
+                    lock.wait(STALE_MODULES_WAIT_CHECK_CANCEL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 
-            long last = System.currentTimeMillis();
-            int worked = 0;
-            try {
-                monitor.beginTask("Get modules with token", memoryInfo.o1.size() + memoryInfo.o2.size());
-                for (Tuple<CompleteIndexKey, CompleteIndexValue> tup : memoryInfo.o1) {
-                    CompleteIndexKey indexKey = tup.o1;
-                    CompleteIndexValue obj = tup.o2;
+    /**
+     * Schedules the job which indexes the stale modules (if it's not already scheduled).
+     * 
+     * Must be called with the lock held.
+     */
+    private void scheduleStaleModulesIndexing() {
+        if (staleModulesJob != null) {
+            return;
+        }
+        staleModulesJob = new Job("Indexing modules") {
 
-                    worked++;
-                    if (monitor.isCanceled()) {
-                        return ret;
-                    }
-                    long current = System.currentTimeMillis();
-                    if (last + 200 < current) {
-                        last = current;
-                        monitor.setTaskName(bufProgress.clear().append("Searching: ").append(indexKey.key.name)
-                                .toString());
-                        monitor.worked(worked);
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    indexStaleModules(monitor);
+                } finally {
+                    synchronized (lock) {
+                        staleModulesJob = null;
+                        lock.notifyAll();
                     }
-                    check(indexKey, obj, temp, token, ret);
                 }
+                return Status.OK_STATUS;
+            }
+        };
+        staleModulesJob.setSystem(true);
+        staleModulesJob.setPriority(Job.DECORATE);
+        staleModulesJob.schedule();
+    }
 
-                for (CompleteIndexKey indexKey : memoryInfo.o2) {
-                    worked++;
+    /**
+     * Indexes the stale modules in batches: the lock is only held to get a batch and to update the indexes
+     * for each module (the contents are read and parsed without it).
+     */
+    private void indexStaleModules(IProgressMonitor monitor) {
+        List<String> failed = new ArrayList<String>();
+        FastStringBuffer temp = new FastStringBuffer();
+        try {
+            while (!monitor.isCanceled()) {
+                List<CompleteIndexKey> batch = takeStaleModules(STALE_MODULES_BATCH_SIZE);
+                if (batch.size() == 0) {
+                    return;
+                }
+                for (CompleteIndexKey indexKey : batch) {
                     if (monitor.isCanceled()) {
-                        return ret;
+                        markModuleChanged(indexKey.key.name);
+                        continue;
                     }
-                    long current = System.currentTimeMillis();
-                    if (last + 200 < current) {
-                        last = current;
-                        monitor.setTaskName(bufProgress.clear().append("Searching: ").append(indexKey.key.name)
-                                .toString());
-                        monitor.worked(worked);
+                    if (!updateModuleIndexes(indexKey, temp)) {
+                        failed.add(indexKey.key.name);
                     }
-                    check(indexKey, null, temp, token, ret);
                 }
-            } finally {
-                monitor.done();
+            }
+        } finally {
+            //The ones which failed are checked again in a later request.
+            synchronized (lock) {
+                staleModules.addAll(failed);
             }
         }
-        return ret;
     }
 
-    private void check(CompleteIndexKey indexKey, CompleteIndexValue obj, FastStringBuffer temp, String token,
-            ArrayList<ModulesKey> ret) {
-        if (obj == null) {
-            obj = completeIndex.getObj(indexKey);
-        }
-        boolean canAddAstInfoFor = PythonPathHelper.canAddAstInfoFor(indexKey.key);
-        if (obj == null) {
-            if (canAddAstInfoFor) {
-                try {
-                    //Should be there (recreate the entry in the index and in the actual AST)
-                    this.addAstInfo(indexKey.key, true);
-                } catch (Exception e) {
-                    Log.log(e);
+    /**
+     * Removes up to the given number of modules from the stale modules (or all of them if maxModules is -1).
+     * 
+     * @return the keys of the modules removed (which are still in the complete index).
+     */
+    private List<CompleteIndexKey> takeStaleModules(int maxModules) {
+        synchronized (lock) {
+            Map<CompleteIndexKey, CompleteIndexKey> keys = completeIndex.keys();
+            if (allModulesStale) {
+                for (CompleteIndexKey indexKey : keys.values()) {
+                    staleModules.add(indexKey.key.name);
+                }
+                allModulesStale = false;
+            }
+            List<CompleteIndexKey> ret = new ArrayList<CompleteIndexKey>(Math.min(staleModules.size(),
+                    maxModules == -1 ? Integer.MAX_VALUE : maxModules));
+            CompleteIndexKey tempKey = new CompleteIndexKey((ModulesKey) null);
+            Iterator<String> it = staleModules.iterator();
+            while (it.hasNext() && (maxModules == -1 || ret.size() < maxModules)) {
+                tempKey.key = new ModulesKey(it.next(), null);
+                CompleteIndexKey indexKey = keys.get(tempKey);
+                if (indexKey != null) {
+                    ret.add(indexKey);
                 }
+                it.remove();
+            }
+            return ret;
+        }
+    }
 
-                obj = new CompleteIndexValue();
-            } else {
-                if (DEBUG) {
-                    System.out.println("Removing (file does not exist or is not a valid source module): "
-                            + indexKey.key.name);
+    /**
+     * Makes sure that the tokens and classes indexes are up-to-date for the stale modules (after
+     * waitForStaleModules, only a few are expected to be there).
+     * 
+     * Must be called with the lock held.
+     * 
+     * @return false if the monitor was cancelled.
+     */
+    private boolean updateIndexes(String taskName, IProgressMonitor monitor) {
+        List<CompleteIndexKey> toCheck = takeStaleModules(-1);
+        if (toCheck.size() == 0) {
+            return true;
+        }
+        FastStringBuffer temp = new FastStringBuffer();
+        try {
+            monitor.beginTask(taskName, toCheck.size());
+            for (int i = 0; i < toCheck.size(); i++) {
+                CompleteIndexKey indexKey = toCheck.get(i);
+                if (monitor.isCanceled()) {
+                    for (int j = i; j < toCheck.size(); j++) {
+                        staleModules.add(toCheck.get(j).key.name);
+                    }
+                    return false;
+                }
+                if (!updateModuleIndexes(indexKey, temp)) {
+                    staleModules.add(indexKey.key.name); //check it again later on.
                 }
-                this.removeInfoFromModule(indexKey.key.name, true);
-                return;
+                monitor.worked(1);
             }
+        } finally {
+            monitor.done();
         }
+        return true;
+    }
 
-        long lastModified = indexKey.key.file.lastModified();
-        if (lastModified == 0 || !canAddAstInfoFor) {
-            //File no longer exists or is not a valid source module.
+    /**
+     * Makes sure that the tokens and classes indexes are up-to-date with the contents of the module related to the
+     * given key (removing it if it's no longer valid).
+     * 
+     * May be called with or without the lock held (without it, the contents are read and parsed without
+     * blocking other clients).
+     * 
+     * @return false if it wasn't possible to read the contents of the module.
+     */
+    private boolean updateModuleIndexes(CompleteIndexKey indexKey, FastStringBuffer temp) {
+        ModulesKey key = indexKey.key;
+        long lastModified = key.file != null ? key.file.lastModified() : 0;
+        if (lastModified == 0) {
+            //File no longer exists.
             if (DEBUG) {
-                System.out.println("Removing (file no longer exists or is not a valid source module): "
-                        + indexKey.key.name + " indexKey.key.file: " + indexKey.key.file + " exists: "
-                        + indexKey.key.file.exists());
+                System.out.println("Removing (file no longer exists): " + key.name + " file: " + key.file);
             }
-            this.removeInfoFromModule(indexKey.key.name, true);
-            return;
+            this.removeInfoFromModule(key.name, true);
+            return true;
         }
 
-        //if it got here, it must be a valid source module!
+        boolean hasTokens;
+        boolean hasClasses;
+        boolean upToDate;
+        synchronized (lock) {
+            hasTokens = tokensIndex.hasModule(key.name);
+            hasClasses = classesIndex.hasModule(key.name);
+            CompleteIndexKey current = completeIndex.keys().get(indexKey);
+            if (current == null) {
+                return true; //removed meanwhile
+            }
+            upToDate = lastModified == current.lastModified;
+        }
+        if (hasTokens && upToDate && hasClasses) {
+            return true; //Up-to-date
+        }
 
-        if (obj.entries != null) {
-            if (lastModified != indexKey.lastModified) {
-                obj = new CompleteIndexValue();
-                try {
-                    //Recreate the entry on the new time (recreate the entry in the index and in the actual AST)
-                    this.addAstInfo(indexKey.key, true);
-                } catch (Exception e) {
-                    Log.log(e);
-                }
+        if (!PythonPathHelper.canAddAstInfoFor(key)) {
+            if (DEBUG) {
+                System.out.println("Removing (not a valid source module): " + key.name);
             }
+            this.removeInfoFromModule(key.name, true);
+            return true;
         }
 
-        //The actual values are always recreated lazily (in the case that it's really needed).
-        if (obj.entries == null) {
-            FastStringBuffer buf;
-            ModulesKey key = indexKey.key;
+        if (hasTokens && !upToDate) {
             try {
-                if (key instanceof ModulesKeyForZip) {
-                    ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) key;
-                    buf = (FastStringBuffer) FileUtilsFileBuffer.getCustomReturnFromZip(modulesKeyForZip.file,
-                            modulesKeyForZip.zipModulePath, FastStringBuffer.class);
-                } else {
-                    buf = (FastStringBuffer) FileUtils.getFileContentsCustom(key.file, FastStringBuffer.class);
-                }
+                //Recreate the entry on the new time (recreate the entry in the index and in the actual AST -- the 
+                //tokens are indexed in addContentsInfo).
+                this.addAstInfo(key, true);
             } catch (Exception e) {
                 Log.log(e);
-                return;
-            }
-
-            HashSet<String> set = new HashSet<String>();
-            temp = temp.clear();
-            int length = buf.length();
-            for (int i = 0; i < length; i++) {
-                char c = buf.charAt(i);
-                if (Character.isJavaIdentifierStart(c)) {
-                    temp.clear();
-                    temp.append(c);
-                    i++;
-                    for (; i < length; i++) {
-                        c = buf.charAt(i);
-                        if (c == ' ' || c == '\t') {
-                            break; //Fast forward through the most common case...
-                        }
-                        if (Character.isJavaIdentifierPart(c)) {
-                            temp.append(c);
-                        } else {
-                            break;
+            }
+            synchronized (lock) {
+                hasTokens = tokensIndex.hasModule(key.name);
+                hasClasses = classesIndex.hasModule(key.name);
+            }
+            if (hasTokens && hasClasses) {
+                return true;
+            }
+        }
+
+        //The tokens/classes are computed lazily (in the case that it's really needed).
+        FastStringBuffer buf;
+        try {
+            if (key instanceof ModulesKeyForZip) {
+                ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) key;
+                buf = (FastStringBuffer) FileUtilsFileBuffer.getCustomReturnFromZip(modulesKeyForZip.file,
+                        modulesKeyForZip.zipModulePath, FastStringBuffer.class);
+            } else {
+                buf = (FastStringBuffer) FileUtils.getFileContentsCustom(key.file, FastStringBuffer.class);
+            }
+        } catch (Exception e) {
+            Log.log(e);
+            return false;
+        }
+        char[] contents = buf.getInternalCharsArray();
+        List<Tuple<String, List<String>>> classes = null;
+        String[] tokens = null;
+        if (!hasClasses) {
+            FastDefinitionsCache.Entry definitions = getDefinitions(key, contents, buf.length());
+            classes = getClasses(definitions != null ? definitions.ast : null);
+            if (!hasTokens && definitions != null && definitions.tokens != null) {
+                tokens = definitions.tokens;
+            }
+        }
+        if (!hasTokens && tokens == null) {
+            tokens = computeContentsTokens(contents, buf.length(), temp);
+        }
+
+        synchronized (lock) {
+            if (!completeIndex.keys().containsKey(indexKey)) {
+                return true; //removed meanwhile
+            }
+            if (classes != null) {
+                classesIndex.setClasses(key.name, classes);
+            }
+            if (tokens != null) {
+                setTokens(key, tokens, lastModified);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the classes found in the given ast (along with their bases) as the classes of the passed module.
+     */
+    private void setClasses(ModulesKey key, SimpleNode node) {
+        classesIndex.setClasses(key.name, getClasses(node));
+    }
+
+    /**
+     * @return the classes found in the given ast (along with their bases).
+     */
+    private static List<Tuple<String, List<String>>> getClasses(SimpleNode node) {
+        List<Tuple<String, List<String>>> classes = new ArrayList<Tuple<String, List<String>>>();
+        if (node != null) {
+            Iterator<ASTEntry> entries = EasyASTIteratorVisitor.createClassIterator(node);
+            while (entries.hasNext()) {
+                ClassDef def = (ClassDef) entries.next().node;
+                ArrayList<String> bases = new ArrayList<String>();
+                if (def.bases != null) {
+                    for (exprType base : def.bases) {
+                        String rep = NodeUtils.getFullRepresentationString(base);
+                        if (rep != null && rep.length() > 0) {
+                            bases.add(rep);
                         }
                     }
-                    String str = temp.toString();
-                    if (PySelection.ALL_KEYWORD_TOKENS.contains(str)) {
-                        continue;
-                    }
-                    set.add(str);
                 }
+                classes.add(new Tuple<String, List<String>>(((NameTok) def.name).id, bases));
             }
+        }
+        return classes;
+    }
+
+    /**
+     * @return the tokens found in the given contents (which are indexed in the tokens index).
+     */
+    @Override
+    protected String[] computeContentsTokens(char[] contents, int len) {
+        return computeContentsTokens(contents, len, new FastStringBuffer());
+    }
 
-            obj.entries = set;
-            indexKey.lastModified = lastModified;
-            completeIndex.add(indexKey, obj); //Serialize the new contents
+    private String[] computeContentsTokens(char[] contents, int length, FastStringBuffer temp) {
+        HashSet<String> set = new HashSet<String>();
+        for (int i = 0; i < length; i++) {
+            char c = contents[i];
+            if (Character.isJavaIdentifierStart(c)) {
+                temp.clear();
+                temp.append(c);
+                i++;
+                for (; i < length; i++) {
+                    c = contents[i];
+                    if (c == ' ' || c == '\t') {
+                        break; //Fast forward through the most common case...
+                    }
+                    if (Character.isJavaIdentifierPart(c)) {
+                        temp.append(c);
+                    } else {
+                        break;
+                    }
+                }
+                String str = temp.toString();
+                if (PySelection.ALL_KEYWORD_TOKENS.contains(str)) {
+                    continue;
+                }
+                set.add(str);
+            }
         }
+        return set.toArray(new String[set.size()]);
+    }
 
-        if (obj.entries != null && obj.entries.contains(token)) {
-            ret.add(indexKey.key);
+    /**
+     * Sets the given tokens as the tokens of the passed module.
+     */
+    private void setTokens(ModulesKey key, String[] tokens, long lastModified) {
+        tokensIndex.setTokens(key.name, Arrays.asList(tokens));
+        CompleteIndexKey indexKey = new CompleteIndexKey(key);
+        indexKey.lastModified = lastModified;
+        completeIndex.add(indexKey, null); //Just update the time in the key
+        if (classesIndex.hasModule(key.name)) {
+            staleModules.remove(key.name);
         }
+    }
 
+    @Override
+    protected void addContentsInfo(ModulesKey key, String[] tokens) {
+        if (tokens == null || key.file == null || key.name == null) {
+            return;
+        }
+        synchronized (lock) {
+            long lastModified = key.file.lastModified();
+            if (lastModified != 0) {
+                setTokens(key, tokens, lastModified);
+            }
+        }
     }
 
     @Override
@@ -422,12 +799,18 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         if (node == null || key == null || key.name == null) {
             return addAstInfo;
         }
+        waitUntilLoadedToChange();
         try {
             synchronized (lock) {
                 addAstInfo = super.addAstInfo(node, key, generateDelta);
+                setClasses(key, node);
 
                 if (key.file != null) {
-                    completeIndex.add(new CompleteIndexKey(key), new CompleteIndexValue());
+                    //The contents changed: its tokens must be recomputed (if they're not set later on
+                    //in addContentsInfo, they'll be computed on the next request).
+                    tokensIndex.removeModule(key.name);
+                    completeIndex.add(new CompleteIndexKey(key), null);
+                    staleModules.add(key.name);
                 }
 
             }
@@ -439,11 +822,15 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     @Override
     public void removeInfoFromModule(String moduleName, boolean generateDelta) {
+        waitUntilLoadedToChange();
         synchronized (lock) {
             if (moduleName == null) {
                 throw new AssertionError("The module name may not be null.");
             }
             completeIndex.remove(new CompleteIndexKey(moduleName));
+            tokensIndex.removeModule(moduleName);
+            classesIndex.removeModule(moduleName);
+            staleModules.remove(moduleName);
             super.removeInfoFromModule(moduleName, generateDelta);
         }
     }
@@ -455,6 +842,22 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
             tempBuf.clear();
 
+            //The indexes are saved to their own files: the stamps of those are kept in the info (so that when it's
+            //restored we can check that the indexes restored were saved along with it -- -1 if not saved).
+            long tokensStamp = -1;
+            long classesStamp = -1;
+            try {
+                tokensIndex.save(getTokensIndexPersistingLocation());
+                tokensStamp = tokensIndex.getStamp();
+                classesIndex.save(getClassesIndexPersistingLocation());
+                classesStamp = classesIndex.getStamp();
+            } catch (Exception e) {
+                Log.log(e);
+            }
+            tempBuf.append(INDEXES_STAMPS_HEADER).append(tokensStamp).append(' ').append(classesStamp).append('\n');
+            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+            tempBuf.clear();
+
             super.saveTo(writer, tempBuf, pathToSave);
         }
     }
@@ -482,6 +885,44 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 completeIndex.setFolderToPersist(shouldBeOn);
             }
 
+            InvertedTokenIndex loaded = null;
+            try {
+                loaded = InvertedTokenIndex.load(getTokensIndexPersistingLocation());
+            } catch (IOException e) {
+                Log.log(IStatus.INFO, "Unable to restore tokens index (it'll be recreated).", e);
+            }
+            //If not available, the tokens will be recomputed on demand.
+            tokensIndex = loaded != null ? loaded : new InvertedTokenIndex();
+
+            ClassHierarchyIndex loadedClasses = null;
+            try {
+                loadedClasses = ClassHierarchyIndex.load(getClassesIndexPersistingLocation());
+            } catch (IOException e) {
+                Log.log(IStatus.INFO, "Unable to restore classes index (it'll be recreated).", e);
+            }
+            //If not available, the classes will be recomputed on demand.
+            classesIndex = loadedClasses != null ? loadedClasses : new ClassHierarchyIndex();
+
+            //If the indexes weren't saved along with the times in the complete index, all the modules have to be
+            //checked (otherwise, only the ones which still don't have their tokens/classes).
+            long[] stamps = savedIndexesStamps;
+            savedIndexesStamps = null;
+            allModulesStale = stamps == null || loaded == null || loadedClasses == null
+                    || stamps[0] != loaded.getStamp() || stamps[1] != loadedClasses.getStamp();
+            if (!allModulesStale) {
+                for (CompleteIndexKey indexKey : completeIndex.keys().values()) {
+                    String name = indexKey.key.name;
+                    if (!tokensIndex.hasModule(name) || !classesIndex.hasModule(name)) {
+                        staleModules.add(name);
+                    }
+                }
+            }
+            if ((allModulesStale || staleModules.size() > MAX_STALE_MODULES_TO_CHECK_IN_QUERY)
+                    && !SharedCorePlugin.inTestMode()) {
+                //i.e.: indexes from an older version: index the modules in the background before they're requested.
+                scheduleStaleModulesIndexing();
+            }
+
             super.restoreSavedInfo(readFromFile.o1);
         }
     }
@@ -493,20 +934,20 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
     protected boolean load() {
 
         Throwable errorFound = null;
-        synchronized (lock) {
-            File file;
+        //Note: the lock is only gotten when the contents read are restored (so that queries aren't blocked
+        //while the file is read -- changes wait for the load through waitUntilLoadedToChange()).
+        File file;
+        try {
+            file = getPersistingLocation();
+        } catch (MisconfigurationException e) {
+            Log.log("Unable to restore previous info... (persisting location not available).", e);
+            return false;
+        }
+        if (file.exists() && file.isFile()) {
             try {
-                file = getPersistingLocation();
-            } catch (MisconfigurationException e) {
-                Log.log("Unable to restore previous info... (persisting location not available).", e);
-                return false;
-            }
-            if (file.exists() && file.isFile()) {
-                try {
-                    return loadContentsFromFile(file) != null;
-                } catch (Throwable e) {
-                    errorFound = e;
-                }
+                return loadContentsFromFile(file) != null;
+            } catch (Throwable e) {
+                errorFound = e;
             }
         }
         try {
@@ -529,6 +970,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         try {
             //            Timer timer = new Timer();
             String expected = "-- VERSION_" + AbstractAdditionalTokensInfo.version; //X is the version
+            String expectedTextTrees = "-- VERSION_3"; //Version 3 had the trees in the text file.
             InputStreamReader reader = new InputStreamReader(fileInputStream);
             FastBufferedReader bufferedReader = new FastBufferedReader(reader);
             FastStringBuffer string = bufferedReader.readLine();
@@ -539,7 +981,10 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                 null, null, null), null);
                 Tuple3<Object, Object, Object> superTupWithResults = tupWithResults.o1;
                 //tupWithResults.o2 = DiskCache
-                if (string.toString().equals(expected)) {
+                //Note: the buffer is reused by the reader, so, keep the version as a string.
+                String versionLine = string.toString();
+                boolean textTrees = versionLine.equals(expectedTextTrees);
+                if (textTrees || versionLine.equals(expected)) {
                     //OK, proceed with new I/O format!
                     try {
                         try {
@@ -561,12 +1006,22 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                         dictionary = TreeIO.loadDictFrom(bufferedReader, tempBuf.clear(),
                                                 objectsPoolMap);
 
+                                    } else if (line.startsWith("-- START BINARY TREES")) {
+                                        superTupWithResults.o1 = openBinaryTrees(file, bufferedReader.readLine()
+                                                .toString());
+
                                     } else if (line.startsWith("-- START DISKCACHE")) {
                                         tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, objectsPoolMap);
 
+                                    } else if (line.startsWith(INDEXES_STAMPS_HEADER)) {
+                                        List<String> stamps = StringUtils.split(
+                                                line.toString().substring(INDEXES_STAMPS_HEADER.length()), ' ');
+                                        savedIndexesStamps = new long[] { Long.parseLong(stamps.get(0)),
+                                                Long.parseLong(stamps.get(1)) };
+
                                     } else if (line.startsWith("-- VERSION_")) {
-                                        if (!line.endsWith("3")) {
-                                            throw new RuntimeException("Expected the version to be 3.");
+                                        if (!line.toString().equals(versionLine)) {
+                                            throw new RuntimeException("Expected the version to be: " + versionLine);
                                         }
                                     } else if (line.startsWith("-- END TREE")) {
                                         //just skip it in this situation.
@@ -583,6 +1038,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                     }
 
                     restoreSavedInfo(tupWithResults);
+                    if (textTrees) {
+                        save(); //Save in new format!
+                    }
                     //                    timer.printDiff("Time taken");
                     return tupWithResults;
                 } else {
@@ -611,6 +1069,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     protected void addInfoToModuleOnRestoreInsertCommand(Tuple<ModulesKey, List<IInfo>> data) {
         completeIndex.add(new CompleteIndexKey(data.o1), null);
+        //The delta doesn't have the classes: they'll be indexed on the next request.
+        classesIndex.removeModule(data.o1.name);
+        staleModules.add(data.o1.name);
 
         //current way (saves a list of iinfo)
         for (Iterator<IInfo> it = data.o2.iterator(); it.hasNext();) {
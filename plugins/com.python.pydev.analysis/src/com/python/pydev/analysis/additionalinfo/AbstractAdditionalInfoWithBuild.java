@@ -12,6 +12,8 @@ import java.util.List;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.python.pydev.core.DeltaSaver;
 import org.python.pydev.core.IDeltaProcessor;
 import org.python.pydev.core.IModulesManager;
@@ -22,6 +24,7 @@ import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
 import org.python.pydev.parser.PyParser;
 import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.model.ErrorDescription;
 import org.python.pydev.shared_core.string.FastStringBuffer;
@@ -73,6 +76,7 @@ public abstract class AbstractAdditionalInfoWithBuild extends AbstractAdditional
 
     @Override
     public void removeInfoFromModule(String moduleName, boolean generateDelta) {
+        waitUntilLoadedToChange();
         synchronized (lock) {
             super.removeInfoFromModule(moduleName, generateDelta);
             if (generateDelta) {
@@ -206,6 +210,48 @@ public abstract class AbstractAdditionalInfoWithBuild extends AbstractAdditional
         }
     }
 
+    /**
+     * Loads the info (restoring it from the disk or recreating it if it can't be restored) in a background job (or
+     * synchronously in tests).
+     *
+     * Must be called before the info is made available to clients: while it's loading, queries get partial results
+     * (clients which need the complete info should use waitUntilLoaded) and changes wait until it's loaded.
+     *
+     * @param additionalFeedback a description of the info being loaded.
+     * @param recreate called (in the loading thread) to recreate the info in place if it couldn't be restored.
+     */
+    public void loadInBackground(String additionalFeedback, final ICallback<Object, IProgressMonitor> recreate) {
+        setLoading(null);
+        if (SharedCorePlugin.inTestMode()) {
+            loadOrRecreate(new NullProgressMonitor(), recreate);
+            return;
+        }
+        Job job = new Job("Loading additional info " + additionalFeedback) {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                loadOrRecreate(monitor, recreate);
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.SHORT);
+        job.schedule();
+    }
+
+    private void loadOrRecreate(IProgressMonitor monitor, ICallback<Object, IProgressMonitor> recreate) {
+        setLoading(Thread.currentThread());
+        try {
+            if (!load()) {
+                recreate.call(monitor);
+            }
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            setLoaded();
+        }
+    }
+
     /**
      * Restores the info for a module manager
      *
@@ -18,17 +18,19 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.core.FileUtilsFileBuffer;
 import org.python.pydev.core.FullRepIterable;
@@ -40,6 +42,7 @@ import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.logging.DebugSettings;
+import org.python.pydev.parser.fastparser.FastDefinitionsCache;
 import org.python.pydev.parser.fastparser.FastDefinitionsParser;
 import org.python.pydev.parser.jython.SimpleNode;
 import org.python.pydev.parser.jython.ast.ClassDef;
@@ -48,11 +51,14 @@ import org.python.pydev.parser.jython.ast.NameTok;
 import org.python.pydev.parser.visitors.NodeUtils;
 import org.python.pydev.parser.visitors.scope.ASTEntry;
 import org.python.pydev.parser.visitors.scope.DefinitionsASTIteratorVisitor;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.structure.FastStack;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.shared_core.structure.Tuple3;
 
+import com.python.pydev.analysis.AnalysisPlugin;
+
 /**
  * This class contains additional information on an interpreter, so that we are able to make code-completion in
  * a context-insensitive way (and make additionally auto-import).
@@ -104,6 +110,11 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     public final static int INNER = 2;
 
+    /**
+     * The strings referenced from the in-memory trees below (shared among them).
+     */
+    private CompactInfoTree.Strings treesStrings = new CompactInfoTree.Strings();
+
     /**
      * indexes used so that we can access the information faster - it is ordered through a tree map, and should be
      * very fast to access given its initials.
@@ -112,28 +123,233 @@ public abstract class AbstractAdditionalTokensInfo {
      * 
      * This map is persisted.
      */
-    protected SortedMap<String, Set<IInfo>> topLevelInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    protected CompactInfoTree topLevelInitialsToInfo = new CompactInfoTree(treesStrings);
 
     /**
      * indexes so that we can get 'inner information' from classes, such as methods or inner classes from a class 
      */
-    protected SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    protected CompactInfoTree innerInitialsToInfo = new CompactInfoTree(treesStrings);
+
+    /**
+     * The info that was restored from the disk (memory-mapped and queried in place). The trees above only 
+     * have the info added after it was restored (modules added/removed afterwards are marked as removed 
+     * in the mapped info).
+     * 
+     * May be null (if there's no saved info).
+     */
+    protected MappedTokensInfo mappedInfo;
+
+    /**
+     * Indexes with the names in the top level/inner info for fuzzy matching. Created in a background job on the
+     * first request (no fuzzy matches are gotten until then) and updated as names are added afterwards. Names
+     * are not removed from them, so, they're recreated in the background (and only replaced when the new ones
+     * are ready) when the info is saved after many modules were removed or the info was recreated/restored.
+     * 
+     * May be null (if still not created).
+     */
+    private FuzzyNamesIndex topLevelFuzzyIndex;
+    private FuzzyNamesIndex innerFuzzyIndex;
+
+    /**
+     * The job which is creating the fuzzy indexes (null if they're not being created).
+     */
+    private Job fuzzyIndexJob;
+
+    /**
+     * The names added while the fuzzy indexes are being created (null if they're not being created).
+     */
+    private List<String> fuzzyIndexTopLevelPending;
+    private List<String> fuzzyIndexInnerPending;
+
+    /**
+     * Raised when the info is restored (so, the fuzzy indexes being created must be created again).
+     */
+    private int fuzzyIndexGeneration;
+
+    /**
+     * The number of modules removed since the fuzzy indexes were created.
+     */
+    private int removedSinceFuzzyIndex;
+
+    /**
+     * After this number of modules is removed, the fuzzy indexes are recreated (on the next save).
+     */
+    private static final int MAX_REMOVED_BEFORE_RECREATING_FUZZY_INDEX = 500;
+
+    /**
+     * Cache with the definitions of modules (along with the tokens in their contents) keyed by the hash of their
+     * contents, so that modules which didn't change don't have to be parsed again when the info is recreated.
+     */
+    private static FastDefinitionsCache definitionsCache;
+    private static boolean definitionsCacheCreated;
+
+    /**
+     * The max size of the definitions cache on disk.
+     */
+    private static final long DEFINITIONS_CACHE_MAX_BYTES = 128L * 1024 * 1024;
 
     /**
      * Should be used before re-creating the info, so that we have enough memory. 
      */
     public void clearAllInfo() {
+        waitUntilLoadedToChange();
         synchronized (lock) {
-            if (topLevelInitialsToInfo != null) {
-                topLevelInitialsToInfo.clear();
+            mappedInfo = null;
+            //The fuzzy indexes are kept while the info is recreated (and recreated after it's saved).
+            removedSinceFuzzyIndex = MAX_REMOVED_BEFORE_RECREATING_FUZZY_INDEX;
+            clearTrees();
+        }
+    }
+
+    /**
+     * Clears the in-memory trees (along with the strings referenced from them).
+     */
+    private void clearTrees() {
+        treesStrings = new CompactInfoTree.Strings();
+        topLevelInitialsToInfo = new CompactInfoTree(treesStrings);
+        innerInitialsToInfo = new CompactInfoTree(treesStrings);
+    }
+
+    protected Object lock = new Object();
+
+    /**
+     * Whether the info is still being loaded (restored from the disk or recreated). While it's loading, queries
+     * get partial results and changes wait until it finishes (so that they're not overridden by the restored info).
+     */
+    private volatile boolean loading;
+
+    /**
+     * The thread which is loading the info (the only one which may change it while loading).
+     */
+    private volatile Thread loadingThread;
+
+    private final Object loadingLock = new Object();
+
+    /**
+     * Marks the info as being loaded (must be called before making the info available to other threads).
+     *
+     * @param loadingThread the thread which is loading the info (null if still not known).
+     */
+    protected void setLoading(Thread loadingThread) {
+        synchronized (loadingLock) {
+            this.loadingThread = loadingThread;
+            this.loading = true;
+        }
+    }
+
+    /**
+     * Marks the info as loaded (notifying the clients waiting for it).
+     */
+    protected void setLoaded() {
+        synchronized (loadingLock) {
+            this.loading = false;
+            this.loadingThread = null;
+            loadingLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return true if the info is still being loaded (in which case queries only get partial results).
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Waits until the info is loaded.
+     *
+     * @param timeoutMillis the max time to wait.
+     * @return true if the info is loaded and false if the timeout elapsed (or the thread was interrupted).
+     */
+    public boolean waitUntilLoaded(long timeoutMillis) {
+        if (!loading) {
+            return true;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (loadingLock) {
+            while (loading) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    loadingLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
             }
-            if (innerInitialsToInfo != null) {
-                innerInitialsToInfo.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all the passed infos are loaded.
+     *
+     * @param timeoutMillis the max time to wait (for all of them).
+     * @return true if all the infos are loaded and false if the timeout elapsed (or the thread was interrupted).
+     */
+    public static boolean waitUntilLoaded(Collection<? extends AbstractAdditionalTokensInfo> infos, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (AbstractAdditionalTokensInfo info : infos) {
+            if (info != null && !info.waitUntilLoaded(Math.max(0, deadline - System.currentTimeMillis()))) {
+                return false;
             }
         }
+        return true;
     }
 
-    protected Object lock = new Object();
+    /**
+     * Time after which a thread waiting to change the info logs that it's still waiting (along with the stack of the
+     * thread loading it).
+     */
+    private static final long LOAD_WAIT_LOG_MILLIS = 10 * 1000;
+
+    /**
+     * Max time a thread waits for the info to be loaded before changing it anyways (the change may then be overridden
+     * by the loaded info, but the thread is never parked indefinitely if the load never finishes).
+     */
+    private static final long MAX_LOAD_WAIT_TO_CHANGE_MILLIS = 60 * 1000;
+
+    /**
+     * Called before changing the info: waits until it's loaded if another thread is loading it (logging while it's
+     * still not loaded and giving up after MAX_LOAD_WAIT_TO_CHANGE_MILLIS).
+     *
+     * Note: must be called before getting the lock (which is needed to finish loading it).
+     */
+    protected void waitUntilLoadedToChange() {
+        if (!loading || Thread.currentThread() == loadingThread) {
+            return;
+        }
+        long initial = System.currentTimeMillis();
+        while (!waitUntilLoaded(LOAD_WAIT_LOG_MILLIS)) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            long waited = System.currentTimeMillis() - initial;
+            if (waited >= MAX_LOAD_WAIT_TO_CHANGE_MILLIS) {
+                Log.log("Changing " + this + " without waiting for it to be loaded (waited: " + waited + " millis).",
+                        createLoadingThreadStack());
+                return;
+            }
+            Log.log("Still waiting for " + this + " to be loaded to change it (waited: " + waited + " millis).",
+                    createLoadingThreadStack());
+        }
+    }
+
+    /**
+     * @return an exception with the stack of the thread loading the info (to help diagnosing a load that doesn't
+     * finish).
+     */
+    private Throwable createLoadingThreadStack() {
+        Thread t = loadingThread;
+        if (t == null) {
+            return new RuntimeException("The thread to load the info still didn't start.");
+        }
+        RuntimeException e = new RuntimeException("Stack of the thread loading the info: " + t.getName());
+        e.setStackTrace(t.getStackTrace());
+        return e;
+    }
 
     /**
      * The filter interface
@@ -175,8 +391,14 @@ public abstract class AbstractAdditionalTokensInfo {
     /**
      * 2: because we've removed some info (the hash is no longer saved)
      * 3: Changed from string-> list to string->set
+     * 4: Trees saved in a binary file (which is memory-mapped on restore)
+     */
+    protected static final int version = 4;
+
+    /**
+     * The extension of the file with the binary trees (written along the persisting location).
      */
-    protected static final int version = 3;
+    private static final String BINARY_TREES_EXTENSION = ".bintrees";
 
     public AbstractAdditionalTokensInfo() {
     }
@@ -190,7 +412,7 @@ public abstract class AbstractAdditionalTokensInfo {
         synchronized (lock) {
             String name = info.getName();
             String initials = getInitials(name);
-            SortedMap<String, Set<IInfo>> initialsToInfo;
+            CompactInfoTree initialsToInfo;
 
             if (doOn == TOP_LEVEL) {
                 if (info.getPath() != null && info.getPath().length() > 0) {
@@ -210,8 +432,20 @@ public abstract class AbstractAdditionalTokensInfo {
             } else {
                 throw new RuntimeException("List to add is invalid: " + doOn);
             }
-            Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
-            listForInitials.add(info);
+            if (mappedInfo != null) {
+                //The info for the module is being (re)added: the mapped info is no longer valid for it.
+                mappedInfo.removeModule(info.getDeclaringModuleName());
+            }
+            initialsToInfo.add(initials, info);
+
+            FuzzyNamesIndex fuzzyIndex = doOn == TOP_LEVEL ? topLevelFuzzyIndex : innerFuzzyIndex;
+            if (fuzzyIndex != null) {
+                fuzzyIndex.add(name);
+            }
+            List<String> fuzzyIndexPending = doOn == TOP_LEVEL ? fuzzyIndexTopLevelPending : fuzzyIndexInnerPending;
+            if (fuzzyIndexPending != null) {
+                fuzzyIndexPending.add(name);
+            }
         }
     }
 
@@ -226,20 +460,6 @@ public abstract class AbstractAdditionalTokensInfo {
         return name.substring(0, NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
     }
 
-    /**
-     * @param initials the initials we are looking for
-     * @param initialsToInfo this is the list we should use (top level or inner)
-     * @return the list of tokens with the specified initials (must be exact match)
-     */
-    protected Set<IInfo> getAndCreateListForInitials(String initials, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Set<IInfo> lInfo = initialsToInfo.get(initials);
-        if (lInfo == null) {
-            lInfo = new HashSet<IInfo>();
-            initialsToInfo.put(initials, lInfo);
-        }
-        return lInfo;
-    }
-
     private IInfo addAssignTargets(ASTEntry entry, String moduleName, int doOn, String path, boolean lastIsMethod) {
         String rep = NodeUtils.getFullRepresentationString(entry.node);
         if (lastIsMethod) {
@@ -306,12 +526,105 @@ public abstract class AbstractAdditionalTokensInfo {
             throw new RuntimeException("Don't know how to handle: " + doc + " -- " + doc.getClass());
         }
 
+        FastDefinitionsCache.Entry definitions = getDefinitions(key, charArray, len);
+        if (definitions == null) {
+            return null;
+        }
+
+        List<IInfo> ret = addAstInfo(definitions.ast, key, generateDelta);
+        addContentsInfo(key, definitions.tokens);
+        return ret;
+    }
+
+    /**
+     * @return the definitions (the ast created by the FastDefinitionsParser) and the contents tokens for the given
+     * contents (gotten from the definitions cache if available) or null if it was not possible to get it.
+     */
+    protected FastDefinitionsCache.Entry getDefinitions(ModulesKey key, char[] charArray, int len) {
+        FastDefinitionsCache cache = getDefinitionsCache();
+        String hash = null;
+        if (cache != null) {
+            hash = FastDefinitionsCache.hash(charArray, len);
+            FastDefinitionsCache.Entry entry = cache.get(hash);
+            if (entry != null) {
+                return entry;
+            }
+        }
+
         SimpleNode node = FastDefinitionsParser.parse(charArray, key.file.getName(), len);
         if (node == null) {
             return null;
         }
+        String[] tokens = computeContentsTokens(charArray, len);
+        if (cache != null) {
+            cache.put(hash, node, tokens);
+        }
+        return new FastDefinitionsCache.Entry(node, tokens);
+    }
+
+    /**
+     * Subclasses may override to index additional information from the module contents (the tokens returned are
+     * kept in the definitions cache along with the ast, so, the contents don't have to be read again for modules
+     * which didn't change).
+     * 
+     * @param contents the contents of the module (only the first len chars are valid).
+     * @return the tokens to be passed to addContentsInfo or null if the contents are not indexed.
+     */
+    protected String[] computeContentsTokens(char[] contents, int len) {
+        return null;
+    }
+
+    /**
+     * Called after the ast info for a module is added from its contents.
+     * 
+     * @param key the module which had its contents read.
+     * @param tokens the tokens gotten from computeContentsTokens (may be null).
+     */
+    protected void addContentsInfo(ModulesKey key, String[] tokens) {
+    }
+
+    /**
+     * @return the cache with the definitions of modules (keyed by the hash of their contents) or null if it's not
+     * available (i.e.: in tests).
+     */
+    public static synchronized FastDefinitionsCache getDefinitionsCache() {
+        if (!definitionsCacheCreated) {
+            definitionsCacheCreated = true;
+            if (!SharedCorePlugin.inTestMode()) {
+                try {
+                    File base = AnalysisPlugin.getDefault().getStateLocation().toFile();
+                    definitionsCache = new FastDefinitionsCache(new File(base, "definitions_cache"),
+                            DEFINITIONS_CACHE_MAX_BYTES);
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+            }
+        }
+        return definitionsCache;
+    }
 
-        return addAstInfo(node, key, generateDelta);
+    /**
+     * Sets the definitions cache to be used (may be null to disable it). Used for tests.
+     */
+    public static synchronized void setDefinitionsCache(FastDefinitionsCache cache) {
+        definitionsCache = cache;
+        definitionsCacheCreated = true;
+    }
+
+    /**
+     * Saves the index of the definitions cache (if it was created).
+     */
+    public static void saveDefinitionsCache() {
+        FastDefinitionsCache cache;
+        synchronized (AbstractAdditionalTokensInfo.class) {
+            cache = definitionsCache;
+        }
+        if (cache != null) {
+            cache.save();
+            if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+                Log.toLogFile(cache.getStats(), AbstractAdditionalTokensInfo.class);
+            }
+        }
     }
 
     /**
@@ -324,6 +637,7 @@ public abstract class AbstractAdditionalTokensInfo {
         if (node == null || key.name == null) {
             return createdInfos;
         }
+        waitUntilLoadedToChange();
         try {
             Tuple<DefinitionsASTIteratorVisitor, Iterator<ASTEntry>> tup = getInnerEntriesForAST(node);
             if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
@@ -441,20 +755,11 @@ public abstract class AbstractAdditionalTokensInfo {
     public Set<String> getAllModulesWithTokens() {
         HashSet<String> ret = new HashSet<String>();
         synchronized (lock) {
-            Set<Entry<String, Set<IInfo>>> entrySet = this.topLevelInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
+            this.topLevelInitialsToInfo.addModulesTo(ret);
+            this.innerInitialsToInfo.addModulesTo(ret);
 
-            entrySet = this.innerInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
+            if (mappedInfo != null) {
+                mappedInfo.addModulesTo(ret);
             }
         }
         return ret;
@@ -534,32 +839,16 @@ public abstract class AbstractAdditionalTokensInfo {
         if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
             Log.toLogFile(this, "Removing ast info from: " + moduleName);
         }
+        waitUntilLoadedToChange();
         synchronized (lock) {
-            removeInfoFromMap(moduleName, topLevelInitialsToInfo);
-            removeInfoFromMap(moduleName, innerInitialsToInfo);
-        }
-
-    }
-
-    /**
-     * @param moduleName
-     * @param initialsToInfo
-     */
-    private void removeInfoFromMap(String moduleName, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
-        while (itListOfInfo.hasNext()) {
-
-            Iterator<IInfo> it = itListOfInfo.next().iterator();
-            while (it.hasNext()) {
-
-                IInfo info = it.next();
-                if (info != null && info.getDeclaringModuleName() != null) {
-                    if (info.getDeclaringModuleName().equals(moduleName)) {
-                        it.remove();
-                    }
-                }
+            topLevelInitialsToInfo.removeModule(moduleName);
+            innerInitialsToInfo.removeModule(moduleName);
+            if (mappedInfo != null) {
+                mappedInfo.removeModule(moduleName);
             }
+            removedSinceFuzzyIndex++;
         }
+
     }
 
     /**
@@ -592,6 +881,138 @@ public abstract class AbstractAdditionalTokensInfo {
         }
     }
 
+    /**
+     * Gets the tokens which match the given qualifier in a fuzzy way (i.e.: 'CCD' or 'colourdlg' match
+     * 'CubeColourDialog').
+     * 
+     * Note that nothing is found until the fuzzy indexes are created (which is started in the background on the
+     * first call).
+     * 
+     * @param maxNames the maximum number of names to be returned (note that there may be more than one token for
+     * each name).
+     * @return the tokens found, ordered from the best match to the worst.
+     */
+    public Collection<IInfo> getTokensMatching(String qualifier, int getWhat, int maxNames, Collection<IInfo> result) {
+        synchronized (lock) {
+            if (result == null) {
+                result = new ArrayList<IInfo>();
+            }
+            if (topLevelFuzzyIndex == null) {
+                scheduleFuzzyIndexCreation();
+                if (topLevelFuzzyIndex == null) {
+                    return result;
+                }
+            }
+            if ((getWhat & TOP_LEVEL) != 0) {
+                for (String name : topLevelFuzzyIndex.getMatches(qualifier, maxNames)) {
+                    getWithFilter(name, TOP_LEVEL, equalsFilter, false, result);
+                }
+            }
+            if ((getWhat & INNER) != 0) {
+                for (String name : innerFuzzyIndex.getMatches(qualifier, maxNames)) {
+                    getWithFilter(name, INNER, equalsFilter, false, result);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Starts creating the fuzzy indexes in a background job (in tests, they're created synchronously).
+     * 
+     * Must be called with the lock held.
+     */
+    private void scheduleFuzzyIndexCreation() {
+        if (fuzzyIndexJob != null) {
+            return;
+        }
+        if (SharedCorePlugin.inTestMode()) {
+            createFuzzyIndexes();
+            return;
+        }
+        fuzzyIndexJob = new Job("Creating fuzzy names index") {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                createFuzzyIndexes();
+                return Status.OK_STATUS;
+            }
+        };
+        fuzzyIndexJob.setSystem(true);
+        fuzzyIndexJob.setPriority(Job.DECORATE);
+        fuzzyIndexJob.schedule();
+    }
+
+    /**
+     * Creates the fuzzy indexes: the names are gathered with the lock held, but the names in the mapped info are
+     * read and indexed without it (the names added meanwhile are added to the new indexes before making them 
+     * available).
+     */
+    private void createFuzzyIndexes() {
+        try {
+            while (true) {
+                MappedTokensInfo mapped;
+                BitSet removedModules = null;
+                List<String> topLevelNames = new ArrayList<String>();
+                List<String> innerNames = new ArrayList<String>();
+                int generation;
+                synchronized (lock) {
+                    mapped = mappedInfo;
+                    if (mapped != null) {
+                        removedModules = mapped.getRemovedModules();
+                    }
+                    topLevelInitialsToInfo.addNamesTo(topLevelNames);
+                    innerInitialsToInfo.addNamesTo(innerNames);
+                    fuzzyIndexTopLevelPending = new ArrayList<String>();
+                    fuzzyIndexInnerPending = new ArrayList<String>();
+                    generation = fuzzyIndexGeneration;
+                    removedSinceFuzzyIndex = 0;
+                }
+
+                FuzzyNamesIndex topLevel = createFuzzyIndex(TOP_LEVEL, mapped, removedModules, topLevelNames);
+                topLevelNames = null;
+                FuzzyNamesIndex inner = createFuzzyIndex(INNER, mapped, removedModules, innerNames);
+                innerNames = null;
+
+                synchronized (lock) {
+                    if (generation != fuzzyIndexGeneration) {
+                        continue; //restored meanwhile: create it again.
+                    }
+                    for (String name : fuzzyIndexTopLevelPending) {
+                        topLevel.add(name);
+                    }
+                    for (String name : fuzzyIndexInnerPending) {
+                        inner.add(name);
+                    }
+                    topLevelFuzzyIndex = topLevel;
+                    innerFuzzyIndex = inner;
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            synchronized (lock) {
+                fuzzyIndexTopLevelPending = null;
+                fuzzyIndexInnerPending = null;
+                fuzzyIndexJob = null;
+            }
+        }
+    }
+
+    private static FuzzyNamesIndex createFuzzyIndex(int doOn, MappedTokensInfo mapped, BitSet removedModules,
+            List<String> names) {
+        FuzzyNamesIndex fuzzyIndex = new FuzzyNamesIndex();
+        if (mapped != null) {
+            mapped.addNamesTo(doOn, fuzzyIndex, removedModules);
+        }
+        for (String name : names) {
+            fuzzyIndex.add(name);
+        }
+        fuzzyIndex.indexPending();
+        return fuzzyIndex;
+    }
+
     protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
             Collection<IInfo> result) {
         synchronized (lock) {
@@ -601,9 +1022,11 @@ public abstract class AbstractAdditionalTokensInfo {
 
             if ((getWhat & TOP_LEVEL) != 0) {
                 getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
+                getMappedWithFilter(qualifier, TOP_LEVEL, result, filter, useLowerCaseQual);
             }
             if ((getWhat & INNER) != 0) {
                 getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
+                getMappedWithFilter(qualifier, INNER, result, filter, useLowerCaseQual);
             }
             return result;
         }
@@ -615,8 +1038,8 @@ public abstract class AbstractAdditionalTokensInfo {
      * @param toks (out) the tokens will be added to this list
      * @return
      */
-    protected void getWithFilter(String qualifier, SortedMap<String, Set<IInfo>> initialsToInfo,
-            Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual) {
+    protected void getWithFilter(String qualifier, CompactInfoTree initialsToInfo, Collection<IInfo> toks,
+            Filter filter, boolean useLowerCaseQual) {
         String initials = getInitials(qualifier);
         String qualToCompare = qualifier;
         if (useLowerCaseQual) {
@@ -624,16 +1047,22 @@ public abstract class AbstractAdditionalTokensInfo {
         }
 
         //get until the end of the alphabet
-        SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "z");
-
-        for (Set<IInfo> listForInitials : subMap.values()) {
+        initialsToInfo.getWithFilter(initials, qualToCompare, filter, toks);
+    }
 
-            for (IInfo info : listForInitials) {
-                if (filter.doCompare(qualToCompare, info)) {
-                    toks.add(info);
-                }
-            }
+    /**
+     * Same as getWithFilter, but gets the tokens from the mapped info.
+     */
+    private void getMappedWithFilter(String qualifier, int doOn, Collection<IInfo> toks, Filter filter,
+            boolean useLowerCaseQual) {
+        if (mappedInfo == null) {
+            return;
+        }
+        String qualToCompare = qualifier;
+        if (useLowerCaseQual) {
+            qualToCompare = qualifier.toLowerCase();
         }
+        mappedInfo.getWithFilter(doOn, getInitials(qualifier), qualToCompare, filter, toks);
     }
 
     /**
@@ -641,20 +1070,13 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     public Collection<IInfo> getAllTokens() {
         synchronized (lock) {
-            Collection<Set<IInfo>> lInfo = this.topLevelInitialsToInfo.values();
-
             ArrayList<IInfo> toks = new ArrayList<IInfo>();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
+            this.topLevelInitialsToInfo.addAllTo(toks);
+            this.innerInitialsToInfo.addAllTo(toks);
 
-            lInfo = this.innerInitialsToInfo.values();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
+            if (mappedInfo != null) {
+                mappedInfo.addAllTo(TOP_LEVEL, toks);
+                mappedInfo.addAllTo(INNER, toks);
             }
             return toks;
         }
@@ -677,7 +1099,7 @@ public abstract class AbstractAdditionalTokensInfo {
         }
 
         save(persistingLocation);
-
+        saveDefinitionsCache();
     }
 
     protected void save(File persistingLocation) {
@@ -724,27 +1146,74 @@ public abstract class AbstractAdditionalTokensInfo {
                         + getAllTokens().size() + ") " + pathToSave);
             }
 
-            Map<String, Integer> dictionary = new HashMap<String, Integer>();
-            tempBuf.append("-- START TREE 1\n");
-            TreeIO.dumpTreeToBuffer(this.topLevelInitialsToInfo, tempBuf, dictionary);
-
-            tempBuf.append("-- START TREE 2\n");
-            TreeIO.dumpTreeToBuffer(this.innerInitialsToInfo, tempBuf, dictionary);
+            //The trees are written to a new binary file (the current one may still be mapped).
+            File dir = pathToSave.getAbsoluteFile().getParentFile();
+            String prefix = pathToSave.getName() + ".";
+            long generation = System.currentTimeMillis();
+            File treesFile;
+            do {
+                treesFile = new File(dir, prefix + generation + BINARY_TREES_EXTENSION);
+                generation++;
+            } while (treesFile.exists());
+
+            //The mapped info is streamed to the new file (only the info added in memory is merged into it).
+            MappedTokensInfo.write(treesFile, mappedInfo, getInMemoryTree(TOP_LEVEL), getInMemoryTree(INNER));
+
+            //From now on, the info will be queried from the new file (so, the in-memory trees may be cleared).
+            mappedInfo = MappedTokensInfo.open(treesFile);
+            clearTrees();
+            if (topLevelFuzzyIndex != null
+                    && removedSinceFuzzyIndex >= MAX_REMOVED_BEFORE_RECREATING_FUZZY_INDEX) {
+                //recreated without the names which were removed.
+                scheduleFuzzyIndexCreation();
+            }
+            deleteOldBinaryTrees(dir, prefix, treesFile);
 
-            FastStringBuffer buf2 = new FastStringBuffer(50 * (dictionary.size() + 4));
-            TreeIO.dumpDictToBuffer(dictionary, buf2);
+            tempBuf.append("-- START BINARY TREES\n");
+            tempBuf.append(treesFile.getName());
+            tempBuf.append('\n');
+            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+            tempBuf.clear();
+        }
+    }
 
-            //Write the dictionary before the actual trees.
-            writer.write(buf2.getInternalCharsArray(), 0, buf2.length());
-            buf2 = null;
+    /**
+     * @return a tree with the info in memory (i.e.: added after the mapped info was saved).
+     */
+    private SortedMap<String, List<IInfo>> getInMemoryTree(int doOn) {
+        CompactInfoTree initialsToInfo = doOn == TOP_LEVEL ? topLevelInitialsToInfo : innerInitialsToInfo;
+        SortedMap<String, List<IInfo>> tree = new PyPublicTreeMap<String, List<IInfo>>();
+        initialsToInfo.addAllTo(tree);
+        return tree;
+    }
 
-            //Note: tried LZFFileInputStream from https://github.com/ning/compress
-            //and Snappy from https://github.com/dain/snappy checking to see if by writing less we'd
-            //get a better time but it got a bit slower (gzip was slowest, then snappy and the faster was LZFFileInputStream)
-            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+    /**
+     * Deletes the binary trees previously saved (if some file is still mapped it may not be possible to 
+     * delete it, in which case, it'll be deleted later on).
+     */
+    private void deleteOldBinaryTrees(File dir, String prefix, File current) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (name.startsWith(prefix) && name.endsWith(BINARY_TREES_EXTENSION) && !f.equals(current)) {
+                f.delete();
+            }
         }
     }
 
+    /**
+     * Opens the binary trees file referenced from the contents saved in saveTo.
+     * 
+     * @param persistingLocation the file where the info was saved.
+     * @param fileName the name of the binary trees file.
+     */
+    protected static MappedTokensInfo openBinaryTrees(File persistingLocation, String fileName) throws IOException {
+        return MappedTokensInfo.open(new File(persistingLocation.getAbsoluteFile().getParentFile(), fileName));
+    }
+
     /**
      * Restores the saved info in the object (if overridden, getInfoToSave should be overridden too)
      * @param o the read object from the file
@@ -754,17 +1223,37 @@ public abstract class AbstractAdditionalTokensInfo {
     protected void restoreSavedInfo(Object o) throws MisconfigurationException {
         synchronized (lock) {
             Tuple3<Object, Object, Object> readFromFile = (Tuple3<Object, Object, Object>) o;
-            SortedMap<String, Set<IInfo>> o1 = (SortedMap<String, Set<IInfo>>) readFromFile.o1;
-            SortedMap<String, Set<IInfo>> o2 = (SortedMap<String, Set<IInfo>>) readFromFile.o2;
+            this.fuzzyIndexGeneration++;
+            if (readFromFile.o1 instanceof MappedTokensInfo) {
+                //New format: the trees are queried from the mapped info.
+                this.mappedInfo = (MappedTokensInfo) readFromFile.o1;
+                clearTrees();
+            } else {
+                SortedMap<String, Set<IInfo>> o1 = (SortedMap<String, Set<IInfo>>) readFromFile.o1;
+                SortedMap<String, Set<IInfo>> o2 = (SortedMap<String, Set<IInfo>>) readFromFile.o2;
 
-            this.topLevelInitialsToInfo = o1;
-            this.innerInitialsToInfo = o2;
+                this.mappedInfo = null;
+                clearTrees();
+                addAllTo(o1, this.topLevelInitialsToInfo);
+                addAllTo(o2, this.innerInitialsToInfo);
+            }
             if (readFromFile.o3 != null) {
                 //may be null in new format (where that's checked during load time).
                 if (AbstractAdditionalTokensInfo.version != (Integer) readFromFile.o3) {
                     throw new RuntimeException("I/O version doesn't match. Rebuilding internal info.");
                 }
             }
+            if (this.topLevelFuzzyIndex != null) {
+                scheduleFuzzyIndexCreation();
+            }
+        }
+    }
+
+    private static void addAllTo(SortedMap<String, Set<IInfo>> initialsToInfo, CompactInfoTree tree) {
+        for (Entry<String, Set<IInfo>> entry : initialsToInfo.entrySet()) {
+            for (IInfo info : entry.getValue()) {
+                tree.add(entry.getKey(), info);
+            }
         }
     }
 
@@ -775,10 +1264,12 @@ public abstract class AbstractAdditionalTokensInfo {
             buffer.append("AdditionalInfo{");
 
             buffer.append("topLevel=[");
-            entrySetToString(buffer, this.topLevelInitialsToInfo.entrySet());
+            treeToString(buffer, this.topLevelInitialsToInfo);
+            mappedToString(buffer, TOP_LEVEL);
             buffer.append("]\n");
             buffer.append("inner=[");
-            entrySetToString(buffer, this.innerInitialsToInfo.entrySet());
+            treeToString(buffer, this.innerInitialsToInfo);
+            mappedToString(buffer, INNER);
             buffer.append("]");
 
             buffer.append("}");
@@ -786,22 +1277,26 @@ public abstract class AbstractAdditionalTokensInfo {
         }
     }
 
-    /**
-     * @param buffer
-     * @param name
-     */
-    private void entrySetToString(FastStringBuffer buffer, Set<Entry<String, Set<IInfo>>> name) {
-        synchronized (lock) {
-            for (Entry<String, Set<IInfo>> entry : name) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    buffer.append(info.toString());
-                    buffer.append("\n");
-                }
+    private void mappedToString(FastStringBuffer buffer, int doOn) {
+        if (mappedInfo != null) {
+            ArrayList<IInfo> toks = new ArrayList<IInfo>();
+            mappedInfo.addAllTo(doOn, toks);
+            for (IInfo info : toks) {
+                buffer.append(info.toString());
+                buffer.append("\n");
             }
         }
     }
 
+    private void treeToString(FastStringBuffer buffer, CompactInfoTree tree) {
+        ArrayList<IInfo> toks = new ArrayList<IInfo>();
+        tree.addAllTo(toks);
+        for (IInfo info : toks) {
+            buffer.append(info.toString());
+            buffer.append("\n");
+        }
+    }
+
     /**
      * @param token the token we want to search for (must be an exact match). Only tokens which are valid identifiers
      * may be searched (i.e.: no dots in it or anything alike).
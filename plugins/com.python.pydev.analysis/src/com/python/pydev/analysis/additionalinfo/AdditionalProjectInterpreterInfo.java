@@ -13,7 +13,10 @@ package com.python.pydev.analysis.additionalinfo;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,7 +24,6 @@ import java.util.Set;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.python.pydev.core.FileUtilsFileBuffer;
 import org.python.pydev.core.IModulesManager;
 import org.python.pydev.core.IPythonNature;
@@ -32,6 +34,7 @@ import org.python.pydev.editor.codecompletion.revisited.ProjectModulesManager;
 import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.plugin.nature.SystemPythonNature;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.structure.Tuple;
 
 import com.python.pydev.analysis.AnalysisPlugin;
@@ -185,7 +188,7 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
      * @return the additional info for a given project (gotten from the cache with its name)
      * @throws MisconfigurationException 
      */
-    public static AbstractAdditionalDependencyInfo getAdditionalInfoForProject(IPythonNature nature)
+    public static AbstractAdditionalDependencyInfo getAdditionalInfoForProject(final IPythonNature nature)
             throws MisconfigurationException {
         if (nature == null) {
             return null;
@@ -199,18 +202,59 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
         synchronized (additionalNatureInfoLock) {
             AbstractAdditionalDependencyInfo info = additionalNatureInfo.get(name);
             if (info == null) {
-                info = new AdditionalProjectInterpreterInfo(project);
+                //lazy-load (in a background job: the info is returned while still loading -- with partial results).
+                final AdditionalProjectInterpreterInfo newInfo = new AdditionalProjectInterpreterInfo(project);
+                newInfo.loadInBackground(getAdditionalFeedback(project), new ICallback<Object, IProgressMonitor>() {
+
+                    public Object call(IProgressMonitor monitor) {
+                        //Not restored: recreate it in place.
+                        newInfo.clearAllInfo();
+                        try {
+                            if (restoreInfo(nature, newInfo, monitor) != null) {
+                                newInfo.save();
+                            }
+                        } catch (MisconfigurationException e) {
+                            Log.log(e);
+                        }
+                        return null;
+                    }
+                });
+                info = newInfo;
                 additionalNatureInfo.put(name, info);
-
-                if (!info.load()) {
-                    recreateAllInfo(nature, new NullProgressMonitor());
-                }
-
             }
             return info;
         }
     }
 
+    private static String getAdditionalFeedback(IProject project) {
+        return "(project:" + project.getName() + ")";
+    }
+
+    /**
+     * Fills the passed info with the info of the modules in the given nature.
+     * 
+     * @return the info filled or null if it was cancelled.
+     */
+    private static AbstractAdditionalDependencyInfo restoreInfo(IPythonNature nature,
+            AbstractAdditionalDependencyInfo info, IProgressMonitor monitor) throws MisconfigurationException {
+        //Note: at this point we're 100% certain that the ast manager is there.
+        IModulesManager m = nature.getAstManager().getModulesManager();
+        synchronized (m) {
+            return (AbstractAdditionalDependencyInfo) restoreInfoForModuleManager(monitor, m,
+                    getAdditionalFeedback(nature.getProject()), info, nature, nature.getGrammarVersion());
+        }
+    }
+
+    /**
+     * Waits until the additional info related to the nature (system, project and referenced projects) is loaded.
+     * 
+     * @param timeoutMillis the max time to wait (if it elapses, queries will get partial results).
+     * @return true if all the info is loaded and false otherwise.
+     */
+    public static boolean waitUntilLoaded(IPythonNature nature, long timeoutMillis) throws MisconfigurationException {
+        return AbstractAdditionalTokensInfo.waitUntilLoaded(getAdditionalInfo(nature), timeoutMillis);
+    }
+
     //interfaces that iterate through all of them
     public static List<IInfo> getTokensEqualTo(String qualifier, IPythonNature nature, int getWhat)
             throws MisconfigurationException {
@@ -232,6 +276,48 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
         return ret;
     }
 
+    /**
+     * @return the tokens which match the given qualifier in a fuzzy way in the project and related infos, ordered
+     * from the best match to the worst (with at most maxNames different names).
+     * 
+     * @see AbstractAdditionalTokensInfo#getTokensMatching(String, int, int, java.util.Collection)
+     */
+    public static List<IInfo> getTokensMatching(final String qualifier, IPythonNature nature, int getWhat,
+            int maxNames) throws MisconfigurationException {
+        ArrayList<IInfo> found = new ArrayList<IInfo>();
+        List<AbstractAdditionalTokensInfo> additionalInfo = getAdditionalInfo(nature);
+        for (AbstractAdditionalTokensInfo info : additionalInfo) {
+            info.getTokensMatching(qualifier, getWhat, maxNames, found);
+        }
+
+        //Each info has its own ranking: merge them (the sort is stable, so, the order is kept on ties).
+        final Map<String, Integer> scores = new HashMap<String, Integer>();
+        for (IInfo info : found) {
+            String name = info.getName();
+            if (!scores.containsKey(name)) {
+                scores.put(name, FuzzyNamesIndex.score(qualifier, name));
+            }
+        }
+        Collections.sort(found, new Comparator<IInfo>() {
+
+            public int compare(IInfo o1, IInfo o2) {
+                int score1 = scores.get(o1.getName());
+                int score2 = scores.get(o2.getName());
+                return score1 > score2 ? -1 : (score1 < score2 ? 1 : 0);
+            }
+        });
+
+        ArrayList<IInfo> ret = new ArrayList<IInfo>(found.size());
+        Set<String> names = new HashSet<String>();
+        for (IInfo info : found) {
+            if (names.add(info.getName()) && names.size() > maxNames) {
+                break;
+            }
+            ret.add(info);
+        }
+        return ret;
+    }
+
     /**
      * @param project the project we want to get info on
      * @return a list of the additional info for the project + referencing projects
@@ -258,28 +344,35 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
 
     public static void recreateAllInfo(IPythonNature nature, IProgressMonitor monitor) {
         try {
-            synchronized (additionalNatureInfoLock) {
-                //Note: at this point we're 100% certain that the ast manager is there.
-                IModulesManager m = nature.getAstManager().getModulesManager();
-                IProject project = nature.getProject();
-
+            while (true) {
+                //If the current info is still loading, wait for it before getting the lock (otherwise the clients
+                //which just want to get the info -- i.e.: code-completion -- would wait for the load too).
                 AbstractAdditionalDependencyInfo currInfo = AdditionalProjectInterpreterInfo
                         .getAdditionalInfoForProject(nature);
                 if (currInfo != null) {
-                    currInfo.clearAllInfo();
+                    currInfo.waitUntilLoadedToChange();
                 }
 
-                String feedback = "(project:" + project.getName() + ")";
-                synchronized (m) {
-                    AbstractAdditionalDependencyInfo info = (AbstractAdditionalDependencyInfo) restoreInfoForModuleManager(
-                            monitor, m, feedback, new AdditionalProjectInterpreterInfo(project), nature,
-                            nature.getGrammarVersion());
+                synchronized (additionalNatureInfoLock) {
+                    IProject project = nature.getProject();
+
+                    currInfo = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(nature);
+                    if (currInfo != null) {
+                        if (currInfo.isLoading()) {
+                            continue; //a new load started meanwhile: wait for it again (out of the lock).
+                        }
+                        currInfo.clearAllInfo();
+                    }
+
+                    AbstractAdditionalDependencyInfo info = restoreInfo(nature,
+                            new AdditionalProjectInterpreterInfo(project), monitor);
 
                     if (info != null) {
                         //ok, set it and save it
                         additionalNatureInfo.put(FileUtilsFileBuffer.getValidProjectName(project), info);
                         info.save();
                     }
+                    return;
                 }
             }
         } catch (Exception e) {
@@ -17,13 +17,12 @@ import java.util.Map;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.NullProgressMonitor;
-import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IInterpreterManager;
 import org.python.pydev.core.ISystemModulesManager;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.ui.interpreters.PythonInterpreterManager;
 import org.python.pydev.ui.pythonpathconf.InterpreterInfo;
@@ -119,55 +118,93 @@ public class AdditionalSystemInterpreterInfo extends AbstractAdditionalInfoWithB
      * @return the additional info for the system
      * @throws MisconfigurationException 
      */
-    public static AbstractAdditionalDependencyInfo getAdditionalSystemInfo(IInterpreterManager manager,
-            String interpreter, boolean errorIfNotAvailable) throws MisconfigurationException {
+    public static AbstractAdditionalDependencyInfo getAdditionalSystemInfo(final IInterpreterManager manager,
+            final String interpreter, boolean errorIfNotAvailable) throws MisconfigurationException {
         Tuple<String, String> key = new Tuple<String, String>(manager.getManagerRelatedName(), interpreter);
         synchronized (additionalSystemInfoLock) {
             AbstractAdditionalDependencyInfo info = (AbstractAdditionalDependencyInfo) additionalSystemInfo.get(key);
             if (info == null) {
-                //lazy-load.
-                info = new AdditionalSystemInterpreterInfo(manager, interpreter);
+                //lazy-load (in a background job: the info is returned while still loading -- with partial results).
+                final AdditionalSystemInterpreterInfo newInfo = new AdditionalSystemInterpreterInfo(manager,
+                        interpreter);
+                newInfo.loadInBackground(getAdditionalFeedback(manager, interpreter),
+                        new ICallback<Object, IProgressMonitor>() {
+
+                            public Object call(IProgressMonitor monitor) {
+                                //Not restored: recreate it in place.
+                                newInfo.clearAllInfo();
+                                if (restoreInfo(manager, interpreter, newInfo, monitor) != null) {
+                                    newInfo.save();
+                                }
+                                return null;
+                            }
+                        });
+                info = newInfo;
                 additionalSystemInfo.put(key, info);
-
-                if (!info.load()) {
-                    try {
-                        recreateAllInfo(manager, interpreter, new NullProgressMonitor());
-                        info = (AbstractAdditionalDependencyInfo) additionalSystemInfo.get(key);
-                    } catch (Exception e) {
-                        Log.log(e);
-                    }
-                }
             }
             return info;
         }
     }
 
+    private static String getAdditionalFeedback(IInterpreterManager manager, String interpreter) {
+        return "(system: " + manager.getManagerRelatedName() + " - " + interpreter + ")";
+    }
+
+    /**
+     * Fills the passed info with the info of the modules in the given interpreter.
+     * 
+     * @return the info filled or null if it couldn't be restored (i.e.: cancelled or misconfigured).
+     */
+    private static AbstractAdditionalTokensInfo restoreInfo(IInterpreterManager manager, String interpreter,
+            AbstractAdditionalTokensInfo info, IProgressMonitor monitor) {
+        try {
+            InterpreterInfo interpreterInfo = (InterpreterInfo) manager.getInterpreterInfo(interpreter, monitor);
+            ISystemModulesManager m = interpreterInfo.getModulesManager();
+            return restoreInfoForModuleManager(monitor, m, getAdditionalFeedback(manager, interpreter), info, null,
+                    interpreterInfo.getGrammarVersion());
+        } catch (MisconfigurationException e) {
+            Log.log(e);
+            return null;
+        }
+    }
+
     public static void recreateAllInfo(IInterpreterManager manager, String interpreter, IProgressMonitor monitor) {
-        synchronized (additionalSystemInfoLock) {
-            try {
-                final IInterpreterInfo interpreterInfo = manager.getInterpreterInfo(interpreter, monitor);
-                int grammarVersion = interpreterInfo.getGrammarVersion();
-                AbstractAdditionalTokensInfo currInfo = AdditionalSystemInterpreterInfo.getAdditionalSystemInfo(
-                        manager, interpreter);
+        Tuple<String, String> key = new Tuple<String, String>(manager.getManagerRelatedName(), interpreter);
+        try {
+            while (true) {
+                //Note: if the info is not there, it's not created (there's no point in loading an info which is about
+                //to be recreated).
+                AbstractAdditionalTokensInfo currInfo;
+                synchronized (additionalSystemInfoLock) {
+                    currInfo = additionalSystemInfo.get(key);
+                }
                 if (currInfo != null) {
+                    //If the current info is still loading, wait for it without the lock (otherwise the clients
+                    //which just want to get the info -- i.e.: code-completion -- would wait for the load too).
+                    currInfo.waitUntilLoadedToChange();
+                    synchronized (additionalSystemInfoLock) {
+                        if (additionalSystemInfo.get(key) != currInfo || currInfo.isLoading()) {
+                            continue; //changed meanwhile: check again.
+                        }
+                    }
                     currInfo.clearAllInfo();
                 }
-                InterpreterInfo defaultInterpreterInfo = (InterpreterInfo) manager.getInterpreterInfo(interpreter,
-                        monitor);
-                ISystemModulesManager m = defaultInterpreterInfo.getModulesManager();
-                AbstractAdditionalTokensInfo info = restoreInfoForModuleManager(monitor, m,
-                        "(system: " + manager.getManagerRelatedName() + " - " + interpreter + ")",
-                        new AdditionalSystemInterpreterInfo(manager, interpreter), null, grammarVersion);
+
+                //The info is recreated without the lock (clients get the cleared info meanwhile).
+                AbstractAdditionalTokensInfo info = restoreInfo(manager, interpreter,
+                        new AdditionalSystemInterpreterInfo(manager, interpreter), monitor);
 
                 if (info != null) {
                     //ok, set it and save it
-                    additionalSystemInfo.put(new Tuple<String, String>(manager.getManagerRelatedName(), interpreter),
-                            info);
+                    synchronized (additionalSystemInfoLock) {
+                        additionalSystemInfo.put(key, info);
+                    }
                     info.save();
                 }
-            } catch (Throwable e) {
-                Log.log(e);
+                return;
             }
+        } catch (Throwable e) {
+            Log.log(e);
         }
     }
 
@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+/**
+ * In-memory tree (initials -> info) which keeps the info in a columnar way: each info is a record with the ids of
+ * its name, path and module (along with its type packed in the module id -- as done in MappedTokensInfo) in an
+ * int[] for each initials, so, the IInfo objects are only created for the results of a query.
+ *
+ * The records are deduplicated (as if they were kept in a set). To keep adding cheap, the records are appended
+ * to the bucket and the bucket is sorted/deduplicated only when it's accessed.
+ *
+ * Not thread-safe: clients are expected to synchronize on their own (as AbstractAdditionalTokensInfo does).
+ */
+public final class CompactInfoTree {
+
+    /**
+     * A table of strings (string <-> id), which may be shared among trees. Strings are never removed from it.
+     */
+    public static final class Strings {
+
+        private String[] strings = new String[64];
+        private int size;
+
+        /**
+         * Open addressing table with the id + 1 of the strings (0 means empty).
+         */
+        private int[] table = new int[128];
+
+        private static int hash(String s) {
+            int h = s.hashCode();
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * @return the id of the string (-1 if it's not in the table).
+         */
+        public int getId(String s) {
+            int mask = table.length - 1;
+            for (int i = hash(s) & mask;; i = (i + 1) & mask) {
+                int id = table[i] - 1;
+                if (id == -1) {
+                    return -1;
+                }
+                if (strings[id].equals(s)) {
+                    return id;
+                }
+            }
+        }
+
+        /**
+         * @return the id of the string (adding it if needed).
+         */
+        public int add(String s) {
+            int mask = table.length - 1;
+            int i = hash(s) & mask;
+            for (;; i = (i + 1) & mask) {
+                int id = table[i] - 1;
+                if (id == -1) {
+                    break;
+                }
+                if (strings[id].equals(s)) {
+                    return id;
+                }
+            }
+            if (size == strings.length) {
+                String[] newStrings = new String[size * 2];
+                System.arraycopy(strings, 0, newStrings, 0, size);
+                strings = newStrings;
+            }
+            int id = size;
+            strings[size++] = s;
+            table[i] = id + 1;
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            return id;
+        }
+
+        private void rehash(int newLength) {
+            int[] newTable = new int[newLength];
+            int mask = newLength - 1;
+            for (int id = 0; id < size; id++) {
+                int i = hash(strings[id]) & mask;
+                while (newTable[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                newTable[i] = id + 1;
+            }
+            table = newTable;
+        }
+
+        public String get(int id) {
+            return id < 0 ? null : strings[id];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The records for some initials.
+     */
+    private static final class Bucket {
+
+        private int[] records = new int[RECORD_INTS * 2];
+
+        /**
+         * The number of records.
+         */
+        private int size;
+
+        /**
+         * The number of records at the start which are sorted and deduplicated.
+         */
+        private int sorted;
+
+        private void add(int nameId, int pathId, int moduleAndType) {
+            int pos = size * RECORD_INTS;
+            if (pos == records.length) {
+                int[] newRecords = new int[records.length * 2];
+                System.arraycopy(records, 0, newRecords, 0, pos);
+                records = newRecords;
+            }
+            records[pos] = nameId;
+            records[pos + 1] = pathId;
+            records[pos + 2] = moduleAndType;
+            size++;
+        }
+
+        /**
+         * Sorts and deduplicates the records (if records were added since it was last done).
+         */
+        private void normalize() {
+            if (sorted == size) {
+                return;
+            }
+            sortRecords(records, 0, size - 1);
+            int newSize = 1;
+            for (int i = 1; i < size; i++) {
+                if (compareRecords(records, i, newSize - 1) != 0) {
+                    if (i != newSize) {
+                        System.arraycopy(records, i * RECORD_INTS, records, newSize * RECORD_INTS, RECORD_INTS);
+                    }
+                    newSize++;
+                }
+            }
+            size = newSize;
+            sorted = newSize;
+        }
+
+        /**
+         * Removes the records of the given module.
+         */
+        private void removeModule(int moduleId) {
+            int newSize = 0;
+            int newSorted = 0;
+            for (int i = 0; i < size; i++) {
+                int pos = i * RECORD_INTS;
+                if ((records[pos + 2] >>> 3) == moduleId) {
+                    continue;
+                }
+                if (i != newSize) {
+                    System.arraycopy(records, pos, records, newSize * RECORD_INTS, RECORD_INTS);
+                }
+                newSize++;
+                if (i < sorted) {
+                    newSorted++;
+                }
+            }
+            size = newSize;
+            sorted = newSorted;
+        }
+    }
+
+    /**
+     * name id, path id (-1 if it has no path), module id << 3 | type
+     */
+    private static final int RECORD_INTS = 3;
+
+    private final Strings strings;
+
+    private final SortedMap<String, Bucket> buckets = new PyPublicTreeMap<String, Bucket>();
+
+    /**
+     * @param strings the table of strings to be used (may be shared among trees).
+     */
+    public CompactInfoTree(Strings strings) {
+        this.strings = strings;
+    }
+
+    public void add(String initials, IInfo info) {
+        Bucket bucket = buckets.get(initials);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(initials, bucket);
+        }
+        String path = info.getPath();
+        bucket.add(strings.add(info.getName()), path != null ? strings.add(path) : -1,
+                (strings.add(info.getDeclaringModuleName()) << 3) | info.getType());
+    }
+
+    /**
+     * Removes all the info from the given module.
+     */
+    public void removeModule(String moduleName) {
+        int moduleId = strings.getId(moduleName);
+        if (moduleId == -1) {
+            return;
+        }
+        Iterator<Bucket> it = buckets.values().iterator();
+        while (it.hasNext()) {
+            Bucket bucket = it.next();
+            bucket.removeModule(moduleId);
+            if (bucket.size == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    private IInfo createInfo(int[] records, int pos) {
+        int moduleAndType = records[pos + 2];
+        return MappedTokensInfo.createInfo(moduleAndType & 0x07, strings.get(records[pos]),
+                strings.get(moduleAndType >>> 3), strings.get(records[pos + 1]));
+    }
+
+    /**
+     * Adds to toks the info in the keys from [initials, initials + "z") which the filter accepts.
+     */
+    public void getWithFilter(String initials, String qualToCompare, Filter filter, Collection<IInfo> toks) {
+        for (Bucket bucket : buckets.subMap(initials, initials + "z").values()) {
+            bucket.normalize();
+            int[] records = bucket.records;
+            int end = bucket.size * RECORD_INTS;
+            for (int pos = 0; pos < end; pos += RECORD_INTS) {
+                if (filter.doCompare(qualToCompare, strings.get(records[pos]))) {
+                    toks.add(createInfo(records, pos));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all the info to the passed collection.
+     */
+    public void addAllTo(Collection<IInfo> toks) {
+        for (Bucket bucket : buckets.values()) {
+            bucket.normalize();
+            addAllTo(bucket, toks);
+        }
+    }
+
+    /**
+     * Adds all the info to the passed map (initials -> info).
+     */
+    public void addAllTo(Map<String, List<IInfo>> initialsToInfo) {
+        for (Entry<String, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            bucket.normalize();
+            if (bucket.size == 0) {
+                continue;
+            }
+            List<IInfo> list = initialsToInfo.get(entry.getKey());
+            if (list == null) {
+                list = new ArrayList<IInfo>(bucket.size);
+                initialsToInfo.put(entry.getKey(), list);
+            }
+            addAllTo(bucket, list);
+        }
+    }
+
+    private void addAllTo(Bucket bucket, Collection<IInfo> toks) {
+        int[] records = bucket.records;
+        int end = bucket.size * RECORD_INTS;
+        for (int pos = 0; pos < end; pos += RECORD_INTS) {
+            toks.add(createInfo(records, pos));
+        }
+    }
+
+    /**
+     * Adds the names of the info available to the passed collection (may have repeated names).
+     */
+    public void addNamesTo(Collection<String> names) {
+        for (Bucket bucket : buckets.values()) {
+            int[] records = bucket.records;
+            int end = bucket.size * RECORD_INTS;
+            for (int pos = 0; pos < end; pos += RECORD_INTS) {
+                names.add(strings.get(records[pos]));
+            }
+        }
+    }
+
+    /**
+     * Adds the modules which have some info to the passed set.
+     */
+    public void addModulesTo(Set<String> modules) {
+        for (Bucket bucket : buckets.values()) {
+            int[] records = bucket.records;
+            int end = bucket.size * RECORD_INTS;
+            for (int pos = 0; pos < end; pos += RECORD_INTS) {
+                modules.add(strings.get(records[pos + 2] >>> 3));
+            }
+        }
+    }
+
+    /**
+     * @return the number of info records kept.
+     */
+    public int size() {
+        int size = 0;
+        for (Bucket bucket : buckets.values()) {
+            bucket.normalize();
+            size += bucket.size;
+        }
+        return size;
+    }
+
+    // Sorting of the records (by name, path and module/type) ---------------------------------------------------------
+
+    private static int compareRecords(int[] records, int i, int j) {
+        int pi = i * RECORD_INTS;
+        int pj = j * RECORD_INTS;
+        for (int k = 0; k < RECORD_INTS; k++) {
+            int a = records[pi + k];
+            int b = records[pj + k];
+            if (a != b) {
+                return a < b ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void swapRecords(int[] records, int i, int j) {
+        int pi = i * RECORD_INTS;
+        int pj = j * RECORD_INTS;
+        for (int k = 0; k < RECORD_INTS; k++) {
+            int tmp = records[pi + k];
+            records[pi + k] = records[pj + k];
+            records[pj + k] = tmp;
+        }
+    }
+
+    /**
+     * Quicksort of the records from low to high (inclusive).
+     */
+    private static void sortRecords(int[] records, int low, int high) {
+        while (high - low > 16) {
+            int mid = (low + high) >>> 1;
+            //median of three as the pivot (moved to high)
+            if (compareRecords(records, mid, low) < 0) {
+                swapRecords(records, mid, low);
+            }
+            if (compareRecords(records, high, low) < 0) {
+                swapRecords(records, high, low);
+            }
+            if (compareRecords(records, mid, high) < 0) {
+                swapRecords(records, mid, high);
+            }
+            int store = low;
+            for (int i = low; i < high; i++) {
+                if (compareRecords(records, i, high) < 0) {
+                    swapRecords(records, i, store);
+                    store++;
+                }
+            }
+            swapRecords(records, store, high);
+
+            //recurse on the smaller part (so that the stack depth is bounded)
+            if (store - low < high - store) {
+                sortRecords(records, low, store - 1);
+                low = store + 1;
+            } else {
+                sortRecords(records, store + 1, high);
+                high = store - 1;
+            }
+        }
+        //insertion sort for small ranges
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compareRecords(records, j, j - 1) < 0; j--) {
+                swapRecords(records, j, j - 1);
+            }
+        }
+    }
+}
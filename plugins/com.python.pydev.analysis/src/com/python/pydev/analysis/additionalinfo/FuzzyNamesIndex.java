@@ -0,0 +1,822 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Index over the names of the tokens info which allows getting names which match a qualifier in a fuzzy way
+ * (i.e.: 'CCD' or 'colourdlg' matching 'CubeColourDialog'), which isn't possible with the initials trees (which
+ * only provide prefix matches).
+ *
+ * The candidates are gotten from:
+ *
+ * - the initials of the camel-case/underscore 'humps' of the names (i.e.: 'CubeColourDialog' -> 'ccd')
+ * - the trigrams in the lowercase name (i.e.: 'cub', 'ube', 'bec', ...)
+ *
+ * and are then ranked by the score given by {@link #score(String, String)}.
+ *
+ * Only names are kept (the related info is gotten from the initials trees afterwards). Names are never removed
+ * (so, clients should check that the returned names still exist and recreate the index from time to time).
+ *
+ * Everything is kept in arrays of primitives (the chars of the names in a single array and the ids of the names
+ * for each key packed as deltas in a single byte array -- names added after that are kept in linked lists until
+ * there are enough of those to pack them again), so that big indexes don't create an object per name.
+ *
+ * Not thread-safe: clients are expected to synchronize on their own (as AbstractAdditionalTokensInfo does).
+ */
+public final class FuzzyNamesIndex {
+
+    /**
+     * Tag for the keys with the humps (trigrams only use the lower 48 bits).
+     */
+    private static final long HUMPS_KEY = 1L << 56;
+
+    /**
+     * Max number of candidates gathered (and then checked/scored) in a query, so that a query for a qualifier with
+     * common humps/trigrams has a bounded cost in a big index (when reached, the remaining postings are skipped).
+     */
+    /*default*/static final int MAX_CANDIDATES = 6000;
+
+    /**
+     * Kinds of candidates (kept in candidateKinds while gathering them).
+     */
+    private static final int HUMPS_CANDIDATE = 1;
+    private static final int TRIGRAMS_CANDIDATE = 2;
+
+    /**
+     * A growable list of ints (the ids of the names).
+     */
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * A name and its score.
+     */
+    private static final class Scored implements Comparable<Scored> {
+
+        private final String name;
+        private final int score;
+
+        private Scored(String name, int score) {
+            this.name = name;
+            this.score = score;
+        }
+
+        /**
+         * The 'smaller' is the worse match.
+         */
+        public int compareTo(Scored o) {
+            if (score != o.score) {
+                return score < o.score ? -1 : 1;
+            }
+            if (name.length() != o.name.length()) {
+                return name.length() > o.name.length() ? -1 : 1;
+            }
+            return o.name.compareTo(name);
+        }
+    }
+
+    /**
+     * The chars of all the names (the name with a given id is in [nameStarts[id], nameStarts[id + 1]) ).
+     */
+    private char[] chars;
+    private int charsSize;
+    private int[] nameStarts;
+    private int size;
+
+    /**
+     * Open-addressing table with the (id + 1) of the names (0 means an empty slot).
+     */
+    private int[] namesTable;
+
+    /**
+     * Open-addressing table with the keys (humps/trigrams) -- 0 means an empty slot. The arrays below are indexed
+     * by the slot of the key.
+     */
+    private long[] keys;
+    private int keysCount;
+
+    /**
+     * The ids for each key which were packed are in packedIds[packedStart[slot] ... + packedLength[slot]] (in
+     * ascending order, each written as the variable-length delta from the previous one).
+     */
+    private int[] packedStart;
+    private int[] packedLength;
+    private byte[] packedIds;
+
+    /**
+     * The last id counted for each key while packing (null if not packing).
+     */
+    private int[] packingLastIds;
+
+    /**
+     * The names with an id below this value were already packed.
+     */
+    private int packedNames;
+
+    /**
+     * The ids for each key which were added after packing them: linked lists starting at lastPosting[slot]
+     * (-1 if empty) and going through postingNext.
+     */
+    private int[] lastPosting;
+    private int[] postingIds;
+    private int[] postingNext;
+    private int postingsSize;
+
+    /**
+     * The names with an id below this value already have their keys (packed or in the linked lists).
+     */
+    private int indexedNames;
+
+    /**
+     * Reused to mark the names already gathered as candidates in a query (with the kind of candidate).
+     */
+    private int[] candidateKinds = new int[0];
+
+    /**
+     * Reused to get the keys of a name.
+     */
+    private long[] nameKeys = new long[16];
+
+    public FuzzyNamesIndex() {
+        clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a name to the index (does nothing if it's already there).
+     *
+     * Note that the name is only searchable after {@link #indexPending()} is called (which is done automatically
+     * on a query).
+     */
+    public void add(String name) {
+        if (name == null || name.length() == 0) {
+            return;
+        }
+        int len = name.length();
+        int mask = namesTable.length - 1;
+        int slot = hash(name) & mask;
+        while (namesTable[slot] != 0) {
+            if (nameEquals(namesTable[slot] - 1, name)) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (charsSize + len > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(charsSize + len, chars.length * 2));
+        }
+        name.getChars(0, len, chars, charsSize);
+        charsSize += len;
+        if (size + 2 > nameStarts.length) {
+            nameStarts = Arrays.copyOf(nameStarts, nameStarts.length * 2);
+        }
+        namesTable[slot] = size + 1;
+        size++;
+        nameStarts[size] = charsSize;
+
+        if (size * 2 > namesTable.length) {
+            rehashNames();
+        }
+    }
+
+    /**
+     * @return the id of the given name (or -1 if it's not in the index).
+     */
+    private int getId(String name) {
+        int mask = namesTable.length - 1;
+        int slot = hash(name) & mask;
+        while (namesTable[slot] != 0) {
+            if (nameEquals(namesTable[slot] - 1, name)) {
+                return namesTable[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int hash(int id) {
+        int h = 0;
+        for (int i = nameStarts[id], end = nameStarts[id + 1]; i < end; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean nameEquals(int id, String name) {
+        int start = nameStarts[id];
+        int len = name.length();
+        if (nameStarts[id + 1] - start != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (chars[start + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehashNames() {
+        int[] newTable = new int[namesTable.length * 2];
+        int mask = newTable.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(id) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = id + 1;
+        }
+        namesTable = newTable;
+    }
+
+    private String getName(int id) {
+        int start = nameStarts[id];
+        return new String(chars, start, nameStarts[id + 1] - start);
+    }
+
+    // Keys -------------------------------------------------------------------------------------------------------------
+
+    private static long getTrigram(String lower, int i) {
+        return (((long) lower.charAt(i)) << 32) | (((long) lower.charAt(i + 1)) << 16) | lower.charAt(i + 2);
+    }
+
+    private static long getHumpsKey(String humps) {
+        int len = Math.min(humps.length(), 2);
+        long key = HUMPS_KEY | (((long) len) << 48);
+        for (int i = 0; i < len; i++) {
+            key |= ((long) humps.charAt(i)) << (16 * (1 - i));
+        }
+        return key;
+    }
+
+    /**
+     * Fills nameKeys with the (unique) keys of the given name.
+     *
+     * @return the number of keys.
+     */
+    private int computeKeys(int id) {
+        String name = getName(id);
+        String lower = name.toLowerCase();
+        int len = lower.length();
+        if (nameKeys.length < len) {
+            nameKeys = new long[len];
+        }
+        int found = 0;
+        nameKeys[found++] = getHumpsKey(getHumps(name));
+        for (int i = 0; i + 3 <= len; i++) {
+            nameKeys[found++] = getTrigram(lower, i);
+        }
+        Arrays.sort(nameKeys, 0, found);
+        int unique = 1;
+        for (int i = 1; i < found; i++) {
+            if (nameKeys[i] != nameKeys[unique - 1]) {
+                nameKeys[unique++] = nameKeys[i];
+            }
+        }
+        return unique;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return the slot of the given key (or -1 if it's not there).
+     */
+    private int getSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                return slot;
+            }
+            if (k == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the slot of the given key (adding it if it's still not there).
+     */
+    private int getOrAddSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                return slot;
+            }
+            if (k == 0) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if ((keysCount + 1) * 2 > keys.length) {
+            rehashKeys();
+            return getOrAddSlot(key);
+        }
+        keys[slot] = key;
+        lastPosting[slot] = -1;
+        keysCount++;
+        return slot;
+    }
+
+    private void rehashKeys() {
+        long[] oldKeys = keys;
+        int[] oldStart = packedStart;
+        int[] oldLength = packedLength;
+        int[] oldLast = lastPosting;
+        int[] oldLastIds = packingLastIds;
+        allocKeys(oldKeys.length * 2);
+        if (oldLastIds != null) {
+            packingLastIds = new int[keys.length];
+        }
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                packedStart[slot] = oldStart[i];
+                packedLength[slot] = oldLength[i];
+                lastPosting[slot] = oldLast[i];
+                if (oldLastIds != null) {
+                    packingLastIds[slot] = oldLastIds[i];
+                }
+            }
+        }
+    }
+
+    private void allocKeys(int capacity) {
+        keys = new long[capacity];
+        packedStart = new int[capacity];
+        packedLength = new int[capacity];
+        lastPosting = new int[capacity];
+    }
+
+    /**
+     * Makes the names added since the last call searchable (a query calls it automatically, but clients may call
+     * it before making the index available so that the first query doesn't have to do it).
+     *
+     * When many names were added, all the ids are packed again (otherwise, the new ids are just added to the
+     * linked lists).
+     */
+    public void indexPending() {
+        if (indexedNames == size) {
+            return;
+        }
+        if (size - packedNames > Math.max(1024, packedNames / 4)) {
+            pack();
+            return;
+        }
+        for (int id = indexedNames; id < size; id++) {
+            int found = computeKeys(id);
+            for (int i = 0; i < found; i++) {
+                int slot = getOrAddSlot(nameKeys[i]);
+                if (postingsSize == postingIds.length) {
+                    postingIds = Arrays.copyOf(postingIds, postingIds.length * 2);
+                    postingNext = Arrays.copyOf(postingNext, postingNext.length * 2);
+                }
+                postingIds[postingsSize] = id;
+                postingNext[postingsSize] = lastPosting[slot];
+                lastPosting[slot] = postingsSize;
+                postingsSize++;
+            }
+        }
+        indexedNames = size;
+    }
+
+    /**
+     * Puts the ids of all the names contiguous for each key (first computing how many bytes each key needs and
+     * then writing them).
+     */
+    private void pack() {
+        Arrays.fill(packedLength, 0);
+        packingLastIds = new int[keys.length];
+        for (int id = 0; id < size; id++) {
+            int found = computeKeys(id);
+            for (int i = 0; i < found; i++) {
+                int slot = getOrAddSlot(nameKeys[i]); //may grow the arrays
+                packedLength[slot] += getDeltaLength(id - packingLastIds[slot]);
+                packingLastIds[slot] = id;
+            }
+        }
+        int[] lastId = packingLastIds;
+        packingLastIds = null;
+        int total = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            packedStart[slot] = total;
+            total += packedLength[slot];
+            packedLength[slot] = 0;
+            lastPosting[slot] = -1;
+        }
+        Arrays.fill(lastId, 0);
+        packedIds = new byte[total];
+        for (int id = 0; id < size; id++) {
+            int found = computeKeys(id);
+            for (int i = 0; i < found; i++) {
+                int slot = getSlot(nameKeys[i]);
+                int delta = id - lastId[slot];
+                int pos = packedStart[slot] + packedLength[slot];
+                while (delta > 0x7F) {
+                    packedIds[pos++] = (byte) ((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                packedIds[pos++] = (byte) delta;
+                packedLength[slot] = pos - packedStart[slot];
+                lastId[slot] = id;
+            }
+        }
+        postingIds = new int[16];
+        postingNext = new int[16];
+        postingsSize = 0;
+        packedNames = size;
+        indexedNames = size;
+    }
+
+    private static int getDeltaLength(int delta) {
+        int len = 1;
+        while (delta > 0x7F) {
+            delta >>>= 7;
+            len++;
+        }
+        return len;
+    }
+
+    /**
+     * @return the number of bytes used by the packed ids of the given slot (used to estimate how common a key is).
+     */
+    private int getPackedLength(int slot) {
+        return slot == -1 ? 0 : packedLength[slot];
+    }
+
+    /**
+     * Adds the ids found for the key in the given slot to the candidates (ids already gathered are skipped).
+     *
+     * @return false if the max number of candidates was reached (in which case the remaining ids are skipped).
+     */
+    private boolean addCandidates(int slot, IntList candidates, int kind, int maxCandidates) {
+        if (slot == -1) {
+            return true;
+        }
+        int id = 0;
+        for (int i = packedStart[slot], end = i + packedLength[slot]; i < end;) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = packedIds[i++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            if (!addCandidate(id, candidates, kind, maxCandidates)) {
+                return false;
+            }
+        }
+        for (int p = lastPosting[slot]; p != -1; p = postingNext[p]) {
+            if (!addCandidate(postingIds[p], candidates, kind, maxCandidates)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean addCandidate(int id, IntList candidates, int kind, int maxCandidates) {
+        if (candidateKinds[id] == 0) {
+            if (candidates.size >= maxCandidates) {
+                return false;
+            }
+            candidates.add(id);
+            candidateKinds[id] = kind;
+        }
+        return true;
+    }
+
+    /**
+     * @return the unique trigrams in the (lowercase) qualifier.
+     */
+    private static long[] getTrigrams(String lowerQual) {
+        int len = lowerQual.length();
+        if (len < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[len - 2];
+        for (int i = 0; i + 3 <= len; i++) {
+            trigrams[i] = getTrigram(lowerQual, i);
+        }
+        Arrays.sort(trigrams);
+        int unique = 1;
+        for (int i = 1; i < trigrams.length; i++) {
+            if (trigrams[i] != trigrams[unique - 1]) {
+                trigrams[unique++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, unique);
+    }
+
+    /**
+     * @return how many of the given trigrams are found in the name with the given id.
+     */
+    private int countTrigrams(long[] trigrams, int id) {
+        int found = 0;
+        int start = nameStarts[id];
+        int end = nameStarts[id + 1];
+        for (long trigram : trigrams) {
+            char c0 = (char) (trigram >>> 32);
+            char c1 = (char) (trigram >>> 16);
+            char c2 = (char) trigram;
+            for (int i = start; i + 3 <= end; i++) {
+                if (Character.toLowerCase(chars[i]) == c0 && Character.toLowerCase(chars[i + 1]) == c1
+                        && Character.toLowerCase(chars[i + 2]) == c2) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the names which match the given qualifier, ordered from the best match to the worst (at most
+     * maxResults are returned).
+     *
+     * The work is bounded by MAX_CANDIDATES (so, in a big index, a qualifier with common humps/trigrams may miss
+     * some matches).
+     */
+    public List<String> getMatches(String qualifier, int maxResults) {
+        ArrayList<String> ret = new ArrayList<String>();
+        if (qualifier == null || qualifier.length() == 0 || maxResults <= 0) {
+            return ret;
+        }
+        indexPending();
+        String lowerQual = qualifier.toLowerCase();
+        if (candidateKinds.length < size) {
+            candidateKinds = new int[Math.max(size, candidateKinds.length * 2)];
+        }
+        PriorityQueue<Scored> best = new PriorityQueue<Scored>(maxResults + 1);
+        IntList candidates = new IntList();
+
+        //the name itself (which could be skipped if there are too many candidates)
+        int id = getId(qualifier);
+        if (id != -1) {
+            addCandidate(id, candidates, HUMPS_CANDIDATE, MAX_CANDIDATES);
+        }
+
+        //names with the given humps (at most half of the candidates if there are trigrams too)
+        long[] trigrams = getTrigrams(lowerQual);
+        int needed = (trigrams.length + 1) / 2;
+        addCandidates(getSlot(getHumpsKey(lowerQual)), candidates, HUMPS_CANDIDATE,
+                trigrams.length > 0 ? MAX_CANDIDATES / 2 : MAX_CANDIDATES);
+
+        //names with at least half of the trigrams in the qualifier: each of those must have one of the
+        //(trigrams - needed + 1) rarest trigrams, so, only the ids of those are gathered (and the trigrams of each
+        //candidate are then counted in its name).
+        if (trigrams.length > 0) {
+            int[] slots = new int[trigrams.length];
+            for (int i = 0; i < trigrams.length; i++) {
+                int slot = getSlot(trigrams[i]);
+                //insertion sort by the length of the packed ids (few trigrams)
+                int j = i;
+                while (j > 0 && getPackedLength(slots[j - 1]) > getPackedLength(slot)) {
+                    slots[j] = slots[j - 1];
+                    j--;
+                }
+                slots[j] = slot;
+            }
+            for (int i = 0; i < trigrams.length - needed + 1; i++) {
+                if (!addCandidates(slots[i], candidates, TRIGRAMS_CANDIDATE, MAX_CANDIDATES)) {
+                    break;
+                }
+            }
+        }
+
+        for (int i = 0; i < candidates.size; i++) {
+            id = candidates.values[i];
+            int kind = candidateKinds[id];
+            candidateKinds[id] = 0;
+            if (kind == TRIGRAMS_CANDIDATE && countTrigrams(trigrams, id) < needed) {
+                continue;
+            }
+            if (!isSubsequence(lowerQual, id)) {
+                continue; //cheap check before the actual score (which creates new strings)
+            }
+            String name = getName(id);
+            int score = score(qualifier, name);
+            if (score < 0) {
+                continue;
+            }
+            best.add(new Scored(name, score));
+            if (best.size() > maxResults) {
+                best.poll();
+            }
+        }
+
+        while (best.size() > 0) {
+            ret.add(best.poll().name);
+        }
+        Collections.reverse(ret);
+        return ret;
+    }
+
+    public void clear() {
+        chars = new char[256];
+        charsSize = 0;
+        nameStarts = new int[16];
+        size = 0;
+        namesTable = new int[16];
+        allocKeys(16);
+        keysCount = 0;
+        packedIds = new byte[0];
+        packedNames = 0;
+        postingIds = new int[16];
+        postingNext = new int[16];
+        postingsSize = 0;
+        indexedNames = 0;
+        candidateKinds = new int[0];
+    }
+
+    // Matching ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return whether all the chars in the (lowercase) qualifier are found in the name with the given id in the same
+     * order.
+     */
+    private boolean isSubsequence(String lowerQual, int id) {
+        int qLen = lowerQual.length();
+        int n = nameStarts[id];
+        int nEnd = nameStarts[id + 1];
+        for (int q = 0; q < qLen; q++) {
+            char c = lowerQual.charAt(q);
+            while (n < nEnd && Character.toLowerCase(chars[n]) != c) {
+                n++;
+            }
+            if (n == nEnd) {
+                return false;
+            }
+            n++;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the char at the given index starts a new hump in the name (i.e.: first char, an uppercase
+     * after a lowercase, an uppercase followed by a lowercase in a sequence of uppercases or a char after an '_').
+     */
+    private static boolean isHumpStart(String name, int i) {
+        char c = name.charAt(i);
+        if (c == '_') {
+            return false;
+        }
+        if (i == 0) {
+            return true;
+        }
+        char prev = name.charAt(i - 1);
+        if (prev == '_') {
+            return true;
+        }
+        if (Character.isUpperCase(c)) {
+            if (!Character.isUpperCase(prev)) {
+                return true;
+            }
+            //i.e.: the 'S' in HTTPServer
+            return i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1));
+        }
+        if (Character.isDigit(c)) {
+            return !Character.isDigit(prev);
+        }
+        return false;
+    }
+
+    /**
+     * @return the (lowercase) first chars of the humps in the name (i.e.: 'CubeColourDialog' -> 'ccd').
+     */
+    public static String getHumps(String name) {
+        FastStringBuffer buf = new FastStringBuffer(8);
+        int len = name.length();
+        for (int i = 0; i < len; i++) {
+            if (isHumpStart(name, i)) {
+                buf.append(Character.toLowerCase(name.charAt(i)));
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @return whether the qualifier can be matched as prefixes of the humps in the name (from the given indexes
+     * on), where each part of the qualifier must start at a hump (humps may be skipped but not the first one)
+     * i.e.: 'CuCoDi', 'cubecodlg' (not: 'ubco').
+     */
+    private static boolean matchesHumpPrefixes(String lowerQual, int q, String name, String lowerName, int n) {
+        int qLen = lowerQual.length();
+        if (q == qLen) {
+            return true;
+        }
+        int nLen = lowerName.length();
+        //continue in the current hump
+        if (n < nLen && lowerName.charAt(n) == lowerQual.charAt(q) && (n == 0 || !isHumpStart(name, n))) {
+            if (matchesHumpPrefixes(lowerQual, q + 1, name, lowerName, n + 1)) {
+                return true;
+            }
+        }
+        //or go to the start of one of the next humps
+        for (int i = n + 1; i < nLen; i++) {
+            if (isHumpStart(name, i) && lowerName.charAt(i) == lowerQual.charAt(q)) {
+                if (matchesHumpPrefixes(lowerQual, q + 1, name, lowerName, i + 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return how well the qualifier matches the name (the higher the better) or -1 if it doesn't match at all
+     * (all the chars in the qualifier must be found in the name in the same order -- case-insensitive).
+     */
+    public static int score(String qualifier, String name) {
+        String lowerQual = qualifier.toLowerCase();
+        String lowerName = name.toLowerCase();
+        int qLen = lowerQual.length();
+        int nLen = lowerName.length();
+        if (qLen == 0 || qLen > nLen) {
+            return -1;
+        }
+        int extra = Math.min(nLen - qLen, 99);
+
+        if (lowerName.startsWith(lowerQual)) {
+            if (qLen == nLen) {
+                return name.equals(qualifier) ? 1000 : 990;
+            }
+            return 900 - extra;
+        }
+
+        String humps = getHumps(name);
+        if (humps.startsWith(lowerQual)) {
+            return 800 - Math.min(humps.length() - qLen, 99);
+        }
+
+        if (lowerQual.charAt(0) == lowerName.charAt(0)
+                && matchesHumpPrefixes(lowerQual, 1, name, lowerName, 1)) {
+            return 700 - extra;
+        }
+
+        int index = lowerName.indexOf(lowerQual);
+        if (index >= 0) {
+            return (isHumpStart(name, index) ? 600 : 500) - extra;
+        }
+
+        //subsequence: the less gaps, the better
+        int gaps = 0;
+        int n = 0;
+        for (int q = 0; q < qLen; q++) {
+            char c = lowerQual.charAt(q);
+            int found = lowerName.indexOf(c, n);
+            if (found == -1) {
+                return -1;
+            }
+            if (found != n && q > 0) {
+                gaps++;
+            }
+            n = found + 1;
+        }
+        return Math.max(1, 400 - (gaps * 20) - extra);
+    }
+}
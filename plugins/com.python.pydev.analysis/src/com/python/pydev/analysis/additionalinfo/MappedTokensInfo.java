@@ -0,0 +1,651 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+/**
+ * Read-only view of the tokens info (top level and inner trees) saved in a binary file which is memory-mapped
+ * and queried in place (so, restoring it doesn't need to parse the file nor create the related IInfo objects:
+ * those are only created for the results of a query).
+ *
+ * The file is written as (all ints are big-endian):
+ *
+ * MAGIC, VERSION
+ *
+ * string table (sorted):
+ *      count, offsets[count + 1], utf-8 bytes
+ *
+ * then for each tree (top level and inner):
+ *      keysCount, keysCount * (initials string id, first record, records count) -- sorted by the initials
+ *      recordsCount, recordsCount * (name string id, path string id or -1, module string id << 3 | type)
+ *
+ * Modules are never removed from the file: they're just marked as removed (and their records are skipped).
+ *
+ * Not thread-safe: clients are expected to synchronize on their own (as AbstractAdditionalTokensInfo does).
+ */
+public final class MappedTokensInfo {
+
+    private static final int MAGIC = 0x50444954; //'PDIT'
+
+    /**
+     * Should be raised whenever the format written changes.
+     */
+    private static final int VERSION = 1;
+
+    private static final int KEY_RECORD_SIZE = 12;
+
+    private static final int INFO_RECORD_SIZE = 12;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    private final ByteBuffer buffer;
+
+    private final int stringsCount;
+
+    /**
+     * Where the string offsets start.
+     */
+    private final int stringOffsetsStart;
+
+    /**
+     * Where the string contents start.
+     */
+    private final int stringsStart;
+
+    /**
+     * Strings are only decoded on demand (and cached afterwards).
+     */
+    private final String[] decoded;
+
+    /**
+     * Position of the keys of the top level (0) and inner (1) trees.
+     */
+    private final int[] keysStart = new int[2];
+
+    private final int[] keysCount = new int[2];
+
+    /**
+     * Position of the info records of the top level (0) and inner (1) trees.
+     */
+    private final int[] recordsStart = new int[2];
+
+    private final int[] recordsCount = new int[2];
+
+    /**
+     * The string ids of the modules which should be skipped.
+     */
+    private final BitSet removedModules = new BitSet();
+
+    private MappedTokensInfo(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new RuntimeException("Unexpected header in: " + file);
+        }
+        stringsCount = buffer.getInt(8);
+        stringOffsetsStart = 12;
+        stringsStart = stringOffsetsStart + ((stringsCount + 1) * 4);
+        decoded = new String[stringsCount];
+
+        int pos = stringsStart + buffer.getInt(stringOffsetsStart + (stringsCount * 4));
+        for (int i = 0; i < 2; i++) {
+            keysCount[i] = buffer.getInt(pos);
+            keysStart[i] = pos + 4;
+            pos = keysStart[i] + (keysCount[i] * KEY_RECORD_SIZE);
+
+            recordsCount[i] = buffer.getInt(pos);
+            recordsStart[i] = pos + 4;
+            pos = recordsStart[i] + (recordsCount[i] * INFO_RECORD_SIZE);
+        }
+        if (pos != buffer.limit()) {
+            throw new RuntimeException("Unexpected size for: " + file);
+        }
+    }
+
+    /**
+     * Maps the given file.
+     */
+    public static MappedTokensInfo open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            //the mapping is still valid after the channel is closed.
+            return new MappedTokensInfo(file, buffer);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private String getString(int id) {
+        if (id < 0) {
+            return null;
+        }
+        String s = decoded[id];
+        if (s == null) {
+            s = decodeString(id);
+            decoded[id] = s;
+        }
+        return s;
+    }
+
+    /**
+     * @return the string with the given id decoded from the buffer (without caching it).
+     */
+    private String decodeString(int id) {
+        int len = getStringLength(id);
+        byte[] bytes = new byte[len];
+        getStringBytes(id, bytes);
+        return new String(bytes, 0, len, UTF8);
+    }
+
+    private int getStringLength(int id) {
+        int offsetPos = stringOffsetsStart + (id * 4);
+        return buffer.getInt(offsetPos + 4) - buffer.getInt(offsetPos);
+    }
+
+    /**
+     * Copies the utf-8 bytes of the string with the given id to the start of the passed array.
+     */
+    private void getStringBytes(int id, byte[] bytes) {
+        //A duplicate is used for the bulk get (the position of the shared buffer is never changed).
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(stringsStart + buffer.getInt(stringOffsetsStart + (id * 4)));
+        duplicate.get(bytes, 0, getStringLength(id));
+    }
+
+    /**
+     * @return the id for the given string (or -1 if it's not in the string table).
+     */
+    private int getStringId(String s) {
+        int low = 0;
+        int high = stringsCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getString(mid).compareTo(s);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int treeIndex(int doOn) {
+        if (doOn == AbstractAdditionalTokensInfo.TOP_LEVEL) {
+            return 0;
+        }
+        if (doOn == AbstractAdditionalTokensInfo.INNER) {
+            return 1;
+        }
+        throw new RuntimeException("Invalid tree: " + doOn);
+    }
+
+    /**
+     * @return the index of the first key which is >= than the passed initials.
+     */
+    private int getFirstKeyIndex(int tree, String initials) {
+        int low = 0;
+        int high = keysCount[tree] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getString(buffer.getInt(keysStart[tree] + (mid * KEY_RECORD_SIZE))).compareTo(initials);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Marks all the information from the given module as removed.
+     */
+    public void removeModule(String moduleName) {
+        int id = getStringId(moduleName);
+        if (id != -1) {
+            removedModules.set(id);
+        }
+    }
+
+    private IInfo createInfo(int record) {
+        String name = getString(buffer.getInt(record));
+        String path = getString(buffer.getInt(record + 4));
+        int moduleAndType = buffer.getInt(record + 8);
+        return createInfo(moduleAndType & 0x07, name, getString(moduleAndType >>> 3), path);
+    }
+
+    /**
+     * @return an info of the given type (one of the IInfo constants).
+     */
+    static IInfo createInfo(int type, String name, String moduleDeclared, String path) {
+        switch (type) {
+            case IInfo.CLASS_WITH_IMPORT_TYPE:
+                return new ClassInfo(name, moduleDeclared, path, false);
+            case IInfo.METHOD_WITH_IMPORT_TYPE:
+                return new FuncInfo(name, moduleDeclared, path, false);
+            case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                return new AttrInfo(name, moduleDeclared, path, false);
+            case IInfo.NAME_WITH_IMPORT_TYPE:
+                return new NameInfo(name, moduleDeclared, path, false);
+            case IInfo.MOD_IMPORT_TYPE:
+                return new ModInfo(moduleDeclared, false);
+        }
+        throw new RuntimeException("Unexpected type: " + type);
+    }
+
+    /**
+     * Adds to toks the info in the keys from [initials, initials + "z") which the filter accepts.
+     */
+    public void getWithFilter(int doOn, String initials, String qualToCompare, Filter filter,
+            Collection<IInfo> toks) {
+        int tree = treeIndex(doOn);
+        String lastInitials = initials + "z";
+        int count = keysCount[tree];
+        for (int i = getFirstKeyIndex(tree, initials); i < count; i++) {
+            int keyRecord = keysStart[tree] + (i * KEY_RECORD_SIZE);
+            if (getString(buffer.getInt(keyRecord)).compareTo(lastInitials) >= 0) {
+                break;
+            }
+            int first = buffer.getInt(keyRecord + 4);
+            int last = first + buffer.getInt(keyRecord + 8);
+            for (int j = first; j < last; j++) {
+                int record = recordsStart[tree] + (j * INFO_RECORD_SIZE);
+                if (removedModules.get(buffer.getInt(record + 8) >>> 3)) {
+                    continue;
+                }
+                if (filter.doCompare(qualToCompare, getString(buffer.getInt(record)))) {
+                    toks.add(createInfo(record));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all the info available (which wasn't removed) to the passed map (initials -> info).
+     */
+    public void addAllTo(int doOn, Map<String, List<IInfo>> initialsToInfo) {
+        int tree = treeIndex(doOn);
+        int count = keysCount[tree];
+        for (int i = 0; i < count; i++) {
+            int keyRecord = keysStart[tree] + (i * KEY_RECORD_SIZE);
+            int first = buffer.getInt(keyRecord + 4);
+            int last = first + buffer.getInt(keyRecord + 8);
+            List<IInfo> list = null;
+            for (int j = first; j < last; j++) {
+                int record = recordsStart[tree] + (j * INFO_RECORD_SIZE);
+                if (removedModules.get(buffer.getInt(record + 8) >>> 3)) {
+                    continue;
+                }
+                if (list == null) {
+                    String initials = getString(buffer.getInt(keyRecord));
+                    list = initialsToInfo.get(initials);
+                    if (list == null) {
+                        list = new ArrayList<IInfo>(last - first);
+                        initialsToInfo.put(initials, list);
+                    }
+                }
+                list.add(createInfo(record));
+            }
+        }
+    }
+
+    /**
+     * Adds all the info available (which wasn't removed) to the passed collection.
+     */
+    public void addAllTo(int doOn, Collection<IInfo> toks) {
+        int tree = treeIndex(doOn);
+        int start = recordsStart[tree];
+        int count = recordsCount[tree];
+        for (int j = 0; j < count; j++) {
+            int record = start + (j * INFO_RECORD_SIZE);
+            if (!removedModules.get(buffer.getInt(record + 8) >>> 3)) {
+                toks.add(createInfo(record));
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the string ids of the modules which were removed (to be passed to addNamesTo).
+     */
+    public BitSet getRemovedModules() {
+        return (BitSet) removedModules.clone();
+    }
+
+    /**
+     * Adds the names of the info available (which wasn't removed) to the passed index.
+     *
+     * Only reads the file contents (decoded strings are not cached), so, it may be called without synchronizing
+     * on the info (which is what's done to create the fuzzy index in the background).
+     *
+     * @param removedModules the modules to skip (gotten from getRemovedModules()).
+     */
+    public void addNamesTo(int doOn, FuzzyNamesIndex index, BitSet removedModules) {
+        int tree = treeIndex(doOn);
+        int start = recordsStart[tree];
+        int count = recordsCount[tree];
+        BitSet added = new BitSet(stringsCount);
+        for (int j = 0; j < count; j++) {
+            int record = start + (j * INFO_RECORD_SIZE);
+            int nameId = buffer.getInt(record);
+            if (!added.get(nameId) && !removedModules.get(buffer.getInt(record + 8) >>> 3)) {
+                added.set(nameId);
+                index.add(decodeString(nameId));
+            }
+        }
+    }
+
+    /**
+     * Adds the modules which have some info (which wasn't removed) to the passed set.
+     */
+    public void addModulesTo(Set<String> modules) {
+        for (int tree = 0; tree < 2; tree++) {
+            int start = recordsStart[tree];
+            int count = recordsCount[tree];
+            for (int j = 0; j < count; j++) {
+                int moduleId = buffer.getInt(start + (j * INFO_RECORD_SIZE) + 8) >>> 3;
+                if (!removedModules.get(moduleId)) {
+                    modules.add(getString(moduleId));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the ids of the strings used by the info which wasn't removed.
+     */
+    private BitSet getUsedStrings() {
+        BitSet used = new BitSet(stringsCount);
+        for (int tree = 0; tree < 2; tree++) {
+            for (int i = 0; i < keysCount[tree]; i++) {
+                int keyRecord = keysStart[tree] + (i * KEY_RECORD_SIZE);
+                int first = buffer.getInt(keyRecord + 4);
+                int last = first + buffer.getInt(keyRecord + 8);
+                for (int j = first; j < last; j++) {
+                    int record = recordsStart[tree] + (j * INFO_RECORD_SIZE);
+                    int moduleId = buffer.getInt(record + 8) >>> 3;
+                    if (removedModules.get(moduleId)) {
+                        continue;
+                    }
+                    used.set(buffer.getInt(keyRecord));
+                    used.set(buffer.getInt(record));
+                    used.set(moduleId);
+                    int pathId = buffer.getInt(record + 4);
+                    if (pathId >= 0) {
+                        used.set(pathId);
+                    }
+                }
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @return the number of records which weren't removed for the given key.
+     */
+    private int getLiveRecordsCount(int tree, int key) {
+        int keyRecord = keysStart[tree] + (key * KEY_RECORD_SIZE);
+        int first = buffer.getInt(keyRecord + 4);
+        int last = first + buffer.getInt(keyRecord + 8);
+        int count = 0;
+        for (int j = first; j < last; j++) {
+            if (!removedModules.get(buffer.getInt(recordsStart[tree] + (j * INFO_RECORD_SIZE) + 8) >>> 3)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the passed trees (initials -> info) to the given file in the format expected by open().
+     */
+    public static void write(File file, SortedMap<String, ? extends Collection<IInfo>> topLevel,
+            SortedMap<String, ? extends Collection<IInfo>> inner) throws IOException {
+        write(file, null, topLevel, inner);
+    }
+
+    /**
+     * Writes to the given file (in the format expected by open()) the info from the previous file which wasn't
+     * removed merged with the passed trees (initials -> info).
+     *
+     * The contents of the previous file are streamed to the new file (only its string ids are remapped), so, no
+     * IInfo is created for those.
+     *
+     * @param previous the info previously saved (may be null).
+     */
+    public static void write(File file, MappedTokensInfo previous,
+            SortedMap<String, ? extends Collection<IInfo>> topLevel,
+            SortedMap<String, ? extends Collection<IInfo>> inner) throws IOException {
+        List<SortedMap<String, ? extends Collection<IInfo>>> trees = new ArrayList<SortedMap<String, ? extends Collection<IInfo>>>(
+                2);
+        trees.add(topLevel);
+        trees.add(inner);
+
+        //Gather the strings used in the passed trees
+        TreeSet<String> stringsSet = new TreeSet<String>();
+        for (SortedMap<String, ? extends Collection<IInfo>> tree : trees) {
+            for (Entry<String, ? extends Collection<IInfo>> entry : tree.entrySet()) {
+                stringsSet.add(entry.getKey());
+                for (IInfo info : entry.getValue()) {
+                    stringsSet.add(info.getName());
+                    stringsSet.add(info.getDeclaringModuleName());
+                    String path = info.getPath();
+                    if (path != null) {
+                        stringsSet.add(path);
+                    }
+                }
+            }
+        }
+        String[] added = stringsSet.toArray(new String[stringsSet.size()]);
+        stringsSet = null;
+
+        //Merge them with the (sorted) strings still used in the previous file: merged has the id in the previous
+        //file or -(index in added + 1) for each string in the new string table.
+        BitSet used = previous != null ? previous.getUsedStrings() : new BitSet();
+        int[] merged = new int[used.cardinality() + added.length];
+        int[] previousToNew = previous != null ? new int[previous.stringsCount] : null;
+        Map<String, Integer> addedToNew = new HashMap<String, Integer>(added.length);
+        int stringsCount = 0;
+        int a = 0;
+        for (int id = used.nextSetBit(0); id >= 0; id = used.nextSetBit(id + 1)) {
+            String s = previous.decodeString(id);
+            int cmp = -1;
+            while (a < added.length && (cmp = added[a].compareTo(s)) < 0) {
+                addedToNew.put(added[a], stringsCount);
+                merged[stringsCount++] = -(a + 1);
+                a++;
+            }
+            if (a < added.length && cmp == 0) {
+                addedToNew.put(added[a], stringsCount);
+                a++;
+            }
+            previousToNew[id] = stringsCount;
+            merged[stringsCount++] = id;
+        }
+        for (; a < added.length; a++) {
+            addedToNew.put(added[a], stringsCount);
+            merged[stringsCount++] = -(a + 1);
+        }
+        byte[][] addedBytes = new byte[added.length][];
+        for (int i = 0; i < added.length; i++) {
+            addedBytes[i] = added[i].getBytes(UTF8);
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                1024 * 64));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(stringsCount);
+            int offset = 0;
+            for (int i = 0; i < stringsCount; i++) {
+                int id = merged[i];
+                out.writeInt(offset);
+                offset += id >= 0 ? previous.getStringLength(id) : addedBytes[-id - 1].length;
+            }
+            out.writeInt(offset);
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < stringsCount; i++) {
+                int id = merged[i];
+                if (id >= 0) {
+                    int len = previous.getStringLength(id);
+                    if (len > bytes.length) {
+                        bytes = new byte[Math.max(len, bytes.length * 2)];
+                    }
+                    previous.getStringBytes(id, bytes);
+                    out.write(bytes, 0, len);
+                } else {
+                    out.write(addedBytes[-id - 1]);
+                }
+            }
+            addedBytes = null;
+            merged = null;
+
+            for (int tree = 0; tree < 2; tree++) {
+                writeTree(out, previous, tree, trees.get(tree), previousToNew, addedToNew);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the keys and records of a tree, merging the ones from the previous file with the passed ones.
+     */
+    private static void writeTree(DataOutputStream out, MappedTokensInfo previous, int tree,
+            SortedMap<String, ? extends Collection<IInfo>> initialsToInfo, int[] previousToNew,
+            Map<String, Integer> addedToNew) throws IOException {
+        //Merge the keys (by the new string id, which has the same order as the initials).
+        int previousKeys = previous != null ? previous.keysCount[tree] : 0;
+        int maxKeys = previousKeys + initialsToInfo.size();
+        int[] keyIds = new int[maxKeys];
+        int[] keyPrevious = new int[maxKeys]; //index of the key in the previous file (or -1)
+        int[] keyPreviousCount = new int[maxKeys];
+        List<Collection<IInfo>> keyAdded = new ArrayList<Collection<IInfo>>(maxKeys);
+
+        Iterator<? extends Entry<String, ? extends Collection<IInfo>>> it = initialsToInfo.entrySet().iterator();
+        Entry<String, ? extends Collection<IInfo>> entry = nextNonEmpty(it);
+        int keys = 0;
+        int p = 0;
+        int pCount = 0;
+        while (true) {
+            //skip the keys whose records were all removed.
+            while (p < previousKeys && (pCount = previous.getLiveRecordsCount(tree, p)) == 0) {
+                p++;
+            }
+            int pId = p < previousKeys ? previousToNew[previous.buffer.getInt(previous.keysStart[tree]
+                    + (p * KEY_RECORD_SIZE))] : Integer.MAX_VALUE;
+            int eId = entry != null ? addedToNew.get(entry.getKey()) : Integer.MAX_VALUE;
+            if (pId == Integer.MAX_VALUE && eId == Integer.MAX_VALUE) {
+                break;
+            }
+            keyIds[keys] = Math.min(pId, eId);
+            if (pId <= eId) {
+                keyPrevious[keys] = p;
+                keyPreviousCount[keys] = pCount;
+                p++;
+            } else {
+                keyPrevious[keys] = -1;
+            }
+            if (eId <= pId) {
+                keyAdded.add(entry.getValue());
+                entry = nextNonEmpty(it);
+            } else {
+                keyAdded.add(null);
+            }
+            keys++;
+        }
+
+        out.writeInt(keys);
+        int records = 0;
+        for (int k = 0; k < keys; k++) {
+            int size = (keyPrevious[k] >= 0 ? keyPreviousCount[k] : 0)
+                    + (keyAdded.get(k) != null ? keyAdded.get(k).size() : 0);
+            out.writeInt(keyIds[k]);
+            out.writeInt(records);
+            out.writeInt(size);
+            records += size;
+        }
+
+        out.writeInt(records);
+        for (int k = 0; k < keys; k++) {
+            if (keyPrevious[k] >= 0) {
+                //The info from the previous file comes first (as it was added before).
+                ByteBuffer buffer = previous.buffer;
+                int keyRecord = previous.keysStart[tree] + (keyPrevious[k] * KEY_RECORD_SIZE);
+                int first = buffer.getInt(keyRecord + 4);
+                int last = first + buffer.getInt(keyRecord + 8);
+                for (int j = first; j < last; j++) {
+                    int record = previous.recordsStart[tree] + (j * INFO_RECORD_SIZE);
+                    int moduleAndType = buffer.getInt(record + 8);
+                    if (previous.removedModules.get(moduleAndType >>> 3)) {
+                        continue;
+                    }
+                    out.writeInt(previousToNew[buffer.getInt(record)]);
+                    int pathId = buffer.getInt(record + 4);
+                    out.writeInt(pathId >= 0 ? previousToNew[pathId] : -1);
+                    out.writeInt((previousToNew[moduleAndType >>> 3] << 3) | (moduleAndType & 0x07));
+                }
+            }
+            Collection<IInfo> infos = keyAdded.get(k);
+            if (infos != null) {
+                for (IInfo info : infos) {
+                    out.writeInt(addedToNew.get(info.getName()));
+                    String path = info.getPath();
+                    out.writeInt(path != null ? addedToNew.get(path) : -1);
+                    out.writeInt((addedToNew.get(info.getDeclaringModuleName()) << 3) | info.getType());
+                }
+            }
+        }
+    }
+
+    private static Entry<String, ? extends Collection<IInfo>> nextNonEmpty(
+            Iterator<? extends Entry<String, ? extends Collection<IInfo>>> it) {
+        while (it.hasNext()) {
+            Entry<String, ? extends Collection<IInfo>> entry = it.next();
+            if (entry.getValue().size() > 0) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
@@ -95,6 +95,10 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
         return moduleName;
     }
 
+    public KeyForAnalysisRunnable getKey() {
+        return key;
+    }
+
     public String getAnalysisCauseStr() {
         String analysisCauseStr;
         if (analysisCause == ANALYSIS_CAUSE_BUILDER) {
@@ -172,6 +176,23 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
         }
     }
 
+    public boolean isReadyToRun() {
+        return true;
+    }
+
+    public void cancelBeforeRun() {
+        stopAnalysis();
+        logOperationCancelled();
+        try {
+            AnalysisBuilderRunnableFactory.removeFromThreads(key, this);
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            runFinished = true;
+        }
+        dispose();
+    }
+
     protected void dispose() {
         this.nature = null;
         this.oldAnalysisBuilderThread = null;
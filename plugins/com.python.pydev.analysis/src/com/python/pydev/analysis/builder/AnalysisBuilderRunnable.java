@@ -46,6 +46,12 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
      */
     public static final List<ICallback<Object, IResource>> analysisBuilderListeners = new ArrayList<ICallback<Object, IResource>>();
 
+    /**
+     * While the additional info is loading, we check if the analysis should be stopped in these intervals (only
+     * when run directly -- the AnalysisScheduler only runs it after the info is loaded, see isReadyToRun()).
+     */
+    private static final long WAIT_FOR_ADDITIONAL_INFO_STEP_MILLIS = 200;
+
     // -------------------------------------------------------------------------------------------- ATTRIBUTES
 
     private IDocument document;
@@ -105,6 +111,25 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
         this.module = module;
     }
 
+    /**
+     * Not ready while the additional info of the project is still loading (a cancelled analysis may run right
+     * away, as it just finishes).
+     */
+    @Override
+    public boolean isReadyToRun() {
+        IPythonNature n = nature;
+        if (n == null || internalCancelMonitor.isCanceled()) {
+            return true;
+        }
+        try {
+            AbstractAdditionalTokensInfo info = AdditionalProjectInterpreterInfo.getAdditionalInfoForProject(n);
+            return info == null || !info.isLoading();
+        } catch (Exception e) {
+            Log.log(e);
+            return true;
+        }
+    }
+
     protected void dispose() {
         super.dispose();
         this.document = null;
@@ -160,6 +185,12 @@ public class AnalysisBuilderRunnable extends AbstractAnalysisBuilderRunnable {
                 return;
             }
 
+            //The info may still be loading in a background job (if this runnable was run directly and not through the
+            //AnalysisScheduler): wait for it (stopping if requested meanwhile).
+            while (!info.waitUntilLoaded(WAIT_FOR_ADDITIONAL_INFO_STEP_MILLIS)) {
+                checkStop();
+            }
+
             checkStop();
             //remove dependency information (and anything else that was already generated), but first, gather 
             //the modules dependent on this one.
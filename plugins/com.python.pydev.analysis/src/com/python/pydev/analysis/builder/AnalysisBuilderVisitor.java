@@ -19,7 +19,6 @@ import org.python.pydev.builder.PyDevBuilderVisitor;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyCodeCompletionVisitor;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
@@ -72,6 +71,9 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
             Log.log(e);
             return;
         }
+        if (!isFullBuild()) {
+            markModuleChanged(nature, moduleName);
+        }
 
         //depending on the level of analysis we have to do, we'll decide whether we want
         //to make the full parse (slower) or the definitions parse (faster but only with info
@@ -172,18 +174,18 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
             return;
         }
 
-        execRunnable(moduleName, runnable);
+        execRunnable(runnable);
     }
 
     /**
      * Depending on whether we're in a full build or delta build, this method will run the runnable directly
-     * or schedule it as a job.
+     * or schedule it in the AnalysisScheduler.
      */
-    private void execRunnable(final String moduleName, final IAnalysisBuilderRunnable runnable) {
+    private void execRunnable(final IAnalysisBuilderRunnable runnable) {
         if (isFullBuild()) {
             runnable.run();
         } else {
-            RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + moduleName);
+            AnalysisScheduler.get().schedule(runnable);
         }
     }
 
@@ -206,6 +208,7 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
                 Log.log(e);
                 return;
             }
+            markModuleChanged(nature, moduleName);
 
             long documentTime = this.getDocumentTime();
             if (documentTime == -1) {
@@ -224,7 +227,26 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
                 return;
             }
 
-            execRunnable(moduleName, runnable);
+            execRunnable(runnable);
+        }
+    }
+
+    /**
+     * Marks the module as changed in the additional info of the project (so that its tokens/classes are checked on
+     * the next query even if the analysis doesn't update them).
+     */
+    private static void markModuleChanged(IPythonNature nature, String moduleName) {
+        if (moduleName == null) {
+            return;
+        }
+        try {
+            AbstractAdditionalDependencyInfo info = AdditionalProjectInterpreterInfo
+                    .getAdditionalInfoForProject(nature);
+            if (info != null) {
+                info.markModuleChanged(moduleName);
+            }
+        } catch (MisconfigurationException e) {
+            Log.log(e);
         }
     }
 
@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.python.pydev.builder.PyDevBuilderPrefPage;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.logging.DebugSettings;
+
+/**
+ * Runs the analysis requests created by the AnalysisBuilderRunnableFactory with a bounded number of requests running
+ * at the same time (by default the number of processors -- see PyDevBuilderPrefPage.getAnalysisThreads()), so that a
+ * build or a checkout which generates thousands of requests doesn't make them all compete for the cpu.
+ *
+ * Each request runs in its own job (so, it's shown in the progress view and may be cancelled from there -- the job
+ * monitor is passed to the runnable), which is only scheduled when there's a free slot for it.
+ *
+ * - Requests from the editors (i.e.: the parser) run before the ones from the builder (and forced requests run before
+ * the ones which are not forced).
+ * - Only one request runs at a time for a module.
+ * - A request which is still waiting to run is cancelled when a new request for the same module is scheduled (the
+ * factory only creates the new request if its document time is not older than the one from the existing request).
+ * - A request which is not ready to run (i.e.: the additional info it needs is still loading) is put back in the queue
+ * and checked again later (without keeping a slot or a thread meanwhile).
+ */
+public final class AnalysisScheduler {
+
+    private static AnalysisScheduler instance;
+
+    public static synchronized AnalysisScheduler get() {
+        if (instance == null) {
+            instance = new AnalysisScheduler(0);
+        }
+        return instance;
+    }
+
+    /**
+     * A request waiting to run.
+     */
+    private static final class Task implements Comparable<Task> {
+
+        private final IAnalysisBuilderRunnable runnable;
+        private final KeyForAnalysisRunnable key;
+        private final int priority;
+        private final long sequence;
+
+        /**
+         * Set when a newer request for the same module is scheduled (it's then just skipped in the queue).
+         */
+        private boolean superseded;
+
+        /**
+         * Set when the request wasn't ready to run (it's only checked again after this time).
+         */
+        private long notBefore;
+
+        private Task(IAnalysisBuilderRunnable runnable, long sequence) {
+            this.runnable = runnable;
+            this.key = runnable.getKey();
+            this.sequence = sequence;
+            if (runnable.getAnalysisCause() == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER) {
+                this.priority = 0;
+            } else if (runnable.getForceAnalysis()) {
+                this.priority = 1;
+            } else {
+                this.priority = 2;
+            }
+        }
+
+        public int compareTo(Task o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence > o.sequence ? 1 : 0);
+        }
+    }
+
+    /**
+     * The family of the jobs which run the analysis requests.
+     */
+    public static final Object JOB_FAMILY = new Object();
+
+    /**
+     * Runs a request.
+     */
+    private final class TaskJob extends Job {
+
+        private final Task task;
+
+        /**
+         * Whether the request actually started running (a job may be cancelled before it runs).
+         */
+        private volatile boolean started;
+
+        /**
+         * Whether the request was put back in the queue because it wasn't ready to run.
+         */
+        private volatile boolean deferred;
+
+        private TaskJob(Task task, int queued) {
+            super(queued > 0 ? "PyDev: Code Analysis: " + task.runnable.getModuleName() + " (" + queued
+                    + " scheduled)" : "PyDev: Code Analysis: " + task.runnable.getModuleName());
+            this.task = task;
+            //requests from the editor are interactive, the others have a lower priority.
+            setPriority(task.priority == 0 ? Job.INTERACTIVE : Job.BUILD);
+            addJobChangeListener(new JobChangeAdapter() {
+
+                @Override
+                public void done(IJobChangeEvent event) {
+                    finished(TaskJob.this);
+                }
+            });
+        }
+
+        @Override
+        public boolean belongsTo(Object family) {
+            return family == JOB_FAMILY;
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            IAnalysisBuilderRunnable runnable = task.runnable;
+            if (!monitor.isCanceled() && !isReadyToRun(runnable)) {
+                deferred = true;
+                defer(task);
+                return Status.OK_STATUS;
+            }
+            started = true;
+            try {
+                runnable.setMonitor(monitor);
+                runnable.run();
+            } catch (Throwable e) {
+                Log.log(e);
+            } finally {
+                runnable.setMonitor(null);
+                completed.incrementAndGet();
+            }
+            return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+        }
+    }
+
+    /**
+     * Time to wait before checking again if a request which wasn't ready may run.
+     */
+    private static final int DEFER_MILLIS = 200;
+
+    /**
+     * Starts the requests which were deferred (when they may be checked again).
+     */
+    private final Job wakeUpJob = new Job("PyDev: Code Analysis: check deferred requests") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            synchronized (lock) {
+                startTasks();
+            }
+            return Status.OK_STATUS;
+        }
+    };
+
+    private final Object lock = new Object();
+
+    /**
+     * 0 means that the number of threads is gotten from the preferences.
+     */
+    private final int fixedMaxThreads;
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<Task>();
+    private final Map<KeyForAnalysisRunnable, Task> waiting = new HashMap<KeyForAnalysisRunnable, Task>();
+    private final Set<KeyForAnalysisRunnable> running = new HashSet<KeyForAnalysisRunnable>();
+    private long sequence;
+
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * @param maxThreads the maximum number of analysis running at the same time (if 0, it's gotten from the
+     * preferences).
+     */
+    /*Default*/AnalysisScheduler(int maxThreads) {
+        this.fixedMaxThreads = maxThreads;
+        wakeUpJob.setSystem(true);
+    }
+
+    private int getMaxThreads() {
+        if (fixedMaxThreads > 0) {
+            return fixedMaxThreads;
+        }
+        try {
+            return PyDevBuilderPrefPage.getAnalysisThreads();
+        } catch (Throwable e) {
+            //Preferences not available (i.e.: tests)
+            return Math.max(1, Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Schedules the given runnable (cancelling a runnable for the same module which is still waiting to run).
+     */
+    public void schedule(IAnalysisBuilderRunnable runnable) {
+        Task old;
+        synchronized (lock) {
+            Task task = new Task(runnable, sequence++);
+            old = waiting.put(task.key, task);
+            if (old != null) {
+                old.superseded = true;
+            }
+            queue.add(task);
+            startTasks();
+            if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+                Log.toLogFile(this, "Scheduled: " + runnable.getModuleName() + " -- "
+                        + runnable.getAnalysisCauseStr() + " -- waiting: " + waiting.size() + " running: "
+                        + running.size());
+            }
+        }
+        if (old != null) {
+            cancelled.incrementAndGet();
+            old.runnable.cancelBeforeRun();
+        }
+    }
+
+    /**
+     * @return the next task to run (the one with the highest priority which is not for a module already running
+     * nor deferred) or null if there's no task available. Must be called with the lock held.
+     */
+    private Task nextTask() {
+        Task found = null;
+        List<Task> skipped = null;
+        long now = System.currentTimeMillis();
+        long nextWakeUp = Long.MAX_VALUE;
+        while (true) {
+            Task task = queue.poll();
+            if (task == null) {
+                break;
+            }
+            if (task.superseded) {
+                continue;
+            }
+            boolean isDeferred = task.notBefore > now;
+            if (isDeferred || running.contains(task.key)) {
+                if (isDeferred) {
+                    nextWakeUp = Math.min(nextWakeUp, task.notBefore);
+                }
+                if (skipped == null) {
+                    skipped = new ArrayList<Task>();
+                }
+                skipped.add(task);
+                continue;
+            }
+            found = task;
+            break;
+        }
+        if (skipped != null) {
+            queue.addAll(skipped);
+        }
+        if (found == null && nextWakeUp != Long.MAX_VALUE) {
+            wakeUpJob.schedule(Math.max(1, nextWakeUp - now));
+        }
+        if (found != null) {
+            waiting.remove(found.key);
+            running.add(found.key);
+        }
+        return found;
+    }
+
+    /**
+     * Schedules jobs for the tasks which may run. Must be called with the lock held.
+     */
+    private void startTasks() {
+        int maxRunning = getMaxThreads();
+        while (running.size() < maxRunning) {
+            Task task = nextTask();
+            if (task == null) {
+                return;
+            }
+            new TaskJob(task, waiting.size()).schedule();
+        }
+    }
+
+    private boolean isReadyToRun(IAnalysisBuilderRunnable runnable) {
+        try {
+            return runnable.isReadyToRun();
+        } catch (Throwable e) {
+            Log.log(e);
+            return true;
+        }
+    }
+
+    /**
+     * Puts back in the queue a task which wasn't ready to run (freeing its slot).
+     */
+    private void defer(Task task) {
+        boolean cancel = false;
+        synchronized (lock) {
+            running.remove(task.key);
+            if (waiting.containsKey(task.key)) {
+                //a newer request for the module was scheduled meanwhile.
+                cancel = true;
+            } else {
+                task.notBefore = System.currentTimeMillis() + DEFER_MILLIS;
+                waiting.put(task.key, task);
+                queue.add(task);
+            }
+            startTasks();
+        }
+        if (cancel) {
+            cancelled.incrementAndGet();
+            task.runnable.cancelBeforeRun();
+        }
+    }
+
+    /**
+     * Called when the job of a task is done (or cancelled before running).
+     */
+    private void finished(TaskJob job) {
+        if (job.deferred) {
+            return; //already handled in defer()
+        }
+        if (!job.started) {
+            cancelled.incrementAndGet();
+            job.task.runnable.cancelBeforeRun();
+        }
+        synchronized (lock) {
+            running.remove(job.task.key);
+            //some task which was waiting for a free slot (or for this module) may run now
+            startTasks();
+        }
+    }
+
+    /**
+     * @return the number of analysis requests waiting to run.
+     */
+    public int getQueuedCount() {
+        synchronized (lock) {
+            return waiting.size();
+        }
+    }
+
+    /**
+     * @return the number of analysis requests running.
+     */
+    public int getRunningCount() {
+        synchronized (lock) {
+            return running.size();
+        }
+    }
+
+    /**
+     * @return the number of analysis requests cancelled before running (because a new request for the same module
+     * was scheduled).
+     */
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return the number of analysis requests which finished running.
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisScheduler[queued: " + getQueuedCount() + ", running: " + getRunningCount() + ", cancelled: "
+                + getCancelledCount() + ", completed: " + getCompletedCount() + "]";
+    }
+}
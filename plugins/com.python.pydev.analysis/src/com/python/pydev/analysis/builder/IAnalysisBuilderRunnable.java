@@ -48,4 +48,21 @@ public interface IAnalysisBuilderRunnable extends IRunnableWithMonitor {
     long getDocumentTime();
 
     long getResourceModificationStamp();
+
+    /**
+     * @return the key (project and module) for this runnable.
+     */
+    KeyForAnalysisRunnable getKey();
+
+    /**
+     * Finishes this runnable without running it (i.e.: a newer runnable for the same module was scheduled before
+     * this one started).
+     */
+    void cancelBeforeRun();
+
+    /**
+     * @return false if this runnable shouldn't run right now because something it needs is still being loaded (the
+     * scheduler then keeps it in the queue and checks it again later).
+     */
+    boolean isReadyToRun();
 }
@@ -0,0 +1,291 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pep8;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.python.pydev.core.NullOutputStream;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.jython.IPythonInterpreter;
+import org.python.pydev.jython.JythonPlugin;
+
+/**
+ * A bounded pool of jython interpreters used to run pep8 (creating a jython interpreter and importing pep8 in it
+ * is much slower than the check itself, so, the interpreters are kept and reused among the analyses).
+ *
+ * Each interpreter is used by a single thread at a time (acquire/release), so, different modules may be checked
+ * concurrently (up to the max number of interpreters).
+ */
+public class Pep8InterpreterPool {
+
+    /**
+     * An interpreter in the pool.
+     */
+    public static final class PooledInterpreter {
+
+        private final IPythonInterpreter interpreter;
+
+        /**
+         * Whether the output of the interpreter goes to the console.
+         */
+        private final boolean useConsole;
+
+        /**
+         * The directory from where pep8 was imported in the interpreter (null if still not imported).
+         */
+        private String pep8Dir;
+
+        private PooledInterpreter(IPythonInterpreter interpreter, boolean useConsole) {
+            this.interpreter = interpreter;
+            this.useConsole = useConsole;
+        }
+
+        public IPythonInterpreter getInterpreter() {
+            return interpreter;
+        }
+
+        public String getPep8Dir() {
+            return pep8Dir;
+        }
+
+        public void setPep8Dir(String pep8Dir) {
+            this.pep8Dir = pep8Dir;
+        }
+    }
+
+    private static Pep8InterpreterPool instance;
+
+    public static synchronized Pep8InterpreterPool getInstance() {
+        if (instance == null) {
+            instance = new Pep8InterpreterPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+        }
+        return instance;
+    }
+
+    /**
+     * Disposes the interpreters kept (i.e.: on shutdown).
+     */
+    public static synchronized void disposeInstance() {
+        if (instance != null) {
+            instance.dispose();
+            instance = null;
+        }
+    }
+
+    private final int maxInterpreters;
+
+    private final Object lock = new Object();
+    private final List<PooledInterpreter> interpreters = new ArrayList<PooledInterpreter>();
+    private final LinkedList<PooledInterpreter> idle = new LinkedList<PooledInterpreter>();
+    private int creating;
+    private boolean disposed;
+
+    private long acquires;
+    private long created;
+    private long discarded;
+    private long waits;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    public Pep8InterpreterPool(int maxInterpreters) {
+        this.maxInterpreters = maxInterpreters;
+    }
+
+    /**
+     * Creates a new interpreter for the pool.
+     */
+    protected IPythonInterpreter createInterpreter(boolean useConsole) {
+        //Note: the sys is not shared, so, each interpreter has its own pep8 module (and output).
+        IPythonInterpreter interpreter = JythonPlugin.newPythonInterpreter(useConsole, false);
+        if (!useConsole) {
+            interpreter.setErr(NullOutputStream.singleton);
+            interpreter.setOut(NullOutputStream.singleton);
+        }
+        return interpreter;
+    }
+
+    /**
+     * @return an interpreter (not used by anyone else) with the output configured as requested. It must be given
+     * back with release(interpreter, ok).
+     */
+    public PooledInterpreter acquire(boolean useConsole) throws InterruptedException {
+        long initial = System.nanoTime();
+        boolean waited = false;
+        List<PooledInterpreter> toCleanup = new ArrayList<PooledInterpreter>();
+        try {
+            synchronized (lock) {
+                while (true) {
+                    if (disposed) {
+                        throw new RuntimeException("The pep8 interpreters pool was already disposed.");
+                    }
+                    for (Iterator<PooledInterpreter> it = idle.iterator(); it.hasNext();) {
+                        PooledInterpreter pooled = it.next();
+                        if (pooled.useConsole == useConsole) {
+                            it.remove();
+                            addAcquireStats(initial, waited);
+                            return pooled;
+                        }
+                    }
+                    if (interpreters.size() + creating < maxInterpreters) {
+                        break;
+                    }
+                    if (idle.size() > 0) {
+                        //The console preference changed: discard an interpreter with the old setting.
+                        PooledInterpreter old = idle.removeLast();
+                        interpreters.remove(old);
+                        discarded++;
+                        toCleanup.add(old);
+                        break;
+                    }
+                    waited = true;
+                    lock.wait();
+                }
+                creating++;
+            }
+        } finally {
+            for (PooledInterpreter pooled : toCleanup) {
+                cleanup(pooled);
+            }
+        }
+
+        PooledInterpreter pooled = null;
+        try {
+            pooled = new PooledInterpreter(createInterpreter(useConsole), useConsole);
+        } finally {
+            synchronized (lock) {
+                creating--;
+                if (pooled != null) {
+                    interpreters.add(pooled);
+                    created++;
+                    addAcquireStats(initial, waited);
+                }
+                lock.notifyAll();
+            }
+        }
+        return pooled;
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void addAcquireStats(long initial, boolean waited) {
+        long waitNanos = System.nanoTime() - initial;
+        acquires++;
+        if (waited) {
+            waits++;
+        }
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    /**
+     * Gives back an interpreter gotten from acquire().
+     *
+     * @param ok false if the check failed (in which case the interpreter is discarded, as its state is unknown).
+     */
+    public void release(PooledInterpreter pooled, boolean ok) {
+        boolean discard = !ok;
+        synchronized (lock) {
+            if (disposed || !interpreters.contains(pooled)) {
+                discard = true;
+            } else if (discard) {
+                interpreters.remove(pooled);
+                discarded++;
+            } else {
+                idle.addFirst(pooled);
+            }
+            lock.notifyAll();
+        }
+        if (discard) {
+            cleanup(pooled);
+        }
+    }
+
+    private void cleanup(PooledInterpreter pooled) {
+        try {
+            pooled.interpreter.cleanup();
+        } catch (Throwable e) {
+            Log.log(e);
+        }
+    }
+
+    /**
+     * Discards all the interpreters (the ones in use are discarded when released).
+     */
+    public void dispose() {
+        List<PooledInterpreter> toCleanup;
+        synchronized (lock) {
+            disposed = true;
+            toCleanup = new ArrayList<PooledInterpreter>(idle);
+            idle.clear();
+            interpreters.clear();
+            lock.notifyAll();
+        }
+        for (PooledInterpreter pooled : toCleanup) {
+            cleanup(pooled);
+        }
+    }
+
+    // Stats -----------------------------------------------------------------------------------------------------------
+
+    public int getInterpretersCount() {
+        synchronized (lock) {
+            return interpreters.size();
+        }
+    }
+
+    public int getIdleCount() {
+        synchronized (lock) {
+            return idle.size();
+        }
+    }
+
+    public long getAcquiresCount() {
+        synchronized (lock) {
+            return acquires;
+        }
+    }
+
+    public long getCreatedCount() {
+        synchronized (lock) {
+            return created;
+        }
+    }
+
+    public long getDiscardedCount() {
+        synchronized (lock) {
+            return discarded;
+        }
+    }
+
+    public long getWaitsCount() {
+        synchronized (lock) {
+            return waits;
+        }
+    }
+
+    public long getTotalWaitNanos() {
+        synchronized (lock) {
+            return totalWaitNanos;
+        }
+    }
+
+    /**
+     * @return a string with the stats of the pool (for diagnostics).
+     */
+    public String getStats() {
+        synchronized (lock) {
+            return "Pep8 interpreters: " + interpreters.size() + " (idle: " + idle.size() + ", max: "
+                    + maxInterpreters + ") -- acquires: " + acquires + " -- created: " + created
+                    + " -- discarded: " + discarded + " -- waits: " + waits + " -- total wait: "
+                    + (totalWaitNanos / 1000000) + " millis -- max wait: " + (maxWaitNanos / 1000000) + " millis";
+        }
+    }
+}
@@ -15,14 +15,12 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.python.core.Py;
-import org.python.core.PyObject;
-import org.python.pydev.core.NullOutputStream;
+import org.python.pydev.builder.pep8.Pep8InterpreterPool.PooledInterpreter;
 import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.jython.IPythonInterpreter;
-import org.python.pydev.jython.JythonPlugin;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 
 import com.python.pydev.analysis.IAnalysisPreferences;
@@ -36,18 +34,23 @@ import com.python.pydev.analysis.ui.AnalysisPreferencesPage;
  */
 public class Pep8Visitor {
 
-    private static final String EXECUTE_PEP8 = "import sys\n"
-            + "argv = ['pep8.py', r'%s'%s]\n"
+    /**
+     * Executed once for each interpreter in the pool (or when the location of pep8.py changes), as the import was
+     * the slowest thing in this code.
+     */
+    private static final String IMPORT_PEP8 = "import sys\n"
+            + "add_to_pythonpath = r'%s'\n"
+            + "if add_to_pythonpath not in sys.path:\n"
+            + "    sys.path.insert(0, add_to_pythonpath)\n"
+            + "if 'pep8' in sys.modules:\n"
+            + "    del sys.modules['pep8']\n"
+            + "import pep8\n"
+            + "";
+
+    private static final String EXECUTE_PEP8 = "argv = ['pep8.py', r'%s'%s]\n"
             + "sys.argv=argv\n"
             + //It always accesses sys.argv[0] in process_options, so, it must be set.
             "\n"
-            + "if pep8 == None:\n"
-            + //Optimization: if possible don't import pep8 (the import was the slowest thing in this code).
-            "    add_to_pythonpath = '%s'\n"
-            + "    if add_to_pythonpath not in sys.path:\n"
-            + "        sys.path.append(add_to_pythonpath)\n"
-            + "    import pep8\n"
-            + "\n"
             + "options, args = pep8.process_options(argv[1:])\n"
             + //don't use sys.argv (it seems it doesn't get updated as it should).
               //"print options\n" + uncomment for debugging options
@@ -71,8 +74,6 @@ public class Pep8Visitor {
     private final List<IMessage> messages = new ArrayList<IMessage>();
     private IAnalysisPreferences prefs;
     private IDocument document;
-    private volatile static PyObject pep8;
-    private static final Object lock = new Object();
     private String messageToIgnore;
 
     public List<IMessage> getMessages(SourceModule module, IDocument document, IProgressMonitor monitor,
@@ -103,36 +104,40 @@ public class Pep8Visitor {
             this.prefs = prefs;
             this.document = document;
 
-            //It's important that the interpreter is created in the Thread and not outside the thread (otherwise
-            //it may be that the output ends up being shared, which is not what we want.)
+            //The interpreters are not shared among threads (each check gets one from the pool and gives it back
+            //afterwards), so, different modules may be checked concurrently.
             boolean useConsole = AnalysisPreferencesPage.useConsole();
-            IPythonInterpreter interpreter = JythonPlugin.newPythonInterpreter(useConsole, false);
-            if (!useConsole) {
-                interpreter.setErr(NullOutputStream.singleton);
-                interpreter.setOut(NullOutputStream.singleton);
-            }
-            String file = StringUtils.replaceAllSlashes(module.getFile().getAbsolutePath());
-            interpreter.set("visitor", this);
-
-            List<String> splitInLines = StringUtils.splitInLines(document.get());
-            interpreter.set("lines", splitInLines);
-            PyObject tempPep8 = pep8;
-            if (tempPep8 != null) {
-                interpreter.set("pep8", tempPep8);
-            } else {
-                interpreter.set("pep8", Py.None);
-            }
-
-            String formatted = org.python.pydev.shared_core.string.StringUtils.format(EXECUTE_PEP8, file, args.toString(),
-                    StringUtils.replaceAllSlashes(pep8Loc.getParentFile().getAbsolutePath()), //put the parent dir of pep8.py in the pythonpath.
-                    file);
-            interpreter.exec(formatted);
-            if (pep8 == null) {
-                synchronized (lock) {
-                    if (pep8 == null) {
-                        pep8 = interpreter.get("pep8");
-                    }
+            Pep8InterpreterPool pool = Pep8InterpreterPool.getInstance();
+            PooledInterpreter pooled = pool.acquire(useConsole);
+            boolean ok = false;
+            try {
+                IPythonInterpreter interpreter = pooled.getInterpreter();
+
+                //put the parent dir of pep8.py in the pythonpath.
+                String pep8Dir = StringUtils.replaceAllSlashes(pep8Loc.getParentFile().getAbsolutePath());
+                if (!pep8Dir.equals(pooled.getPep8Dir())) {
+                    interpreter.exec(org.python.pydev.shared_core.string.StringUtils.format(IMPORT_PEP8, pep8Dir));
+                    pooled.setPep8Dir(pep8Dir);
                 }
+
+                String file = StringUtils.replaceAllSlashes(module.getFile().getAbsolutePath());
+                interpreter.set("visitor", this);
+
+                List<String> splitInLines = StringUtils.splitInLines(document.get());
+                interpreter.set("lines", splitInLines);
+
+                String formatted = org.python.pydev.shared_core.string.StringUtils.format(EXECUTE_PEP8, file,
+                        args.toString(), file);
+                interpreter.exec(formatted);
+
+                //Don't keep references to this check in the pooled interpreter.
+                interpreter.set("visitor", Py.None);
+                interpreter.set("lines", Py.None);
+                interpreter.set("checker", Py.None);
+                interpreter.set("original", Py.None);
+                ok = true;
+            } finally {
+                pool.release(pooled, ok);
             }
 
         } catch (Exception e) {
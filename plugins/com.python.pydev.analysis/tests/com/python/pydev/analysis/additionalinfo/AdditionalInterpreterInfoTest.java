@@ -287,6 +287,7 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
 
             doc = "new contents";
             FileUtils.writeStrToFile(doc, tempFileAt);
+            info.markModuleChanged("test"); //done by the builder for the resources in its delta
             modulesWithTokensStartingWith = info.getModulesWithToken("mmm", null);
             assertEquals(0, modulesWithTokensStartingWith.size());
 
@@ -297,6 +298,38 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
         }
     }
 
+    public void testWaitUntilLoaded() throws Exception {
+        assertTrue(info.waitUntilLoaded(0));
+        info.setLoading(null);
+        assertTrue(info.isLoading());
+        assertFalse(info.waitUntilLoaded(10));
+
+        info.add(new FuncInfo("met1", "mod1", null), AbstractAdditionalTokensInfo.TOP_LEVEL);
+
+        //Changes from other threads wait until it's loaded.
+        final boolean[] removed = new boolean[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                info.removeInfoFromModule("mod1", false);
+                removed[0] = true;
+            }
+        };
+        thread.start();
+        Thread.sleep(50);
+        assertFalse(removed[0]);
+
+        //Queries get the partial results.
+        assertEquals(1, info.getTokensStartingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+
+        info.setLoaded();
+        thread.join(5000);
+        assertTrue(removed[0]);
+        assertFalse(info.isLoading());
+        assertTrue(info.waitUntilLoaded(0));
+        assertEquals(0, info.getTokensStartingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+    }
+
     private ClassDef createClassDef(String name) {
         return new ClassDef(new NameTok(name, NameTok.FunctionName), null, null, null, null, null, null);
     }
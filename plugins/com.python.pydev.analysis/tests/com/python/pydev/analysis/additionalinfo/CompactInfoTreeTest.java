@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+public class CompactInfoTreeTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(CompactInfoTreeTest.class);
+    }
+
+    private final Filter startingWithFilter = new Filter() {
+
+        public boolean doCompare(String lowerCaseQual, IInfo info) {
+            return doCompare(lowerCaseQual, info.getName());
+        }
+
+        public boolean doCompare(String qualifier, String infoName) {
+            return infoName.toLowerCase().startsWith(qualifier);
+        }
+    };
+
+    public void testStrings() throws Exception {
+        CompactInfoTree.Strings strings = new CompactInfoTree.Strings();
+        assertEquals(-1, strings.getId("a"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, strings.add("s" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, strings.add("s" + i));
+            assertEquals(i, strings.getId("s" + i));
+            assertEquals("s" + i, strings.get(i));
+        }
+        assertEquals(1000, strings.size());
+        assertNull(strings.get(-1));
+    }
+
+    public void testAddAndQuery() throws Exception {
+        CompactInfoTree.Strings strings = new CompactInfoTree.Strings();
+        CompactInfoTree topLevel = new CompactInfoTree(strings);
+        CompactInfoTree inner = new CompactInfoTree(strings);
+        topLevel.add("cub", new ClassInfo("CubeColourDialog", "wx.lib", null, false));
+        topLevel.add("cub", new FuncInfo("cube", "mod1", null, false));
+        topLevel.add("cub", new FuncInfo("cube", "mod1", null, false)); //duplicated: kept only once
+        topLevel.add("cub", new AttrInfo("cube", "mod1", null, false)); //same name with another type
+        topLevel.add("cua", new AttrInfo("cuatro", "mod2", null, false));
+        topLevel.add("dia", new NameInfo("dialog", "mod2", null, false));
+        inner.add("met", new FuncInfo("method", "mod1", "Class1", false));
+        assertEquals(5, topLevel.size());
+        assertEquals(1, inner.size());
+
+        List<IInfo> toks = new ArrayList<IInfo>();
+        topLevel.getWithFilter("cub", "cube", startingWithFilter, toks);
+        assertEquals(3, toks.size());
+        assertTrue(toks.contains(new ClassInfo("CubeColourDialog", "wx.lib", null, false)));
+        assertTrue(toks.contains(new FuncInfo("cube", "mod1", null, false)));
+        assertTrue(toks.contains(new AttrInfo("cube", "mod1", null, false)));
+
+        toks.clear();
+        topLevel.getWithFilter("cu", "cu", startingWithFilter, toks);
+        assertEquals(4, toks.size());
+
+        toks.clear();
+        inner.getWithFilter("met", "met", startingWithFilter, toks);
+        assertEquals(1, toks.size());
+        assertEquals("Class1", toks.get(0).getPath());
+        assertEquals(IInfo.METHOD_WITH_IMPORT_TYPE, toks.get(0).getType());
+
+        topLevel.removeModule("mod1");
+        topLevel.removeModule("not_there");
+        toks.clear();
+        topLevel.getWithFilter("cu", "cu", startingWithFilter, toks);
+        assertEquals(2, toks.size());
+        assertEquals(1, inner.size());
+
+        HashSet<String> modules = new HashSet<String>();
+        topLevel.addModulesTo(modules);
+        assertEquals(2, modules.size());
+        assertTrue(modules.contains("wx.lib"));
+        assertTrue(modules.contains("mod2"));
+
+        SortedMap<String, List<IInfo>> all = new TreeMap<String, List<IInfo>>();
+        topLevel.addAllTo(all);
+        assertEquals(3, all.size());
+        assertEquals(1, all.get("cub").size());
+
+        List<String> names = new ArrayList<String>();
+        topLevel.addNamesTo(names);
+        FuzzyNamesIndex fuzzyIndex = new FuzzyNamesIndex();
+        for (String name : names) {
+            fuzzyIndex.add(name);
+        }
+        assertEquals(3, fuzzyIndex.size());
+        assertEquals("[CubeColourDialog]", fuzzyIndex.getMatches("CCD", 10).toString());
+    }
+
+    public void testManyRecords() throws Exception {
+        CompactInfoTree tree = new CompactInfoTree(new CompactInfoTree.Strings());
+        for (int j = 0; j < 2; j++) {
+            for (int i = 999; i >= 0; i--) {
+                tree.add("__i", new FuncInfo("__init__", "mod" + (i % 100), "Class" + i, false));
+            }
+            assertEquals(1000, tree.size());
+        }
+        tree.removeModule("mod0");
+        assertEquals(990, tree.size());
+
+        List<IInfo> toks = new ArrayList<IInfo>();
+        tree.addAllTo(toks);
+        assertEquals(990, toks.size());
+        assertEquals(990, new HashSet<IInfo>(toks).size());
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class FuzzyNamesIndexTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(FuzzyNamesIndexTest.class);
+    }
+
+    private FuzzyNamesIndex createIndex(String... names) {
+        FuzzyNamesIndex index = new FuzzyNamesIndex();
+        for (String name : names) {
+            index.add(name);
+        }
+        return index;
+    }
+
+    public void testHumps() throws Exception {
+        assertEquals("ccd", FuzzyNamesIndex.getHumps("CubeColourDialog"));
+        assertEquals("ccd", FuzzyNamesIndex.getHumps("cube_colour_dialog"));
+        assertEquals("hs", FuzzyNamesIndex.getHumps("HTTPServer"));
+        assertEquals("ip", FuzzyNamesIndex.getHumps("__init__py"));
+        assertEquals("m5t", FuzzyNamesIndex.getHumps("md5Text"));
+    }
+
+    public void testScore() throws Exception {
+        assertTrue(FuzzyNamesIndex.score("CubeColourDialog", "CubeColourDialog") > FuzzyNamesIndex.score(
+                "cubecolourdialog", "CubeColourDialog"));
+        assertTrue(FuzzyNamesIndex.score("Cube", "CubeColourDialog") > FuzzyNamesIndex.score("CCD",
+                "CubeColourDialog"));
+        assertTrue(FuzzyNamesIndex.score("CCD", "CubeColourDialog") > FuzzyNamesIndex.score("CuCoDi",
+                "CubeColourDialog"));
+        assertTrue(FuzzyNamesIndex.score("CuCoDi", "CubeColourDialog") > FuzzyNamesIndex.score("Colour",
+                "CubeColourDialog"));
+        assertTrue(FuzzyNamesIndex.score("Colour", "CubeColourDialog") > FuzzyNamesIndex.score("colourdlg",
+                "CubeColourDialog"));
+        assertTrue(FuzzyNamesIndex.score("colourdlg", "CubeColourDialog") > 0);
+        assertEquals(-1, FuzzyNamesIndex.score("colourdlgx", "CubeColourDialog"));
+        assertEquals(-1, FuzzyNamesIndex.score("DCC", "CubeColourDialog"));
+    }
+
+    public void testMatches() throws Exception {
+        FuzzyNamesIndex index = createIndex("CubeColourDialog", "ColourDialog", "CubeColourDialog", "cube",
+                "CCDialog", "Dialog", "colour_database_log", "ClientCredentials");
+        assertEquals(7, index.size());
+
+        assertEquals(Arrays.asList("CCDialog", "CubeColourDialog", "ClientCredentials"),
+                index.getMatches("CCD", 10));
+        assertEquals(Arrays.asList("CCDialog", "CubeColourDialog"), index.getMatches("CCD", 2));
+
+        List<String> matches = index.getMatches("colourdlg", 10);
+        assertEquals(Arrays.asList("ColourDialog", "CubeColourDialog", "colour_database_log"), matches);
+
+        assertEquals(Arrays.asList("cube", "CubeColourDialog"), index.getMatches("cube", 10));
+        assertEquals(0, index.getMatches("xyz", 10).size());
+        assertEquals(0, index.getMatches("", 10).size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(0, index.getMatches("CCD", 10).size());
+    }
+
+    public void testMatchesAfterPacking() throws Exception {
+        FuzzyNamesIndex index = new FuzzyNamesIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.add("Name" + i + "Holder");
+        }
+        index.indexPending(); //packs all the names
+        index.add("CubeColourDialog");
+        index.add("Name10Holder");
+        assertEquals(3001, index.size());
+
+        assertEquals(Arrays.asList("CubeColourDialog"), index.getMatches("CCD", 10));
+        assertEquals(Arrays.asList("Name10Holder", "Name100Holder"), index.getMatches("Name10", 2));
+
+        for (int i = 0; i < 3000; i++) {
+            index.add("Other" + i + "Dialog");
+        }
+        assertEquals(6001, index.size());
+        assertEquals(Arrays.asList("CubeColourDialog"), index.getMatches("CCD", 10));
+        assertEquals(Arrays.asList("Other1234Dialog"), index.getMatches("other1234dlg", 1));
+    }
+
+    public void testMatchesWithManyCandidates() throws Exception {
+        FuzzyNamesIndex index = new FuzzyNamesIndex();
+        for (int i = 0; i < FuzzyNamesIndex.MAX_CANDIDATES * 3; i++) {
+            index.add("CubeColourDialog" + i);
+        }
+        index.add("CubeColourDialog");
+
+        //the candidates are capped, but the name itself is always found
+        List<String> matches = index.getMatches("CubeColourDialog", 10);
+        assertEquals(10, matches.size());
+        assertEquals("CubeColourDialog", matches.get(0));
+        assertEquals(10, index.getMatches("CCD", 10).size());
+        assertEquals(10, index.getMatches("colourdlg", 10).size());
+    }
+}
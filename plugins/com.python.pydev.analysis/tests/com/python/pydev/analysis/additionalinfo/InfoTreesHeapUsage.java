@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.python.pydev.core.TestDependent;
+import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.StringUtils;
+
+/**
+ * Compares the heap used by the in-memory trees of the additional info when kept as HashSet<IInfo> for each initials
+ * (as it was before CompactInfoTree) and when kept in a CompactInfoTree.
+ *
+ * The records are synthetic: the names are the identifiers found in the Lib of the jython plugin (with repetitions),
+ * 40 records for each module and a path in 2 of each 3 records. The strings are created before measuring (so, they're
+ * shared by both variants and not accounted).
+ *
+ * Not a test case (it asserts nothing and takes a while): run its main with "hashset" or "compact" and the number
+ * of records (each variant should be measured in a separate vm, i.e.: -XX:+UseSerialGC -Xmx1g).
+ *
+ * Used heap after gc (-XX:+UseSerialGC -Xmx1g, 1 cpu, same results in 2 runs):
+ *
+ * records   HashSet<IInfo> trees   CompactInfoTree
+ * 200k      12.2MB                 4.2MB
+ * 1M        59.2MB                 19.9MB
+ */
+public class InfoTreesHeapUsage {
+
+    /**
+     * Keep the tree and the strings used to build it alive while the heap is measured.
+     */
+    private static Object tree;
+    private static Object[] inputs;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 || (!args[0].equals("hashset") && !args[0].equals("compact"))) {
+            System.out.println("Usage: InfoTreesHeapUsage hashset|compact <number of records>");
+            return;
+        }
+        boolean compact = args[0].equals("compact");
+        int records = Integer.parseInt(args[1]);
+
+        List<String> identifiers = new ArrayList<String>();
+        collectIdentifiers(new File(TestDependent.TEST_PYDEV_JYTHON_PLUGIN_LOC, "Lib"), identifiers);
+        if (identifiers.size() == 0) {
+            System.out.println("No modules found in: " + TestDependent.TEST_PYDEV_JYTHON_PLUGIN_LOC);
+            return;
+        }
+
+        Map<String, String> pool = new HashMap<String, String>();
+        String[] names = new String[records];
+        String[] modules = new String[records];
+        String[] paths = new String[records];
+        String[] initials = new String[records];
+        for (int i = 0; i < records; i++) {
+            String name = identifiers.get(i % identifiers.size());
+            names[i] = share(pool, name);
+            modules[i] = share(pool, "pack.sub.mod" + (i / 40));
+            paths[i] = i % 3 == 0 ? null : share(pool, "Class" + (i / 10));
+            initials[i] = share(pool, getInitials(name));
+        }
+
+        inputs = new Object[] { identifiers, pool, names, modules, paths, initials };
+
+        long initialUsed = getUsedAfterGc();
+        long initialTime = System.nanoTime();
+        if (compact) {
+            CompactInfoTree compactTree = new CompactInfoTree(new CompactInfoTree.Strings());
+            for (int i = 0; i < records; i++) {
+                compactTree.add(initials[i], createInfo(i, names[i], modules[i], paths[i]));
+            }
+            compactTree.size(); //Makes sure that the buckets are sorted/deduplicated.
+            tree = compactTree;
+        } else {
+            SortedMap<String, Set<IInfo>> hashSetTree = new PyPublicTreeMap<String, Set<IInfo>>();
+            for (int i = 0; i < records; i++) {
+                Set<IInfo> infos = hashSetTree.get(initials[i]);
+                if (infos == null) {
+                    infos = new HashSet<IInfo>();
+                    hashSetTree.put(initials[i], infos);
+                }
+                infos.add(createInfo(i, names[i], modules[i], paths[i]));
+            }
+            tree = hashSetTree;
+        }
+        long time = System.nanoTime() - initialTime;
+        long used = getUsedAfterGc() - initialUsed;
+
+        System.out.println(StringUtils.format("%s: %s records. Used heap: %s MB. Took: %s secs", args[0], records,
+                used / (1024 * 1024.0), time / 1000000000.0));
+    }
+
+    private static IInfo createInfo(int i, String name, String module, String path) {
+        switch (i % 4) {
+            case 0:
+                return new ClassInfo(name, module, path, false);
+            case 1:
+                return new FuncInfo(name, module, path, false);
+            case 2:
+                return new AttrInfo(name, module, path, false);
+            default:
+                return new NameInfo(name, module, path, false);
+        }
+    }
+
+    /**
+     * Same as AbstractAdditionalTokensInfo.getInitials.
+     */
+    private static String getInitials(String name) {
+        if (name.length() < AbstractAdditionalTokensInfo.NUMBER_OF_INITIALS_TO_INDEX) {
+            return name;
+        }
+        return name.substring(0, AbstractAdditionalTokensInfo.NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
+    }
+
+    private static String share(Map<String, String> pool, String s) {
+        String shared = pool.get(s);
+        if (shared == null) {
+            pool.put(s, s);
+            shared = s;
+        }
+        return shared;
+    }
+
+    private static long getUsedAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void collectIdentifiers(File dir, List<String> identifiers) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Pattern identifier = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectIdentifiers(file, identifiers);
+            } else if (file.getName().endsWith(".py")) {
+                Matcher matcher = identifier.matcher(FileUtils.getFileContents(file));
+                while (matcher.find()) {
+                    identifiers.add(matcher.group());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+public class MappedTokensInfoTest extends TestCase {
+
+    private File file;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(MappedTokensInfoTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("mapped_tokens_info", ".bintrees");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private final Filter startingWithFilter = new Filter() {
+
+        public boolean doCompare(String lowerCaseQual, IInfo info) {
+            return doCompare(lowerCaseQual, info.getName());
+        }
+
+        public boolean doCompare(String qualifier, String infoName) {
+            return infoName.toLowerCase().startsWith(qualifier);
+        }
+    };
+
+    private static void add(SortedMap<String, List<IInfo>> tree, String initials, IInfo info) {
+        List<IInfo> list = tree.get(initials);
+        if (list == null) {
+            list = new ArrayList<IInfo>();
+            tree.put(initials, list);
+        }
+        list.add(info);
+    }
+
+    public void testWriteAndQuery() throws Exception {
+        SortedMap<String, List<IInfo>> topLevel = new TreeMap<String, List<IInfo>>();
+        SortedMap<String, List<IInfo>> inner = new TreeMap<String, List<IInfo>>();
+        add(topLevel, "cub", new ClassInfo("CubeColourDialog", "wx.lib", null, false));
+        add(topLevel, "cub", new FuncInfo("cube", "mod1", null, false));
+        add(topLevel, "cua", new AttrInfo("cuatro", "mod2", null, false));
+        add(topLevel, "dia", new NameInfo("dialog", "mod2", null, false));
+        add(inner, "met", new FuncInfo("method", "mod1", "Class1", false));
+
+        MappedTokensInfo.write(file, topLevel, inner);
+        MappedTokensInfo mapped = MappedTokensInfo.open(file);
+
+        List<IInfo> toks = new ArrayList<IInfo>();
+        mapped.getWithFilter(AbstractAdditionalTokensInfo.TOP_LEVEL, "cub", "cub", startingWithFilter, toks);
+        assertEquals(2, toks.size());
+        assertTrue(toks.contains(new ClassInfo("CubeColourDialog", "wx.lib", null, false)));
+        assertTrue(toks.contains(new FuncInfo("cube", "mod1", null, false)));
+
+        toks.clear();
+        mapped.getWithFilter(AbstractAdditionalTokensInfo.TOP_LEVEL, "cu", "cu", startingWithFilter, toks);
+        assertEquals(3, toks.size());
+
+        toks.clear();
+        mapped.getWithFilter(AbstractAdditionalTokensInfo.INNER, "met", "met", startingWithFilter, toks);
+        assertEquals(1, toks.size());
+        assertEquals("Class1", toks.get(0).getPath());
+
+        mapped.removeModule("mod1");
+        toks.clear();
+        mapped.getWithFilter(AbstractAdditionalTokensInfo.TOP_LEVEL, "cu", "cu", startingWithFilter, toks);
+        assertEquals(2, toks.size());
+
+        HashSet<String> modules = new HashSet<String>();
+        mapped.addModulesTo(modules);
+        assertEquals(2, modules.size());
+        assertTrue(modules.contains("wx.lib"));
+        assertTrue(modules.contains("mod2"));
+
+        SortedMap<String, List<IInfo>> all = new TreeMap<String, List<IInfo>>();
+        mapped.addAllTo(AbstractAdditionalTokensInfo.TOP_LEVEL, all);
+        assertEquals(3, all.size());
+        assertEquals(1, all.get("cub").size());
+
+        FuzzyNamesIndex fuzzyIndex = new FuzzyNamesIndex();
+        mapped.addNamesTo(AbstractAdditionalTokensInfo.TOP_LEVEL, fuzzyIndex, mapped.getRemovedModules());
+        assertEquals(3, fuzzyIndex.size()); //'cube' was removed
+        assertEquals("[CubeColourDialog]", fuzzyIndex.getMatches("CCD", 10).toString());
+    }
+
+    public void testWriteMergedWithPrevious() throws Exception {
+        SortedMap<String, List<IInfo>> topLevel = new TreeMap<String, List<IInfo>>();
+        SortedMap<String, List<IInfo>> inner = new TreeMap<String, List<IInfo>>();
+        add(topLevel, "cub", new ClassInfo("CubeColourDialog", "wx.lib", null, false));
+        add(topLevel, "cub", new FuncInfo("cube", "mod1", null, false));
+        add(topLevel, "abc", new FuncInfo("abcd", "mod1", null, false));
+        add(topLevel, "dia", new NameInfo("dialog", "mod2", null, false));
+        add(inner, "met", new FuncInfo("method", "mod1", "Class1", false));
+        add(inner, "oth", new FuncInfo("other", "mod2", "Class2", false));
+        MappedTokensInfo.write(file, topLevel, inner);
+        MappedTokensInfo previous = MappedTokensInfo.open(file);
+        previous.removeModule("mod1");
+
+        //mod1 is added again (with other contents) along with new keys before/between/after the previous ones.
+        SortedMap<String, List<IInfo>> addedTopLevel = new TreeMap<String, List<IInfo>>();
+        SortedMap<String, List<IInfo>> addedInner = new TreeMap<String, List<IInfo>>();
+        add(addedTopLevel, "aaa", new AttrInfo("aaab", "mod1", null, false));
+        add(addedTopLevel, "cub", new FuncInfo("cubic", "mod1", null, false));
+        add(addedTopLevel, "cuc", new ClassInfo("Cucumber", "mod3", null, false));
+        add(addedTopLevel, "zzz", new ModInfo("zzz", false));
+        add(addedInner, "met", new FuncInfo("method2", "mod1", "Class1", false));
+
+        //What's expected is the same as merging the trees with all the info.
+        SortedMap<String, List<IInfo>> expectedTopLevel = new TreeMap<String, List<IInfo>>();
+        SortedMap<String, List<IInfo>> expectedInner = new TreeMap<String, List<IInfo>>();
+        previous.addAllTo(AbstractAdditionalTokensInfo.TOP_LEVEL, expectedTopLevel);
+        previous.addAllTo(AbstractAdditionalTokensInfo.INNER, expectedInner);
+        for (String key : addedTopLevel.keySet()) {
+            for (IInfo info : addedTopLevel.get(key)) {
+                add(expectedTopLevel, key, info);
+            }
+        }
+        for (String key : addedInner.keySet()) {
+            for (IInfo info : addedInner.get(key)) {
+                add(expectedInner, key, info);
+            }
+        }
+
+        File mergedFile = File.createTempFile("mapped_tokens_info", ".bintrees");
+        try {
+            MappedTokensInfo.write(mergedFile, previous, addedTopLevel, addedInner);
+            MappedTokensInfo merged = MappedTokensInfo.open(mergedFile);
+
+            SortedMap<String, List<IInfo>> foundTopLevel = new TreeMap<String, List<IInfo>>();
+            SortedMap<String, List<IInfo>> foundInner = new TreeMap<String, List<IInfo>>();
+            merged.addAllTo(AbstractAdditionalTokensInfo.TOP_LEVEL, foundTopLevel);
+            merged.addAllTo(AbstractAdditionalTokensInfo.INNER, foundInner);
+            assertEquals(expectedTopLevel, foundTopLevel);
+            assertEquals(expectedInner, foundInner);
+            assertEquals("[aaa, cub, cuc, dia, zzz]", foundTopLevel.keySet().toString());
+            assertEquals(2, foundTopLevel.get("cub").size());
+
+            List<IInfo> toks = new ArrayList<IInfo>();
+            merged.getWithFilter(AbstractAdditionalTokensInfo.TOP_LEVEL, "cu", "cu", startingWithFilter, toks);
+            assertEquals(3, toks.size());
+            assertTrue(toks.contains(new FuncInfo("cubic", "mod1", null, false)));
+
+            toks.clear();
+            merged.getWithFilter(AbstractAdditionalTokensInfo.INNER, "met", "met", startingWithFilter, toks);
+            assertEquals(1, toks.size());
+            assertEquals("method2", toks.get(0).getName());
+
+            //The removed info is not kept in the new file.
+            HashSet<String> modules = new HashSet<String>();
+            merged.addModulesTo(modules);
+            assertEquals(5, modules.size());
+            merged.removeModule("mod1");
+            modules.clear();
+            merged.addModulesTo(modules);
+            assertEquals(4, modules.size());
+            assertFalse(modules.contains("mod1"));
+        } finally {
+            mergedFile.delete();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.jobs.Job;
+
+public class AnalysisSchedulerTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(AnalysisSchedulerTest.class);
+    }
+
+    private final List<String> analyzed = new ArrayList<String>();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    private class RunnableStub extends AbstractAnalysisBuilderRunnable {
+
+        private final CountDownLatch block;
+        private final long sleepMillis;
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private RunnableStub(String moduleName, int analysisCause, IAnalysisBuilderRunnable old,
+                CountDownLatch block, long sleepMillis) {
+            super(false, moduleName, false, analysisCause, old, null, System.currentTimeMillis(),
+                    new KeyForAnalysisRunnable("project", moduleName), 0);
+            this.block = block;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        protected void doAnalysis() {
+            int curr = concurrent.incrementAndGet();
+            synchronized (maxConcurrent) {
+                if (curr > maxConcurrent.get()) {
+                    maxConcurrent.set(curr);
+                }
+            }
+            try {
+                if (block != null) {
+                    block.await(5, TimeUnit.SECONDS);
+                }
+                if (sleepMillis > 0) {
+                    Thread.sleep(sleepMillis);
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                synchronized (analyzed) {
+                    analyzed.add(moduleName);
+                }
+                concurrent.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * The counters are updated right after the runnable finishes, so, wait a bit for them.
+     */
+    private void assertCompletedCount(long expected, AnalysisScheduler scheduler) throws InterruptedException {
+        long initial = System.currentTimeMillis();
+        while (scheduler.getCompletedCount() < expected && System.currentTimeMillis() - initial < 5000) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, scheduler.getCompletedCount());
+    }
+
+    private RunnableStub create(String moduleName, int analysisCause) {
+        return new RunnableStub(moduleName, analysisCause, null, null, 0);
+    }
+
+    public void testBoundedPool() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(2);
+        List<RunnableStub> runnables = new ArrayList<RunnableStub>();
+        for (int i = 0; i < 20; i++) {
+            RunnableStub runnable = new RunnableStub("mod" + i, IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER, null,
+                    null, 20);
+            runnables.add(runnable);
+            scheduler.schedule(runnable);
+        }
+        for (RunnableStub runnable : runnables) {
+            assertTrue(runnable.finished.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(20, analyzed.size());
+        assertEquals(2, maxConcurrent.get());
+        assertCompletedCount(20, scheduler);
+        assertEquals(0, scheduler.getCancelledCount());
+        assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    public void testEditorRequestsFirst() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        CountDownLatch block = new CountDownLatch(1);
+        RunnableStub blocking = new RunnableStub("blocking", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER, null,
+                block, 0);
+        scheduler.schedule(blocking);
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(5);
+        }
+
+        RunnableStub builder1 = create("builder1", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER);
+        RunnableStub builder2 = create("builder2", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER);
+        RunnableStub editor = create("editor", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER);
+        scheduler.schedule(builder1);
+        scheduler.schedule(builder2);
+        scheduler.schedule(editor);
+        assertEquals(3, scheduler.getQueuedCount());
+        assertEquals(1, scheduler.getRunningCount());
+
+        block.countDown();
+        assertTrue(builder2.finished.await(5, TimeUnit.SECONDS));
+        synchronized (analyzed) {
+            assertEquals("[blocking, editor, builder1, builder2]", analyzed.toString());
+        }
+    }
+
+    public void testSupersededRequestIsCancelled() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        CountDownLatch block = new CountDownLatch(1);
+        RunnableStub blocking = new RunnableStub("blocking", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER, null,
+                block, 0);
+        scheduler.schedule(blocking);
+
+        RunnableStub first = create("mod", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER);
+        scheduler.schedule(first);
+        //The second waits for the first to finish (as the factory would create it).
+        RunnableStub second = new RunnableStub("mod", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER, first, null,
+                0);
+        scheduler.schedule(second);
+
+        assertTrue(first.getRunFinished());
+        assertEquals(1, scheduler.getCancelledCount());
+
+        block.countDown();
+        assertTrue(second.finished.await(5, TimeUnit.SECONDS));
+        synchronized (analyzed) {
+            assertEquals("[blocking, mod]", analyzed.toString());
+        }
+        assertCompletedCount(2, scheduler);
+    }
+
+    public void testOneRequestPerModuleAtATime() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(2);
+        CountDownLatch block = new CountDownLatch(1);
+        RunnableStub first = new RunnableStub("mod", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER, null, block, 0);
+        scheduler.schedule(first);
+        while (scheduler.getRunningCount() == 0) {
+            Thread.sleep(5);
+        }
+        RunnableStub second = create("mod", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER);
+        scheduler.schedule(second);
+        RunnableStub other = create("other", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER);
+        scheduler.schedule(other);
+
+        //The other module may run, but the second request for the module must wait for the first.
+        assertTrue(other.finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getQueuedCount());
+        assertFalse(second.getRunFinished());
+
+        block.countDown();
+        assertTrue(second.finished.await(5, TimeUnit.SECONDS));
+        synchronized (analyzed) {
+            assertEquals("[other, mod, mod]", analyzed.toString());
+        }
+    }
+
+    public void testCancelFromJob() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger stopped = new AtomicInteger();
+        RunnableStub cancellable = new RunnableStub("cancellable", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER,
+                null, null, 0) {
+
+            @Override
+            protected void doAnalysis() {
+                started.countDown();
+                try {
+                    long initial = System.currentTimeMillis();
+                    while (System.currentTimeMillis() - initial < 5000) {
+                        checkStop();
+                        Thread.sleep(5);
+                    }
+                } catch (OperationCanceledException e) {
+                    stopped.incrementAndGet();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        scheduler.schedule(cancellable);
+        RunnableStub waiting = create("waiting", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER);
+        scheduler.schedule(waiting);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //Cancelling the job (i.e.: from the progress view) stops the analysis running and the other ones still run.
+        Job.getJobManager().cancel(AnalysisScheduler.JOB_FAMILY);
+        assertTrue(cancellable.finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, stopped.get());
+        assertTrue(waiting.finished.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testNotReadyIsDeferred() throws Exception {
+        AnalysisScheduler scheduler = new AnalysisScheduler(1);
+        final AtomicBoolean ready = new AtomicBoolean(false);
+        RunnableStub notReady = new RunnableStub("notReady", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER, null,
+                null, 0) {
+
+            @Override
+            public boolean isReadyToRun() {
+                return ready.get();
+            }
+        };
+        scheduler.schedule(notReady);
+        RunnableStub other = create("other", IAnalysisBuilderRunnable.ANALYSIS_CAUSE_BUILDER);
+        scheduler.schedule(other);
+
+        //The one not ready doesn't hold the only slot (even having a higher priority).
+        assertTrue(other.finished.await(5, TimeUnit.SECONDS));
+        assertFalse(notReady.getRunFinished());
+        assertEquals(1, scheduler.getQueuedCount());
+
+        ready.set(true);
+        assertTrue(notReady.finished.await(5, TimeUnit.SECONDS));
+        synchronized (analyzed) {
+            assertEquals("[other, notReady]", analyzed.toString());
+        }
+        assertCompletedCount(2, scheduler);
+        assertEquals(0, scheduler.getCancelledCount());
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pep8;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.core.PyObject;
+import org.python.pydev.builder.pep8.Pep8InterpreterPool.PooledInterpreter;
+import org.python.pydev.jython.IPythonInterpreter;
+
+public class Pep8InterpreterPoolTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(Pep8InterpreterPoolTest.class);
+    }
+
+    /**
+     * An interpreter which doesn't execute anything.
+     */
+    private static class InterpreterStub implements IPythonInterpreter {
+
+        private final boolean useConsole;
+        private int cleanups;
+
+        private InterpreterStub(boolean useConsole) {
+            this.useConsole = useConsole;
+        }
+
+        public void set(String key, Object value) {
+        }
+
+        public void exec(String exec) {
+        }
+
+        @SuppressWarnings("rawtypes")
+        public Object get(String varName, Class class_) {
+            return null;
+        }
+
+        public PyObject get(String varName) {
+            return null;
+        }
+
+        public void cleanup() {
+            cleanups++;
+        }
+
+        public void setOut(OutputStream output) {
+        }
+
+        public void setOut(Writer output) {
+        }
+
+        public void setErr(OutputStream output) {
+        }
+    }
+
+    private final List<InterpreterStub> created = Collections.synchronizedList(new ArrayList<InterpreterStub>());
+
+    private Pep8InterpreterPool createPool(int maxInterpreters) {
+        return new Pep8InterpreterPool(maxInterpreters) {
+            @Override
+            protected IPythonInterpreter createInterpreter(boolean useConsole) {
+                InterpreterStub interpreter = new InterpreterStub(useConsole);
+                created.add(interpreter);
+                return interpreter;
+            }
+        };
+    }
+
+    public void testReused() throws Exception {
+        Pep8InterpreterPool pool = createPool(2);
+        PooledInterpreter pooled = pool.acquire(false);
+        pooled.setPep8Dir("dir");
+        pool.release(pooled, true);
+
+        PooledInterpreter pooled2 = pool.acquire(false);
+        assertSame(pooled, pooled2);
+        assertEquals("dir", pooled2.getPep8Dir());
+        pool.release(pooled2, true);
+
+        assertEquals(1, created.size());
+        assertEquals(2, pool.getAcquiresCount());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    public void testBounded() throws Exception {
+        final Pep8InterpreterPool pool = createPool(2);
+        PooledInterpreter p1 = pool.acquire(false);
+        PooledInterpreter p2 = pool.acquire(false);
+        assertNotSame(p1, p2);
+        assertEquals(2, created.size());
+
+        final List<PooledInterpreter> acquired = Collections.synchronizedList(new ArrayList<PooledInterpreter>());
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    acquired.add(pool.acquire(false));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        Thread.sleep(50);
+        assertEquals(0, acquired.size()); //waiting for one of the interpreters to be released.
+
+        pool.release(p2, true);
+        thread.join(5000);
+        assertEquals(1, acquired.size());
+        assertSame(p2, acquired.get(0));
+        assertEquals(2, created.size());
+        assertEquals(1, pool.getWaitsCount());
+        assertTrue(pool.getTotalWaitNanos() > 0);
+    }
+
+    public void testDiscardedOnFailure() throws Exception {
+        Pep8InterpreterPool pool = createPool(2);
+        PooledInterpreter pooled = pool.acquire(false);
+        pool.release(pooled, false);
+        assertEquals(1, created.get(0).cleanups);
+        assertEquals(0, pool.getInterpretersCount());
+        assertEquals(1, pool.getDiscardedCount());
+
+        assertNotSame(pooled, pool.acquire(false));
+        assertEquals(2, created.size());
+    }
+
+    public void testConsoleChanged() throws Exception {
+        Pep8InterpreterPool pool = createPool(1);
+        pool.release(pool.acquire(false), true);
+
+        PooledInterpreter pooled = pool.acquire(true);
+        assertTrue(((InterpreterStub) pooled.getInterpreter()).useConsole);
+        assertEquals(1, created.get(0).cleanups);
+        assertEquals(1, pool.getInterpretersCount());
+        assertEquals(1, pool.getDiscardedCount());
+    }
+
+    public void testDispose() throws Exception {
+        Pep8InterpreterPool pool = createPool(2);
+        PooledInterpreter p1 = pool.acquire(false);
+        pool.release(pool.acquire(false), true);
+        pool.dispose();
+        assertEquals(1, created.get(1).cleanups);
+
+        //The one in use is discarded when released.
+        pool.release(p1, true);
+        assertEquals(1, created.get(0).cleanups);
+        try {
+            pool.acquire(false);
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            //expected
+        }
+    }
+}
@@ -40,6 +40,9 @@ public class CodeCompletionPreferencesInitializer extends AbstractPreferenceInit
     public static final String CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION = "CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION";
     public static final int DEFAULT_CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION = 2;
 
+    public static final String USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION = "USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION";
+    public static final boolean DEFAULT_USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION = true;
+
     @Override
     public void initializeDefaultPreferences() {
         Preferences node = new DefaultScope().getNode(DEFAULT_SCOPE);
@@ -51,6 +54,7 @@ public class CodeCompletionPreferencesInitializer extends AbstractPreferenceInit
         node.put(KEYWORDS_CODE_COMPLETION, DEFAULT_KEYWORDS_CODE_COMPLETION);
         node.putInt(CHARS_FOR_CTX_INSENSITIVE_MODULES_COMPLETION, DEFAULT_CHARS_FOR_CTX_INSENSITIVE_MODULES_COMPLETION);
         node.putInt(CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION, DEFAULT_CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION);
+        node.putBoolean(USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION, DEFAULT_USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION);
     }
 
 }
@@ -72,15 +72,16 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
             boolean addAutoImport = AutoImportsPreferencesPage.doAutoImport();
             int qlen = qual.length();
             String lowerQual = qual.toLowerCase();
+            long waitDeadline = System.currentTimeMillis() + MAX_WAIT_FOR_ADDITIONAL_INFO_MILLIS;
 
             for (IPythonNature nature : naturesUsed) {
                 fillNatureCompletionsForConsole(viewer, requestOffset, completions, qual, addAutoImport, qlen,
-                        lowerQual, nature, false);
+                        lowerQual, nature, false, waitDeadline);
             }
 
             //and at last, get from the system
             fillNatureCompletionsForConsole(viewer, requestOffset, completions, qual, addAutoImport, qlen, lowerQual,
-                    naturesUsed.get(0), true);
+                    naturesUsed.get(0), true, waitDeadline);
         }
         return completions;
 
@@ -88,7 +89,7 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
     private void fillNatureCompletionsForConsole(IScriptConsoleViewer viewer, int requestOffset,
             List<ICompletionProposal> completions, String qual, boolean addAutoImport, int qlen, String lowerQual,
-            IPythonNature nature, boolean getSystem) {
+            IPythonNature nature, boolean getSystem, long waitDeadline) {
         AbstractAdditionalTokensInfo additionalInfoForProject;
 
         if (getSystem) {
@@ -107,6 +108,7 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
                 return;
             }
         }
+        additionalInfoForProject.waitUntilLoaded(Math.max(0, waitDeadline - System.currentTimeMillis()));
 
         Collection<IInfo> tokensStartingWith = additionalInfoForProject.getTokensStartingWith(qual,
                 AbstractAdditionalTokensInfo.TOP_LEVEL);
@@ -159,6 +161,43 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
     // Editor completions ----------------------------------------------------------------------------------------------
 
+    /**
+     * The maximum number of names to be gotten in a fuzzy way (the prefix matches are always shown).
+     */
+    private static final int MAX_FUZZY_MATCHES = 50;
+
+    /**
+     * The maximum time to wait for the additional info to be loaded in a completion request (after that, the
+     * completions are gotten from the info loaded so far).
+     */
+    private static final long MAX_WAIT_FOR_ADDITIONAL_INFO_MILLIS = 500;
+
+    /**
+     * Key for the deadline to wait for the additional info in the completion cache of a request.
+     */
+    private static final String WAIT_FOR_ADDITIONAL_INFO_DEADLINE_KEY = "CtxParticipant.WaitForAdditionalInfoDeadline";
+
+    /**
+     * Waits until the additional info for the nature is loaded. The deadline is kept in the completion state (whose
+     * cache is shared by the whole request), so, all the calls done in a request wait at most
+     * MAX_WAIT_FOR_ADDITIONAL_INFO_MILLIS in total.
+     */
+    private static void waitUntilLoaded(ICompletionState state, IPythonNature nature)
+            throws MisconfigurationException {
+        long deadline;
+        Long stored = state != null ? (Long) state.getObj(WAIT_FOR_ADDITIONAL_INFO_DEADLINE_KEY) : null;
+        if (stored != null) {
+            deadline = stored;
+        } else {
+            deadline = System.currentTimeMillis() + MAX_WAIT_FOR_ADDITIONAL_INFO_MILLIS;
+            if (state != null) {
+                state.add(WAIT_FOR_ADDITIONAL_INFO_DEADLINE_KEY, deadline);
+            }
+        }
+        AdditionalProjectInterpreterInfo.waitUntilLoaded(nature,
+                Math.max(0, deadline - System.currentTimeMillis()));
+    }
+
     private Collection<CtxInsensitiveImportComplProposal> getThem(CompletionRequest request, ICompletionState state,
             boolean addAutoImport) throws MisconfigurationException {
 
@@ -175,6 +214,7 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
             String initialModule = request.resolveModule();
 
+            waitUntilLoaded(state, request.nature);
             List<IInfo> tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith(qual,
                     request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL);
 
@@ -185,54 +225,87 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
             boolean doIgnoreImportsStartingWithUnder = AutoImportsPreferencesPage.doIgnoreImportsStartingWithUnder();
 
             for (IInfo info : tokensStartingWith) {
-                //there always must be a declaringModuleName
-                String declaringModuleName = info.getDeclaringModuleName();
-                if (initialModule != null && declaringModuleName != null) {
-                    if (initialModule.equals(declaringModuleName)) {
-                        continue;
-                    }
-                }
-                boolean hasInit = false;
-                if (declaringModuleName.endsWith(".__init__")) {
-                    declaringModuleName = declaringModuleName.substring(0, declaringModuleName.length() - 9);//remove the .__init__
-                    hasInit = true;
-                }
-
-                String rep = info.getName();
-                String lowerRep = rep.toLowerCase();
-                if (!lowerRep.startsWith(lowerQual) || importedNames.contains(rep)) {
+                String lowerRep = info.getName().toLowerCase();
+                if (!lowerRep.startsWith(lowerQual)) {
                     continue;
                 }
-
-                if (addAutoImport) {
-                    realImportRep.clear();
-                    realImportRep.append("from ");
-                    realImportRep.append(AutoImportsPreferencesPage.removeImportsStartingWithUnderIfNeeded(
-                            declaringModuleName, tempBuf, doIgnoreImportsStartingWithUnder));
-                    realImportRep.append(" import ");
-                    realImportRep.append(rep);
+                CtxInsensitiveImportComplProposal proposal = createProposal(request, addAutoImport, importedNames,
+                        initialModule, info, realImportRep, displayString, tempBuf, doIgnoreImportsStartingWithUnder,
+                        lowerRep.equals(lowerQual) ? IPyCompletionProposal.PRIORITY_LOCALS_1
+                                : IPyCompletionProposal.PRIORITY_GLOBALS);
+                if (proposal != null) {
+                    completions.add(proposal);
                 }
+            }
 
-                displayString.clear();
-                displayString.append(rep);
-                displayString.append(" - ");
-                displayString.append(declaringModuleName);
-                if (hasInit) {
-                    displayString.append(".__init__");
+            if (qual.length() >= 2 && CodeCompletionPreferencesPage.useFuzzyContextInsensitiveGlobalTokensCompletion()) {
+                //The ones which don't start with the qualifier (already added) but match it in a fuzzy way.
+                List<IInfo> tokensMatching = AdditionalProjectInterpreterInfo.getTokensMatching(qual,
+                        request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL, MAX_FUZZY_MATCHES);
+                for (IInfo info : tokensMatching) {
+                    if (info.getName().toLowerCase().startsWith(lowerQual)) {
+                        continue;
+                    }
+                    CtxInsensitiveImportComplProposal proposal = createProposal(request, addAutoImport,
+                            importedNames, initialModule, info, realImportRep, displayString, tempBuf,
+                            doIgnoreImportsStartingWithUnder, IPyCompletionProposal.PRIORITY_GLOBALS + 1);
+                    if (proposal != null) {
+                        proposal.setFuzzyMatch(true);
+                        completions.add(proposal);
+                    }
                 }
+            }
 
-                CtxInsensitiveImportComplProposal proposal = new CtxInsensitiveImportComplProposal(rep,
-                        request.documentOffset - request.qlen, request.qlen, realImportRep.length(),
-                        AnalysisPlugin.getImageForAutoImportTypeInfo(info), displayString.toString(),
-                        (IContextInformation) null, "",
-                        lowerRep.equals(lowerQual) ? IPyCompletionProposal.PRIORITY_LOCALS_1
-                                : IPyCompletionProposal.PRIORITY_GLOBALS, realImportRep.toString());
+        }
+        return completions;
+    }
 
-                completions.add(proposal);
+    /**
+     * @return a proposal for the given info (or null if it shouldn't be added: i.e.: it's already imported or it's
+     * declared in the module where the completion was requested).
+     */
+    private CtxInsensitiveImportComplProposal createProposal(CompletionRequest request, boolean addAutoImport,
+            HashSet<String> importedNames, String initialModule, IInfo info, FastStringBuffer realImportRep,
+            FastStringBuffer displayString, FastStringBuffer tempBuf, boolean doIgnoreImportsStartingWithUnder,
+            int priority) {
+        //there always must be a declaringModuleName
+        String declaringModuleName = info.getDeclaringModuleName();
+        if (initialModule != null && declaringModuleName != null) {
+            if (initialModule.equals(declaringModuleName)) {
+                return null;
             }
+        }
+        boolean hasInit = false;
+        if (declaringModuleName.endsWith(".__init__")) {
+            declaringModuleName = declaringModuleName.substring(0, declaringModuleName.length() - 9);//remove the .__init__
+            hasInit = true;
+        }
 
+        String rep = info.getName();
+        if (importedNames.contains(rep)) {
+            return null;
         }
-        return completions;
+
+        realImportRep.clear();
+        if (addAutoImport) {
+            realImportRep.append("from ");
+            realImportRep.append(AutoImportsPreferencesPage.removeImportsStartingWithUnderIfNeeded(
+                    declaringModuleName, tempBuf, doIgnoreImportsStartingWithUnder));
+            realImportRep.append(" import ");
+            realImportRep.append(rep);
+        }
+
+        displayString.clear();
+        displayString.append(rep);
+        displayString.append(" - ");
+        displayString.append(declaringModuleName);
+        if (hasInit) {
+            displayString.append(".__init__");
+        }
+
+        return new CtxInsensitiveImportComplProposal(rep, request.documentOffset - request.qlen, request.qlen,
+                realImportRep.length(), AnalysisPlugin.getImageForAutoImportTypeInfo(info), displayString.toString(),
+                (IContextInformation) null, "", priority, realImportRep.toString());
     }
 
     /**
@@ -266,6 +339,7 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
             List<IInfo> tokensStartingWith;
             try {
+                waitUntilLoaded(state, state.getNature());
                 tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith(qual, state.getNature(),
                         AbstractAdditionalTokensInfo.INNER);
             } catch (MisconfigurationException e) {
@@ -313,6 +387,7 @@ public class CtxParticipant implements IPyDevCompletionParticipant, IPyDevComple
 
         try {
             IPythonNature nature = state.getNature();
+            waitUntilLoaded(state, nature);
             List<IInfo> tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensEqualTo(qual,
                     nature, AbstractAdditionalTokensInfo.TOP_LEVEL | AbstractAdditionalTokensInfo.INNER);
             int size = tokensStartingWith.size();
@@ -53,6 +53,10 @@ public class CodeCompletionPreferencesPage extends FieldEditorPreferencePage imp
                 CodeCompletionPreferencesInitializer.CHARS_FOR_CTX_INSENSITIVE_TOKENS_COMPLETION,
                 "Number of chars for showing global tokens in context-insensitive completions?", p));
 
+        addField(new BooleanFieldEditor(
+                CodeCompletionPreferencesInitializer.USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION,
+                "Also show global tokens matching in a fuzzy way (i.e.: \"CCD\" for \"CubeColourDialog\")?", p));
+
         addField(new BooleanFieldEditor(CodeCompletionPreferencesInitializer.USE_KEYWORDS_CODE_COMPLETION,
                 "Use common tokens auto code completion?", p));
         addField(new LabelFieldEditor("LabelFieldEditor", "", p));
@@ -132,6 +136,16 @@ public class CodeCompletionPreferencesPage extends FieldEditorPreferencePage imp
         return getIntFromPrefs(prefName);
     }
 
+    public static boolean TESTS_USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION = false;
+
+    public static boolean useFuzzyContextInsensitiveGlobalTokensCompletion() {
+        if (SharedCorePlugin.inTestMode()) {
+            return TESTS_USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION;
+        }
+        return CodecompletionPlugin.getDefault().getPreferenceStore()
+                .getBoolean(CodeCompletionPreferencesInitializer.USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION);
+    }
+
     public static boolean useKeywordsCodeCompletion() {
         return CodecompletionPlugin.getDefault().getPreferenceStore()
                 .getBoolean(CodeCompletionPreferencesInitializer.USE_KEYWORDS_CODE_COMPLETION);
@@ -32,6 +32,7 @@ import com.python.pydev.analysis.CtxInsensitiveImportComplProposal;
 import com.python.pydev.analysis.additionalinfo.AdditionalInfoTestsBase;
 import com.python.pydev.analysis.ui.AutoImportsPreferencesPage;
 import com.python.pydev.codecompletion.ctxinsensitive.CtxParticipant;
+import com.python.pydev.codecompletion.ui.CodeCompletionPreferencesPage;
 
 public class CompletionParticipantTest extends AdditionalInfoTestsBase {
 
@@ -148,6 +149,22 @@ public class CompletionParticipantTest extends AdditionalInfoTestsBase {
         assertContains("MyEggClass - myeggmodule.myeggfile", proposals);
     }
 
+    public void testFuzzyCompletion() throws Exception {
+        participant = new CtxParticipant();
+        CodeCompletionPreferencesPage.TESTS_USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION = true;
+        try {
+            ICompletionProposal[] proposals = requestCompl("MZC", -1, -1, new String[] {});
+            assertContains("MyZipClass - myzipmodule.myzipfile", proposals);
+
+            proposals = requestCompl("zipcls", -1, -1, new String[] {});
+            assertContains("MyZipClass - myzipmodule.myzipfile", proposals);
+        } finally {
+            CodeCompletionPreferencesPage.TESTS_USE_FUZZY_CTX_INSENSITIVE_TOKENS_COMPLETION = false;
+        }
+        ICompletionProposal[] proposals = requestCompl("MZC", -1, -1, new String[] {});
+        assertNotContains("MyZipClass - myzipmodule.myzipfile", proposals);
+    }
+
     public void testImportCompletion2() throws Exception {
         participant = new CtxParticipant();
         ICompletionProposal[] proposals = requestCompl("xml", -1, -1, new String[] {});
@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -41,6 +42,7 @@ import org.python.pydev.parser.visitors.NodeUtils;
 import org.python.pydev.parser.visitors.scope.ASTEntry;
 import org.python.pydev.parser.visitors.scope.EasyASTIteratorVisitor;
 import org.python.pydev.plugin.nature.PythonNature;
+import org.python.pydev.shared_core.structure.Tuple;
 
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
@@ -155,7 +157,7 @@ public class RefactorerFinds {
 
                 for (HierarchyNodeModel toFindOnRound : nextRound) {
 
-                    HashSet<SourceModule> modulesToAnalyze;
+                    HashMap<SourceModule, HashSet<String>> modulesToAnalyze;
 
                     int work = totalWork / 250;
                     if (work <= 0) {
@@ -166,12 +168,12 @@ public class RefactorerFinds {
 
                     try {
                         request.pushMonitor(new SubProgressMonitor(request.getMonitor(), work));
-                        modulesToAnalyze = findLikelyModulesWithChildren(request, toFindOnRound, infoForProject);
+                        modulesToAnalyze = findModulesWithChildren(request, toFindOnRound, infoForProject);
                     } finally {
                         request.popMonitor().done();
                     }
 
-                    request.communicateWork("Likely modules with matches:" + modulesToAnalyze.size());
+                    request.communicateWork("Modules with matches:" + modulesToAnalyze.size());
                     findChildrenOnModules(request, allFound, foundOnRound, toFindOnRound, modulesToAnalyze);
                 }
             }
@@ -180,19 +182,27 @@ public class RefactorerFinds {
         }
     }
 
+    /**
+     * Creates the nodes for the classes found in the given modules (the module and the name of the classes
+     * to create come from the classes index, so, we only have to get the ClassDef for those).
+     */
     private void findChildrenOnModules(RefactoringRequest request,
             HashMap<HierarchyNodeModel, HierarchyNodeModel> allFound, HashSet<HierarchyNodeModel> foundOnRound,
-            HierarchyNodeModel toFindOnRound, HashSet<SourceModule> modulesToAnalyze) {
-        for (SourceModule module : modulesToAnalyze) {
-            SourceModule m = (SourceModule) module;
-            request.communicateWork("Analyzing:" + m.getName());
+            HierarchyNodeModel toFindOnRound, HashMap<SourceModule, HashSet<String>> modulesToAnalyze) {
+        for (Map.Entry<SourceModule, HashSet<String>> moduleEntry : modulesToAnalyze.entrySet()) {
+            SourceModule module = moduleEntry.getKey();
+            HashSet<String> classNames = moduleEntry.getValue();
+            request.communicateWork("Analyzing:" + module.getName());
 
-            Iterator<ASTEntry> entries = EasyASTIteratorVisitor.createClassIterator(m.getAst());
+            Iterator<ASTEntry> entries = EasyASTIteratorVisitor.createClassIterator(module.getAst());
 
             while (entries.hasNext()) {
                 ASTEntry entry = entries.next();
                 //we're checking for those that have model.name as a parent
                 ClassDef def = (ClassDef) entry.node;
+                if (!classNames.contains(NodeUtils.getRepresentationString(def))) {
+                    continue;
+                }
                 List<String> parentNames = NodeUtils.getParentNames(def, true);
                 if (parentNames.contains(toFindOnRound.name)) {
                     HierarchyNodeModel newNode = new HierarchyNodeModel(module, def);
@@ -210,23 +220,26 @@ public class RefactorerFinds {
         }
     }
 
-    private HashSet<SourceModule> findLikelyModulesWithChildren(RefactoringRequest request, HierarchyNodeModel model,
-            List<AbstractAdditionalDependencyInfo> infoForProject) {
-        //get the modules that are most likely to have that declaration.
-        HashSet<SourceModule> modulesToAnalyze = new HashSet<SourceModule>();
+    /**
+     * @return the modules which have subclasses of the given model (and the names of those subclasses), gotten
+     * from the classes index (so, only the modules which actually have a match are loaded).
+     */
+    private HashMap<SourceModule, HashSet<String>> findModulesWithChildren(RefactoringRequest request,
+            HierarchyNodeModel model, List<AbstractAdditionalDependencyInfo> infoForProject) {
+        HashMap<SourceModule, HashSet<String>> modulesToAnalyze = new HashMap<SourceModule, HashSet<String>>();
         for (AbstractAdditionalDependencyInfo additionalInfo : infoForProject) {
 
             IProgressMonitor monitor = request.getMonitor();
             if (monitor == null) {
                 monitor = new NullProgressMonitor();
             }
-            monitor.beginTask("Find likely modules with children", 100);
+            monitor.beginTask("Find modules with children", 100);
 
             try {
-                List<ModulesKey> modules;
+                List<Tuple<ModulesKey, String>> subclasses;
                 try {
                     request.pushMonitor(new SubProgressMonitor(monitor, 90));
-                    modules = additionalInfo.getModulesWithToken(model.name, monitor);
+                    subclasses = additionalInfo.getSubclasses(model.name, monitor);
                     monitor.setTaskName("Searching: " + model.name);
                     if (monitor.isCanceled()) {
                         throw new OperationCanceledException();
@@ -237,10 +250,12 @@ public class RefactorerFinds {
 
                 try {
                     request.pushMonitor(new SubProgressMonitor(monitor, 10));
-                    request.getMonitor().beginTask("Find likely modules with children", modules.size());
-                    for (ModulesKey declaringModuleName : modules) {
+                    request.getMonitor().beginTask("Find modules with children", subclasses.size());
+                    for (Tuple<ModulesKey, String> subclass : subclasses) {
+                        ModulesKey declaringModuleName = subclass.o1;
                         if (DEBUG) {
-                            System.out.println("findLikelyModulesWithChildren: " + declaringModuleName);
+                            System.out.println("findModulesWithChildren: " + declaringModuleName + " - "
+                                    + subclass.o2);
                         }
 
                         IModule module = null;
@@ -261,7 +276,12 @@ public class RefactorerFinds {
                         }
 
                         if (module instanceof SourceModule) {
-                            modulesToAnalyze.add((SourceModule) module);
+                            HashSet<String> classNames = modulesToAnalyze.get(module);
+                            if (classNames == null) {
+                                classNames = new HashSet<String>();
+                                modulesToAnalyze.put((SourceModule) module, classNames);
+                            }
+                            classNames.add(subclass.o2);
                         }
 
                         request.getMonitor().worked(1);
@@ -32,6 +32,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.cache.ZipFilesCache;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.shared_core.callbacks.ICallback0;
 import org.python.pydev.shared_core.io.FileUtils;
@@ -101,12 +102,16 @@ public class FileUtilsFileBuffer {
      * 
      * @return an object with the contents from a path within a zip file, having the return type
      * of the object specified by the parameter returnType.
+     * 
+     * Note: the zip file is kept opened in the ZipFilesCache (so that reading many modules from the same zip
+     * doesn't need to reopen it for each read).
      */
     public static Object getCustomReturnFromZip(File f, String pathInZip, Class<? extends Object> returnType)
             throws Exception {
 
-        ZipFile zipFile = new ZipFile(f, ZipFile.OPEN_READ);
+        ZipFilesCache.Handle handle = ZipFilesCache.acquire(f);
         try {
+            ZipFile zipFile = handle.getZipFile();
             InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(pathInZip));
             try {
                 return FileUtils.getStreamContents(inputStream, null, null, returnType);
@@ -114,7 +119,7 @@ public class FileUtilsFileBuffer {
                 inputStream.close();
             }
         } finally {
-            zipFile.close();
+            handle.release();
         }
     }
 
@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.python.pydev.core.ObjectsPool;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Index with the classes defined in the modules and their bases, so that the subclasses of a given class can be
+ * gotten without having to parse the modules (base name -> modules which have classes with that base).
+ *
+ * The bases are kept as written in the class statement (i.e.: 'mod.Base'), but they're matched by their last part
+ * (as the hierarchy view does when it parses the modules).
+ *
+ * Note that this class is thread-safe, but callers that must keep it in sync with other structures are
+ * still expected to synchronize on their own.
+ */
+public final class ClassHierarchyIndex {
+
+    /**
+     * Header written at the start of the file (so that we don't try to read garbage).
+     */
+    private static final int MAGIC = 0x50444348; //'PDCH'
+
+    /**
+     * Should be raised whenever the format written changes.
+     * 
+     * 2: the stamp of the save is written after the version
+     */
+    private static final int VERSION = 2;
+
+    private static final String[] EMPTY = new String[0];
+
+    /**
+     * A class and its bases.
+     */
+    private static final class ClassEntry {
+
+        private final String name;
+        private final String[] bases;
+
+        private ClassEntry(String name, String[] bases) {
+            this.name = name;
+            this.bases = bases;
+        }
+
+        private boolean hasBase(String baseName) {
+            for (String base : bases) {
+                if (getLastPart(base).equals(baseName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    /**
+     * module name -> classes in the module
+     */
+    private final Map<String, List<ClassEntry>> moduleToClasses = new HashMap<String, List<ClassEntry>>();
+
+    /**
+     * last part of the base name -> modules with a class with that base
+     */
+    private final Map<String, Set<String>> baseToModules = new HashMap<String, Set<String>>();
+
+    /**
+     * Whether something changed since it was last saved/loaded.
+     */
+    private boolean dirty;
+
+    /**
+     * The stamp of the contents last saved/loaded (0 if it was never saved/loaded).
+     */
+    private long stamp;
+
+    private static String getLastPart(String base) {
+        int i = base.lastIndexOf('.');
+        return i == -1 ? base : base.substring(i + 1);
+    }
+
+    /**
+     * @return whether the given module has its classes in this index.
+     */
+    public boolean hasModule(String moduleName) {
+        synchronized (lock) {
+            return moduleToClasses.containsKey(moduleName);
+        }
+    }
+
+    /**
+     * @return the number of modules indexed.
+     */
+    public int getModulesSize() {
+        synchronized (lock) {
+            return moduleToClasses.size();
+        }
+    }
+
+    /**
+     * Sets the classes for a given module (replacing any classes previously available for it).
+     *
+     * @param classes a list with the name of the class and its bases (as written in the class statement).
+     */
+    public void setClasses(String moduleName, List<Tuple<String, List<String>>> classes) {
+        synchronized (lock) {
+            removeModuleUnsynched(moduleName);
+            ArrayList<ClassEntry> entries = new ArrayList<ClassEntry>(classes.size());
+            for (Tuple<String, List<String>> tup : classes) {
+                String[] bases = tup.o2.size() == 0 ? EMPTY : tup.o2.toArray(new String[tup.o2.size()]);
+                entries.add(new ClassEntry(tup.o1, bases));
+            }
+            addModuleUnsynched(moduleName, entries);
+            dirty = true;
+        }
+    }
+
+    private void addModuleUnsynched(String moduleName, List<ClassEntry> entries) {
+        moduleToClasses.put(moduleName, entries);
+        for (ClassEntry entry : entries) {
+            for (String base : entry.bases) {
+                String lastPart = getLastPart(base);
+                Set<String> modules = baseToModules.get(lastPart);
+                if (modules == null) {
+                    modules = new HashSet<String>(2);
+                    baseToModules.put(lastPart, modules);
+                }
+                modules.add(moduleName);
+            }
+        }
+    }
+
+    /**
+     * Removes the classes for the given module.
+     */
+    public void removeModule(String moduleName) {
+        synchronized (lock) {
+            removeModuleUnsynched(moduleName);
+        }
+    }
+
+    private void removeModuleUnsynched(String moduleName) {
+        List<ClassEntry> entries = moduleToClasses.remove(moduleName);
+        if (entries != null) {
+            for (ClassEntry entry : entries) {
+                for (String base : entry.bases) {
+                    String lastPart = getLastPart(base);
+                    Set<String> modules = baseToModules.get(lastPart);
+                    if (modules != null) {
+                        modules.remove(moduleName);
+                        if (modules.size() == 0) {
+                            baseToModules.remove(lastPart);
+                        }
+                    }
+                }
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * @param baseName the name of the base class (without the module).
+     * @return a list with the module name and the class name of the classes which have the given base.
+     */
+    public List<Tuple<String, String>> getSubclasses(String baseName) {
+        synchronized (lock) {
+            ArrayList<Tuple<String, String>> ret = new ArrayList<Tuple<String, String>>();
+            Set<String> modules = baseToModules.get(baseName);
+            if (modules != null) {
+                for (String moduleName : modules) {
+                    for (ClassEntry entry : moduleToClasses.get(moduleName)) {
+                        if (entry.hasBase(baseName)) {
+                            ret.add(new Tuple<String, String>(moduleName, entry.name));
+                        }
+                    }
+                }
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * @return the bases (as written in the class statement) of the given class or null if it's not in the index.
+     */
+    public List<String> getBases(String moduleName, String className) {
+        synchronized (lock) {
+            List<ClassEntry> entries = moduleToClasses.get(moduleName);
+            if (entries != null) {
+                for (ClassEntry entry : entries) {
+                    if (entry.name.equals(className)) {
+                        ArrayList<String> ret = new ArrayList<String>(entry.bases.length);
+                        for (String base : entry.bases) {
+                            ret.add(base);
+                        }
+                        return ret;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            moduleToClasses.clear();
+            baseToModules.clear();
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return the stamp of the contents last saved or loaded (0 if it was never saved nor loaded).
+     */
+    public long getStamp() {
+        synchronized (lock) {
+            return stamp;
+        }
+    }
+
+    /**
+     * Saves the index to the given file (if it changed since it was last saved or loaded), giving it a new stamp.
+     * 
+     * The contents are written to a temporary file which then replaces the given file.
+     */
+    public void save(File file) throws IOException {
+        synchronized (lock) {
+            if (!dirty && file.exists()) {
+                return;
+            }
+            long newStamp = IndexFiles.newStamp();
+            File tempFile = IndexFiles.getTempFile(file);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                    1024 * 64));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(newStamp);
+
+                out.writeInt(moduleToClasses.size());
+                for (Entry<String, List<ClassEntry>> entry : moduleToClasses.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    List<ClassEntry> entries = entry.getValue();
+                    out.writeInt(entries.size());
+                    for (ClassEntry classEntry : entries) {
+                        out.writeUTF(classEntry.name);
+                        out.writeInt(classEntry.bases.length);
+                        for (String base : classEntry.bases) {
+                            out.writeUTF(base);
+                        }
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            IndexFiles.replace(tempFile, file);
+            stamp = newStamp;
+            dirty = false;
+        }
+    }
+
+    /**
+     * Loads an index previously saved with save().
+     *
+     * @return null if the file does not exist or if it's not in the expected format.
+     */
+    public static ClassHierarchyIndex load(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024 * 64));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            ClassHierarchyIndex index = new ClassHierarchyIndex();
+            index.stamp = in.readLong();
+            int modules = in.readInt();
+            for (int i = 0; i < modules; i++) {
+                String moduleName = ObjectsPool.intern(in.readUTF());
+                int classes = in.readInt();
+                ArrayList<ClassEntry> entries = new ArrayList<ClassEntry>(classes);
+                for (int j = 0; j < classes; j++) {
+                    String name = ObjectsPool.intern(in.readUTF());
+                    int basesLen = in.readInt();
+                    String[] bases = basesLen == 0 ? EMPTY : new String[basesLen];
+                    for (int k = 0; k < basesLen; k++) {
+                        bases[k] = ObjectsPool.intern(in.readUTF());
+                    }
+                    entries.add(new ClassEntry(name, bases));
+                }
+                index.addModuleUnsynched(moduleName, entries);
+            }
+            return index;
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -338,7 +338,8 @@ public final class DiskCache implements Serializable {
     }
 
     /**
-     * Adds to both: the memory and the disk
+     * Adds to both: the memory and the disk (if the value is null, a value previously added for the key is removed
+     * from both).
      */
     public void add(CompleteIndexKey key, CompleteIndexValue n) {
         synchronized (lock) {
@@ -354,6 +355,9 @@ public final class DiskCache implements Serializable {
                 if (DEBUG) {
                     System.out.println("Disk cache - Adding: " + key + " with empty value (computed on demand).");
                 }
+                //A value previously added for the key is obsolete.
+                cache.remove(key);
+                getFileForKey(key).delete();
             }
             keys.put(key, key);
         }
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Helpers for the indexes which are saved to their own files (InvertedTokenIndex and ClassHierarchyIndex).
+ *
+ * Each save gets a new stamp (written in the file), so that clients which save other info related to the index
+ * in a different file may also keep the stamp there and check that both were saved together when restoring.
+ */
+final class IndexFiles {
+
+    private static long lastStamp;
+
+    private IndexFiles() {
+    }
+
+    /**
+     * @return a new (unique) stamp for a save.
+     */
+    static synchronized long newStamp() {
+        lastStamp = Math.max(lastStamp + 1, System.currentTimeMillis());
+        return lastStamp;
+    }
+
+    /**
+     * @return the temporary file where the contents for the given file should be written (before calling replace).
+     */
+    static File getTempFile(File file) {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Replaces the given file with the temporary file (so that a crash while writing never leaves a partially
+     * written index in place).
+     */
+    static void replace(File tempFile, File file) throws IOException {
+        if (!tempFile.renameTo(file)) {
+            //i.e.: on windows it can't be renamed if the target already exists
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Unable to rename: " + tempFile + " to: " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.python.pydev.core.ObjectsPool;
+
+/**
+ * An inverted index which maps a token to the modules where that token appears (token -> posting list of
+ * module ids).
+ *
+ * Modules are mapped to ints (and the posting lists are kept as int arrays) so that the memory needed is
+ * kept as low as possible.
+ *
+ * Removing a module only marks its id as dead (its postings are skipped when querying). When there are too
+ * many dead ids, the postings are compacted.
+ *
+ * Note that this class is thread-safe, but callers that must keep it in sync with other structures are
+ * still expected to synchronize on their own.
+ */
+public final class InvertedTokenIndex {
+
+    /**
+     * Header written at the start of the file (so that we don't try to read garbage).
+     */
+    private static final int MAGIC = 0x50444949; //'PDII'
+
+    /**
+     * Should be raised whenever the format written changes.
+     * 
+     * 2: the stamp of the save is written after the version
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Only compact when at least this number of ids is dead (and they're more than the live ids).
+     */
+    private static final int MIN_DEAD_TO_COMPACT = 1000;
+
+    /**
+     * A growable array of ints (used for the posting lists).
+     */
+    private static final class IntList {
+
+        private int[] values;
+        private int size;
+
+        private IntList(int initialCapacity) {
+            values = new int[initialCapacity];
+        }
+
+        private void add(int v) {
+            //Ids are always added in ascending order, so, a repeated id can only be the last one.
+            if (size > 0 && values[size - 1] == v) {
+                return;
+            }
+            if (size == values.length) {
+                int[] newValues = new int[values.length * 2];
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+            values[size++] = v;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    /**
+     * token -> ids of the modules containing the token (always sorted in ascending order).
+     */
+    private Map<String, IntList> postings = new HashMap<String, IntList>();
+
+    /**
+     * module name -> module id
+     */
+    private Map<String, Integer> moduleToId = new HashMap<String, Integer>();
+
+    /**
+     * module id -> module name (null if the given id is dead).
+     */
+    private ArrayList<String> idToModule = new ArrayList<String>();
+
+    private int deadIds;
+
+    /**
+     * Whether something changed since it was last saved/loaded.
+     */
+    private boolean dirty;
+
+    /**
+     * The stamp of the contents last saved/loaded (0 if it was never saved/loaded).
+     */
+    private long stamp;
+
+    /**
+     * @return whether the given module has its tokens in this index.
+     */
+    public boolean hasModule(String moduleName) {
+        synchronized (lock) {
+            return moduleToId.containsKey(moduleName);
+        }
+    }
+
+    /**
+     * @return the number of modules indexed.
+     */
+    public int getModulesSize() {
+        synchronized (lock) {
+            return moduleToId.size();
+        }
+    }
+
+    /**
+     * @return the number of different tokens indexed.
+     */
+    public int getTokensSize() {
+        synchronized (lock) {
+            return postings.size();
+        }
+    }
+
+    /**
+     * Sets the tokens for a given module (replacing any tokens previously available for it).
+     */
+    public void setTokens(String moduleName, Collection<String> tokens) {
+        synchronized (lock) {
+            removeModuleUnsynched(moduleName);
+
+            int id = idToModule.size();
+            idToModule.add(moduleName);
+            moduleToId.put(moduleName, id);
+
+            for (String token : tokens) {
+                IntList list = postings.get(token);
+                if (list == null) {
+                    list = new IntList(2);
+                    postings.put(token, list);
+                }
+                list.add(id);
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Removes the tokens for the given module.
+     */
+    public void removeModule(String moduleName) {
+        synchronized (lock) {
+            removeModuleUnsynched(moduleName);
+            if (deadIds >= MIN_DEAD_TO_COMPACT && deadIds > moduleToId.size()) {
+                compact();
+            }
+        }
+    }
+
+    private void removeModuleUnsynched(String moduleName) {
+        Integer id = moduleToId.remove(moduleName);
+        if (id != null) {
+            idToModule.set(id, null);
+            deadIds++;
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return the names of the modules which have the given token.
+     */
+    public List<String> getModulesWithToken(String token) {
+        synchronized (lock) {
+            IntList list = postings.get(token);
+            if (list == null) {
+                return new ArrayList<String>(0);
+            }
+            ArrayList<String> ret = new ArrayList<String>(list.size);
+            int[] values = list.values;
+            for (int i = 0; i < list.size; i++) {
+                String moduleName = idToModule.get(values[i]);
+                if (moduleName != null) {
+                    ret.add(moduleName);
+                }
+            }
+            return ret;
+        }
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            postings.clear();
+            moduleToId.clear();
+            idToModule.clear();
+            deadIds = 0;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Removes dead ids from the postings (remapping the live ids so that they're contiguous again).
+     */
+    private void compact() {
+        int size = idToModule.size();
+        int[] oldToNew = new int[size];
+        ArrayList<String> newIdToModule = new ArrayList<String>(moduleToId.size());
+        for (int i = 0; i < size; i++) {
+            String moduleName = idToModule.get(i);
+            if (moduleName == null) {
+                oldToNew[i] = -1;
+            } else {
+                oldToNew[i] = newIdToModule.size();
+                moduleToId.put(moduleName, oldToNew[i]);
+                newIdToModule.add(moduleName);
+            }
+        }
+
+        Iterator<IntList> it = postings.values().iterator();
+        while (it.hasNext()) {
+            IntList list = it.next();
+            int[] values = list.values;
+            int newSize = 0;
+            for (int i = 0; i < list.size; i++) {
+                int newId = oldToNew[values[i]];
+                if (newId != -1) {
+                    values[newSize++] = newId; //remapping keeps the ordering
+                }
+            }
+            if (newSize == 0) {
+                it.remove();
+            } else {
+                list.size = newSize;
+            }
+        }
+        idToModule = newIdToModule;
+        deadIds = 0;
+    }
+
+    /**
+     * @return the stamp of the contents last saved or loaded (0 if it was never saved nor loaded).
+     */
+    public long getStamp() {
+        synchronized (lock) {
+            return stamp;
+        }
+    }
+
+    /**
+     * Saves the index to the given file (if it changed since it was last saved or loaded), giving it a new stamp.
+     * 
+     * The contents are written to a temporary file which then replaces the given file.
+     */
+    public void save(File file) throws IOException {
+        synchronized (lock) {
+            if (!dirty && file.exists()) {
+                return;
+            }
+            if (deadIds > 0) {
+                compact();
+            }
+            long newStamp = IndexFiles.newStamp();
+            File tempFile = IndexFiles.getTempFile(file);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+                    1024 * 64));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(newStamp);
+
+                int size = idToModule.size();
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeUTF(idToModule.get(i));
+                }
+
+                out.writeInt(postings.size());
+                for (Entry<String, IntList> entry : postings.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    IntList list = entry.getValue();
+                    out.writeInt(list.size);
+                    int[] values = list.values;
+                    for (int i = 0; i < list.size; i++) {
+                        out.writeInt(values[i]);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            IndexFiles.replace(tempFile, file);
+            stamp = newStamp;
+            dirty = false;
+        }
+    }
+
+    /**
+     * Loads an index previously saved with save().
+     *
+     * @return null if the file does not exist or if it's not in the expected format.
+     */
+    public static InvertedTokenIndex load(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024 * 64));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            InvertedTokenIndex index = new InvertedTokenIndex();
+            index.stamp = in.readLong();
+            int size = in.readInt();
+            index.idToModule.ensureCapacity(size);
+            for (int i = 0; i < size; i++) {
+                String moduleName = ObjectsPool.intern(in.readUTF());
+                index.idToModule.add(moduleName);
+                index.moduleToId.put(moduleName, i);
+            }
+
+            int tokens = in.readInt();
+            for (int i = 0; i < tokens; i++) {
+                String token = in.readUTF();
+                int listSize = in.readInt();
+                IntList list = new IntList(Math.max(1, listSize));
+                for (int j = 0; j < listSize; j++) {
+                    int id = in.readInt();
+                    if (id < 0 || id >= size) {
+                        return null; //Corrupted
+                    }
+                    list.values[j] = id;
+                }
+                list.size = listSize;
+                index.postings.put(token, list);
+            }
+            return index;
+        } finally {
+            in.close();
+        }
+    }
+
+}
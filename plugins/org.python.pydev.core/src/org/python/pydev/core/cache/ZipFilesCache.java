@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.core.log.Log;
+
+/**
+ * Keeps a bounded number of zip files (i.e.: eggs, jars, zipped libraries) open so that reading many modules from
+ * the same zip doesn't have to reopen it (and read its central directory) for each module read.
+ *
+ * The zips are keyed by their absolute path and a zip is reopened if its modification time or size changes.
+ *
+ * Clients must release each handle they acquire:
+ *
+ * <pre>
+ * ZipFilesCache.Handle handle = ZipFilesCache.acquire(f);
+ * try {
+ *     ZipFile zipFile = handle.getZipFile();
+ *     ...
+ * } finally {
+ *     handle.release();
+ * }
+ * </pre>
+ *
+ * A zip removed from the cache (because of the size limit or because it changed) is only closed after all the
+ * handles acquired for it are released, so, reads may be done concurrently (the ZipFile itself is thread-safe).
+ *
+ * Zips not used for some time are closed (so that they aren't kept locked after they're no longer needed).
+ */
+public final class ZipFilesCache {
+
+    /**
+     * The maximum number of zip files kept open.
+     */
+    public static final int MAX_OPEN_ZIP_FILES = 20;
+
+    /**
+     * Zip files not used for this time are closed.
+     */
+    public static final long CLOSE_IDLE_AFTER_MILLIS = 60 * 1000;
+
+    /**
+     * A zip file opened by the cache.
+     */
+    public static final class Handle {
+
+        private final ZipFile zipFile;
+        private final long lastModified;
+        private final long length;
+
+        /**
+         * The number of clients using it (guarded by the cache lock).
+         */
+        private int refCount;
+
+        /**
+         * Whether it was already removed from the cache (guarded by the cache lock).
+         */
+        private boolean removed;
+
+        /**
+         * The last time it was released (guarded by the cache lock).
+         */
+        private long lastUsed;
+
+        private Handle(ZipFile zipFile, long lastModified, long length) {
+            this.zipFile = zipFile;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        public ZipFile getZipFile() {
+            return zipFile;
+        }
+
+        /**
+         * Must be called when the client is done with the zip file (it may be closed afterwards).
+         */
+        public void release() {
+            synchronized (lock) {
+                refCount--;
+                if (refCount < 0) {
+                    Log.log("Zip file handle released more times than acquired: " + zipFile.getName());
+                    refCount = 0;
+                }
+                lastUsed = System.currentTimeMillis();
+                closeIfUnused(this);
+                if (!closeIdleScheduled && !removed) {
+                    closeIdleScheduled = true;
+                    closeIdle.schedule(CLOSE_IDLE_AFTER_MILLIS);
+                }
+            }
+        }
+    }
+
+    private static final Object lock = new Object();
+
+    /**
+     * Absolute path -> handle (in access order).
+     */
+    private static final Map<String, Handle> cache = new LinkedHashMap<String, Handle>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Handle> eldest) {
+            if (size() > MAX_OPEN_ZIP_FILES) {
+                Handle handle = eldest.getValue();
+                handle.removed = true;
+                closeIfUnused(handle);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Whether the job to close the idle zips is scheduled (guarded by the lock).
+     */
+    private static boolean closeIdleScheduled = false;
+
+    private static final Job closeIdle = new JobCloseIdle();
+
+    private static class JobCloseIdle extends Job {
+
+        public JobCloseIdle() {
+            super("Close idle zip files");
+            setSystem(true);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            closeIdle(System.currentTimeMillis() - CLOSE_IDLE_AFTER_MILLIS);
+            return Status.OK_STATUS;
+        }
+    }
+
+    private ZipFilesCache() {
+    }
+
+    /**
+     * @return a handle to the (opened) zip file. The returned handle must be released after it's used.
+     * @throws IOException if the zip file could not be opened.
+     */
+    public static Handle acquire(File f) throws IOException {
+        String key = f.getAbsolutePath();
+        long lastModified = f.lastModified();
+        long length = f.length();
+
+        synchronized (lock) {
+            Handle handle = cache.get(key);
+            if (handle != null) {
+                if (handle.lastModified == lastModified && handle.length == length) {
+                    handle.refCount++;
+                    return handle;
+                }
+                //the zip changed: it'll be closed when no longer used.
+                cache.remove(key);
+                handle.removed = true;
+                closeIfUnused(handle);
+            }
+        }
+
+        //Open it without holding the lock (another thread may open the same zip meanwhile, in which case the zip
+        //opened last is the one kept in the cache).
+        Handle handle = new Handle(new ZipFile(f, ZipFile.OPEN_READ), lastModified, length);
+        synchronized (lock) {
+            handle.refCount++;
+            Handle old = cache.put(key, handle);
+            if (old != null) {
+                old.removed = true;
+                closeIfUnused(old);
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * Closes all the zip files which are not currently in use (the ones in use are closed when released).
+     */
+    public static void clear() {
+        List<Handle> handles;
+        synchronized (lock) {
+            handles = new ArrayList<Handle>(cache.values());
+            cache.clear();
+            for (Handle handle : handles) {
+                handle.removed = true;
+                closeIfUnused(handle);
+            }
+        }
+    }
+
+    /**
+     * Closes the zip files which are not in use and weren't used since the given time.
+     */
+    /*default*/static void closeIdle(long usedBefore) {
+        synchronized (lock) {
+            closeIdleScheduled = false;
+            Iterator<Handle> it = cache.values().iterator();
+            while (it.hasNext()) {
+                Handle handle = it.next();
+                if (handle.refCount == 0 && handle.lastUsed <= usedBefore) {
+                    it.remove();
+                    handle.removed = true;
+                    closeIfUnused(handle);
+                }
+            }
+            if (cache.size() > 0) {
+                //check the remaining ones later on.
+                closeIdleScheduled = true;
+                closeIdle.schedule(CLOSE_IDLE_AFTER_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * @return the number of zip files currently kept in the cache.
+     */
+    public static int size() {
+        synchronized (lock) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return whether the cache has an opened zip for the passed file.
+     */
+    public static boolean isCached(File f) {
+        String key = f.getAbsolutePath();
+        synchronized (lock) {
+            return cache.containsKey(key); //note: containsKey doesn't change the access order
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private static void closeIfUnused(Handle handle) {
+        if (handle.removed && handle.refCount == 0) {
+            try {
+                handle.zipFile.close();
+            } catch (IOException e) {
+                Log.log(e);
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -958,6 +959,81 @@ public final class StringUtils extends org.python.pydev.shared_core.string.Strin
         return result;
     }
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Same as URLDecoder.decode(value, "UTF-8") but faster (returns the same string if there's nothing to decode,
+     * writes directly to a char array and only creates a string for escape sequences which aren't ascii).
+     *
+     * @throws IllegalArgumentException if the value has an invalid escape sequence.
+     */
+    public static String urlDecodeUTF8(final String value) {
+        final int len = value.length();
+        int i = 0;
+        for (; i < len; i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '+') {
+                break;
+            }
+        }
+        if (i == len) {
+            return value;
+        }
+
+        char[] chars = new char[len];
+        value.getChars(0, i, chars, 0);
+        int pos = i;
+        byte[] bytes = null;
+        while (i < len) {
+            char c = value.charAt(i);
+            if (c == '+') {
+                chars[pos++] = ' ';
+                i++;
+
+            } else if (c == '%') {
+                int b = decodeEscape(value, i);
+                if (b < 0x80) {
+                    chars[pos++] = (char) b;
+                    i += 3;
+                } else {
+                    //Non-ascii: get all the bytes in the sequence and decode them as utf-8.
+                    if (bytes == null) {
+                        bytes = new byte[(len - i) / 3];
+                    }
+                    int nBytes = 0;
+                    while (i < len && value.charAt(i) == '%') {
+                        bytes[nBytes++] = (byte) decodeEscape(value, i);
+                        i += 3;
+                    }
+                    String decoded = new String(bytes, 0, nBytes, UTF8);
+                    int decodedLen = decoded.length();
+                    decoded.getChars(0, decodedLen, chars, pos);
+                    pos += decodedLen;
+                }
+
+            } else {
+                chars[pos++] = c;
+                i++;
+            }
+        }
+        return new String(chars, 0, pos);
+    }
+
+    /**
+     * @return the byte for the escape sequence (%xx) starting at the given position.
+     */
+    private static int decodeEscape(final String value, final int i) {
+        if (i + 2 >= value.length()) {
+            throw new IllegalArgumentException("Incomplete escape sequence in: " + value);
+        }
+        int high = Character.digit(value.charAt(i + 1), 16);
+        int low = Character.digit(value.charAt(i + 2), 16);
+        if (high < 0 || low < 0) {
+            throw new IllegalArgumentException("Invalid escape sequence in: " + value);
+        }
+        return (high << 4) + low;
+    }
+
     public static boolean containsWhitespace(final String name) {
         final int len = name.length();
         for (int i = 0; i < len; i++) {
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+public class ClassHierarchyIndexTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ClassHierarchyIndexTest.class);
+    }
+
+    private static List<Tuple<String, List<String>>> createClasses(String... classAndBases) {
+        List<Tuple<String, List<String>>> ret = new ArrayList<Tuple<String, List<String>>>();
+        for (String s : classAndBases) {
+            List<String> parts = Arrays.asList(s.split(":"));
+            ret.add(new Tuple<String, List<String>>(parts.get(0), new ArrayList<String>(parts.subList(1,
+                    parts.size()))));
+        }
+        return ret;
+    }
+
+    private static List<String> getSubclasses(ClassHierarchyIndex index, String baseName) {
+        List<String> ret = new ArrayList<String>();
+        for (Tuple<String, String> tup : index.getSubclasses(baseName)) {
+            ret.add(tup.o1 + "." + tup.o2);
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    public void testAddRemove() throws Exception {
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        index.setClasses("mod1", createClasses("A:object", "B:A", "C:mod2.D:A"));
+        index.setClasses("mod2", createClasses("D", "E:mod1.B"));
+
+        assertEquals(Arrays.asList("mod1.B", "mod1.C"), getSubclasses(index, "A"));
+        assertEquals(Arrays.asList("mod1.C"), getSubclasses(index, "D"));
+        assertEquals(Arrays.asList("mod2.E"), getSubclasses(index, "B"));
+        assertEquals(0, getSubclasses(index, "E").size());
+        assertEquals(Arrays.asList("mod2.D", "A"), index.getBases("mod1", "C"));
+        assertNull(index.getBases("mod1", "D"));
+
+        index.setClasses("mod1", createClasses("B:object"));
+        assertEquals(0, getSubclasses(index, "A").size());
+        assertEquals(0, getSubclasses(index, "D").size());
+        assertEquals(Arrays.asList("mod1.B"), getSubclasses(index, "object"));
+
+        index.removeModule("mod2");
+        assertFalse(index.hasModule("mod2"));
+        assertTrue(index.hasModule("mod1"));
+        assertEquals(0, getSubclasses(index, "B").size());
+        assertEquals(1, index.getModulesSize());
+
+        //A module without classes is still in the index (so that it's not recomputed).
+        index.setClasses("mod3", createClasses());
+        assertTrue(index.hasModule("mod3"));
+    }
+
+    public void testSaveLoad() throws Exception {
+        File file = File.createTempFile("class_hierarchy_index", ".index");
+        try {
+            ClassHierarchyIndex index = new ClassHierarchyIndex();
+            index.setClasses("mod1", createClasses("A:object", "B:A"));
+            index.setClasses("pack.mod2", createClasses("C:mod1.A:pack.Other"));
+            index.setClasses("mod3", createClasses());
+            index.save(file);
+            assertTrue(index.getStamp() != 0);
+
+            ClassHierarchyIndex loaded = ClassHierarchyIndex.load(file);
+            assertEquals(index.getStamp(), loaded.getStamp());
+            assertEquals(3, loaded.getModulesSize());
+            assertTrue(loaded.hasModule("mod3"));
+            assertEquals(Arrays.asList("mod1.B", "pack.mod2.C"), getSubclasses(loaded, "A"));
+            assertEquals(Arrays.asList("pack.mod2.C"), getSubclasses(loaded, "Other"));
+            assertEquals(Arrays.asList("mod1.A", "pack.Other"), loaded.getBases("pack.mod2", "C"));
+
+            FileUtils.writeStrToFile("invalid", file);
+            assertNull(ClassHierarchyIndex.load(file));
+        } finally {
+            file.delete();
+        }
+        assertNull(ClassHierarchyIndex.load(file));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.io.FileUtils;
+
+public class DiskCacheTest extends TestCase {
+
+    private File baseDir;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DiskCacheTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File(System.getProperty("java.io.tmpdir")), "disk_cache");
+        baseDir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private int countEntryFiles() {
+        File[] files = baseDir.listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+    public void testEntryFilesRemoved() throws Exception {
+        DiskCache cache = new DiskCache(baseDir, ".v1_test", new ICallback<CompleteIndexValue, String>() {
+
+            public CompleteIndexValue call(String arg) {
+                CompleteIndexValue value = new CompleteIndexValue();
+                value.entries = new HashSet<String>();
+                value.entries.add(arg);
+                return value;
+            }
+        }, new ICallback<String, CompleteIndexValue>() {
+
+            public String call(CompleteIndexValue arg) {
+                return arg.entries.iterator().next();
+            }
+        });
+        CompleteIndexValue value = new CompleteIndexValue();
+        value.entries = new HashSet<String>();
+        value.entries.add("token");
+
+        cache.add(new CompleteIndexKey("mod1"), value);
+        cache.add(new CompleteIndexKey("mod2"), value);
+        assertEquals(2, countEntryFiles());
+
+        //Reindexed (the value is computed on demand): the entry saved before is obsolete.
+        cache.add(new CompleteIndexKey("mod1"), null);
+        assertEquals(1, countEntryFiles());
+        assertTrue(cache.keys().containsKey(new CompleteIndexKey("mod1")));
+
+        cache.remove(new CompleteIndexKey("mod2"));
+        assertEquals(0, countEntryFiles());
+        assertEquals(1, cache.keys().size());
+    }
+}
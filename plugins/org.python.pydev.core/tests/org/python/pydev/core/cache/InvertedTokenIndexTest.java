@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class InvertedTokenIndexTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(InvertedTokenIndexTest.class);
+    }
+
+    public void testAddRemove() throws Exception {
+        InvertedTokenIndex index = new InvertedTokenIndex();
+        index.setTokens("mod1", Arrays.asList("a", "b", "c"));
+        index.setTokens("mod2", Arrays.asList("b", "c", "d"));
+
+        assertEquals(Arrays.asList("mod1"), index.getModulesWithToken("a"));
+        assertEquals(Arrays.asList("mod1", "mod2"), index.getModulesWithToken("b"));
+        assertEquals(0, index.getModulesWithToken("e").size());
+
+        index.setTokens("mod1", Arrays.asList("e"));
+        assertEquals(0, index.getModulesWithToken("a").size());
+        assertEquals(Arrays.asList("mod2"), index.getModulesWithToken("b"));
+        assertEquals(Arrays.asList("mod1"), index.getModulesWithToken("e"));
+
+        index.removeModule("mod2");
+        assertFalse(index.hasModule("mod2"));
+        assertEquals(0, index.getModulesWithToken("b").size());
+        assertEquals(1, index.getModulesSize());
+    }
+
+    public void testCompact() throws Exception {
+        InvertedTokenIndex index = new InvertedTokenIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.setTokens("mod" + i, Arrays.asList("tok" + (i % 10), "all"));
+        }
+        for (int i = 0; i < 2500; i++) {
+            index.removeModule("mod" + i);
+        }
+        List<String> modules = index.getModulesWithToken("all");
+        assertEquals(500, modules.size());
+        assertEquals("mod2500", modules.get(0));
+        assertEquals(50, index.getModulesWithToken("tok3").size());
+
+        index.setTokens("new", Arrays.asList("all"));
+        assertEquals(501, index.getModulesWithToken("all").size());
+    }
+
+    public void testSaveLoad() throws Exception {
+        File file = File.createTempFile("inverted_token_index", ".index");
+        try {
+            InvertedTokenIndex index = new InvertedTokenIndex();
+            index.setTokens("mod1", Arrays.asList("a", "b"));
+            index.setTokens("mod2", Arrays.asList("b"));
+            index.setTokens("mod3", Arrays.asList("c"));
+            index.removeModule("mod1");
+            assertEquals(0, index.getStamp());
+            index.save(file);
+            long stamp = index.getStamp();
+            assertTrue(stamp != 0);
+            index.save(file); //not changed: not saved again
+            assertEquals(stamp, index.getStamp());
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+
+            InvertedTokenIndex loaded = InvertedTokenIndex.load(file);
+            assertEquals(stamp, loaded.getStamp());
+            assertEquals(2, loaded.getModulesSize());
+            assertEquals(0, loaded.getModulesWithToken("a").size());
+            assertEquals(Arrays.asList("mod2"), loaded.getModulesWithToken("b"));
+            assertEquals(Arrays.asList("mod3"), loaded.getModulesWithToken("c"));
+
+            loaded.setTokens("mod4", Arrays.asList("d"));
+            loaded.save(file);
+            assertTrue(loaded.getStamp() > stamp);
+            assertEquals(loaded.getStamp(), InvertedTokenIndex.load(file).getStamp());
+        } finally {
+            file.delete();
+        }
+        assertNull(InvertedTokenIndex.load(file));
+    }
+}
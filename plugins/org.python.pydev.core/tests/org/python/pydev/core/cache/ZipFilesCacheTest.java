@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.shared_core.io.FileUtils;
+
+public class ZipFilesCacheTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ZipFilesCacheTest.class);
+    }
+
+    private File baseDir;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        ZipFilesCache.clear();
+        baseDir = new File(FileUtils.getFileAbsolutePath(new File("ZipFilesCacheTest.temporary_dir")));
+        FileUtils.deleteDirectoryTree(baseDir);
+        baseDir.mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        ZipFilesCache.clear();
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private File createZip(String name, String contents) throws Exception {
+        File f = new File(baseDir, name);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f));
+        try {
+            out.putNextEntry(new ZipEntry("mod.py"));
+            out.write(contents.getBytes("utf-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+
+    private String read(ZipFile zipFile) throws Exception {
+        return (String) FileUtils.getStreamContents(zipFile.getInputStream(zipFile.getEntry("mod.py")), null, null,
+                String.class);
+    }
+
+    private boolean isClosed(ZipFile zipFile) {
+        try {
+            zipFile.entries();
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    public void testReuse() throws Exception {
+        File f = createZip("a.zip", "a = 10");
+        ZipFilesCache.Handle handle = ZipFilesCache.acquire(f);
+        ZipFilesCache.Handle handle2 = ZipFilesCache.acquire(f);
+        assertSame(handle, handle2);
+        assertEquals("a = 10", read(handle.getZipFile()));
+        handle.release();
+        handle2.release();
+
+        assertTrue(ZipFilesCache.isCached(f));
+        assertFalse(isClosed(handle.getZipFile()));
+        assertSame(handle, ZipFilesCache.acquire(f));
+        handle.release();
+    }
+
+    public void testZipChanged() throws Exception {
+        File f = createZip("a.zip", "a = 10");
+        ZipFilesCache.Handle handle = ZipFilesCache.acquire(f);
+
+        createZip("a.zip", "a = 20 # changed");
+        f.setLastModified(f.lastModified() + 2000);
+        ZipFilesCache.Handle handle2 = ZipFilesCache.acquire(f);
+        assertNotSame(handle, handle2);
+        assertEquals("a = 20 # changed", read(handle2.getZipFile()));
+
+        //still in use: only closed after released.
+        assertFalse(isClosed(handle.getZipFile()));
+        handle.release();
+        assertTrue(isClosed(handle.getZipFile()));
+        handle2.release();
+        assertEquals(1, ZipFilesCache.size());
+    }
+
+    public void testEviction() throws Exception {
+        File first = createZip("first.zip", "a = 10");
+        ZipFilesCache.Handle inUse = ZipFilesCache.acquire(first);
+
+        List<ZipFilesCache.Handle> handles = new ArrayList<ZipFilesCache.Handle>();
+        for (int i = 0; i < ZipFilesCache.MAX_OPEN_ZIP_FILES + 1; i++) {
+            ZipFilesCache.Handle handle = ZipFilesCache.acquire(createZip("z" + i + ".zip", "a = " + i));
+            handle.release();
+            handles.add(handle);
+        }
+        assertEquals(ZipFilesCache.MAX_OPEN_ZIP_FILES, ZipFilesCache.size());
+        assertFalse(ZipFilesCache.isCached(first));
+        assertTrue(isClosed(handles.get(0).getZipFile()));
+        assertFalse(isClosed(handles.get(1).getZipFile()));
+
+        //evicted but still in use
+        assertEquals("a = 10", read(inUse.getZipFile()));
+        inUse.release();
+        assertTrue(isClosed(inUse.getZipFile()));
+    }
+
+    public void testCloseIdle() throws Exception {
+        File f = createZip("a.zip", "a = 10");
+        File f2 = createZip("b.zip", "b = 10");
+        ZipFilesCache.Handle handle = ZipFilesCache.acquire(f);
+        handle.release();
+        ZipFilesCache.Handle handle2 = ZipFilesCache.acquire(f2);
+
+        ZipFilesCache.closeIdle(System.currentTimeMillis());
+        assertTrue(isClosed(handle.getZipFile()));
+        assertFalse(ZipFilesCache.isCached(f));
+
+        //in use: not closed
+        assertFalse(isClosed(handle2.getZipFile()));
+        assertTrue(ZipFilesCache.isCached(f2));
+        handle2.release();
+    }
+}
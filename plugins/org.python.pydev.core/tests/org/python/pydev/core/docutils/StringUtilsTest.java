@@ -9,6 +9,7 @@
  */
 package org.python.pydev.core.docutils;
 
+import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -791,4 +792,24 @@ public class StringUtilsTest extends TestCase {
         String s = "a";
         assertEquals(StringUtils.isValidTextString(s.getBytes(), 4), true);
     }
+
+    public void testUrlDecodeUTF8() throws Exception {
+        String[] values = new String[] { "", "plain", "a%20b", "a+b", "%E2%82%AC+x%25", "%C3%A9t%C3%A9",
+                "mixed%3A%20%C3%A9%20%7B%27a%27%3A%201%7D" };
+        for (String value : values) {
+            assertEquals(URLDecoder.decode(value, "UTF-8"), StringUtils.urlDecodeUTF8(value));
+        }
+        String plain = "plain";
+        assertSame(plain, StringUtils.urlDecodeUTF8(plain));
+
+        String[] invalid = new String[] { "%", "x%2", "%zz" };
+        for (String value : invalid) {
+            try {
+                StringUtils.urlDecodeUTF8(value);
+                fail("Expected exception for: " + value);
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+    }
 }
@@ -100,6 +100,12 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
 
     private PyRunToLineTarget runToLineTarget;
 
+    /**
+     * Incremented whenever a thread is suspended or resumed (so that the values gotten before are no longer
+     * considered valid).
+     */
+    private volatile int suspendGeneration;
+
     public AbstractDebugTarget() {
         modificationChecker = new ValueModificationChecker();
     }
@@ -108,6 +114,13 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
         return modificationChecker;
     }
 
+    /**
+     * @return a number which changes whenever some thread is suspended or resumed.
+     */
+    public int getSuspendGeneration() {
+        return suspendGeneration;
+    }
+
     public abstract boolean canTerminate();
 
     public abstract boolean isTerminated();
@@ -519,6 +532,7 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
             }
         }
         if (t != null) {
+            suspendGeneration++;
             modificationChecker.onlyLeaveThreads(this.threads);
 
             IStackFrame stackFrame[] = (IStackFrame[]) threadNstack[2];
@@ -577,6 +591,7 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
             String threadID = threadIdAndReason.o1;
             PyThread t = findThreadByID(threadID);
             if (t != null) {
+                suspendGeneration++;
                 t.setSuspended(false, null);
                 fireEvent(new DebugEvent(t, DebugEvent.RESUME, resumeReason));
 
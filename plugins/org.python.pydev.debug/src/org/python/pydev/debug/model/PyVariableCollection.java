@@ -10,16 +10,23 @@
  */
 package org.python.pydev.debug.model;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IIndexedValue;
 import org.eclipse.debug.core.model.IVariable;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
+import org.python.pydev.debug.model.remote.GetVariableRangeCommand;
 import org.python.pydev.debug.model.remote.ICommandResponseListener;
+import org.python.pydev.shared_core.cache.LRUCache;
+import org.python.pydev.shared_core.structure.Tuple;
 
 
 /**
@@ -27,8 +34,27 @@ import org.python.pydev.debug.model.remote.ICommandResponseListener;
  * 
  * It knows how to fetch its contents over the network.
  * 
+ * When pydevd reports the size of the container and it's too big, its children are gotten in pages
+ * (as an IIndexedValue, so, the variables view will partition it and only ask for the variables of
+ * the partitions expanded).
  */
-public class PyVariableCollection extends PyVariable implements ICommandResponseListener, IVariableLocator {
+public class PyVariableCollection extends PyVariable implements ICommandResponseListener, IVariableLocator,
+        IIndexedValue {
+
+    /**
+     * Containers with more children than this are gotten in pages.
+     */
+    public static final int MAX_CHILDREN_NOT_PAGED = 500;
+
+    /**
+     * Max time to wait for a page of variables.
+     */
+    private static final int PAGE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Max number of pages kept for a container (the variables view keeps the ones it's showing).
+     */
+    private static final int MAX_PAGES_CACHED = 20;
 
     PyVariable[] variables = new PyVariable[0];
     IVariable[] waitVariables = null;
@@ -49,9 +75,40 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
 
     private boolean fireChangeEvent = true;
 
+    /**
+     * The number of children in the container (-1 if not reported by pydevd).
+     */
+    private int size = -1;
+
+    /**
+     * (offset, length) -> variables in that page.
+     */
+    private final LRUCache<Tuple<Integer, Integer>, PyVariable[]> pages;
+
+    /**
+     * The suspend generation of the target when the pages were cached (they're discarded when a thread
+     * is resumed or suspended).
+     */
+    private int pagesSuspendGeneration;
+
     public PyVariableCollection(AbstractDebugTarget target, String name, String type, String value,
             IVariableLocator locator) {
         super(target, name, type, value, locator);
+        pages = new LRUCache<Tuple<Integer, Integer>, PyVariable[]>(MAX_PAGES_CACHED);
+    }
+
+    /**
+     * Sets the number of children in this container.
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return whether the children of this container should be gotten in pages.
+     */
+    public boolean isPaged() {
+        return size > MAX_CHILDREN_NOT_PAGED;
     }
 
     public String getDetailText() throws DebugException {
@@ -143,7 +200,94 @@ public class PyVariableCollection extends PyVariable implements ICommandResponse
         }
     }
 
+    /**
+     * Gets the variables for the given page (the variables view asks for each partition expanded).
+     */
+    public IVariable[] getVariables(int offset, int length) throws DebugException {
+        if (!isPaged()) {
+            //Size not reported (or small): get all the children in a single request.
+            IVariable[] all = getVariables();
+            if (networkState != NETWORK_REQUEST_ARRIVED) {
+                return all;
+            }
+            int start = Math.min(offset, all.length);
+            int end = Math.min(offset + length, all.length);
+            IVariable[] ret = new IVariable[end - start];
+            System.arraycopy(all, start, ret, 0, ret.length);
+            return ret;
+        }
+        Tuple<Integer, Integer> key = new Tuple<Integer, Integer>(offset, length);
+        int suspendGeneration = target.getSuspendGeneration();
+        synchronized (pages) {
+            if (pagesSuspendGeneration != suspendGeneration) {
+                pages.clear();
+                pagesSuspendGeneration = suspendGeneration;
+            }
+            PyVariable[] page = pages.getObj(key);
+            if (page != null) {
+                return page;
+            }
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        GetVariableRangeCommand cmd = new GetVariableRangeCommand(target, getPyDBLocation(), offset, offset + length);
+        cmd.setCompletionListener(new ICommandResponseListener() {
+
+            public void commandComplete(AbstractDebuggerCommand completed) {
+                latch.countDown();
+            }
+        });
+        target.postCommand(cmd);
+        try {
+            if (!latch.await(PAGE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return getTimedoutVariables();
+            }
+        } catch (InterruptedException e) {
+            return getTimedoutVariables();
+        }
+
+        PyVariable[] page = getCommandVariables(cmd);
+        synchronized (pages) {
+            if (pagesSuspendGeneration == suspendGeneration) {
+                pages.add(key, page);
+            }
+        }
+        return page;
+    }
+
+    public IVariable getVariable(int offset) throws DebugException {
+        IVariable[] vars = getVariables(offset, 1);
+        if (vars.length == 0) {
+            throw new DebugException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unable to get variable at: "
+                    + offset, null));
+        }
+        return vars[0];
+    }
+
+    /**
+     * When pydevd didn't report the size (i.e.: watch expressions or older versions of pydevd), the children
+     * are gotten in a single request to know it.
+     */
+    public int getSize() throws DebugException {
+        if (size >= 0) {
+            return size;
+        }
+        IVariable[] all = getVariables();
+        if (networkState != NETWORK_REQUEST_ARRIVED) {
+            return 1; //Still waiting: has at least the 'wait' variable.
+        }
+        return all.length;
+    }
+
+    public int getInitialOffset() {
+        return 0;
+    }
+
     public GetVariableCommand getVariableCommand(AbstractDebugTarget dbg) {
+        if (isPaged()) {
+            //Asking for all the children of a huge container: just get the first page.
+            return new GetVariableRangeCommand(dbg, getPyDBLocation(), 0, MAX_CHILDREN_NOT_PAGED);
+        }
         return new GetVariableCommand(dbg, getPyDBLocation());
     }
 
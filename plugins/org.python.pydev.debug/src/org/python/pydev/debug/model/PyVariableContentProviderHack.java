@@ -24,7 +24,7 @@ public class PyVariableContentProviderHack extends VariableContentProvider {
             throws CoreException {
         if (element instanceof IWatchExpression) {
             IWatchExpression watchExpression = (IWatchExpression) element;
-            return super.hasChildren(watchExpression.getValue(), context, monitor);
+            element = watchExpression.getValue();
         }
         if (element instanceof PyVariableCollection) {
             PyVariableCollection pyVariableCollection = (PyVariableCollection) element;
@@ -37,10 +37,15 @@ public class PyVariableContentProviderHack extends VariableContentProvider {
     protected Object[] getAllChildren(Object parent, IPresentationContext context) throws CoreException {
         if (parent instanceof IWatchExpression) {
             IWatchExpression watchExpression = (IWatchExpression) parent;
-            return super.getAllChildren(watchExpression.getValue(), context);
+            parent = watchExpression.getValue();
         }
         if (parent instanceof PyVariableCollection) {
             PyVariableCollection pyVariableCollection = (PyVariableCollection) parent;
+            if (pyVariableCollection.isPaged()) {
+                //The default implementation partitions the IIndexedValue (and only asks for the
+                //variables in the partitions expanded).
+                return super.getAllChildren(parent, context);
+            }
             return pyVariableCollection.getVariables();
         }
         return super.getAllChildren(parent, context);
@@ -10,13 +10,14 @@
  */
 package org.python.pydev.debug.model;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -27,10 +28,12 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.debug.core.model.IStackFrame;
+import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.newconsole.EvaluateDebugConsoleExpression;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
@@ -43,8 +46,22 @@ public class XMLUtils {
 
     static SAXParserFactory parserFactory = SAXParserFactory.newInstance();
 
+    /**
+     * Maximum number of idle parsers kept for reuse.
+     */
+    private static final int MAX_POOLED_PARSERS = 4;
+
+    /**
+     * Parsers which may be reused (creating a new parser from the factory for each payload is expensive, and
+     * this is done for each stack/variable/completion request).
+     */
+    private static final ConcurrentLinkedQueue<SAXParser> parsersPool = new ConcurrentLinkedQueue<SAXParser>();
+
     static SAXParser getSAXParser() throws CoreException {
-        SAXParser parser = null;
+        SAXParser parser = parsersPool.poll();
+        if (parser != null) {
+            return parser;
+        }
         try {
             synchronized (parserFactory) {
                 parser = parserFactory.newSAXParser();
@@ -57,13 +74,44 @@ public class XMLUtils {
         return parser;
     }
 
+    /**
+     * Gives back a parser gotten from getSAXParser() so that it can be reused.
+     */
+    static void releaseSAXParser(SAXParser parser) {
+        try {
+            parser.reset();
+        } catch (UnsupportedOperationException e) {
+            return; //can't be reused
+        }
+        if (parsersPool.size() < MAX_POOLED_PARSERS) {
+            parsersPool.add(parser);
+        }
+    }
+
+    /**
+     * Parses the given payload with a pooled parser.
+     *
+     * Note that the payload is read directly as chars (and not from the bytes of the payload, which would copy
+     * the whole payload and use the platform encoding).
+     */
+    private static void parse(String payload, DefaultHandler handler) throws CoreException, SAXException,
+            IOException {
+        SAXParser parser = getSAXParser();
+        boolean ok = false;
+        try {
+            parser.parse(new InputSource(new StringReader(payload)), handler);
+            ok = true;
+        } finally {
+            if (ok) {
+                //Only reuse parsers which finished properly (a parser which failed may be in an inconsistent state).
+                releaseSAXParser(parser);
+            }
+        }
+    }
+
     private static String decode(String value) {
         if (value != null) {
-            try {
-                return URLDecoder.decode(value, "UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                throw new RuntimeException(e);
-            }
+            return StringUtils.urlDecodeUTF8(value);
         }
         return null;
     }
@@ -96,9 +144,8 @@ public class XMLUtils {
      */
     static public PyThread[] ThreadsFromXML(AbstractDebugTarget target, String payload) throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToThreadInfo info = new XMLToThreadInfo(target);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             return (PyThread[]) info.threads.toArray(new PyThread[0]);
 
         } catch (CoreException e) {
@@ -113,23 +160,27 @@ public class XMLUtils {
     /**
      * Creates a variable from XML attributes
      * <var name="self" type="ObjectType" value="<DeepThread>"/>
+     * 
+     * Containers are: <var name="lst" type="list" value="..." isContainer="True" size="1000"/> (where the
+     * size is only available if the children of the container may be gotten in pages).
      */
     static PyVariable createVariable(AbstractDebugTarget target, IVariableLocator locator, Attributes attributes) {
         PyVariable var;
         String name = attributes.getValue("name");
         String type = attributes.getValue("type");
-        String value = attributes.getValue("value");
-        try {
-            if (value != null) {
-                value = URLDecoder.decode(value, "UTF-8");
-            }
-
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        String value = decode(attributes.getValue("value"));
         String isContainer = attributes.getValue("isContainer");
         if ("True".equals(isContainer)) {
-            var = new PyVariableCollection(target, name, type, value, locator);
+            PyVariableCollection collection = new PyVariableCollection(target, name, type, value, locator);
+            String size = attributes.getValue("size");
+            if (size != null) {
+                try {
+                    collection.setSize(Integer.parseInt(size));
+                } catch (NumberFormatException e) {
+                    //ignore (just don't use pages)
+                }
+            }
+            var = collection;
         } else {
             var = new PyVariable(target, name, type, value, locator);
         }
@@ -147,6 +198,12 @@ public class XMLUtils {
         public AbstractDebugTarget target;
         PyStackFrame currentFrame;
 
+        /**
+         * Deep stacks usually have many frames in the same file, so, keep the path resolved for each file
+         * (to avoid hitting the filesystem for each frame).
+         */
+        private final Map<String, IPath> fileToPath = new HashMap<String, IPath>();
+
         public XMLToStackInfo(AbstractDebugTarget target) {
             this.target = target;
         }
@@ -165,20 +222,20 @@ public class XMLUtils {
             String name = attributes.getValue("name");
             String id = attributes.getValue("id");
             String file = attributes.getValue("file");
-            try {
-                if (file != null) {
-                    file = URLDecoder.decode(file, "UTF-8");
-                    File tempFile = new File(file);
+            IPath filePath = fileToPath.get(file);
+            if (filePath == null) {
+                String decoded = decode(file);
+                if (decoded != null) {
+                    File tempFile = new File(decoded);
                     if (tempFile.exists()) {
-                        file = FileUtils.getFileAbsolutePath(tempFile);
+                        decoded = FileUtils.getFileAbsolutePath(tempFile);
                     }
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                filePath = new Path(decoded);
+                fileToPath.put(file, filePath);
             }
 
             String line = attributes.getValue("line");
-            IPath filePath = new Path(file);
             // Try to recycle old stack objects
             currentFrame = thread.findStackFrameByID(id);
             if (currentFrame == null) {
@@ -230,9 +287,8 @@ public class XMLUtils {
         IStackFrame[] stack;
         Object[] retVal = new Object[3];
         try {
-            SAXParser parser = getSAXParser();
             XMLToStackInfo info = new XMLToStackInfo(target);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
 
             stack = info.stack.toArray(new IStackFrame[0]);
 
@@ -277,13 +333,9 @@ public class XMLUtils {
     public static PyVariable[] XMLToVariables(AbstractDebugTarget target, IVariableLocator locator, String payload)
             throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
-            PyVariable[] vars = new PyVariable[info.vars.size()];
-            for (int i = 0; i < info.vars.size(); i++)
-                vars[i] = (PyVariable) info.vars.get(i);
-            return vars;
+            parse(payload, info);
+            return info.vars.toArray(new PyVariable[info.vars.size()]);
         } catch (CoreException e) {
             throw e;
         } catch (SAXException e) {
@@ -319,9 +371,8 @@ public class XMLUtils {
 
     public static List<Object[]> convertXMLcompletionsFromConsole(String payload) throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
             XMLToCompletionsInfo info = new XMLToCompletionsInfo();
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             return info.completions;
         } catch (CoreException e) {
             throw e;
@@ -400,10 +451,8 @@ public class XMLUtils {
             throws CoreException {
         EvaluateDebugConsoleExpression.PydevDebugConsoleMessage debugConsoleMessage = new EvaluateDebugConsoleExpression.PydevDebugConsoleMessage();
         try {
-            SAXParser parser = getSAXParser();
-
             DebugConsoleMessageInfo info = new DebugConsoleMessageInfo();
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parse(payload, info);
             debugConsoleMessage = info.debugConsoleMessage;
 
         } catch (SAXException e) {
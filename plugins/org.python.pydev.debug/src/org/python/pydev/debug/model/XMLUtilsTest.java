@@ -23,4 +23,25 @@ public class XMLUtilsTest extends TestCase {
             assertEquals("%", objects[1]);
         }
     }
+
+    public void testXmlUtilsPagedVariables() throws Exception {
+        String payload = "<xml>"
+                + "<var name=\"small\" type=\"list\" value=\"list%3A%20%5B%5D\" isContainer=\"True\" size=\"2\" />"
+                + "<var name=\"big\" type=\"list\" value=\"list%3A%20%5B%5D\" isContainer=\"True\" size=\"1000000\" />"
+                + "<var name=\"obj\" type=\"Obj\" value=\"Obj\" isContainer=\"True\" />" + "</xml>";
+        PyVariable[] variables = XMLUtils.XMLToVariables(null, null, payload);
+        assertEquals(3, variables.length);
+
+        PyVariableCollection small = (PyVariableCollection) variables[0];
+        assertFalse(small.isPaged());
+
+        PyVariableCollection big = (PyVariableCollection) variables[1];
+        assertTrue(big.isPaged());
+        assertEquals(1000000, big.getSize());
+        assertEquals(0, big.getInitialOffset());
+
+        PyVariableCollection obj = (PyVariableCollection) variables[2];
+        assertFalse(obj.isPaged());
+        assertEquals(0, obj.getSize());
+    }
 }
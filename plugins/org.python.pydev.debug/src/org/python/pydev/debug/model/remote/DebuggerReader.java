@@ -10,15 +10,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.Socket;
-import java.net.URLDecoder;
 import java.util.Dictionary;
 import java.util.Hashtable;
 
 import org.eclipse.core.runtime.IStatus;
+import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.AbstractDebugTarget;
 import org.python.pydev.debug.model.AbstractDebugTargetWithTransmission;
+import org.python.pydev.shared_core.string.FastStringBuffer;
 
 
 /**
@@ -41,9 +42,18 @@ public class DebuggerReader implements Runnable {
     private volatile boolean done = false;
 
     /**
-     * Lock object for sleeping.
+     * Buffer with the chars read from the socket (and not consumed yet).
      */
-    private Object lock = new Object();
+    private final char[] readBuffer = new char[1024 * 16];
+
+    private int readPos;
+
+    private int readLen;
+
+    /**
+     * Buffer reused to build the lines read.
+     */
+    private final FastStringBuffer contents = new FastStringBuffer(1024);
 
     /**
      * commands waiting for response. Their keys are the sequence ids
@@ -100,7 +110,7 @@ public class DebuggerReader implements Runnable {
             String[] cmdParsed = cmdLine.split("\t", 3);
             int cmdCode = Integer.parseInt(cmdParsed[0]);
             int seqCode = Integer.parseInt(cmdParsed[1]);
-            String payload = URLDecoder.decode(cmdParsed[2], "UTF-8");
+            String payload = StringUtils.urlDecodeUTF8(cmdParsed[2]);
 
             // is there a response waiting
             AbstractDebuggerCommand cmd;
@@ -139,9 +149,6 @@ public class DebuggerReader implements Runnable {
                 if (cmdLine != null && cmdLine.trim().length() > 0) {
                     processCommand(cmdLine);
                 }
-                synchronized (lock) {
-                    Thread.sleep(50);
-                }
             } catch (Exception e1) {
                 done = true;
                 //that's ok, it means that the client finished
@@ -164,19 +171,34 @@ public class DebuggerReader implements Runnable {
     /**
      * Implemented our own: with the BufferedReader, when the socket was closed, it still appeared stuck in the method.
      * 
+     * Reads the socket in chunks (blocking only when there's nothing available) and returns the lines from 
+     * the chunks read.
+     * 
      * @return a line that was read from the debugger.
      * @throws IOException
      */
     private String readLine() throws IOException {
-        StringBuffer contents = new StringBuffer();
-        int i;
-        while ((i = in.read()) != -1) {
-            char c = (char) i;
-            if (c == '\n' || c == '\r') {
-                return contents.toString();
+        contents.clear();
+        while (true) {
+            if (readPos >= readLen) {
+                readPos = 0;
+                readLen = in.read(readBuffer);
+                if (readLen == -1) {
+                    readLen = 0;
+                    throw new IOException("Done");
+                }
+            }
+            int start = readPos;
+            while (readPos < readLen) {
+                char c = readBuffer[readPos];
+                if (c == '\n' || c == '\r') {
+                    contents.append(readBuffer, start, readPos - start);
+                    readPos++;
+                    return contents.toString();
+                }
+                readPos++;
             }
-            contents.append(c);
+            contents.append(readBuffer, start, readPos - start);
         }
-        throw new IOException("Done");
     }
 }
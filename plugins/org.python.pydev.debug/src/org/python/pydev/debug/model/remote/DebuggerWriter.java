@@ -6,52 +6,55 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Writer writes debugger commands to the network. Use postCommand to put new
  * ones in queue.
+ * 
+ * Commands are written as soon as they're posted (the writer thread blocks waiting for new commands)
+ * and commands posted together are written in a single flush (so, they can be pipelined without waiting
+ * for the responses of the previous ones).
  */
 public class DebuggerWriter implements Runnable {
 
+    /**
+     * Time to wait for a new command before checking whether the writer should stop.
+     */
+    private static final long TIMEOUT_TO_CHECK_DONE_MILLIS = 500;
+
     /**
      * connection socket
      */
     private Socket socket;
 
     /**
-     * a list of RemoteDebuggerCommands
+     * a queue of RemoteDebuggerCommands
      */
-    private List<AbstractDebuggerCommand> cmdQueue = new ArrayList<AbstractDebuggerCommand>();
+    private final LinkedBlockingQueue<AbstractDebuggerCommand> cmdQueue = new LinkedBlockingQueue<AbstractDebuggerCommand>();
 
-    private OutputStreamWriter out;
+    private BufferedWriter out;
 
     /**
      * Volatile, as multiple threads may ask it to be 'done'
      */
     private volatile boolean done = false;
 
-    /**
-     * Lock object for sleeping.
-     */
-    private Object lock = new Object();
-
     public DebuggerWriter(Socket s) throws IOException {
         socket = s;
-        out = new OutputStreamWriter(s.getOutputStream());
+        out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()));
     }
 
     /**
      * Add command for processing
      */
     public void postCommand(AbstractDebuggerCommand cmd) {
-        synchronized (cmdQueue) {
-            cmdQueue.add(cmd);
-        }
+        cmdQueue.add(cmd);
     }
 
     public void done() {
@@ -63,22 +66,17 @@ public class DebuggerWriter implements Runnable {
      */
     public void run() {
         while (!done) {
-            AbstractDebuggerCommand cmd = null;
-            synchronized (cmdQueue) {
-                if (cmdQueue.size() > 0) {
-                    cmd = (AbstractDebuggerCommand) cmdQueue.remove(0);
-                }
-            }
             try {
+                AbstractDebuggerCommand cmd = cmdQueue.poll(TIMEOUT_TO_CHECK_DONE_MILLIS, TimeUnit.MILLISECONDS);
                 if (cmd != null) {
-                    cmd.aboutToSend();
-                    out.write(cmd.getOutgoing());
-                    out.write("\n");
+                    //Write all the commands available before flushing.
+                    do {
+                        cmd.aboutToSend();
+                        out.write(cmd.getOutgoing());
+                        out.write("\n");
+                    } while ((cmd = cmdQueue.poll()) != null);
                     out.flush();
                 }
-                synchronized (lock) {
-                    Thread.sleep(100);
-                }
             } catch (InterruptedException e) {
                 done = true;
             } catch (IOException e1) {
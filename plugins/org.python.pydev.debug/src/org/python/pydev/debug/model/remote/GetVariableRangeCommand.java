@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import org.python.pydev.debug.model.AbstractDebugTarget;
+
+/**
+ * Gets only the children of a variable in a given range (used to page through huge collections).
+ * 
+ * The response is the same as the one from GetVariableCommand (but only with the requested children).
+ */
+public class GetVariableRangeCommand extends GetVariableCommand {
+
+    private final int start;
+    private final int end;
+
+    /**
+     * @param start the index of the first child to get.
+     * @param end the index after the last child to get.
+     */
+    public GetVariableRangeCommand(AbstractDebugTarget debugger, String locator, int start, int end) {
+        super(debugger, locator);
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public String getOutgoing() {
+        return makeCommand(getCommandId(), sequence, start + "\t" + end + "\t" + locator);
+    }
+
+    @Override
+    protected int getCommandId() {
+        return CMD_GET_VARIABLE_RANGE;
+    }
+
+}
@@ -68,6 +68,12 @@ public class PydevConsoleCommunication implements IScriptConsoleCommunication, X
      */
     private IXmlRpcClient client;
 
+    /**
+     * The maximum number of chars of the output of the process kept in memory while it's not shown in the console
+     * (if the process writes faster than the console is able to show it, the oldest output is dropped).
+     */
+    private static final int MAX_PENDING_OUTPUT_CHARS = 1024 * 1024;
+
     /**
      * Responsible for getting the stdout of the process.
      */
@@ -93,8 +99,19 @@ public class PydevConsoleCommunication implements IScriptConsoleCommunication, X
      * @throws MalformedURLException
      */
     public PydevConsoleCommunication(int port, Process process, int clientPort) throws Exception {
-        stdOutReader = new ThreadStreamReader(process.getInputStream());
-        stdErrReader = new ThreadStreamReader(process.getErrorStream());
+        stdOutReader = new ThreadStreamReader(process.getInputStream(), true, null, MAX_PENDING_OUTPUT_CHARS);
+        stdErrReader = new ThreadStreamReader(process.getErrorStream(), true, null, MAX_PENDING_OUTPUT_CHARS);
+        ICallback<Object, ThreadStreamReader> onContentsAvailable = new ICallback<Object, ThreadStreamReader>() {
+
+            public Object call(ThreadStreamReader arg) {
+                synchronized (lock2) {
+                    lock2.notifyAll();
+                }
+                return null;
+            }
+        };
+        stdOutReader.setOnContentsAvailable(onContentsAvailable);
+        stdErrReader.setOnContentsAvailable(onContentsAvailable);
         stdOutReader.start();
         stdErrReader.start();
 
@@ -169,9 +186,9 @@ public class PydevConsoleCommunication implements IScriptConsoleCommunication, X
     private volatile Object lock = new Object();
 
     /**
-     * Helper to keep on busy loop.
+     * Notified when a response is set or when there's new output from the process.
      */
-    private volatile Object lock2 = new Object();
+    private final Object lock2 = new Object();
 
     /**
      * Keeps a flag indicating that we were able to communicate successfully with the shell at least once
@@ -344,27 +361,26 @@ public class PydevConsoleCommunication implements IScriptConsoleCommunication, X
 
         }
 
-        int i = 500; //only get contents each 500 millis...
-
-        //busy loop until we have a response
-        while (nextResponse == null) {
+        //wait until we have a response, passing the output of the process as it arrives (note that
+        //onContentsReceived only returns after the contents are shown, so, while the console is busy
+        //showing some output, the new output is kept in the (bounded) readers).
+        while (true) {
             synchronized (lock2) {
-                try {
-                    lock2.wait(20);
-                } catch (InterruptedException e) {
-                    //                    Log.log(e);
+                while (nextResponse == null && !stdOutReader.hasContents() && !stdErrReader.hasContents()) {
+                    try {
+                        lock2.wait(500);
+                    } catch (InterruptedException e) {
+                        //                    Log.log(e);
+                    }
                 }
             }
-
-            i -= 20;
-
-            if (i <= 0 && nextResponse == null) {
-                i = 250; //after the first, get it each 250 millis
-                String stderrContents = stdErrReader.getAndClearContents();
-                String stdOutContents = stdOutReader.getAndClearContents();
-                if (stdOutContents.length() > 0 || stderrContents.length() > 0) {
-                    onContentsReceived.call(new Tuple<String, String>(stdOutContents, stderrContents));
-                }
+            if (nextResponse != null) {
+                break;
+            }
+            String stderrContents = stdErrReader.getAndClearContents();
+            String stdOutContents = stdOutReader.getAndClearContents();
+            if (stdOutContents.length() > 0 || stderrContents.length() > 0) {
+                onContentsReceived.call(new Tuple<String, String>(stdOutContents, stderrContents));
             }
         }
         onResponseReceived.call(nextResponse);
@@ -525,6 +541,9 @@ public class PydevConsoleCommunication implements IScriptConsoleCommunication, X
     private void setNextResponse(InterpreterResponse nextResponse) {
         this.nextResponse = nextResponse;
         updateDebugTarget();
+        synchronized (lock2) {
+            lock2.notifyAll();
+        }
     }
 
     /**
@@ -73,6 +73,15 @@ public class InteractiveConsolePrefs extends FieldEditorPreferencePage implement
             }
         });
 
+        addField(new IntegerFieldEditor(ScriptConsoleUIConstants.INTERACTIVE_CONSOLE_MAXIMUM_LINES,
+                "Maximum number of lines\nkept in the console\n(0 for unlimited):", p) {
+            // We are trying to set a preference that is in a different store, but logically lives within this UI
+            @Override
+            public IPreferenceStore getPreferenceStore() {
+                return InteractiveConsolePlugin.getDefault().getPreferenceStore();
+            }
+        });
+
         addField(new BooleanFieldEditor(
                 PydevConsoleConstants.INTERACTIVE_CONSOLE_SEND_INITIAL_COMMAND_WHEN_CREATED_FROM_EDITOR,
                 "When creating console send\ncurrent selection/editor\ncontents for execution?",
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.python.pydev.debug.model.AbstractDebugTarget;
+
+/**
+ * Measures the round-trip latency of debugger commands against a fake pydevd (which just answers each
+ * command it receives with the same code/sequence/payload).
+ *
+ * Before the transport was made event-driven (writer sleeping 100 millis and reader sleeping 50 millis
+ * between each command), the sequential round-trip averaged ~100 millis per command. Afterwards it's
+ * below 1 millis per command (and pipelined commands are sent in a single flush).
+ */
+public class DebuggerRoundTripLatencyTest extends TestCase {
+
+    private static final int COMMANDS = 200;
+
+    private ServerSocket serverSocket;
+    private Thread fakePydevd;
+    private DummyDebugTarget debugTarget;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DebuggerRoundTripLatencyTest.class);
+    }
+
+    private static class DummyDebugTarget extends AbstractDebugTarget {
+
+        @Override
+        public void processCommand(String sCmdCode, String sSeqCode, String payload) {
+        }
+
+        public IProcess getProcess() {
+            return null;
+        }
+
+        public void launchRemoved(ILaunch launch) {
+        }
+
+        @Override
+        public boolean canTerminate() {
+            return true;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+    }
+
+    private static class EchoCommand extends AbstractDebuggerCommand {
+
+        private final CountDownLatch latch;
+        private final String payload;
+
+        public EchoCommand(AbstractDebugTarget debugger, CountDownLatch latch, String payload) {
+            super(debugger);
+            this.latch = latch;
+            this.payload = payload;
+        }
+
+        @Override
+        public String getOutgoing() {
+            return makeCommand(CMD_VERSION, sequence, payload);
+        }
+
+        @Override
+        public boolean needResponse() {
+            return true;
+        }
+
+        @Override
+        public void processOKResponse(int cmdCode, String payload) {
+            latch.countDown();
+        }
+
+        @Override
+        public void processErrorResponse(int cmdCode, String payload) {
+            //Don't count down: the test will fail on timeout.
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        fakePydevd = new Thread("fake pydevd") {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    try {
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                        Writer out = new OutputStreamWriter(socket.getOutputStream());
+                        String line;
+                        while ((line = in.readLine()) != null) {
+                            //Answer with the same line (payload with only chars that don't need url-encoding).
+                            out.write(line);
+                            out.write('\n');
+                            if (!in.ready()) {
+                                out.flush();
+                            }
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                } catch (Exception e) {
+                    //Finished.
+                }
+            }
+        };
+        fakePydevd.start();
+
+        Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), serverSocket.getLocalPort());
+        debugTarget = new DummyDebugTarget();
+        debugTarget.startTransmission(socket);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        debugTarget.terminate();
+        serverSocket.close();
+        fakePydevd.join(2000);
+        super.tearDown();
+    }
+
+    public void testSequentialRoundTrip() throws Exception {
+        long total = 0;
+        for (int i = 0; i < COMMANDS; i++) {
+            CountDownLatch latch = new CountDownLatch(1);
+            long initial = System.nanoTime();
+            debugTarget.postCommand(new EchoCommand(debugTarget, latch, "payload" + i));
+            assertTrue("Timed out waiting for response " + i, latch.await(5, TimeUnit.SECONDS));
+            total += System.nanoTime() - initial;
+        }
+        double avgMillis = (total / (double) COMMANDS) / 1000000.0;
+
+        //uncomment line below to see the time for each round-trip
+        //System.out.println(StringUtils.format("Sequential round-trip: %s millis", avgMillis));
+        assertTrue("Round-trip too slow: " + avgMillis + " millis", avgMillis < 50);
+    }
+
+    public void testPipelinedRoundTrip() throws Exception {
+        CountDownLatch latch = new CountDownLatch(COMMANDS);
+        long initial = System.nanoTime();
+        for (int i = 0; i < COMMANDS; i++) {
+            debugTarget.postCommand(new EchoCommand(debugTarget, latch, "payload" + i));
+        }
+        assertTrue("Timed out waiting for responses", latch.await(10, TimeUnit.SECONDS));
+        double totalMillis = (System.nanoTime() - initial) / 1000000.0;
+
+        //uncomment line below to see the time for all the round-trips
+        //System.out.println(StringUtils.format("Pipelined round-trip (%s commands): %s millis", COMMANDS, totalMillis));
+        assertTrue("Pipelined round-trip too slow: " + totalMillis + " millis", totalMillis < COMMANDS * 50);
+    }
+}
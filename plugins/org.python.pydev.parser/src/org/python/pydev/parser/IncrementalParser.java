@@ -0,0 +1,671 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.ParseException;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SpecialStr;
+import org.python.pydev.parser.jython.TokenMgrError;
+import org.python.pydev.parser.jython.ast.Call;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Import;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.Lambda;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.Pass;
+import org.python.pydev.parser.jython.ast.TryExcept;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.model.ISimpleNode;
+
+/**
+ * Keeps the last AST generated for a document so that when the document changes, only the top-level statements
+ * which enclose the changed lines are reparsed. The new statements are then spliced in a new Module with the
+ * statements before the change (which are reused) and the statements after the change (which are reused if the
+ * number of lines didn't change or copied with the lines updated otherwise -- the previous AST is never changed as
+ * it may still be in use).
+ *
+ * The changed lines are found by comparing the document with the contents of the last parse.
+ *
+ * When the change can't be handled (the reparsed statements have errors, the document has __future__ imports which
+ * change how it's parsed, etc), null is returned and a full parse should be done.
+ *
+ * Note: the public methods are synchronized (although the PyParser should do only one parse at a time).
+ */
+public final class IncrementalParser {
+
+    /**
+     * Documents with less lines than this are always fully reparsed (as it's fast enough in that case).
+     */
+    public static int MIN_LINES_FOR_INCREMENTAL_PARSE = 200;
+
+    /**
+     * Added after the statements reparsed (at the same line of the statement which follows them).
+     */
+    private static final char[] SENTINEL = "pass\n".toCharArray();
+
+    private String lastText;
+    private int[] lastLineStarts;
+    private Module lastModule;
+    private int lastGrammarVersion;
+
+    /**
+     * The first line of each top-level statement in the last module (considering decorators and comments).
+     */
+    private int[] lastStmtLines;
+
+    /**
+     * Visits the nodes (including the ones which are only traversed, such as decorators, arguments, keywords, etc.)
+     * and gives them to the handle method.
+     */
+    private static abstract class AllNodesVisitor extends VisitorBase {
+
+        protected abstract void handle(SimpleNode node);
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            handle(node);
+            return null;
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            node.traverse(this);
+        }
+
+        private void handleAll(SimpleNode[] nodes) {
+            if (nodes != null) {
+                for (SimpleNode n : nodes) {
+                    if (n != null) {
+                        handle(n);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Object visitCall(Call node) throws Exception {
+            handleAll(node.keywords);
+            return super.visitCall(node);
+        }
+
+        @Override
+        public Object visitClassDef(ClassDef node) throws Exception {
+            handleAll(node.keywords);
+            handleDecs(node.decs);
+            return super.visitClassDef(node);
+        }
+
+        @Override
+        public Object visitFunctionDef(FunctionDef node) throws Exception {
+            if (node.args != null) {
+                handle(node.args);
+            }
+            handleDecs(node.decs);
+            return super.visitFunctionDef(node);
+        }
+
+        private void handleDecs(decoratorsType[] decs) {
+            if (decs != null) {
+                for (decoratorsType dec : decs) {
+                    if (dec != null) {
+                        handle(dec);
+                        handleAll(dec.keywords);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Object visitLambda(Lambda node) throws Exception {
+            if (node.args != null) {
+                handle(node.args);
+            }
+            return super.visitLambda(node);
+        }
+
+        @Override
+        public Object visitImport(Import node) throws Exception {
+            handleAll(node.names);
+            return super.visitImport(node);
+        }
+
+        @Override
+        public Object visitImportFrom(ImportFrom node) throws Exception {
+            handleAll(node.names);
+            return super.visitImportFrom(node);
+        }
+
+        @Override
+        public Object visitTryExcept(TryExcept node) throws Exception {
+            handleAll(node.handlers);
+            return super.visitTryExcept(node);
+        }
+    }
+
+    /**
+     * Computes the minimum line of the nodes (and comments) visited.
+     */
+    private static final class MinLineVisitor extends AllNodesVisitor {
+
+        private int minLine = Integer.MAX_VALUE;
+
+        @Override
+        protected void handle(SimpleNode node) {
+            check(node.beginLine);
+            checkSpecials(node.specialsBefore);
+            checkSpecials(node.specialsAfter);
+        }
+
+        private void check(int line) {
+            if (line > 0 && line < minLine) {
+                minLine = line;
+            }
+        }
+
+        private void checkSpecials(List<Object> specials) {
+            if (specials != null) {
+                for (Object o : specials) {
+                    if (o instanceof ISpecialStr) {
+                        check(((ISpecialStr) o).getBeginLine());
+                    } else if (o instanceof SimpleNode) {
+                        check(((SimpleNode) o).beginLine);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects all the nodes visited (in the visiting order).
+     */
+    private static final class FlattenVisitor extends AllNodesVisitor {
+
+        private final List<SimpleNode> nodes = new ArrayList<SimpleNode>();
+
+        @Override
+        protected void handle(SimpleNode node) {
+            nodes.add(node);
+        }
+    }
+
+    public synchronized void clear() {
+        lastText = null;
+        lastLineStarts = null;
+        lastModule = null;
+        lastStmtLines = null;
+    }
+
+    /**
+     * Sets the result of a full parse (which will be used as the base for the next incremental parse).
+     *
+     * @param root the ast generated (if it's not a Module, the incremental parse is disabled until the next
+     * full parse).
+     */
+    public synchronized void setLastParse(String text, ISimpleNode root, int grammarVersion) {
+        clear();
+        if (!(root instanceof Module) || !canParseIncrementally(text, grammarVersion)) {
+            return;
+        }
+        Module module = (Module) root;
+        int[] stmtLines = computeStmtLines(module.body);
+        if (stmtLines == null) {
+            return;
+        }
+        lastText = text;
+        lastLineStarts = computeLineStarts(text);
+        lastModule = module;
+        lastStmtLines = stmtLines;
+        lastGrammarVersion = grammarVersion;
+    }
+
+    /**
+     * @return a Module for the given text (reparsing only the top-level statements which changed since the last
+     * parse) or null if a full parse is needed.
+     */
+    public synchronized Module reparse(String text, int grammarVersion) {
+        Module module = null;
+        try {
+            module = doReparse(text, grammarVersion);
+        } catch (Throwable e) {
+            if (e instanceof ParseException || e instanceof TokenMgrError
+                    || e.getClass().getName().indexOf("LookaheadSuccess") != -1) {
+                //Just do a full parse.
+            } else {
+                Log.log(e);
+            }
+        }
+        if (module == null) {
+            clear();
+        }
+        return module;
+    }
+
+    private Module doReparse(String text, int grammarVersion) throws Throwable {
+        Module oldModule = lastModule;
+        if (oldModule == null || grammarVersion != lastGrammarVersion) {
+            return null;
+        }
+        String oldText = lastText;
+        if (text.equals(oldText)) {
+            return oldModule;
+        }
+        if (!canParseIncrementally(text, grammarVersion)) {
+            return null;
+        }
+        int[] oldLineStarts = lastLineStarts;
+        int[] newLineStarts = computeLineStarts(text);
+        int[] oldStmtLines = lastStmtLines;
+        stmtType[] oldBody = oldModule.body;
+        int stmtsLen = oldBody.length;
+
+        //Find the changed region (common prefix and suffix).
+        int oldLen = oldText.length();
+        int newLen = text.length();
+        int minLen = Math.min(oldLen, newLen);
+        int prefix = 0;
+        while (prefix < minLen && oldText.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < minLen - prefix && oldText.charAt(oldLen - 1 - suffix) == text.charAt(newLen - 1 - suffix)) {
+            suffix++;
+        }
+
+        //Lines are 1-based (as in the ast).
+        int firstChangedLine = getLine(oldLineStarts, prefix);
+        int lastChangedLine = getLine(oldLineStarts, oldLen - suffix);
+        int linesDelta = newLineStarts.length - oldLineStarts.length;
+
+        int firstStmt = findStmtAtLine(oldStmtLines, firstChangedLine);
+        int lastStmt = findStmtAtLine(oldStmtLines, lastChangedLine);
+        int chunkStartLine = firstStmt == 0 ? 1 : oldStmtLines[firstStmt];
+        while (firstStmt > 0 && startsWithComment(text, newLineStarts, chunkStartLine)) {
+            //Comments before a statement are added to the previous statement, so, it must be reparsed too.
+            firstStmt--;
+            chunkStartLine = firstStmt == 0 ? 1 : oldStmtLines[firstStmt];
+        }
+        int chunkStart = newLineStarts[chunkStartLine - 1];
+        boolean lastChunk = lastStmt == stmtsLen - 1;
+        if (firstStmt == 0 && lastChunk) {
+            //Everything changed: let the full parse handle it.
+            return null;
+        }
+        int oldChunkEndLine = lastChunk ? oldLineStarts.length : oldStmtLines[lastStmt + 1] - 1;
+        int newChunkEndLine = oldChunkEndLine + linesDelta;
+        int chunkEnd = getLineStart(newLineStarts, newChunkEndLine + 1, newLen);
+        if (chunkEnd < chunkStart) {
+            return null;
+        }
+
+        //Parse the chunk (with empty lines before it so that the lines in the ast are already correct).
+        int emptyLines = chunkStartLine - 1;
+        int chunkLen = chunkEnd - chunkStart;
+        int sentinelStart = chunkEnd;
+        int sentinelEnd = chunkEnd;
+        char[] sentinel = null;
+        if (!lastChunk) {
+            //Add a statement after the chunk (so that its end is parsed as if the next statement was there) and
+            //remove it later on.
+            if (endsWithComment(text, chunkStart, chunkEnd)) {
+                //The comments may be added to the next statement (depending on the statement), so, use it.
+                sentinelEnd = lastStmt + 2 < stmtsLen ? getLineStart(newLineStarts,
+                        oldStmtLines[lastStmt + 2] + linesDelta, newLen) : newLen;
+            } else {
+                sentinel = SENTINEL;
+            }
+        }
+        int addAtEnd = 0;
+        if (sentinel != null) {
+            addAtEnd = sentinel.length;
+        } else if (sentinelEnd == newLen && !text.endsWith("\n") && !text.endsWith("\r")) {
+            addAtEnd = 1;
+        }
+        int textLen = sentinelEnd - chunkStart;
+        char[] chunk = new char[emptyLines + textLen + addAtEnd];
+        for (int i = 0; i < emptyLines; i++) {
+            chunk[i] = '\n';
+        }
+        text.getChars(chunkStart, sentinelEnd, chunk, emptyLines);
+        if (sentinel != null) {
+            System.arraycopy(sentinel, 0, chunk, emptyLines + textLen, sentinel.length);
+        } else if (addAtEnd > 0) {
+            chunk[chunk.length - 1] = '\n';
+        }
+
+        IGrammar grammar = PyParser.createGrammar(true, grammarVersion, chunk);
+        SimpleNode chunkRoot = grammar.file_input();
+        if (grammar.getErrorOnParsing() != null || !(chunkRoot instanceof Module)) {
+            return null;
+        }
+        Module chunkModule = (Module) chunkRoot;
+        stmtType[] chunkBody = chunkModule.body;
+        int[] chunkStmtLines = computeStmtLines(chunkBody);
+        if (chunkStmtLines == null) {
+            return null;
+        }
+        if (!lastChunk) {
+            //The sentinel must be the last statement and it must not have anything from the chunk.
+            int len = chunkBody.length;
+            if (len == 0 || chunkStmtLines[len - 1] != newChunkEndLine + 1
+                    || (sentinel != null && !(chunkBody[len - 1] instanceof Pass))) {
+                return null;
+            }
+            stmtType[] withoutSentinel = new stmtType[len - 1];
+            System.arraycopy(chunkBody, 0, withoutSentinel, 0, len - 1);
+            chunkBody = withoutSentinel;
+        }
+
+        //Splice the new statements.
+        int afterLen = stmtsLen - (lastStmt + 1);
+        stmtType[] newBody = new stmtType[firstStmt + chunkBody.length + afterLen];
+        int[] newStmtLines = new int[newBody.length];
+        System.arraycopy(oldBody, 0, newBody, 0, firstStmt);
+        System.arraycopy(oldStmtLines, 0, newStmtLines, 0, firstStmt);
+        System.arraycopy(chunkBody, 0, newBody, firstStmt, chunkBody.length);
+        System.arraycopy(chunkStmtLines, 0, newStmtLines, firstStmt, chunkBody.length);
+        for (int i = 0; i < afterLen; i++) {
+            stmtType stmt = oldBody[lastStmt + 1 + i];
+            newBody[firstStmt + chunkBody.length + i] = linesDelta == 0 ? stmt : copyWithLinesShifted(stmt,
+                    linesDelta);
+            newStmtLines[firstStmt + chunkBody.length + i] = oldStmtLines[lastStmt + 1 + i] + linesDelta;
+        }
+        for (int i = 1; i < newStmtLines.length; i++) {
+            if (newStmtLines[i] <= newStmtLines[i - 1]) {
+                return null;
+            }
+        }
+
+        Module newModule = new Module(newBody);
+        SimpleNode moduleLocation = firstStmt == 0 ? chunkModule : oldModule;
+        newModule.beginLine = moduleLocation.beginLine;
+        newModule.beginColumn = moduleLocation.beginColumn;
+        if (!spliceSpecials(oldModule.specialsBefore, chunkModule.specialsBefore, newModule, false,
+                chunkStartLine, oldChunkEndLine, linesDelta)
+                || !spliceSpecials(oldModule.specialsAfter, chunkModule.specialsAfter, newModule, true,
+                        chunkStartLine, oldChunkEndLine, linesDelta)) {
+            return null;
+        }
+
+        lastText = text;
+        lastLineStarts = newLineStarts;
+        lastModule = newModule;
+        lastStmtLines = newStmtLines;
+        return newModule;
+    }
+
+    /**
+     * Adds the specials of the module: the old ones before the chunk, the ones from the chunk and the old ones after
+     * the chunk (with the lines updated).
+     *
+     * @return false if some special doesn't have a line (in which case we can't know where it should be).
+     */
+    private static boolean spliceSpecials(List<Object> oldSpecials, List<Object> chunkSpecials, Module newModule,
+            boolean after, int chunkStartLine, int oldChunkEndLine, int linesDelta) {
+        if (oldSpecials != null) {
+            for (Object o : oldSpecials) {
+                int line = getSpecialLine(o);
+                if (line < 0) {
+                    return false;
+                }
+                if (line < chunkStartLine) {
+                    addSpecial(newModule, o, after);
+                }
+            }
+        }
+        if (chunkSpecials != null) {
+            for (Object o : chunkSpecials) {
+                int line = getSpecialLine(o);
+                if (line < 0) {
+                    return false;
+                }
+                if (line <= oldChunkEndLine + linesDelta) {
+                    //Skip the ones from the sentinel.
+                    addSpecial(newModule, o, after);
+                }
+            }
+        }
+        if (oldSpecials != null) {
+            for (Object o : oldSpecials) {
+                if (getSpecialLine(o) > oldChunkEndLine) {
+                    addSpecial(newModule, shiftSpecial(o, linesDelta), after);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void addSpecial(SimpleNode node, Object special, boolean after) {
+        if (after) {
+            node.getSpecialsAfter().add(special);
+        } else {
+            node.getSpecialsBefore().add(special);
+        }
+    }
+
+    private static int getSpecialLine(Object special) {
+        if (special instanceof ISpecialStr) {
+            return ((ISpecialStr) special).getBeginLine();
+        }
+        if (special instanceof SimpleNode) {
+            return ((SimpleNode) special).beginLine;
+        }
+        return -1;
+    }
+
+    private static Object shiftSpecial(Object special, int linesDelta) {
+        if (special instanceof SpecialStr) {
+            SpecialStr specialStr = (SpecialStr) special;
+            return new SpecialStr(specialStr.str, specialStr.beginLine + linesDelta, specialStr.beginCol);
+        }
+        if (special instanceof commentType) {
+            commentType comment = ((commentType) special).createCopy();
+            comment.beginLine += linesDelta;
+            return comment;
+        }
+        return special;
+    }
+
+    /**
+     * @return a copy of the statement with all the lines shifted (the original statement is not changed).
+     */
+    private static stmtType copyWithLinesShifted(stmtType stmt, int linesDelta) throws Exception {
+        stmtType copy = (stmtType) stmt.createCopy();
+
+        //The copy has the same structure (but doesn't have all the specials), so, visit both in the same order and
+        //update the lines and specials of the copy.
+        FlattenVisitor originalNodes = new FlattenVisitor();
+        stmt.accept(originalNodes);
+        FlattenVisitor copyNodes = new FlattenVisitor();
+        copy.accept(copyNodes);
+        int size = originalNodes.nodes.size();
+        if (size != copyNodes.nodes.size()) {
+            throw new RuntimeException("Expected copy to have the same structure.");
+        }
+        for (int i = 0; i < size; i++) {
+            SimpleNode original = originalNodes.nodes.get(i);
+            SimpleNode node = copyNodes.nodes.get(i);
+            if (original.beginLine > 0) {
+                node.beginLine = original.beginLine + linesDelta;
+            }
+            node.specialsBefore = shiftSpecials(original.specialsBefore, linesDelta);
+            node.specialsAfter = shiftSpecials(original.specialsAfter, linesDelta);
+        }
+        return copy;
+    }
+
+    private static List<Object> shiftSpecials(List<Object> specials, int linesDelta) {
+        if (specials == null) {
+            return null;
+        }
+        List<Object> ret = new ArrayList<Object>(specials.size());
+        for (Object o : specials) {
+            ret.add(shiftSpecial(o, linesDelta));
+        }
+        return ret;
+    }
+
+    /**
+     * @return whether the first line which is not blank (starting at the given line) is a comment.
+     */
+    private static boolean startsWithComment(String text, int[] lineStarts, int line) {
+        int len = text.length();
+        for (int i = lineStarts[line - 1]; i < len; i++) {
+            char c = text.charAt(i);
+            if (c == '#') {
+                return true;
+            }
+            if (!Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the last line which is not blank (in the given range) has a comment.
+     */
+    private static boolean endsWithComment(String text, int start, int end) {
+        int i = end - 1;
+        while (i >= start && Character.isWhitespace(text.charAt(i))) {
+            i--;
+        }
+        for (; i >= start; i--) {
+            char c = text.charAt(i);
+            if (c == '#') {
+                return true;
+            }
+            if (c == '\r' || c == '\n') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the first line of each statement (or null if the statements are not in increasing lines).
+     */
+    private static int[] computeStmtLines(stmtType[] body) {
+        int[] lines = new int[body.length];
+        for (int i = 0; i < body.length; i++) {
+            MinLineVisitor visitor = new MinLineVisitor();
+            try {
+                body[i].accept(visitor);
+            } catch (Exception e) {
+                Log.log(e);
+                return null;
+            }
+            if (visitor.minLine == Integer.MAX_VALUE || (i > 0 && visitor.minLine <= lines[i - 1])) {
+                return null;
+            }
+            lines[i] = visitor.minLine;
+        }
+        return lines;
+    }
+
+    /**
+     * @return the index of the last statement which starts at or before the given line (0 if none).
+     */
+    private static int findStmtAtLine(int[] stmtLines, int line) {
+        int low = 0;
+        int high = stmtLines.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (stmtLines[mid] <= line) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the offset where the given (1-based) line starts (or the length of the text if it's after the end).
+     */
+    private static int getLineStart(int[] lineStarts, int line, int textLen) {
+        return line - 1 < lineStarts.length ? lineStarts[line - 1] : textLen;
+    }
+
+    /**
+     * @return the 1-based line of the given offset.
+     */
+    private static int getLine(int[] lineStarts, int offset) {
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * @return the offsets where each line starts (considering \r, \n and \r\n as new lines, as the grammar does).
+     */
+    private static int[] computeLineStarts(String text) {
+        int len = text.length();
+        int[] starts = new int[64];
+        int size = 1; //starts[0] = 0
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\n') {
+                if (c == '\r' && i + 1 < len && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                if (size == starts.length) {
+                    int[] newStarts = new int[size * 2];
+                    System.arraycopy(starts, 0, newStarts, 0, size);
+                    starts = newStarts;
+                }
+                starts[size++] = i + 1;
+            }
+        }
+        int[] ret = new int[size];
+        System.arraycopy(starts, 0, ret, 0, size);
+        return ret;
+    }
+
+    private static boolean canParseIncrementally(String text, int grammarVersion) {
+        if (grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON) {
+            return false;
+        }
+        if (text.length() == 0 || text.startsWith(FileUtils.BOM_UTF8) || text.startsWith(FileUtils.BOM_UNICODE)) {
+            //Empty or with BOM.
+            return false;
+        }
+        if (text.indexOf("__future__") != -1) {
+            //from __future__ imports change how the code is parsed.
+            return false;
+        }
+        //Don't bother with small documents.
+        int lines = 1;
+        int len = text.length();
+        for (int i = 0; i < len && lines < MIN_LINES_FOR_INCREMENTAL_PARSE; i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines >= MIN_LINES_FOR_INCREMENTAL_PARSE;
+    }
+}
@@ -67,7 +67,7 @@ import org.python.pydev.shared_core.structure.Tuple3;
  * PyParser uses org.python.parser to parse the document (lexical analysis) It
  * is attached to PyEdit (a view), and it listens to document changes On every
  * document change, the syntax tree is regenerated The reparsing of the document
- * is done on a ParsingThread
+ * is done in the ParserExecutor
  *
  * Clients that need to know when new parse tree has been generated should
  * register as parseListeners.
@@ -91,11 +91,22 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     public static boolean ENABLE_TRACING = false;
 
+    /**
+     * Defines whether only the top-level statements which changed since the last parse should be reparsed
+     * when the document changes (see IncrementalParser).
+     */
+    public static boolean USE_INCREMENTAL_PARSE = true;
+
     /**
      * This is the version of the grammar that should be used for this parser
      */
     private final IGrammarVersionProvider grammarVersionProvider;
 
+    /**
+     * Keeps the last parse to reparse only what changed in the document.
+     */
+    private final IncrementalParser incrementalParser = new IncrementalParser();
+
     public static String getGrammarVersionStr(int grammarVersion) {
         if (grammarVersion == IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_4) {
             return "grammar: Python 2.4";
@@ -245,7 +256,23 @@ public class PyParser extends BaseParser implements IPyParser {
             version = IGrammarVersionProvider.LATEST_GRAMMAR_VERSION;
         }
         long documentTime = System.currentTimeMillis();
-        Tuple<ISimpleNode, Throwable> obj = reparseDocument(new ParserInfo(document, version, true));
+        ParserInfo parserInfo = new ParserInfo(document, version, true);
+        Tuple<ISimpleNode, Throwable> obj;
+        if (USE_INCREMENTAL_PARSE) {
+            String docContents = document.get();
+            Module module = incrementalParser.reparse(docContents, version);
+            if (module != null) {
+                obj = new Tuple<ISimpleNode, Throwable>(module, null);
+                notifySuccessfulParseListeners(obj.o1, obj.o2, parserInfo);
+            } else {
+                obj = reparseDocument(parserInfo, docContents);
+                if (obj.o1 != null && obj.o2 == null) {
+                    incrementalParser.setLastParse(docContents, obj.o1, version);
+                }
+            }
+        } else {
+            obj = reparseDocument(parserInfo);
+        }
 
         IFile original = null;
         IAdaptable adaptable = null;
@@ -422,7 +449,7 @@ public class PyParser extends BaseParser implements IPyParser {
      * Actually creates the grammar.
      * @param generateTree whether we should generate the AST or not.
      */
-    private static IGrammar createGrammar(boolean generateTree, int grammarVersion, char[] charArray) {
+    static IGrammar createGrammar(boolean generateTree, int grammarVersion, char[] charArray) {
         IGrammar grammar;
         FastCharStream in = new FastCharStream(charArray);
         switch (grammarVersion) {
@@ -470,13 +497,22 @@ public class PyParser extends BaseParser implements IPyParser {
      *         if we are able to recover from a reparse, we have both, the root and the error.
      */
     public static Tuple<ISimpleNode, Throwable> reparseDocument(ParserInfo info) {
+        return reparseDocument(info, null);
+    }
+
+    /**
+     * @param startDoc the contents of the document in the info (if null, it's gotten from the document).
+     */
+    private static Tuple<ISimpleNode, Throwable> reparseDocument(ParserInfo info, String startDoc) {
         if (info.grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON) {
             IDocument doc = info.document;
             return createCythonAst(doc);
         }
 
         // create a stream with document's data
-        String startDoc = info.document.get();
+        if (startDoc == null) {
+            startDoc = info.document.get();
+        }
         if (startDoc.trim().length() == 0) {
             //If empty, don't bother to parse!
             return new Tuple<ISimpleNode, Throwable>(new Module(new stmtType[0]), null);
@@ -492,14 +528,7 @@ public class PyParser extends BaseParser implements IPyParser {
             returnVar.o1 = newRoot;
 
             //only notify successful parses
-            if (successfulParseListeners.size() > 0) {
-                Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
-                        returnVar.o1, returnVar.o2, info);
-
-                for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
-                    callback.call(param);
-                }
-            }
+            notifySuccessfulParseListeners(returnVar.o1, returnVar.o2, info);
 
             returnVar.o2 = grammar.getErrorOnParsing();
 
@@ -546,6 +575,17 @@ public class PyParser extends BaseParser implements IPyParser {
         return returnVar;
     }
 
+    private static void notifySuccessfulParseListeners(ISimpleNode root, Throwable error, ParserInfo info) {
+        if (successfulParseListeners.size() > 0) {
+            Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
+                    root, error, info);
+
+            for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
+                callback.call(param);
+            }
+        }
+    }
+
     public static Tuple<ISimpleNode, Throwable> createCythonAst(IDocument doc) {
         List<stmtType> classesAndFunctions = FastParser.parseCython(doc);
         return new Tuple<ISimpleNode, Throwable>(new Module(
@@ -0,0 +1,671 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.fastparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.core.ObjectsPool;
+import org.python.pydev.core.ObjectsPool.ObjectsPoolMap;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Assign;
+import org.python.pydev.parser.jython.ast.Attribute;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.Name;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.exprType;
+import org.python.pydev.parser.jython.ast.stmtType;
+
+/**
+ * A disk cache for the results of the FastDefinitionsParser (along with the tokens found in the module), keyed by
+ * the hash of the contents of the module, so that the definitions of modules which didn't change don't have to be
+ * parsed again (i.e.: when the additional info has to be recreated after a restart).
+ *
+ * Each entry is kept in its own file and the total size of the entries is bounded (the least recently used
+ * entries are removed when the max size is exceeded).
+ *
+ * Only the nodes created by the FastDefinitionsParser (Module, ClassDef, FunctionDef, Assign, Name, Attribute and
+ * NameTok) can be kept in the cache.
+ */
+public final class FastDefinitionsCache {
+
+    /**
+     * The definitions and tokens for some contents.
+     */
+    public static final class Entry {
+
+        /**
+         * The Module created by the FastDefinitionsParser.
+         */
+        public final SimpleNode ast;
+
+        /**
+         * The tokens found in the module (may be null).
+         */
+        public final String[] tokens;
+
+        public Entry(SimpleNode ast, String[] tokens) {
+            this.ast = ast;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Should be raised whenever the serialized format or the output of the FastDefinitionsParser changes (it's
+     * part of the hash, so, entries created by a different version are never found).
+     */
+    private static final int VERSION = 2;
+
+    private static final String INDEX_FILE = "definitions.index";
+    private static final String ENTRY_EXT = ".defs";
+    private static final String TEMP_EXT = ".tmp";
+
+    private static final byte NODE_NULL = 0;
+    private static final byte NODE_CLASS = 1;
+    private static final byte NODE_FUNCTION = 2;
+    private static final byte NODE_ASSIGN = 3;
+    private static final byte NODE_NAME = 4;
+    private static final byte NODE_ATTRIBUTE = 5;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File dir;
+    private final long maxBytes;
+
+    /**
+     * hash -> size of the entry file (in access order, so, the first is the least recently used).
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+    private long totalBytes;
+    private boolean loaded;
+    private boolean dirty;
+
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;
+
+    /**
+     * @param dir the directory where the entries should be kept.
+     * @param maxBytes the max size of the entries kept.
+     */
+    public FastDefinitionsCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the hash to be used as the key for the given contents.
+     */
+    public static String hash(char[] cs, int len) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] buf = new byte[8192];
+        buf[0] = (byte) (VERSION >>> 8);
+        buf[1] = (byte) VERSION;
+        int pos = 2;
+        for (int i = 0; i < len; i++) {
+            if (pos == buf.length) {
+                digest.update(buf, 0, pos);
+                pos = 0;
+            }
+            char c = cs[i];
+            buf[pos++] = (byte) (c >>> 8);
+            buf[pos++] = (byte) c;
+        }
+        digest.update(buf, 0, pos);
+
+        byte[] bytes = digest.digest();
+        char[] ret = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            ret[i * 2] = HEX[(bytes[i] >>> 4) & 0xF];
+            ret[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(ret);
+    }
+
+    private File getEntryFile(String hash) {
+        return new File(new File(dir, hash.substring(0, 2)), hash + ENTRY_EXT);
+    }
+
+    /**
+     * @return the entry for the given hash or null if it's not in the cache.
+     */
+    public Entry get(String hash) {
+        synchronized (this) {
+            loadIfNeeded();
+            if (!entries.containsKey(hash)) { //Note: containsKey doesn't change the access order.
+                misses++;
+                return null;
+            }
+        }
+
+        Entry entry = null;
+        File file = getEntryFile(hash);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                entry = readEntry(in);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            //Removed or corrupted: just forget about it.
+            if (file.exists()) {
+                Log.log("Error reading definitions cache entry: " + file, e);
+            }
+        }
+
+        synchronized (this) {
+            if (entry == null) {
+                removeEntry(hash);
+                misses++;
+            } else {
+                entries.get(hash); //update the access order
+                dirty = true;
+                hits++;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Adds an entry to the cache.
+     *
+     * @param ast the Module created by the FastDefinitionsParser.
+     * @param tokens the tokens found in the module (may be null).
+     * @return whether the entry was added (it's not if the ast has nodes which can't be kept in the cache or if
+     * it was not possible to write it).
+     */
+    public boolean put(String hash, SimpleNode ast, String[] tokens) {
+        if (!(ast instanceof Module)) {
+            return false;
+        }
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream(1024);
+            DataOutputStream out = new DataOutputStream(byteStream);
+            writeEntry(out, (Module) ast, tokens);
+            out.close();
+            bytes = byteStream.toByteArray();
+        } catch (IOException e) {
+            return false; //Not something we can keep.
+        }
+
+        File file = getEntryFile(hash);
+        File tempFile = null;
+        try {
+            File parent = file.getParentFile();
+            parent.mkdirs();
+            tempFile = File.createTempFile(hash, TEMP_EXT, parent);
+            FileOutputStream out = new FileOutputStream(tempFile);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                //Another thread may have added the same entry (in which case it's already there).
+                tempFile.delete();
+                if (!file.exists()) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            Log.log("Error writing definitions cache entry: " + file, e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return false;
+        }
+
+        synchronized (this) {
+            loadIfNeeded();
+            Long old = entries.put(hash, (long) bytes.length);
+            if (old != null) {
+                totalBytes -= old;
+            }
+            totalBytes += bytes.length;
+            puts++;
+            dirty = true;
+            evictIfNeeded(hash);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the least recently used entries until the cache is below its max size (the entry just added is
+     * always kept).
+     */
+    private void evictIfNeeded(String keep) {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> next = it.next();
+            if (next.getKey().equals(keep)) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= next.getValue();
+            getEntryFile(next.getKey()).delete();
+            evictions++;
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void removeEntry(String hash) {
+        Long size = entries.remove(hash);
+        if (size != null) {
+            totalBytes -= size;
+            dirty = true;
+        }
+        getEntryFile(hash).delete();
+    }
+
+    // Index -----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Loads the index with the entries available (and their access order). If it's not available, the entries
+     * are gotten from the directory (in the order of their modification time).
+     *
+     * Must be called with the lock held.
+     */
+    private void loadIfNeeded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File indexFile = new File(dir, INDEX_FILE);
+        if (indexFile.exists()) {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+                try {
+                    if (in.readInt() == VERSION) {
+                        int size = in.readInt();
+                        for (int i = 0; i < size; i++) {
+                            String hash = in.readUTF();
+                            long bytes = in.readLong();
+                            entries.put(hash, bytes);
+                            totalBytes += bytes;
+                        }
+                        return;
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (Exception e) {
+                Log.log("Error reading definitions cache index: " + indexFile, e);
+            }
+            entries.clear();
+            totalBytes = 0;
+        }
+
+        List<File> found = new ArrayList<File>();
+        File[] subdirs = dir.listFiles();
+        if (subdirs != null) {
+            for (File subdir : subdirs) {
+                if (!isHashPrefix(subdir.getName())) {
+                    continue; //Only consider the directories created by the cache.
+                }
+                File[] files = subdir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        String name = file.getName();
+                        if (name.endsWith(ENTRY_EXT)) {
+                            found.add(file);
+                        } else if (name.endsWith(TEMP_EXT)) {
+                            file.delete(); //i.e.: a temporary file left when the process was killed.
+                        }
+                    }
+                }
+            }
+        }
+        File[] sorted = found.toArray(new File[found.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+
+            public int compare(File o1, File o2) {
+                long m1 = o1.lastModified();
+                long m2 = o2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (File file : sorted) {
+            String name = file.getName();
+            long bytes = file.length();
+            entries.put(name.substring(0, name.length() - ENTRY_EXT.length()), bytes);
+            totalBytes += bytes;
+        }
+        dirty = sorted.length > 0;
+    }
+
+    /**
+     * @return whether the given name is the name of a directory where entries are kept (the first 2 chars of
+     * the hash).
+     */
+    private static boolean isHashPrefix(String name) {
+        if (name.length() != 2) {
+            return false;
+        }
+        for (int i = 0; i < 2; i++) {
+            char c = name.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves the index of the entries (so that the access order is kept among sessions).
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dir.mkdirs();
+        File indexFile = new File(dir, INDEX_FILE);
+        File tempFile = new File(dir, INDEX_FILE + TEMP_EXT);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            } finally {
+                out.close();
+            }
+            indexFile.delete();
+            if (!tempFile.renameTo(indexFile)) {
+                Log.log("Unable to rename: " + tempFile + " to: " + indexFile);
+                return;
+            }
+            dirty = false;
+        } catch (IOException e) {
+            Log.log("Error writing definitions cache index: " + indexFile, e);
+        }
+    }
+
+    // Serialization ---------------------------------------------------------------------------------------------------
+
+    private static void writeEntry(DataOutputStream out, Module module, String[] tokens) throws IOException {
+        out.writeInt(VERSION);
+        if (tokens == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(tokens.length);
+            for (String token : tokens) {
+                out.writeUTF(token);
+            }
+        }
+        writeStmts(out, module.body);
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        if (in.readInt() != VERSION) {
+            throw new IOException("Unexpected version.");
+        }
+        ObjectsPoolMap interned = new ObjectsPoolMap();
+        int size = in.readInt();
+        String[] tokens = null;
+        if (size >= 0) {
+            tokens = new String[size];
+            for (int i = 0; i < size; i++) {
+                tokens[i] = ObjectsPool.internLocal(interned, in.readUTF());
+            }
+        }
+        return new Entry(new Module(readStmts(in, interned)), tokens);
+    }
+
+    private static void writeStmts(DataOutputStream out, stmtType[] stmts) throws IOException {
+        if (stmts == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(stmts.length);
+        for (stmtType stmt : stmts) {
+            if (stmt == null) {
+                out.writeByte(NODE_NULL);
+
+            } else if (stmt instanceof ClassDef) {
+                ClassDef classDef = (ClassDef) stmt;
+                if (classDef.decs != null || classDef.keywords != null || classDef.starargs != null
+                        || classDef.kwargs != null) {
+                    throw new IOException("Unexpected class contents.");
+                }
+                out.writeByte(NODE_CLASS);
+                writePosition(out, classDef);
+                writeNameTok(out, classDef.name);
+                writeExprs(out, classDef.bases);
+                writeStmts(out, classDef.body);
+
+            } else if (stmt instanceof FunctionDef) {
+                FunctionDef functionDef = (FunctionDef) stmt;
+                if (functionDef.args != null || functionDef.decs != null || functionDef.returns != null) {
+                    throw new IOException("Unexpected function contents.");
+                }
+                out.writeByte(NODE_FUNCTION);
+                writePosition(out, functionDef);
+                writeNameTok(out, functionDef.name);
+                writeStmts(out, functionDef.body); //the attributes assigned to self
+
+            } else if (stmt instanceof Assign) {
+                Assign assign = (Assign) stmt;
+                if (assign.value != null) {
+                    throw new IOException("Unexpected assign value.");
+                }
+                out.writeByte(NODE_ASSIGN);
+                writePosition(out, assign);
+                writeExprs(out, assign.targets);
+
+            } else {
+                throw new IOException("Unexpected node: " + stmt);
+            }
+        }
+    }
+
+    private static stmtType[] readStmts(DataInputStream in, ObjectsPoolMap interned) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        stmtType[] ret = new stmtType[size];
+        for (int i = 0; i < size; i++) {
+            byte type = in.readByte();
+            if (type == NODE_NULL) {
+                continue;
+            }
+            int line = in.readInt();
+            int col = in.readInt();
+            stmtType stmt;
+            switch (type) {
+                case NODE_CLASS:
+                    NameTok className = readNameTok(in, interned);
+                    exprType[] bases = readExprs(in, interned);
+                    stmt = new ClassDef(className, bases, readStmts(in, interned), null, null, null, null);
+                    break;
+
+                case NODE_FUNCTION:
+                    NameTok functionName = readNameTok(in, interned);
+                    stmt = new FunctionDef(functionName, null, readStmts(in, interned), null, null);
+                    break;
+
+                case NODE_ASSIGN:
+                    stmt = new Assign(readExprs(in, interned), null);
+                    break;
+
+                default:
+                    throw new IOException("Unexpected node type: " + type);
+            }
+            stmt.beginLine = line;
+            stmt.beginColumn = col;
+            ret[i] = stmt;
+        }
+        return ret;
+    }
+
+    private static void writeExprs(DataOutputStream out, exprType[] exprs) throws IOException {
+        if (exprs == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(exprs.length);
+        for (exprType expr : exprs) {
+            writeExpr(out, expr);
+        }
+    }
+
+    private static exprType[] readExprs(DataInputStream in, ObjectsPoolMap interned) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        exprType[] ret = new exprType[size];
+        for (int i = 0; i < size; i++) {
+            ret[i] = readExpr(in, interned);
+        }
+        return ret;
+    }
+
+    private static void writeExpr(DataOutputStream out, exprType expr) throws IOException {
+        if (expr == null) {
+            out.writeByte(NODE_NULL);
+
+        } else if (expr instanceof Name) {
+            Name name = (Name) expr;
+            out.writeByte(NODE_NAME);
+            writePosition(out, name);
+            out.writeUTF(name.id);
+            out.writeInt(name.ctx);
+            out.writeBoolean(name.reserved);
+
+        } else if (expr instanceof Attribute) {
+            Attribute attribute = (Attribute) expr;
+            out.writeByte(NODE_ATTRIBUTE);
+            writePosition(out, attribute);
+            writeExpr(out, attribute.value);
+            writeNameTok(out, attribute.attr);
+            out.writeInt(attribute.ctx);
+
+        } else {
+            throw new IOException("Unexpected node: " + expr);
+        }
+    }
+
+    private static exprType readExpr(DataInputStream in, ObjectsPoolMap interned) throws IOException {
+        byte type = in.readByte();
+        if (type == NODE_NULL) {
+            return null;
+        }
+        int line = in.readInt();
+        int col = in.readInt();
+        exprType expr;
+        switch (type) {
+            case NODE_NAME:
+                expr = new Name(ObjectsPool.internLocal(interned, in.readUTF()), in.readInt(), in.readBoolean());
+                break;
+
+            case NODE_ATTRIBUTE:
+                exprType value = readExpr(in, interned);
+                NameTok attr = readNameTok(in, interned);
+                expr = new Attribute(value, attr, in.readInt());
+                break;
+
+            default:
+                throw new IOException("Unexpected node type: " + type);
+        }
+        expr.beginLine = line;
+        expr.beginColumn = col;
+        return expr;
+    }
+
+    private static void writePosition(DataOutputStream out, SimpleNode node) throws IOException {
+        out.writeInt(node.beginLine);
+        out.writeInt(node.beginColumn);
+    }
+
+    private static void writeNameTok(DataOutputStream out, Object nameTok) throws IOException {
+        if (!(nameTok instanceof NameTok)) {
+            throw new IOException("Unexpected name: " + nameTok);
+        }
+        NameTok tok = (NameTok) nameTok;
+        writePosition(out, tok);
+        out.writeUTF(tok.id);
+        out.writeInt(tok.ctx);
+    }
+
+    private static NameTok readNameTok(DataInputStream in, ObjectsPoolMap interned) throws IOException {
+        int line = in.readInt();
+        int col = in.readInt();
+        NameTok tok = new NameTok(ObjectsPool.internLocal(interned, in.readUTF()), in.readInt());
+        tok.beginLine = line;
+        tok.beginColumn = col;
+        return tok;
+    }
+
+    // Stats -----------------------------------------------------------------------------------------------------------
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getEntriesCount() {
+        loadIfNeeded();
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        loadIfNeeded();
+        return totalBytes;
+    }
+
+    /**
+     * @return a string with the stats of the cache (for diagnostics).
+     */
+    public synchronized String getStats() {
+        loadIfNeeded();
+        long requests = hits + misses;
+        return "Definitions cache: " + entries.size() + " entries (" + (totalBytes / 1024) + " KB of max: "
+                + (maxBytes / 1024) + " KB) -- hits: " + hits + " -- misses: " + misses + " -- hit ratio: "
+                + (requests == 0 ? 0 : (hits * 100 / requests)) + "% -- puts: " + puts + " -- evictions: "
+                + evictions;
+    }
+}
@@ -208,6 +208,7 @@ public final class FastDefinitionsParser {
                         //Note: should have stopped just before the new line (so, as we'll do currIndex++ in the
                         //next loop, that's ok).
                         initialIndex = currIndex;
+                        final int assignRow = this.row;
                         currIndex = parsingUtils.getFullFlattenedLine(currIndex, lineBuffer);
 
                         //keep the row count correct
@@ -254,7 +255,13 @@ public final class FastDefinitionsParser {
                         if (targets.size() > 0) {
                             Assign assign = new Assign(targets.toArray(new exprType[targets.size()]), null);
                             assign.beginColumn = this.firstCharCol;
-                            assign.beginLine = this.row;
+                            assign.beginLine = assignRow;
+                            for (exprType target : targets) {
+                                //Only the line is exact for the targets after the first (but it's enough for
+                                //showing and going to it in the outline).
+                                target.beginColumn = this.firstCharCol;
+                                target.beginLine = assignRow;
+                            }
                             addToPertinentScope(assign);
                         }
                     }
@@ -320,7 +327,8 @@ public final class FastDefinitionsParser {
             if (this.length <= currIndex) {
                 return;
             }
-            startClass(getNextIdentifier(c), row, startClassCol);
+            String className = getNextIdentifier(c);
+            startClass(className, getBases(parsingUtils), row, startClassCol);
 
         } else if (c == 'd' && matchFunction()) {
             int startMethodCol = col;
@@ -422,6 +430,110 @@ public final class FastDefinitionsParser {
         return tempIndex;
     }
 
+    /**
+     * Gets the bases of the class whose name was just read (the current index must be just after the class name).
+     *
+     * Only the bases which are names or dotted names are returned (i.e.: keywords such as metaclass=xxx or calls
+     * are not returned).
+     *
+     * @return the bases found or null if the class has no parenthesis.
+     * @throws SyntaxErrorException
+     */
+    private exprType[] getBases(ParsingUtils parsingUtils) throws SyntaxErrorException {
+        int i = skipWhitespaces(currIndex);
+        if (i >= length || cs[i] != '(') {
+            return null;
+        }
+        ArrayList<exprType> bases = new ArrayList<exprType>(2);
+        FastStringBuffer part = new FastStringBuffer();
+        int partStart = -1;
+        boolean valid = true;
+        for (i++; i < length; i++) {
+            char c = cs[i];
+            if (c == ')' || c == ',') {
+                if (valid && part.length() > 0) {
+                    exprType base = createBase(part.toString(), partStart);
+                    if (base != null) {
+                        bases.add(base);
+                    }
+                }
+                if (c == ')') {
+                    break;
+                }
+                part.clear();
+                partStart = -1;
+                valid = true;
+
+            } else if (c == '\'' || c == '"') {
+                i = parsingUtils.getLiteralEnd(i, c);
+                valid = false;
+
+            } else if (c == '#') {
+                i = parsingUtils.eatComments(null, i);
+
+            } else if (c == '(' || c == '[' || c == '{') {
+                i = parsingUtils.eatPar(i, null, c);
+                valid = false;
+
+            } else if (c == '.' || Character.isJavaIdentifierPart(c)) {
+                if (partStart == -1) {
+                    partStart = i;
+                }
+                part.append(c);
+
+            } else if (!Character.isWhitespace(c) && c != '\\') {
+                //i.e.: metaclass=Meta, *args
+                valid = false;
+            }
+        }
+        return bases.toArray(new exprType[bases.size()]);
+    }
+
+    /**
+     * @param rep the representation of the base (i.e.: 'object' or 'mod.Base').
+     * @param start the index where the base starts.
+     * @return a Name or an Attribute for the base (or null if it's not a valid dotted name).
+     */
+    private exprType createBase(String rep, int start) {
+        List<String> dotSplit = StringUtils.dotSplit(rep);
+        if (dotSplit.size() == 0 || rep.startsWith(".") || rep.endsWith(".")) {
+            return null;
+        }
+        exprType expr = null;
+        for (String s : dotSplit) {
+            if (s.length() == 0 || !Character.isJavaIdentifierStart(s.charAt(0))) {
+                return null;
+            }
+            s = ObjectsPool.internLocal(interned, s);
+            if (expr == null) {
+                expr = new Name(s, Name.Load, false);
+            } else {
+                expr = new Attribute(expr, new NameTok(s, NameTok.Attrib), Attribute.Load);
+            }
+        }
+
+        //the base may be in a line after the class (when the bases are split in many lines).
+        int line = row;
+        for (int k = currIndex; k < start; k++) {
+            char c = cs[k];
+            if (c == '\r') {
+                if (k < start - 1 && cs[k + 1] == '\n') {
+                    k++;
+                }
+                line++;
+            } else if (c == '\n') {
+                line++;
+            }
+        }
+        int lineStart = start - 1;
+        while (lineStart >= 0 && cs[lineStart] != '\r' && cs[lineStart] != '\n') {
+            lineStart--;
+        }
+        expr.beginLine = line;
+        expr.beginColumn = start - lineStart;
+        return expr;
+    }
+
     /**
      * Get the next identifier available.
      * @param c the current char
@@ -470,15 +582,16 @@ public final class FastDefinitionsParser {
 
     /**
      * Start a new class scope with the given row and column.
+     * @param bases the bases of the class (null if it has no parenthesis)
      * @param startClassRow the row where the scope should start
      * @param startClassCol the column where the scope should start
      */
-    private void startClass(String name, int startClassRow, int startClassCol) {
+    private void startClass(String name, exprType[] bases, int startClassRow, int startClassCol) {
         if (startClassCol == 1) {
             endScopesInStack();
         }
         NameTok nameTok = new NameTok(name, NameTok.ClassName);
-        ClassDef classDef = new ClassDef(nameTok, null, null, null, null, null, null);
+        ClassDef classDef = new ClassDef(nameTok, bases, null, null, null, null, null);
 
         classDef.beginLine = startClassRow;
         classDef.beginColumn = startClassCol;
@@ -17,31 +17,35 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
  * initial implementation was highly inefficient when working only with a string (actually, if it was small, there would be no noticeable
  * delays, but if it became big, then the improvement would be HUGE).
  * 
- * It keeps the same semantics for line and column stuff (and shares the previous approach of keeping a buffer for this info).
- * If we wanted we could optimize it for also taking less memory, but as there is usually not so many concurrent parses, this 
- * is probably not worth it -- and it would probably be a little slower)
+ * It keeps the same semantics for line and column stuff, but instead of keeping the line and column for each char
+ * (which needed 2 ints for each char in the buffer), it keeps only the offsets where each line starts, and the
+ * line/column of a position are computed from those when requested (usually in sequence, so, the line of the last
+ * position requested is checked before searching for it).
  */
 
 public final class FastCharStream {
 
     public final char[] buffer;
 
-    public final int bufline[];
-
-    public final int bufcolumn[];
-
-    private boolean prevCharIsCR = false;
-
-    private boolean prevCharIsLF = false;
+    /**
+     * The offsets where each line starts (lineStarts[0] is the start of line 1).
+     * 
+     * Note: a new line starts after a \n or after a \r which is not followed by a \n.
+     */
+    private int[] lineStarts;
 
-    private int column = 0;
+    /**
+     * The number of lines in lineStarts.
+     */
+    private int linesCount;
 
-    private int line = 1;
+    /**
+     * The index (in lineStarts) of the line of the last position requested.
+     */
+    private int lastLine;
 
     public int bufpos = -1;
 
-    private int updatePos;
-
     public int tokenBegin;
 
     private static IOException ioException;
@@ -50,8 +54,66 @@ public final class FastCharStream {
 
     public FastCharStream(char cs[]) {
         this.buffer = cs;
-        this.bufline = new int[cs.length];
-        this.bufcolumn = new int[cs.length];
+        createLineStarts();
+    }
+
+    private void createLineStarts() {
+        final char[] cs = this.buffer;
+        final int len = cs.length;
+        int[] starts = new int[Math.max(16, len / 32)];
+        int count = 1; //starts[0] = 0;
+        for (int i = 0; i < len; i++) {
+            char c = cs[i];
+            if (c == '\n' || (c == '\r' && (i + 1 == len || cs[i + 1] != '\n'))) {
+                if (count == starts.length) {
+                    int[] newStarts = new int[count * 2];
+                    System.arraycopy(starts, 0, newStarts, 0, count);
+                    starts = newStarts;
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.lineStarts = starts;
+        this.linesCount = count;
+    }
+
+    /**
+     * @return the index (in lineStarts) of the line which contains the given position.
+     */
+    private int getLineIndex(final int pos) {
+        final int[] starts = this.lineStarts;
+        int i = lastLine;
+        if (pos >= starts[i]) {
+            //Check the last line and the one after it (positions are usually requested in sequence).
+            if (i + 1 == linesCount || pos < starts[i + 1]) {
+                return i;
+            }
+            i++;
+            if (i + 1 == linesCount || pos < starts[i + 1]) {
+                lastLine = i;
+                return i;
+            }
+        }
+        int low = 0;
+        int high = linesCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= pos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        lastLine = low;
+        return low;
+    }
+
+    private int getLine(int pos) {
+        return getLineIndex(pos) + 1;
+    }
+
+    private int getColumn(int pos) {
+        return pos - lineStarts[getLineIndex(pos)] + 1;
     }
 
     public int getCurrentPos() {
@@ -95,42 +157,7 @@ public final class FastCharStream {
     public final char readChar() throws IOException {
         try {
             bufpos++;
-            char r = this.buffer[bufpos];
-
-            if (bufpos >= updatePos) {
-                updatePos++;
-
-                //start UpdateLineCol
-                column++;
-
-                if (prevCharIsLF) {
-                    prevCharIsLF = false;
-                    line += (column = 1);
-
-                } else if (prevCharIsCR) {
-
-                    prevCharIsCR = false;
-                    if (r == '\n') {
-                        prevCharIsLF = true;
-                    } else {
-                        line += (column = 1);
-                    }
-                }
-
-                if (r == '\r') {
-                    prevCharIsCR = true;
-
-                } else if (r == '\n') {
-                    prevCharIsLF = true;
-
-                }
-
-                bufline[bufpos] = line;
-                bufcolumn[bufpos] = column;
-                //end UpdateLineCol
-            }
-
-            return r;
+            return this.buffer[bufpos];
         } catch (ArrayIndexOutOfBoundsException e) {
             bufpos--;
             if (ioException == null) {
@@ -141,19 +168,19 @@ public final class FastCharStream {
     }
 
     public final int getEndColumn() {
-        return bufcolumn[bufpos];
+        return getColumn(bufpos);
     }
 
     public final int getEndLine() {
-        return bufline[bufpos];
+        return getLine(bufpos);
     }
 
     public final int getBeginColumn() {
-        return bufcolumn[tokenBegin];
+        return getColumn(tokenBegin);
     }
 
     public final int getBeginLine() {
-        return bufline[tokenBegin];
+        return getLine(tokenBegin);
     }
 
     public final void backup(int amount) {
@@ -238,15 +265,18 @@ public final class FastCharStream {
     }
 
     public void setBeginEndCharsEqual(Token t) {
-        t.beginLine = t.endLine = bufline[tokenBegin];
-        t.beginColumn = t.endColumn = bufcolumn[tokenBegin];
+        int lineIndex = getLineIndex(tokenBegin);
+        t.beginLine = t.endLine = lineIndex + 1;
+        t.beginColumn = t.endColumn = tokenBegin - lineStarts[lineIndex] + 1;
     }
 
     public void setBeginEndChars(Token t) {
-        t.beginLine = bufline[tokenBegin];
-        t.beginColumn = bufcolumn[tokenBegin];
-        t.endLine = bufline[bufpos];
-        t.endColumn = bufcolumn[bufpos];
+        int lineIndex = getLineIndex(tokenBegin);
+        t.beginLine = lineIndex + 1;
+        t.beginColumn = tokenBegin - lineStarts[lineIndex] + 1;
+        lineIndex = getLineIndex(bufpos);
+        t.endLine = lineIndex + 1;
+        t.endColumn = bufpos - lineStarts[lineIndex] + 1;
     }
 
 }
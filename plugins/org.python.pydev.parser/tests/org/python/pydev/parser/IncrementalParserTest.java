@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.model.ISimpleNode;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Checks that the incremental parse gives the same ast as a full parse.
+ */
+public class IncrementalParserTest extends TestCase {
+
+    private static final int GRAMMAR_VERSION = IPythonNature.GRAMMAR_PYTHON_VERSION_2_7;
+
+    private int initialMinLines;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(IncrementalParserTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        initialMinLines = IncrementalParser.MIN_LINES_FOR_INCREMENTAL_PARSE;
+        IncrementalParser.MIN_LINES_FOR_INCREMENTAL_PARSE = 0;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IncrementalParser.MIN_LINES_FOR_INCREMENTAL_PARSE = initialMinLines;
+        super.tearDown();
+    }
+
+    /**
+     * Creates a string with the class, line, column and specials of all the nodes in the ast.
+     */
+    private static class DumpVisitor extends VisitorBase {
+
+        private final FastStringBuffer buf = new FastStringBuffer();
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            buf.append(node.getClass().getSimpleName()).append(':').append(node.beginLine).append(':')
+                    .append(node.beginColumn).append(" before:");
+            appendSpecials(node.specialsBefore);
+            buf.append(" after:");
+            appendSpecials(node.specialsAfter);
+            buf.append('\n');
+            return null;
+        }
+
+        private void appendSpecials(List<Object> specials) {
+            if (specials != null) {
+                for (Object o : specials) {
+                    if (o instanceof ISpecialStr) {
+                        ISpecialStr specialStr = (ISpecialStr) o;
+                        buf.append(specialStr.toString()).append('@').append(specialStr.getBeginLine()).append(' ');
+                    } else if (o instanceof SimpleNode) {
+                        buf.append(o.toString()).append('@').append(((SimpleNode) o).beginLine).append(' ');
+                    } else {
+                        buf.append(o.toString()).append(' ');
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            node.traverse(this);
+        }
+    }
+
+    private static String dump(ISimpleNode node) throws Exception {
+        DumpVisitor visitor = new DumpVisitor();
+        ((SimpleNode) node).accept(visitor);
+        return visitor.buf.toString();
+    }
+
+    private static Module fullParse(String text) {
+        Tuple<ISimpleNode, Throwable> tup = PyParser.reparseDocument(new PyParser.ParserInfo(new Document(text),
+                GRAMMAR_VERSION));
+        assertNull(tup.o2);
+        return (Module) tup.o1;
+    }
+
+    private static String createModule() {
+        FastStringBuffer buf = new FastStringBuffer();
+        buf.append("import os #comment\n");
+        buf.append("\n");
+        for (int i = 0; i < 5; i++) {
+            buf.append("# comment before ").append(i).append("\n");
+            buf.append("@decorator(a=").append(i).append(")\n");
+            buf.append("def method").append(i).append("(a, b=(1, 2), *args, **kwargs):\n");
+            buf.append("    '''doc'''\n");
+            buf.append("    call(a, b=lambda x:x)\n");
+            buf.append("    try:\n");
+            buf.append("        from a import b as c\n");
+            buf.append("    except (ImportError, ValueError), e:\n");
+            buf.append("        pass #comment in except\n");
+            buf.append("    # comment at the end of method\n");
+            buf.append("\n");
+            buf.append("class Class").append(i).append("(object):\n");
+            buf.append("    attr = [1, 2]\n");
+            buf.append("\n");
+        }
+        buf.append("if __name__ == '__main__':\n");
+        buf.append("    method0(1)\n");
+        buf.append("# last comment\n");
+        return buf.toString();
+    }
+
+    private Module checkReparse(IncrementalParser parser, String newText) throws Exception {
+        Module module = parser.reparse(newText, GRAMMAR_VERSION);
+        assertNotNull("Expected incremental parse to work for:\n" + newText, module);
+        assertEquals(dump(fullParse(newText)), dump(module));
+        return module;
+    }
+
+    public void testReparseChangeInsideMethod() throws Exception {
+        String text = createModule();
+        Module initial = fullParse(text);
+        IncrementalParser parser = new IncrementalParser();
+        parser.setLastParse(text, initial, GRAMMAR_VERSION);
+        String initialDump = dump(initial);
+
+        //Same number of lines: statements after the change are reused.
+        String newText = text.replace("def method2(a,", "def method2(aa,");
+        Module module = checkReparse(parser, newText);
+        assertEquals(initial.body.length, module.body.length);
+        int changed = 5; //import, 2 for each method/class before it
+        for (int i = 0; i < module.body.length; i++) {
+            if (i == changed) {
+                assertNotSame(initial.body[i], module.body[i]);
+            } else {
+                assertSame(initial.body[i], module.body[i]);
+            }
+        }
+
+        //Add lines: statements after the change are copied with the new lines.
+        Module previous = module;
+        String previousDump = dump(previous);
+        newText = newText.replace("    call(a, b=lambda x:x)\n", "    call(a, b=lambda x:x)\n    x = 10\n\n");
+        module = checkReparse(parser, newText);
+        assertSame(previous.body[0], module.body[0]);
+        assertNotSame(previous.body[module.body.length - 1], module.body[module.body.length - 1]);
+
+        //The previous asts must not be changed.
+        assertEquals(previousDump, dump(previous));
+        assertEquals(initialDump, dump(initial));
+
+        //Remove lines.
+        newText = newText.replace("def method3(a, b=(1, 2), *args, **kwargs):\n    '''doc'''\n",
+                "def method3(a, b=(1, 2), *args, **kwargs):\n");
+        checkReparse(parser, newText);
+
+        //Change the last statement.
+        newText = newText.replace("    method0(1)\n", "    method0(1)\n    method1(2)\n");
+        checkReparse(parser, newText);
+
+        //Add a comment before a statement (which is added to the previous statement).
+        newText = newText.replace("class Class3(object):\n", "#new comment\nclass Class3(object):\n");
+        checkReparse(parser, newText);
+
+        //Add a statement.
+        newText = newText.replace("class Class4(object):\n", "a = 10\nclass Class4(object):\n");
+        module = checkReparse(parser, newText);
+        assertEquals(initial.body.length + 1, module.body.length);
+    }
+
+    public void testReparseFallback() throws Exception {
+        String text = createModule();
+        IncrementalParser parser = new IncrementalParser();
+        parser.setLastParse(text, fullParse(text), GRAMMAR_VERSION);
+
+        //Syntax error: a full parse is needed to report it.
+        assertNull(parser.reparse(text.replace("def method2(a,", "def method2(a,,"), GRAMMAR_VERSION));
+
+        //After a failure, the incremental parse is only done again after a full parse.
+        assertNull(parser.reparse(text.replace("def method2(a,", "def method2(aa,"), GRAMMAR_VERSION));
+        parser.setLastParse(text, fullParse(text), GRAMMAR_VERSION);
+        assertNotNull(parser.reparse(text.replace("def method2(a,", "def method2(aa,"), GRAMMAR_VERSION));
+
+        //__future__ imports change how the module is parsed.
+        parser.setLastParse(text, fullParse(text), GRAMMAR_VERSION);
+        assertNull(parser.reparse("from __future__ import with_statement\n" + text, GRAMMAR_VERSION));
+
+        //Different grammar.
+        parser.setLastParse(text, fullParse(text), GRAMMAR_VERSION);
+        assertNull(parser.reparse(text.replace("def method2(a,", "def method2(aa,"),
+                IPythonNature.GRAMMAR_PYTHON_VERSION_3_0));
+    }
+
+    public void testReparseSmallDocument() throws Exception {
+        IncrementalParser.MIN_LINES_FOR_INCREMENTAL_PARSE = 200;
+        String text = createModule();
+        IncrementalParser parser = new IncrementalParser();
+        parser.setLastParse(text, fullParse(text), GRAMMAR_VERSION);
+        assertNull(parser.reparse(text.replace("def method2(a,", "def method2(aa,"), GRAMMAR_VERSION));
+    }
+
+    public void testReparseUnchanged() throws Exception {
+        String text = createModule();
+        Module module = fullParse(text);
+        IncrementalParser parser = new IncrementalParser();
+        parser.setLastParse(text, module, GRAMMAR_VERSION);
+        assertSame(module, parser.reparse(text, GRAMMAR_VERSION));
+    }
+
+    public void testStatementsReused() throws Exception {
+        String text = createModule();
+        Module module = fullParse(text);
+        IncrementalParser parser = new IncrementalParser();
+        parser.setLastParse(text, module, GRAMMAR_VERSION);
+        Module newModule = checkReparse(parser, text.replace("class Class2(object):\n    attr = [1, 2]",
+                "class Class2(object):\n    attr = [1, 2, 3]"));
+        int reused = 0;
+        for (stmtType stmt : newModule.body) {
+            for (stmtType old : module.body) {
+                if (stmt == old) {
+                    reused++;
+                }
+            }
+        }
+        assertEquals(module.body.length - 1, reused);
+    }
+}
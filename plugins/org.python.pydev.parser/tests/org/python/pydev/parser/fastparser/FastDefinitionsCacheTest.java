@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.fastparser;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.parser.fastparser.FastDefinitionsCache.Entry;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Assign;
+import org.python.pydev.parser.jython.ast.Attribute;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.Name;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+public class FastDefinitionsCacheTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(FastDefinitionsCacheTest.class);
+    }
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File(System.getProperty("java.io.tmpdir")), "definitions_cache");
+        baseDir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static final String CONTENTS = "" +
+            "import os\n" +
+            "GLOBAL = 10\n" +
+            "class Foo(object, mod.Base):\n" +
+            "    attr = 1\n" +
+            "    def __init__(self):\n" +
+            "        self.x = 10\n" +
+            "    class Inner:\n" +
+            "        pass\n" +
+            "def method():\n" +
+            "    a, b = 1, 2\n" +
+            "";
+
+    /**
+     * @return a representation of the node with all the information kept in the cache.
+     */
+    private static void dump(SimpleNode node, FastStringBuffer buf) {
+        if (node == null) {
+            buf.append("null ");
+            return;
+        }
+        buf.append(node.getClass().getSimpleName()).append('(').append(node.beginLine).append(':')
+                .append(node.beginColumn).append(' ');
+        if (node instanceof Module) {
+            dump(((Module) node).body, buf);
+
+        } else if (node instanceof ClassDef) {
+            ClassDef classDef = (ClassDef) node;
+            dump(classDef.name, buf);
+            dump(classDef.bases, buf);
+            dump(classDef.body, buf);
+
+        } else if (node instanceof FunctionDef) {
+            dump(((FunctionDef) node).name, buf);
+            dump(((FunctionDef) node).body, buf);
+
+        } else if (node instanceof Assign) {
+            dump(((Assign) node).targets, buf);
+
+        } else if (node instanceof Name) {
+            Name name = (Name) node;
+            buf.append(name.id).append(' ').append(name.ctx).append(' ').append(name.reserved);
+
+        } else if (node instanceof Attribute) {
+            Attribute attribute = (Attribute) node;
+            dump(attribute.value, buf);
+            dump(attribute.attr, buf);
+            buf.append(attribute.ctx);
+
+        } else if (node instanceof NameTok) {
+            NameTok nameTok = (NameTok) node;
+            buf.append(nameTok.id).append(' ').append(nameTok.ctx);
+
+        } else {
+            fail("Unexpected: " + node);
+        }
+        buf.append(')');
+    }
+
+    private static void dump(SimpleNode[] nodes, FastStringBuffer buf) {
+        if (nodes == null) {
+            buf.append("[null]");
+            return;
+        }
+        buf.append('[');
+        for (SimpleNode node : nodes) {
+            dump(node, buf);
+        }
+        buf.append(']');
+    }
+
+    private static String dump(SimpleNode node) {
+        FastStringBuffer buf = new FastStringBuffer();
+        dump(node, buf);
+        return buf.toString();
+    }
+
+    public void testRoundTrip() throws Exception {
+        FastDefinitionsCache cache = new FastDefinitionsCache(baseDir, 1024 * 1024);
+        char[] cs = CONTENTS.toCharArray();
+        String hash = FastDefinitionsCache.hash(cs, cs.length);
+        assertNull(cache.get(hash));
+
+        SimpleNode ast = FastDefinitionsParser.parse(cs, "mod", cs.length);
+        assertTrue(cache.put(hash, ast, new String[] { "os", "GLOBAL", "Foo" }));
+
+        Entry entry = cache.get(hash);
+        assertEquals(dump(ast), dump(entry.ast));
+        assertTrue(dump(ast).indexOf("Attribute") != -1); //i.e.: the bases and self.x
+        assertEquals(Arrays.asList("os", "GLOBAL", "Foo"), Arrays.asList(entry.tokens));
+
+        //Gotten from the disk in a new cache.
+        cache.save();
+        FastDefinitionsCache cache2 = new FastDefinitionsCache(baseDir, 1024 * 1024);
+        assertEquals(1, cache2.getEntriesCount());
+        entry = cache2.get(hash);
+        assertEquals(dump(ast), dump(entry.ast));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache2.getHits());
+        assertEquals(0, cache2.getMisses());
+    }
+
+    public void testHash() throws Exception {
+        char[] cs = "a = 10\nb = 20".toCharArray();
+        assertEquals(FastDefinitionsCache.hash(cs, 6), FastDefinitionsCache.hash("a = 10".toCharArray(), 6));
+        assertFalse(FastDefinitionsCache.hash(cs, 6).equals(FastDefinitionsCache.hash(cs, cs.length)));
+        assertEquals(40, FastDefinitionsCache.hash(cs, cs.length).length());
+    }
+
+    public void testNullTokens() throws Exception {
+        FastDefinitionsCache cache = new FastDefinitionsCache(baseDir, 1024 * 1024);
+        SimpleNode ast = FastDefinitionsParser.parse("a = 10");
+        assertTrue(cache.put("abcd", ast, null));
+        Entry entry = cache.get("abcd");
+        assertNull(entry.tokens);
+        assertEquals(dump(ast), dump(entry.ast));
+    }
+
+    public void testLRU() throws Exception {
+        SimpleNode ast = FastDefinitionsParser.parse(CONTENTS);
+        FastDefinitionsCache cache = new FastDefinitionsCache(baseDir, Long.MAX_VALUE);
+        cache.put("aa01", ast, null);
+        long entrySize = cache.getTotalBytes();
+
+        //Only 3 entries fit.
+        cache = new FastDefinitionsCache(new File(baseDir, "lru"), entrySize * 3);
+        cache.put("aa01", ast, null);
+        cache.put("aa02", ast, null);
+        cache.put("aa03", ast, null);
+        assertNotNull(cache.get("aa01")); //aa02 is now the least recently used.
+        cache.put("aa04", ast, null);
+
+        assertEquals(3, cache.getEntriesCount());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("aa02"));
+        assertFalse(new File(baseDir, "lru/aa/aa02.defs").exists());
+        assertNotNull(cache.get("aa01"));
+        assertNotNull(cache.get("aa03"));
+        assertNotNull(cache.get("aa04"));
+
+        //The access order is kept in the index.
+        cache.get("aa03");
+        cache.save();
+        cache = new FastDefinitionsCache(new File(baseDir, "lru"), entrySize * 3);
+        cache.put("aa05", ast, null);
+        assertNull(cache.get("aa01"));
+        assertNotNull(cache.get("aa03"));
+    }
+
+    public void testWithoutIndex() throws Exception {
+        FastDefinitionsCache cache = new FastDefinitionsCache(baseDir, 1024 * 1024);
+        cache.put("aa01", FastDefinitionsParser.parse(CONTENTS), null);
+        cache.put("bb01", FastDefinitionsParser.parse(CONTENTS), null);
+        File other = new File(baseDir, "cc/other.txt");
+        other.getParentFile().mkdirs();
+        FileUtils.writeStrToFile("other", other);
+        File otherDir = new File(baseDir, "other/file.txt");
+        otherDir.getParentFile().mkdirs();
+        FileUtils.writeStrToFile("other", otherDir);
+
+        //The entries are gotten from the directory (and files not created by the cache are kept).
+        cache = new FastDefinitionsCache(baseDir, 1024 * 1024);
+        assertEquals(2, cache.getEntriesCount());
+        assertNotNull(cache.get("bb01"));
+        assertTrue(other.exists());
+        assertTrue(otherDir.exists());
+    }
+
+    public void testCorruptedEntry() throws Exception {
+        FastDefinitionsCache cache = new FastDefinitionsCache(baseDir, 1024 * 1024);
+        cache.put("aa01", FastDefinitionsParser.parse(CONTENTS), null);
+        FileUtils.writeStrToFile("invalid", new File(baseDir, "aa/aa01.defs"));
+        assertNull(cache.get("aa01"));
+        assertEquals(0, cache.getEntriesCount());
+    }
+}
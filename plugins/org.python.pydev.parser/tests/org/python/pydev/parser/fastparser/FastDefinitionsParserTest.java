@@ -1444,6 +1444,62 @@ public class FastDefinitionsParserTest extends TestCase {
         Module m = (Module) FastDefinitionsParser.parse("def\n");
     }
 
+    public void testClassBases() {
+        Module m = (Module) FastDefinitionsParser.parse("" +
+                "class A(object):pass\n" +
+                "class B(A, mod.sub.Base, metaclass=Meta):pass\n" +
+                "class C(namedtuple('C', 'a b'), # comment\n" +
+                "        Mixin):\n" +
+                "    class D: pass\n" +
+                "class E(): pass\n" +
+                "");
+        assertEquals(4, m.body.length);
+
+        ClassDef classDef = (ClassDef) m.body[0];
+        assertEquals(1, classDef.bases.length);
+        assertEquals("object", ((Name) classDef.bases[0]).id);
+        assertEquals(1, classDef.bases[0].beginLine);
+        assertEquals(9, classDef.bases[0].beginColumn);
+
+        classDef = (ClassDef) m.body[1];
+        assertEquals(2, classDef.bases.length);
+        assertEquals("A", NodeUtils.getFullRepresentationString(classDef.bases[0]));
+        assertEquals("mod.sub.Base", NodeUtils.getFullRepresentationString(classDef.bases[1]));
+        assertEquals(12, classDef.bases[1].beginColumn);
+
+        classDef = (ClassDef) m.body[2];
+        assertEquals(1, classDef.bases.length);
+        assertEquals("Mixin", NodeUtils.getFullRepresentationString(classDef.bases[0]));
+        assertEquals(4, classDef.bases[0].beginLine);
+        assertEquals(9, classDef.bases[0].beginColumn);
+        assertNull(((ClassDef) classDef.body[0]).bases);
+
+        classDef = (ClassDef) m.body[3];
+        assertEquals(0, classDef.bases.length);
+    }
+
+    public void testAssignTargetsPosition() {
+        Module m = (Module) FastDefinitionsParser.parse("a = (1,\n" +
+                "    2)\n" +
+                "class Bar(object):\n" +
+                "    def m1(self):\n" +
+                "        self.x = 10\n" +
+                "");
+        assertEquals(2, m.body.length);
+        Assign assign = (Assign) m.body[0];
+        assertEquals(1, assign.beginLine);
+        assertEquals(1, assign.targets[0].beginLine);
+        assertEquals(1, assign.targets[0].beginColumn);
+
+        ClassDef classDef = (ClassDef) m.body[1];
+        assertEquals(3, classDef.beginLine);
+        FunctionDef funcDef = (FunctionDef) classDef.body[0];
+        assign = (Assign) funcDef.body[0];
+        Attribute attribute = (Attribute) assign.targets[0];
+        assertEquals(5, attribute.beginLine);
+        assertEquals(9, attribute.beginColumn);
+    }
+
     public void testEmpty() {
         Module m = (Module) FastDefinitionsParser.parse("# This file was created automatically by SWIG 1.3.29.\n" +
                 ""
@@ -219,6 +219,50 @@ public class ReaderCharStreamTest extends TestCase {
         assertEquals(1, in.getEndLine());
     }
 
+    public void testLineEndings() throws Exception {
+        //lines: "a\r" "\r\n" "b\n" "\n" "\r" "c"
+        FastCharStream in = new FastCharStream("a\r\r\nb\n\n\rc".toCharArray());
+        int[][] expected = new int[][] { { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 }, { 3, 1 }, { 3, 2 }, { 4, 1 },
+                { 5, 1 }, { 6, 1 } };
+        for (int i = 0; i < expected.length; i++) {
+            in.readChar();
+            assertEquals(expected[i][0], in.getEndLine());
+            assertEquals(expected[i][1], in.getEndColumn());
+        }
+
+        //going back and forth must give the same results.
+        in.backup(expected.length - 1);
+        assertEquals(1, in.getEndLine());
+        assertEquals(1, in.getEndColumn());
+        for (int i = expected.length - 1; i >= 0; i--) {
+            in.bufpos = i;
+            assertEquals(expected[i][0], in.getEndLine());
+            assertEquals(expected[i][1], in.getEndColumn());
+        }
+    }
+
+    public void testSetBeginEndChars() throws Exception {
+        FastCharStream in = new FastCharStream("ab\ncd\r\nef".toCharArray());
+        assertEquals('a', in.readChar());
+        assertEquals('b', in.BeginToken());
+        assertEquals('\n', in.readChar());
+        assertEquals('c', in.readChar());
+        assertEquals('d', in.readChar());
+
+        Token t = new Token();
+        in.setBeginEndChars(t);
+        assertEquals(1, t.beginLine);
+        assertEquals(2, t.beginColumn);
+        assertEquals(2, t.endLine);
+        assertEquals(2, t.endColumn);
+
+        in.setBeginEndCharsEqual(t);
+        assertEquals(1, t.beginLine);
+        assertEquals(2, t.beginColumn);
+        assertEquals(1, t.endLine);
+        assertEquals(2, t.endColumn);
+    }
+
     /**
      * @param in
      */
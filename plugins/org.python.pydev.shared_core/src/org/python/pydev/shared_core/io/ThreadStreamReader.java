@@ -12,6 +12,8 @@ package org.python.pydev.shared_core.io;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.log.Log;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 
 public final class ThreadStreamReader extends Thread {
@@ -36,6 +38,22 @@ public final class ThreadStreamReader extends Thread {
      */
     private final boolean synchronize;
 
+    /**
+     * The maximum number of chars kept until the contents are gotten (0 means unbounded). If the contents are
+     * not consumed fast enough, the oldest chars are dropped.
+     */
+    private final int maxContentsSize;
+
+    /**
+     * The number of chars dropped since the contents were last gotten.
+     */
+    private long droppedChars;
+
+    /**
+     * Called (in this thread) whenever new contents are available.
+     */
+    private volatile ICallback<Object, ThreadStreamReader> onContentsAvailable;
+
     /**
      * Keeps the next unique identifier.
      */
@@ -60,12 +78,29 @@ public final class ThreadStreamReader extends Thread {
     }
 
     public ThreadStreamReader(InputStream is, boolean synchronize, String encoding) {
+        this(is, synchronize, encoding, 0);
+    }
+
+    /**
+     * @param maxContentsSize the maximum number of chars to be kept until the contents are gotten (0 for unbounded).
+     * When reached, the oldest chars are dropped (and the contents gotten will have a message saying how many chars
+     * were dropped).
+     */
+    public ThreadStreamReader(InputStream is, boolean synchronize, String encoding, int maxContentsSize) {
         this.setName("ThreadStreamReader: " + next());
         this.setDaemon(true);
         this.encoding = encoding;
         contents = new FastStringBuffer();
         this.is = is;
         this.synchronize = synchronize;
+        this.maxContentsSize = maxContentsSize;
+    }
+
+    /**
+     * @param onContentsAvailable called (in the thread that reads the stream) whenever new contents are read.
+     */
+    public void setOnContentsAvailable(ICallback<Object, ThreadStreamReader> onContentsAvailable) {
+        this.onContentsAvailable = onContentsAvailable;
     }
 
     public void run() {
@@ -86,12 +121,14 @@ public final class ThreadStreamReader extends Thread {
             if (synchronize) {
                 while ((c = in.read(buf)) != -1) {
                     synchronized (lock) {
-                        contents.append(buf, 0, c);
+                        append(buf, c);
                     }
+                    notifyContentsAvailable();
                 }
             } else {
                 while ((c = in.read(buf)) != -1) {
-                    contents.append(buf, 0, c);
+                    append(buf, c);
+                    notifyContentsAvailable();
                 }
             }
         } catch (Exception e) {
@@ -99,21 +136,60 @@ public final class ThreadStreamReader extends Thread {
         }
     }
 
+    private void append(char[] buf, int len) {
+        contents.append(buf, 0, len);
+        if (maxContentsSize > 0 && contents.length() > maxContentsSize * 2) {
+            //Only drop when we have twice the max size, so that the removal is amortized.
+            int drop = contents.length() - maxContentsSize;
+            contents.delete(0, drop);
+            droppedChars += drop;
+        }
+    }
+
+    private void notifyContentsAvailable() {
+        ICallback<Object, ThreadStreamReader> callback = onContentsAvailable;
+        if (callback != null) {
+            try {
+                callback.call(this);
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    /**
+     * @return whether there are contents which weren't gotten yet.
+     */
+    public boolean hasContents() {
+        synchronized (lock) {
+            return contents.length() > 0;
+        }
+    }
+
     /**
      * @return the contents that were obtained from this instance since it was started or since
      * the last call to this method.
      */
     public String getAndClearContents() {
         synchronized (lock) {
-            String string = contents.toString();
+            String string = getContentsWithDroppedMessage();
             contents.clear();
+            droppedChars = 0;
             return string;
         }
     }
 
     public String getContents() {
         synchronized (lock) {
+            return getContentsWithDroppedMessage();
+        }
+    }
+
+    private String getContentsWithDroppedMessage() {
+        if (droppedChars == 0) {
             return contents.toString();
         }
+        return new FastStringBuffer(contents.length() + 60).append("... (").append(droppedChars)
+                .append(" chars of output dropped) ...\n").append(contents).toString();
     }
 }
@@ -30,7 +30,7 @@ import org.python.pydev.shared_core.structure.Tuple;
  * PyParser uses org.python.parser to parse the document (lexical analysis) It
  * is attached to PyEdit (a view), and it listens to document changes On every
  * document change, the syntax tree is regenerated The reparsing of the document
- * is done on a ParsingThread
+ * is done in the ParserExecutor
  * 
  * Clients that need to know when new parse tree has been generated should
  * register as parseListeners.
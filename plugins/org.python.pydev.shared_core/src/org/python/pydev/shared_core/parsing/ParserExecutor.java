@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.shared_core.parsing;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.python.pydev.shared_core.log.Log;
+
+/**
+ * Executor shared by all the ParserSchedulers (i.e.: all the editors): instead of having a thread for each editor
+ * (and a new thread for each 'parse later' request), there's a single timer thread which handles the elapse time
+ * before a parse and a pool (sized to the available cores) which does the actual parsing.
+ *
+ * Each ParserScheduler has at most one entry in the timer queue and one entry in the parse queue (so, many requests
+ * for the same document are coalesced). The parse queue gives priority to forced parses and then to the documents
+ * which had the most recent requests (i.e.: the editor where the user is typing).
+ */
+public final class ParserExecutor {
+
+    private static final boolean DEBUG = false;
+
+    private static ParserExecutor instance;
+
+    public static synchronized ParserExecutor get() {
+        if (instance == null) {
+            instance = new ParserExecutor();
+        }
+        return instance;
+    }
+
+    /**
+     * An entry in the timer queue (the deadline of the scheduler may be postponed while the entry is in the queue,
+     * in which case, it's re-added with the new deadline when it expires).
+     */
+    private static final class ElapseEntry implements Delayed {
+
+        private final ParserScheduler scheduler;
+        private final long deadlineNanos;
+
+        private ElapseEntry(ParserScheduler scheduler, long deadlineNanos) {
+            this.scheduler = scheduler;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        public int compareTo(Delayed o) {
+            long d = deadlineNanos - ((ElapseEntry) o).deadlineNanos;
+            return d < 0 ? -1 : (d > 0 ? 1 : 0);
+        }
+    }
+
+    /**
+     * A parse to be done in the pool.
+     */
+    private static final class ParseTask implements Runnable, Comparable<ParseTask> {
+
+        private final ParserScheduler scheduler;
+        private final boolean force;
+        private final long requestTime;
+
+        private ParseTask(ParserScheduler scheduler, boolean force, long requestTime) {
+            this.scheduler = scheduler;
+            this.force = force;
+            this.requestTime = requestTime;
+        }
+
+        public void run() {
+            scheduler.doParse();
+        }
+
+        public int compareTo(ParseTask o) {
+            if (force != o.force) {
+                return force ? -1 : 1;
+            }
+            //Most recent requests first.
+            return requestTime > o.requestTime ? -1 : (requestTime < o.requestTime ? 1 : 0);
+        }
+    }
+
+    private static final class ParserThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Parser Worker " + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1); //parsing is lower than normal priority
+            return thread;
+        }
+    }
+
+    private final DelayQueue<ElapseEntry> elapseQueue = new DelayQueue<ElapseEntry>();
+
+    private final ThreadPoolExecutor pool;
+
+    private ParserExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                new ParserThreadFactory());
+        pool.allowCoreThreadTimeOut(true);
+
+        Thread timer = new Thread("Parser Scheduler") {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        ElapseEntry entry = elapseQueue.take();
+                        entry.scheduler.onElapsed(entry.deadlineNanos);
+                    } catch (InterruptedException e) {
+                        //Keep on going (daemon thread).
+                    } catch (Throwable e) {
+                        Log.log(e);
+                    }
+                }
+            }
+        };
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    /**
+     * Adds the scheduler to the timer queue (the scheduler is responsible for making sure it's there only once).
+     */
+    void addToElapseQueue(ParserScheduler scheduler, long deadlineNanos) {
+        elapseQueue.add(new ElapseEntry(scheduler, deadlineNanos));
+    }
+
+    /**
+     * Adds the scheduler to the parse queue (the scheduler is responsible for making sure it's there only once).
+     */
+    void addToParseQueue(ParserScheduler scheduler, boolean force, long requestTime) {
+        if (DEBUG) {
+            System.out.println("Parse queued (force: " + force + "). Queue size: " + pool.getQueue().size());
+        }
+        pool.execute(new ParseTask(scheduler, force, requestTime));
+    }
+}
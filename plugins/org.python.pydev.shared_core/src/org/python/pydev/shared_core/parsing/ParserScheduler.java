@@ -11,12 +11,18 @@
  */
 package org.python.pydev.shared_core.parsing;
 
-public class ParserScheduler {
+import java.util.concurrent.TimeUnit;
 
-    /**
-     * used to do parsings in a thread - is null when not doing parsings
-     */
-    public volatile ParsingThread parsingThread;
+import org.python.pydev.shared_core.log.Log;
+
+/**
+ * Decides when a document should be reparsed (the actual work is done in the ParserExecutor, which is shared among
+ * all the schedulers).
+ *
+ * Requests which are not forced wait until the user stops changing the document for
+ * getElapseMillisBeforeAnalysis() and forced requests are done as soon as possible.
+ */
+public class ParserScheduler {
 
     /**
      * indicates that currently nothing is happening
@@ -29,38 +35,72 @@ public class ParserScheduler {
     public static final int STATE_PARSE_LATER = 1;
 
     /**
-     * indicates if a thread is currently waiting for an elapse cycle to end
+     * indicates if we're currently waiting for an elapse cycle to end
      */
     public static final int STATE_WAITING_FOR_ELAPSE = 2;
 
     /**
-     * indicates if a thread is currently doing a parse action
+     * indicates if we're currently doing a parse action
      */
     public static final int STATE_DOING_PARSE = 3;
 
+    private static final Object[] NO_ARGS = new Object[0];
+
     /**
      * initially we're waiting
      */
     volatile int state = STATE_WAITING;
 
+    private volatile IParser parser;
+
+    private final BaseParserManager parserManager;
+
+    private final ParserExecutor executor;
+
+    // The fields below are all guarded by the lock.
+    private final Object lock = new Object();
+
     /**
-     * this is the exact time a parse later was requested
+     * the time (System.nanoTime()) when the parse should be done if no other request arrives
      */
-    private volatile long timeParseLaterRequested = 0;
+    private long elapseDeadline;
 
     /**
-     * this is the exact time the last parse was requested
+     * whether a parse is waiting for the elapse time
      */
-    private volatile long timeLastParse = 0;
+    private boolean elapsePending;
 
-    private volatile IParser parser;
+    /**
+     * whether we're in the timer queue of the executor
+     */
+    private boolean inElapseQueue;
 
-    private BaseParserManager parserManager;
+    /**
+     * whether we're in the parse queue of the executor
+     */
+    private boolean inParseQueue;
+
+    /**
+     * whether a parse is currently being done
+     */
+    private boolean parsing;
+
+    /**
+     * the arguments to be passed to the next reparse
+     */
+    private Object[] argsToReparse = NO_ARGS;
+
+    private boolean disposed;
 
     public ParserScheduler(IParser parser, BaseParserManager parserManager) {
+        this(parser, parserManager, ParserExecutor.get());
+    }
+
+    /*default*/ParserScheduler(IParser parser, BaseParserManager parserManager, ParserExecutor executor) {
         super();
         this.parser = parser;
         this.parserManager = parserManager;
+        this.executor = executor;
     }
 
     public void parseNow() {
@@ -74,78 +114,118 @@ public class ParserScheduler {
      */
     public boolean parseNow(boolean force, Object... argsToReparse) {
         if (!force) {
-            if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_DOING_PARSE) {
-                //waiting or parse later
-                state = STATE_WAITING_FOR_ELAPSE; // the parser will reset it later
-                timeLastParse = System.currentTimeMillis();
-                checkCreateAndStartParsingThread();
-            } else {
-                //another request... we keep waiting until the user stops adding requests
-                boolean created = checkCreateAndStartParsingThread();
-                if (!created) {
-                    parsingThread.okToGo = false;
-                }
-            }
-        } else {
-            ParsingThread parserThreadLocal = parsingThread; //if it dies suddenly, we don't want to get it as null...
-            if (state == ParserScheduler.STATE_DOING_PARSE) {
+            //we keep waiting until the user stops adding requests
+            requestAfterElapse(STATE_WAITING_FOR_ELAPSE);
+            return true;
+        }
+        synchronized (lock) {
+            if (parsing) {
                 //a parse is already in action
                 return false;
-            } else {
-                if (parserThreadLocal == null) {
-                    parserThreadLocal = new ParsingThread(parserManager, this, argsToReparse);
-                    parsingThread = parserThreadLocal;
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.setPriority(Thread.NORM_PRIORITY - 1); //parsing is lower than normal priority
-                    parserThreadLocal.start();
-                } else {
-                    //force it to run
-                    parserThreadLocal.force = true;
-                    parserThreadLocal.interrupt();
-                }
             }
+            if (disposed) {
+                return true;
+            }
+            this.argsToReparse = argsToReparse;
+            elapsePending = false; //we'll do it right now
+            addToParseQueue(true);
         }
         return true;
     }
 
+    public void parseLater() {
+        requestAfterElapse(STATE_PARSE_LATER);
+    }
+
     /**
-     * @return whether we really created the thread (returns false if the thread already exists)
+     * Requests a parse after the elapse time (postponing the current request if there's one already).
      */
-    private boolean checkCreateAndStartParsingThread() {
-        ParsingThread p = parsingThread;
-        if (p == null) {
-            p = new ParsingThread(parserManager, this);
-            p.setPriority(Thread.MIN_PRIORITY); //parsing is low priority
-            p.start();
-            parsingThread = p;
-            return true;
+    private void requestAfterElapse(int newState) {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(parserManager.getElapseMillisBeforeAnalysis());
+        synchronized (lock) {
+            if (disposed) {
+                return;
+            }
+            elapseDeadline = deadline;
+            elapsePending = true;
+            if (!parsing) {
+                state = newState;
+            }
+            if (!inElapseQueue) {
+                inElapseQueue = true;
+                executor.addToElapseQueue(this, deadline);
+            }
         }
-        return false;
     }
 
-    public void parseLater() {
-        if (state != STATE_WAITING_FOR_ELAPSE && state != STATE_PARSE_LATER) {
-            state = STATE_PARSE_LATER;
-            //ok, the time for this request is:
-            timeParseLaterRequested = System.currentTimeMillis();
-            Thread thread = new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        sleep(parserManager.getElapseMillisBeforeAnalysis());
-                    } catch (Exception e) {
-                        //that's ok
-                    }
-                    //ok, no parse happened while we were sleeping
-                    if (state == STATE_PARSE_LATER && timeLastParse < timeParseLaterRequested) {
-                        parseNow();
+    /**
+     * Called by the executor when the entry we added to the timer queue expires.
+     */
+    void onElapsed(long deadlineExpired) {
+        synchronized (lock) {
+            if (!elapsePending || disposed) {
+                inElapseQueue = false;
+                return;
+            }
+            if (elapseDeadline != deadlineExpired) {
+                //Some request arrived later on: keep waiting.
+                executor.addToElapseQueue(this, elapseDeadline);
+                return;
+            }
+            inElapseQueue = false;
+            if (parsing) {
+                //Will be added to the parse queue when the current parse finishes.
+                return;
+            }
+            elapsePending = false;
+            addToParseQueue(false);
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void addToParseQueue(boolean force) {
+        if (!inParseQueue) {
+            inParseQueue = true;
+            executor.addToParseQueue(this, force, System.nanoTime());
+        }
+    }
+
+    /**
+     * Called by the executor to actually do the parse.
+     */
+    void doParse() {
+        Object[] args;
+        synchronized (lock) {
+            inParseQueue = false;
+            if (disposed) {
+                return;
+            }
+            parsing = true;
+            state = STATE_DOING_PARSE;
+            args = argsToReparse;
+            argsToReparse = NO_ARGS;
+        }
+        try {
+            reparseDocument(args);
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            synchronized (lock) {
+                parsing = false;
+                state = STATE_WAITING;
+                if (elapsePending && !disposed) {
+                    state = STATE_WAITING_FOR_ELAPSE;
+                    if (!inElapseQueue) {
+                        //The elapse time passed while we were parsing.
+                        elapsePending = false;
+                        addToParseQueue(false);
                     }
                 }
-            };
-            thread.setName("ParserScheduler");
-            thread.start();
+            }
         }
-
     }
 
     /**
@@ -161,9 +241,9 @@ public class ParserScheduler {
     }
 
     public void dispose() {
-        ParsingThread p = this.parsingThread;
-        if (p != null) {
-            p.dispose();
+        synchronized (lock) {
+            this.disposed = true;
+            this.elapsePending = false;
         }
         this.parser = null;
     }
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.shared_core.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.shared_core.editor.IBaseEditor;
+
+public class ParserSchedulerTest extends TestCase {
+
+    private static final int ELAPSE_MILLIS = 100;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ParserSchedulerTest.class);
+    }
+
+    private static class ParserManagerStub extends BaseParserManager {
+
+        public ParserManagerStub() {
+            this.millisBeforeAnalysis = ELAPSE_MILLIS;
+        }
+
+        @Override
+        protected IParser createParser(IBaseEditor edit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class ParserStub implements IParser {
+
+        private final AtomicInteger parses = new AtomicInteger();
+        private final List<Object[]> argsReceived = new ArrayList<Object[]>();
+        private volatile CountDownLatch parsed = new CountDownLatch(1);
+        private volatile long parseMillis = 0;
+
+        public Object reparseDocument(Object... argsToReparse) {
+            synchronized (argsReceived) {
+                argsReceived.add(argsToReparse);
+            }
+            if (parseMillis > 0) {
+                try {
+                    Thread.sleep(parseMillis);
+                } catch (InterruptedException e) {
+                }
+            }
+            parses.incrementAndGet();
+            parsed.countDown();
+            return null;
+        }
+
+        public void setDocument(IDocument document, Object input) {
+        }
+
+        public void notifySaved() {
+        }
+
+        public void removeParseListener(IParserObserver parserObserver) {
+        }
+
+        public void addParseListener(IParserObserver parserObserver) {
+        }
+
+        public void dispose() {
+        }
+
+        public void resetTimeoutPreferences(boolean useAnalysisOnlyOnDocSave) {
+        }
+
+        public boolean forceReparse(Object... argsToReparse) {
+            return false;
+        }
+    }
+
+    private ParserStub parser;
+    private ParserScheduler scheduler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        parser = new ParserStub();
+        scheduler = new ParserScheduler(parser, new ParserManagerStub());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        scheduler.dispose();
+        super.tearDown();
+    }
+
+    public void testRequestsAreCoalesced() throws Exception {
+        int initialThreads = Thread.activeCount();
+        long initial = System.currentTimeMillis();
+        //Simulate typing (a request each 10 millis for 300 millis).
+        for (int i = 0; i < 30; i++) {
+            if (i % 5 == 0) {
+                scheduler.parseNow();
+            } else {
+                scheduler.parseLater();
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(parser.parsed.await(5, TimeUnit.SECONDS));
+        long delta = System.currentTimeMillis() - initial;
+        //Only parsed after the user stopped typing.
+        assertTrue("Parsed too early: " + delta, delta >= 300 + ELAPSE_MILLIS - 20);
+
+        Thread.sleep(ELAPSE_MILLIS * 3);
+        assertEquals(1, parser.parses.get());
+        //No thread per request.
+        assertTrue(Thread.activeCount() - initialThreads < 5);
+    }
+
+    public void testForcedParse() throws Exception {
+        Object arg = new Object();
+        assertTrue(scheduler.parseNow(true, arg));
+        assertTrue(parser.parsed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, parser.parses.get());
+        synchronized (parser.argsReceived) {
+            assertSame(arg, parser.argsReceived.get(0)[0]);
+        }
+
+        //While parsing, a forced parse is not accepted.
+        parser.parseMillis = 300;
+        parser.parsed = new CountDownLatch(1);
+        assertTrue(scheduler.parseNow(true));
+        Thread.sleep(100);
+        assertFalse(scheduler.parseNow(true));
+        assertTrue(parser.parsed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, parser.parses.get());
+    }
+
+    public void testRequestWhileParsingIsNotLost() throws Exception {
+        parser.parseMillis = ELAPSE_MILLIS * 3;
+        parser.parsed = new CountDownLatch(2);
+        scheduler.parseNow(true);
+        Thread.sleep(20);
+        scheduler.parseLater(); //elapses while the forced parse is still running
+        assertTrue(parser.parsed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, parser.parses.get());
+    }
+
+    public void testDispose() throws Exception {
+        scheduler.parseLater();
+        scheduler.dispose();
+        Thread.sleep(ELAPSE_MILLIS * 3);
+        assertEquals(0, parser.parses.get());
+    }
+}
@@ -24,7 +24,8 @@ public interface IScriptConsoleCommunication {
      * Executes a given command in the interpreter (push a line)
      * 
      * @param command the command to be executed
-     * @param onContentsReceived 
+     * @param onContentsReceived called with (stdout, stderr) chunks as the output becomes available while the
+     * command is running (it may block to slow down the delivery if the output can't be consumed fast enough).
      * @return the response from the interpreter (contains the stdout, stderr, etc).
      * @throws Exception
      */
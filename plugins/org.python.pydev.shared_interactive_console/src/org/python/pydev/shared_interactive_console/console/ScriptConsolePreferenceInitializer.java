@@ -21,6 +21,10 @@ public class ScriptConsolePreferenceInitializer extends AbstractPreferenceInitia
         //console history
         node.putInt(ScriptConsoleUIConstants.INTERACTIVE_CONSOLE_PERSISTENT_HISTORY_MAXIMUM_ENTRIES,
                 ScriptConsoleUIConstants.DEFAULT_INTERACTIVE_CONSOLE_PERSISTENT_HISTORY_MAXIMUM_ENTRIES);
+
+        //lines kept in the console
+        node.putInt(ScriptConsoleUIConstants.INTERACTIVE_CONSOLE_MAXIMUM_LINES,
+                ScriptConsoleUIConstants.DEFAULT_INTERACTIVE_CONSOLE_MAXIMUM_LINES);
     }
 
 }
@@ -81,6 +81,27 @@ public class ScriptConsolePartitioner implements IConsoleDocumentPartitioner {
         }
     }
 
+    /**
+     * Updates the ranges after the given number of chars is removed from the start of the document.
+     */
+    public void removeFromStart(int length) {
+        int removeUntil = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ScriptStyleRange r = ranges.get(i);
+            if (r.start + r.length <= length) {
+                removeUntil = i + 1;
+            } else if (r.start < length) {
+                r.length -= length - r.start;
+                r.start = 0;
+            } else {
+                r.start -= length;
+            }
+        }
+        if (removeUntil > 0) {
+            ranges.subList(0, removeUntil).clear();
+        }
+    }
+
     private boolean equalsColor(Color foreground, Color foreground2) {
         if (foreground == foreground2) {
             return true;
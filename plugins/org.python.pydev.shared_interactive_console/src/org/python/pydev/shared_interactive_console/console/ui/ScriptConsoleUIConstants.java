@@ -29,4 +29,8 @@ public class ScriptConsoleUIConstants {
     public static final String INTERACTIVE_CONSOLE_PERSISTENT_HISTORY_MAXIMUM_ENTRIES = "INTERACTIVE_CONSOLE_PERSISTENT_HISTORY_MAXIMUM_ENTRIES";
 
     public static final int DEFAULT_INTERACTIVE_CONSOLE_PERSISTENT_HISTORY_MAXIMUM_ENTRIES = 200;
+
+    public static final String INTERACTIVE_CONSOLE_MAXIMUM_LINES = "INTERACTIVE_CONSOLE_MAXIMUM_LINES";
+
+    public static final int DEFAULT_INTERACTIVE_CONSOLE_MAXIMUM_LINES = 20000;
 }
@@ -21,17 +21,20 @@ import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IDocumentPartitioner;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextUtilities;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.log.Log;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.TextSelectionUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.shared_core.utils.DocCmd;
+import org.python.pydev.shared_interactive_console.InteractiveConsolePlugin;
 import org.python.pydev.shared_interactive_console.console.InterpreterResponse;
 import org.python.pydev.shared_interactive_console.console.ScriptConsoleHistory;
 import org.python.pydev.shared_interactive_console.console.ScriptConsolePrompt;
 import org.python.pydev.shared_interactive_console.console.ui.IConsoleStyleProvider;
 import org.python.pydev.shared_interactive_console.console.ui.ScriptConsolePartitioner;
+import org.python.pydev.shared_interactive_console.console.ui.ScriptConsoleUIConstants;
 import org.python.pydev.shared_interactive_console.console.ui.ScriptStyleRange;
 import org.python.pydev.shared_ui.utils.RunInUiThread;
 
@@ -254,6 +257,7 @@ public class ScriptConsoleDocumentListener implements IDocumentListener {
         if (out.length() == 0) {
             return; //nothing to add!
         }
+        removeExceedingLines();
         int start = doc.getLength();
 
         IConsoleStyleProvider styleProvider = viewer.getStyleProvider();
@@ -295,6 +299,50 @@ public class ScriptConsoleDocumentListener implements IDocumentListener {
         }
     }
 
+    /**
+     * If the document has more lines than the maximum configured, removes lines from its start (when it
+     * happens, it's removed until it has 80% of the maximum, so that it doesn't happen on each output added).
+     */
+    private void removeExceedingLines() {
+        int maxLines = getMaximumLines();
+        if (maxLines <= 0) {
+            return;
+        }
+        int numberOfLines = doc.getNumberOfLines();
+        if (numberOfLines <= maxLines) {
+            return;
+        }
+        try {
+            int removeUpToOffset = doc.getLineOffset(numberOfLines - (maxLines * 4 / 5));
+            IDocumentPartitioner partitioner = this.doc.getDocumentPartitioner();
+            if (partitioner instanceof ScriptConsolePartitioner) {
+                ((ScriptConsolePartitioner) partitioner).removeFromStart(removeUpToOffset);
+            }
+            startDisconnected();
+            try {
+                doc.replace(0, removeUpToOffset, "");
+            } finally {
+                stopDisconnected();
+            }
+        } catch (BadLocationException e) {
+            Log.log(e);
+        }
+    }
+
+    /**
+     * @return the maximum number of lines to be kept in the console (0 means unlimited).
+     */
+    private static int getMaximumLines() {
+        if (SharedCorePlugin.inTestMode()) {
+            return ScriptConsoleUIConstants.DEFAULT_INTERACTIVE_CONSOLE_MAXIMUM_LINES;
+        }
+        InteractiveConsolePlugin plugin = InteractiveConsolePlugin.getDefault();
+        if (plugin == null) {
+            return ScriptConsoleUIConstants.DEFAULT_INTERACTIVE_CONSOLE_MAXIMUM_LINES;
+        }
+        return plugin.getPreferenceStore().getInt(ScriptConsoleUIConstants.INTERACTIVE_CONSOLE_MAXIMUM_LINES);
+    }
+
     /**
      * Adds a given style range to the partitioner.
      * 
@@ -492,7 +540,9 @@ public class ScriptConsoleDocumentListener implements IDocumentListener {
                         }
                     }
                 };
-                RunInUiThread.async(runnable);
+                //Note: sync so that the output is only requested again after this one is shown (otherwise
+                //a process writing a lot of output could flood the UI thread with pending runnables).
+                RunInUiThread.sync(runnable);
                 return null;
             }
 
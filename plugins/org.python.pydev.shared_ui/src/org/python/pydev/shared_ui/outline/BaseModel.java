@@ -43,10 +43,12 @@ public abstract class BaseModel implements IOutlineModel {
         modelListener = new IModelListener() {
 
             public void modelChanged(final ISimpleNode ast) {
+                //Create the new structure in the thread that notified the change (usually the parser thread), so
+                //that only the diff with the current structure is done in the UI thread.
+                final IParsedItem newRoot = createParsedItemFromSimpleNode(ast);
                 Display.getDefault().asyncExec(new Runnable() {
                     public void run() {
                         synchronized (this) {
-                            IParsedItem newRoot = createParsedItemFromSimpleNode(ast);
                             setRoot(newRoot);
                         }
                     }
@@ -95,10 +97,16 @@ public abstract class BaseModel implements IOutlineModel {
 
         // stuctural change, different number of children, can stop recursion
         if (newChildren.length != oldChildren.length) {
+            boolean labelChanged = !oldItem.toString().equals(newItem.toString()) || !oldItem.sameNodeType(newItem);
 
-            //at this point, it'll recalculate the children...
+            //at this point, it'll recalculate the children (the children kept are the ones with the same label and
+            //type, so, only the structure has to be refreshed in the tree -- new children get their labels when
+            //created).
             oldItem.updateTo(newItem);
             itemsToRefresh.add(oldItem);
+            if (labelChanged) {
+                itemsToUpdate.add(oldItem);
+            }
 
         } else {
 
@@ -144,7 +152,7 @@ public abstract class BaseModel implements IOutlineModel {
                     //to refresh
                     int itemsToRefreshSize = itemsToRefresh.size();
                     if (itemsToRefreshSize > 0) {
-                        outline.refreshItems(itemsToRefresh.toArray(new IParsedItem[itemsToRefreshSize]));
+                        outline.refreshItems(itemsToRefresh.toArray(new IParsedItem[itemsToRefreshSize]), false);
                     }
                 }
 
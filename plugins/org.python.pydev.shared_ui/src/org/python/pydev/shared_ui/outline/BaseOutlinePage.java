@@ -146,6 +146,14 @@ public abstract class BaseOutlinePage extends ContentOutlinePageWithFilter imple
      * tries to preserve the scrolling
      */
     public void refreshItems(Object[] items) {
+        refreshItems(items, true);
+    }
+
+    /**
+     * Same as refreshItems(Object[]), but if updateLabels is false, only the structure (children) of the items
+     * is refreshed (the labels of existing elements are kept).
+     */
+    public void refreshItems(Object[] items, boolean updateLabels) {
         try {
             unlinkAll();
             TreeViewer viewer = getTreeViewer();
@@ -164,14 +172,14 @@ public abstract class BaseOutlinePage extends ContentOutlinePageWithFilter imple
                     if (isDisposed()) {
                         return;
                     }
-                    viewer.refresh();
+                    viewer.refresh(updateLabels);
 
                 } else {
                     if (isDisposed()) {
                         return;
                     }
                     for (int i = 0; i < items.length; i++) {
-                        viewer.refresh(items[i]);
+                        viewer.refresh(items[i], updateLabels);
                     }
                 }
 
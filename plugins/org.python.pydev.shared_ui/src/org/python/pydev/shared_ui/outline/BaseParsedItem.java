@@ -13,6 +13,7 @@ package org.python.pydev.shared_ui.outline;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
 import org.python.pydev.shared_core.model.ErrorDescription;
@@ -83,10 +84,16 @@ public abstract class BaseParsedItem implements IParsedItem, Comparable<Object>
     }
 
     private IParsedItem getSimilarChild(IParsedItem n, HashMap<String, List<IParsedItem>> childrensCache) {
-        //try to get a similar child from the 'cache'
+        //try to get a similar child from the 'cache' (same label and same type, so that its label/icon is kept)
         List<IParsedItem> list = childrensCache.get(n.toString());
-        if (list != null && list.size() > 0) {
-            return list.remove(0);
+        if (list != null) {
+            for (Iterator<IParsedItem> it = list.iterator(); it.hasNext();) {
+                IParsedItem existing = it.next();
+                if (existing.sameNodeType(n)) {
+                    it.remove();
+                    return existing;
+                }
+            }
         }
         return null;
     }
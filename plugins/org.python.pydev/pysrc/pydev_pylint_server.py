@@ -0,0 +1,155 @@
+# @PydevCodeAnalysisIgnore
+'''
+Keeps pylint loaded (along with the astroid caches) so that batches of files may be linted without paying for the
+startup of pylint for each file.
+
+Usage: pydev_pylint_server.py <dir with the pylint package>
+
+The requests are read from stdin (one per line, with the fields separated by tabs):
+
+    lint<TAB>working dir<TAB>number of args<TAB>arg1<TAB>...<TAB>file1<TAB>file2...
+    exit
+
+And for each file in a 'lint' request, the output of pylint is written to stdout as:
+
+    @@PYDEV_PYLINT_FILE<TAB>file
+    ... output of pylint for the file ...
+    @@PYDEV_PYLINT_END_FILE
+
+followed by a @@PYDEV_PYLINT_END_BATCH after all the files of the request are linted.
+
+@author Fabio Zadrozny
+'''
+import os
+import sys
+import traceback
+
+try:
+    from StringIO import StringIO
+except ImportError:
+    from io import StringIO  # Python 3.0
+
+IS_PY3K = sys.version_info[0] >= 3
+
+FILE_START = '@@PYDEV_PYLINT_FILE'
+FILE_END = '@@PYDEV_PYLINT_END_FILE'
+BATCH_END = '@@PYDEV_PYLINT_END_BATCH'
+
+if IS_PY3K:
+    _stdin = sys.stdin.buffer
+    _stdout = sys.stdout.buffer
+else:
+    _stdin = sys.stdin
+    _stdout = sys.stdout
+
+
+def read_line():
+    line = _stdin.readline()
+    if not line:
+        return None
+    return line.decode('utf-8').rstrip('\r\n')
+
+
+def write(s):
+    if not IS_PY3K and isinstance(s, str):
+        s = s.decode('utf-8', 'replace')
+    _stdout.write(s.encode('utf-8'))
+
+
+def get_manager():
+    '''
+    :return: the astroid manager (which keeps the modules already inferred) or None if it's not available.
+    '''
+    try:
+        from astroid import MANAGER
+        return MANAGER
+    except ImportError:
+        try:
+            from logilab.astng import MANAGER  # pylint < 1.0
+            return MANAGER
+        except ImportError:
+            return None
+
+
+def clear_cached(files):
+    '''
+    Removes the modules for the given files from the astroid cache (as they changed since they were last inferred).
+    '''
+    manager = get_manager()
+    if manager is None:
+        return
+    cache = getattr(manager, 'astroid_cache', None)
+    if cache is None:
+        cache = getattr(manager, 'astng_cache', None)
+    if cache is None:
+        return
+
+    paths = {}
+    for f in files:
+        paths[os.path.normcase(os.path.realpath(f))] = True
+
+    for name, module in list(cache.items()):
+        module_file = getattr(module, 'file', None)
+        if module_file:
+            if os.path.normcase(os.path.realpath(module_file)) in paths:
+                del cache[name]
+
+
+def lint(run, args, f):
+    '''
+    :return: the output of pylint for the given file.
+    '''
+    out = StringIO()
+    original_stdout, original_stderr = sys.stdout, sys.stderr
+    sys.stdout = sys.stderr = out
+    try:
+        try:
+            run(args + [f])
+        except SystemExit:
+            pass  # pylint always exits at the end.
+        except:
+            traceback.print_exc(file=out)
+    finally:
+        sys.stdout, sys.stderr = original_stdout, original_stderr
+    return out.getvalue()
+
+
+def main():
+    if len(sys.argv) > 1 and sys.argv[1]:
+        sys.path.insert(0, sys.argv[1])
+    from pylint.lint import Run
+
+    while True:
+        line = read_line()
+        if line is None or line == 'exit':
+            return
+
+        fields = line.split('\t')
+        if fields[0] != 'lint':
+            continue
+
+        try:
+            os.chdir(fields[1])
+        except:
+            traceback.print_exc()
+
+        nargs = int(fields[2])
+        args = fields[3:3 + nargs]
+        files = fields[3 + nargs:]
+        clear_cached(files)
+
+        for f in files:
+            output = lint(Run, args, f)
+            write('%s\t%s\n' % (FILE_START, f))
+            write(output)
+            if output and not output.endswith('\n'):
+                write('\n')
+            write('%s\n' % (FILE_END,))
+            _stdout.flush()
+
+        write('%s\n' % (BATCH_END,))
+        _stdout.flush()
+
+
+if __name__ == '__main__':
+    main()
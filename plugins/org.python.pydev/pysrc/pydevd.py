@@ -11,6 +11,7 @@ from pydevd_comm import  CMD_CHANGE_VARIABLE, \
                          CMD_GET_FRAME, \
                          CMD_SET_PY_EXCEPTION, \
                          CMD_GET_VARIABLE, \
+                         CMD_GET_VARIABLE_RANGE, \
                          CMD_LIST_THREADS, \
                          CMD_REMOVE_BREAK, \
                          CMD_RUN, \
@@ -565,6 +566,23 @@ class PyDB:
                     except:
                         traceback.print_exc()
 
+                elif cmd_id == CMD_GET_VARIABLE_RANGE:
+                    #we received some command to get the children of a variable in a given range
+                    #the text is: start\tend\tthread_id\tframe_id\tFRAME|GLOBAL\tattributes*
+                    try:
+                        start, end, thread_id, frame_id, scopeattrs = text.split('\t', 4)
+
+                        if scopeattrs.find('\t') != -1:  # there are attributes beyond scope
+                            scope, attrs = scopeattrs.split('\t', 1)
+                        else:
+                            scope, attrs = (scopeattrs, None)
+
+                        int_cmd = InternalGetVariable(seq, thread_id, frame_id, scope, attrs, int(start), int(end))
+                        self.postInternalCommand(int_cmd, thread_id)
+
+                    except:
+                        traceback.print_exc()
+
                 elif cmd_id == CMD_GET_COMPLETIONS:
                     #we received some command to get a variable
                     #the text is: thread_id\tframe_id\tactivation token
@@ -114,6 +114,7 @@ CMD_SET_PROPERTY_TRACE = 124
 # Pydev debug console commands
 CMD_EVALUATE_CONSOLE_EXPRESSION = 126
 CMD_RUN_CUSTOM_OPERATION = 127
+CMD_GET_VARIABLE_RANGE = 128
 CMD_VERSION = 501
 CMD_RETURN = 502
 CMD_ERROR = 901
@@ -145,6 +146,7 @@ ID_TO_MEANING = {
     '124':'CMD_SET_PROPERTY_TRACE',
     '126':'CMD_EVALUATE_CONSOLE_EXPRESSION',
     '127':'CMD_RUN_CUSTOM_OPERATION',
+    '128':'CMD_GET_VARIABLE_RANGE',
     '501':'CMD_VERSION',
     '502':'CMD_RETURN',
     '901':'CMD_ERROR',
@@ -555,9 +557,9 @@ class NetCommandFactory:
         except:
             return self.makeErrorMessage(0, GetExceptionTracebackStr())
 
-    def makeGetVariableMessage(self, seq, payload):
+    def makeGetVariableMessage(self, seq, payload, cmdId=CMD_GET_VARIABLE):
         try:
-            return NetCommand(CMD_GET_VARIABLE, seq, payload)
+            return NetCommand(cmdId, seq, payload)
         except Exception:
             return self.makeErrorMessage(seq, GetExceptionTracebackStr())
 
@@ -686,30 +688,43 @@ class InternalSetNextStatementThread(InternalThreadCommand):
 # InternalGetVariable
 #=======================================================================================================================
 class InternalGetVariable(InternalThreadCommand):
-    """ gets the value of a variable """
-    def __init__(self, seq, thread_id, frame_id, scope, attrs):
+    """ gets the value of a variable (if start/end are given, only the children in that range are gotten) """
+    def __init__(self, seq, thread_id, frame_id, scope, attrs, start=None, end=None):
         self.sequence = seq
         self.thread_id = thread_id
         self.frame_id = frame_id
         self.scope = scope
         self.attributes = attrs
+        self.start = start
+        self.end = end
 
     def doIt(self, dbg):
         """ Converts request into python variable """
         try:
             xml = "<xml>"
-            valDict = pydevd_vars.resolveCompoundVariable(self.thread_id, self.frame_id, self.scope, self.attributes)
-            if valDict is not None:
-                keys = valDict.keys()
-                if hasattr(keys, 'sort'):
-                    keys.sort()  #Python 3.0 does not have it
-                else:
-                    keys = sorted(keys, key=str)  #Jython 2.1 does not have it (and all must be compared as strings).
-                for k in keys:
-                    xml += pydevd_vars.varToXML(valDict[k], str(k))
+            if self.start is not None:
+                items = pydevd_vars.resolveCompoundVariableRange(
+                    self.thread_id, self.frame_id, self.scope, self.attributes, self.start, self.end)
+                if items is not None:
+                    xmlList = [xml]
+                    for k, v in items:
+                        xmlList.append(pydevd_vars.varToXML(v, str(k)))
+                    xml = ''.join(xmlList)
+                cmdId = CMD_GET_VARIABLE_RANGE
+            else:
+                valDict = pydevd_vars.resolveCompoundVariable(self.thread_id, self.frame_id, self.scope, self.attributes)
+                if valDict is not None:
+                    keys = valDict.keys()
+                    if hasattr(keys, 'sort'):
+                        keys.sort()  #Python 3.0 does not have it
+                    else:
+                        keys = sorted(keys, key=str)  #Jython 2.1 does not have it (and all must be compared as strings).
+                    for k in keys:
+                        xml += pydevd_vars.varToXML(valDict[k], str(k))
+                cmdId = CMD_GET_VARIABLE
 
             xml += "</xml>"
-            cmd = dbg.cmdFactory.makeGetVariableMessage(self.sequence, xml)
+            cmd = dbg.cmdFactory.makeGetVariableMessage(self.sequence, xml, cmdId)
             dbg.writer.addCommand(cmd)
         except Exception:
             cmd = dbg.cmdFactory.makeErrorMessage(self.sequence, "Error resolving variables " + GetExceptionTracebackStr())
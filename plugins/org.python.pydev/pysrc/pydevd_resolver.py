@@ -42,6 +42,21 @@ try:
 except:
     pass
 
+try:
+    from itertools import islice
+except:
+    def islice(iterable, start, end):
+        #Only the (iterable, start, end) form is needed here.
+        ret = []
+        i = 0
+        for item in iterable:
+            if i >= end:
+                break
+            if i >= start:
+                ret.append(item)
+            i += 1
+        return ret
+
 #types does not include a MethodWrapperType
 try:
     MethodWrapperType = type([].__str__)
@@ -81,6 +96,20 @@ class AbstractResolver:
         '''
         raise NotImplementedError
 
+    def getRange(self, var, start, end):
+        '''
+            Optional: resolvers for containers which may be huge should implement it so that the client may
+            get the children in pages (the size of var is reported and only the visible items are requested).
+            
+            @param var: this is the variable that should have its children gotten.
+            @param start: the index of the first child to get.
+            @param end: the index after the last child to get.
+            
+            @return: a list with (key, value) tuples (where the key is the same key that getDictionary would
+            use for that child).
+        '''
+        raise NotImplementedError
+
 
 #=======================================================================================================================
 # DefaultResolver
@@ -235,6 +264,14 @@ class DictResolver:
         ret['__len__'] = len(dict)
         return ret
 
+    def getRange(self, dict, start, end):
+        #Note: items are not sorted here (that'd mean sorting the whole dict for each page), but the order is
+        #kept as long as the dict is not changed (and it's not while the thread is suspended).
+        ret = []
+        for key in islice(dict, start, end):
+            ret.append(('%s (%s)' % (key, id(key)), dict[key]))
+        return ret
+
 
 
 #=======================================================================================================================
@@ -268,6 +305,15 @@ class TupleResolver: #to enumerate tuples and lists
         d['__len__'] = len(var)
         return d
 
+    def getRange(self, var, start, end):
+        format = '%0' + str(int(len(str(len(var))))) + 'd'
+        ret = []
+        i = start
+        for item in var[start:end]:
+            ret.append((format % i, item))
+            i += 1
+        return ret
+
 
 
 #=======================================================================================================================
@@ -296,6 +342,12 @@ class SetResolver:
         d['__len__'] = len(var)
         return d
 
+    def getRange(self, var, start, end):
+        ret = []
+        for item in islice(var, start, end):
+            ret.append((id(item), item))
+        return ret
+
 
 #=======================================================================================================================
 # InstanceResolver
@@ -181,6 +181,12 @@ def varToXML(v, name):
 
     if resolver is not None:
         xmlCont = ' isContainer="True"'
+        if hasattr(resolver, 'getRange'):
+            #Report the size so that the client may ask for the children in pages.
+            try:
+                xmlCont += ' size="%s"' % (len(v),)
+            except:
+                pass
     else:
         xmlCont = ''
 
@@ -358,6 +364,33 @@ def resolveCompoundVariable(thread_id, frame_id, scope, attrs):
         traceback.print_exc()
 
 
+def resolveCompoundVariableRange(thread_id, frame_id, scope, attrs, start, end):
+    """ returns a list with (key, value) for the children of the compound variable in the given range"""
+
+    var = getVariable(thread_id, frame_id, scope, attrs)
+
+    try:
+        _type, _typeName, resolver = getType(var)
+        if hasattr(resolver, 'getRange'):
+            return resolver.getRange(var, start, end)
+
+        #The resolver has no paging support: get all and do the paging here.
+        d = resolver.getDictionary(var)
+        keys = d.keys()
+        if hasattr(keys, 'sort'):
+            keys.sort()  #Python 3.0 does not have it
+        else:
+            keys = sorted(keys, key=str)
+        ret = []
+        for k in keys[start:end]:
+            ret.append((k, d[k]))
+        return ret
+    except:
+        sys.stderr.write('Error evaluating: thread_id: %s\nframe_id: %s\nscope: %s\nattrs: %s\n' % (
+            thread_id, frame_id, scope, attrs,))
+        traceback.print_exc()
+
+
 def customOperation(thread_id, frame_id, scope, attrs, style, code_or_file, operation_fn_name):
     """
     We'll execute the code_or_file and then search in the namespace the operation_fn_name to execute with the given var.
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -38,6 +39,7 @@ import org.python.pydev.core.IPythonPathNature;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PyCodeCompletionVisitor;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.callbacks.ICallback0;
 import org.python.pydev.shared_core.string.FastStringBuffer;
@@ -244,7 +246,28 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
     }
 
     /**
-     * Default implementation. Visits each resource once at a time. May be overridden if a better implementation is needed.
+     * A resource which will be visited in a full build (the nature already had startRequests() called).
+     */
+    private static final class ResourceToBuild {
+
+        private final IFile resource;
+        private final IPythonNature nature;
+        private final String moduleName;
+        private final PyDevFullBuildPrefetcher.Prefetch prefetch;
+
+        private ResourceToBuild(IFile resource, IPythonNature nature, String moduleName,
+                PyDevFullBuildPrefetcher.Prefetch prefetch) {
+            this.resource = resource;
+            this.nature = nature;
+            this.moduleName = moduleName;
+            this.prefetch = prefetch;
+        }
+    }
+
+    /**
+     * Default implementation. Visits each resource once at a time (while the next resources are read and parsed
+     * -- and what the visitors compute ahead of the visit is computed -- in other threads, see
+     * PyDevFullBuildPrefetcher). May be overridden if a better implementation is needed.
      * 
      * @param resourcesToParse list of resources from project that are python files.
      * @param monitor
@@ -263,68 +286,108 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
         FastStringBuffer bufferToCreateString = new FastStringBuffer();
 
         boolean loggedMisconfiguration = false;
-        for (Iterator<IFile> iter = resourcesToParse.iterator(); iter.hasNext() && monitor.isCanceled() == false;) {
-            i += 1;
-            total += inc;
-            IFile r = iter.next();
-
-            PythonPathHelper.markAsPyDevFileIfDetected(r);
-
-            IPythonNature nature = PythonNature.getPythonNature(r);
-            if (nature == null) {
-                continue;
-            }
-            if (!nature.startRequests()) {
-                continue;
-            }
-            try {
-                String moduleName;
-                try {
-                    //we visit external because we must index them
-                    moduleName = nature.resolveModuleOnlyInProjectSources(r, true);
-                    if (moduleName == null) {
-                        continue; // we only analyze resources that are in the pythonpath
+        PyDevFullBuildPrefetcher prefetcher = new PyDevFullBuildPrefetcher(PyDevBuilderPrefPage.getAnalysisThreads());
+        LinkedList<ResourceToBuild> ahead = new LinkedList<ResourceToBuild>();
+        Iterator<IFile> iter = resourcesToParse.iterator();
+        try {
+            while (monitor.isCanceled() == false) {
+                //Resolve the next resources and start reading/parsing them in other threads.
+                while (ahead.size() < prefetcher.getMaxAhead() && iter.hasNext()) {
+                    IFile r = iter.next();
+
+                    PythonPathHelper.markAsPyDevFileIfDetected(r);
+
+                    IPythonNature nature = PythonNature.getPythonNature(r);
+                    if (nature == null) {
+                        ahead.add(null);
+                        continue;
+                    }
+                    if (!nature.startRequests()) {
+                        ahead.add(null);
+                        continue;
                     }
-                } catch (Exception e1) {
-                    if (!loggedMisconfiguration) {
-                        loggedMisconfiguration = true; //No point in logging it over and over again.
-                        Log.log(e1);
+                    String moduleName;
+                    try {
+                        //we visit external because we must index them
+                        moduleName = nature.resolveModuleOnlyInProjectSources(r, true);
+                    } catch (Exception e1) {
+                        if (!loggedMisconfiguration) {
+                            loggedMisconfiguration = true; //No point in logging it over and over again.
+                            Log.log(e1);
+                        }
+                        moduleName = null;
+                    }
+                    if (moduleName == null) {
+                        // we only analyze resources that are in the pythonpath
+                        nature.endRequests();
+                        ahead.add(null);
+                        continue;
                     }
-                    continue;
+                    ahead.add(new ResourceToBuild(r, nature, moduleName, prefetcher.prefetch(r, nature, moduleName,
+                            visitors)));
+                }
+                if (ahead.isEmpty()) {
+                    break;
                 }
 
-                //create new memo for each resource
-                HashMap<String, Object> memo = new HashMap<String, Object>();
-                memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+                i += 1;
+                total += inc;
+                ResourceToBuild toBuild = ahead.removeFirst();
+                if (toBuild == null) {
+                    continue; //Skipped (but still counted in the progress).
+                }
+                try {
+                    IFile r = toBuild.resource;
 
-                ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
-                memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
+                    //create new memo for each resource
+                    HashMap<String, Object> memo = new HashMap<String, Object>();
+                    memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
 
-                PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+                    ICallback0<IDocument> doc = toBuild.prefetch;
+                    memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
 
-                for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext()
-                        && monitor.isCanceled() == false;) {
+                    PyDevBuilderVisitor.setModuleNameInCache(memo, r, toBuild.moduleName);
+                    SourceModule module = toBuild.prefetch.getModule();
+                    if (toBuild.prefetch.isUpToDate()) {
+                        if (module != null) {
+                            PyDevBuilderVisitor.setModuleInCache(memo, r, module);
+                        }
+                        toBuild.prefetch.setComputedAheadOfVisit(memo);
+                    }
 
-                    try {
-                        PyDevBuilderVisitor visitor = it.next();
-                        visitor.memo = memo; //setting the memo must be the first thing.
+                    for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext()
+                            && monitor.isCanceled() == false;) {
 
-                        communicateProgress(monitor, totalResources, i, r, visitor, bufferToCreateString);
+                        try {
+                            PyDevBuilderVisitor visitor = it.next();
+                            visitor.memo = memo; //setting the memo must be the first thing.
 
-                        //on a full build, all visits are as some add...
-                        visitor.visitAddedResource(r, doc, monitor);
-                    } catch (Exception e) {
-                        Log.log(e);
+                            communicateProgress(monitor, totalResources, i, r, visitor, bufferToCreateString);
+
+                            //on a full build, all visits are as some add...
+                            visitor.visitAddedResource(r, doc, monitor);
+                        } catch (Exception e) {
+                            Log.log(e);
+                        }
                     }
-                }
 
-                if (total > 1) {
-                    monitor.worked((int) total);
-                    total -= (int) total;
+                    if (total > 1) {
+                        monitor.worked((int) total);
+                        total -= (int) total;
+                    }
+                } finally {
+                    toBuild.nature.endRequests();
+                }
+            }
+        } finally {
+            //If cancelled, release the resources which were not visited.
+            for (ResourceToBuild toBuild : ahead) {
+                if (toBuild != null) {
+                    toBuild.prefetch.cancel();
+                    toBuild.nature.endRequests();
                 }
-            } finally {
-                nature.endRequests();
             }
+            prefetcher.dispose();
         }
     }
 
@@ -52,6 +52,9 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
     public static final int DEFAULT_PYDEV_ELAPSE_BEFORE_ANALYSIS = 3000;
     public static final String PYDEV_ELAPSE_BEFORE_ANALYSIS = PyParserManager.PYDEV_ELAPSE_BEFORE_ANALYSIS;
 
+    public static final String PYDEV_ANALYSIS_THREADS = "PYDEV_ANALYSIS_THREADS";
+    public static final int DEFAULT_PYDEV_ANALYSIS_THREADS = 0; //0 means the number of processors
+
     public static final String ANALYZE_ONLY_ACTIVE_EDITOR = "ANALYZE_ONLY_ACTIVE_EDITOR_2"; //Changed to _2 because we changed this behavior and the default is now true!
     public static final boolean DEFAULT_ANALYZE_ONLY_ACTIVE_EDITOR = true;
 
@@ -108,6 +111,8 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
                 "Disable parser notifications?", p));
         addField(new IntegerFieldEditor(PyParserManager.PYDEV_ELAPSE_BEFORE_ANALYSIS,
                 "Time to elapse before reparsing changed file (millis)", p));
+        addField(new IntegerFieldEditor(PYDEV_ANALYSIS_THREADS,
+                "Maximum number of threads for code analysis (0 = number of processors)", p));
 
         s = "If only open editors are analyzed, markers will only be added\n" +
                 "to the opened PyDev editors.\n";
@@ -196,6 +201,17 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
         return PyParserManager.getPyParserManager(PydevPrefs.getPreferences()).getElapseMillisBeforeAnalysis();
     }
 
+    /**
+     * @return the maximum number of code analysis requests which may run at the same time.
+     */
+    public static int getAnalysisThreads() {
+        int threads = PydevPrefs.getPreferences().getInt(PYDEV_ANALYSIS_THREADS);
+        if (threads <= 0) {
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        }
+        return threads;
+    }
+
     public static int getPycDeleteHandling() {
         return PydevPrefs.getPreferences().getInt(PYC_DELETE_HANDLING);
     }
@@ -30,6 +30,7 @@ import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.callbacks.ICallback0;
+import org.python.pydev.shared_core.structure.Tuple;
 
 /**
  * Visitors within pydev should be subclasses of this class.
@@ -52,6 +53,11 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      */
     private static final String MODULE_NAME_CACHE = "MODULE_NAME"; //$NON-NLS-1$
 
+    /**
+     * identifies the key for what the visitor computed ahead of the visit (followed by the visitor class name)
+     */
+    private static final String COMPUTED_AHEAD_OF_VISIT_CACHE = "COMPUTED_AHEAD_OF_VISIT_"; //$NON-NLS-1$
+
     /*default*/static final String MODULE_IN_PROJECT_PYTHONPATH = "MODULE_IN_PROJECT_PYTHONPATH"; //$NON-NLS-1$
 
     /**
@@ -163,9 +169,56 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      * @param module this is the module to set in the cache
      */
     protected void setModuleInCache(IResource resource, IModule module) {
+        setModuleInCache(memo, resource, module);
+    }
+
+    /**
+     * @param module this is the module to set in the cache (for the current modification stamp of the resource)
+     */
+    public static void setModuleInCache(Map<String, Object> memo, IResource resource, IModule module) {
         memo.put(MODULE_CACHE + resource.getModificationStamp(), module);
     }
 
+    /**
+     * Called on a full build to compute what's needed to visit the resource in another thread (while the next
+     * resources are read and parsed -- see PyDevFullBuildPrefetcher), so that it's not done in the builder thread.
+     * 
+     * May be called concurrently for different resources (so, it must not use the state of the visitor nor the memo)
+     * and must not change the workspace.
+     * 
+     * @param resource the resource which will be visited
+     * @param document the document with the resource contents
+     * @return what the visitor needs to visit the resource (see getComputedAheadOfVisit) or null if there's nothing
+     * to be computed ahead of the visit.
+     */
+    public Object computeAheadOfVisit(IResource resource, IDocument document) throws Exception {
+        return null;
+    }
+
+    /**
+     * @param computed what the visitor computed ahead of the visit for the given document (computeAheadOfVisit)
+     */
+    public static void setComputedAheadOfVisit(Map<String, Object> memo, PyDevBuilderVisitor visitor,
+            IDocument document, Object computed) {
+        memo.put(COMPUTED_AHEAD_OF_VISIT_CACHE + visitor.getClass().getName(), new Tuple<IDocument, Object>(
+                document, computed));
+    }
+
+    /**
+     * @return what was computed ahead of the visit (computeAheadOfVisit) or null if it wasn't computed for the given
+     * document (i.e.: not in a full build or the resource changed after it was computed).
+     */
+    protected Object getComputedAheadOfVisit(IDocument document) {
+        Object o = memo.get(COMPUTED_AHEAD_OF_VISIT_CACHE + getClass().getName());
+        if (o instanceof Tuple) {
+            Tuple<?, ?> computed = (Tuple<?, ?>) o;
+            if (computed.o1 == document) {
+                return computed.o2;
+            }
+        }
+        return null;
+    }
+
     /**
      * @param resource
      * @param document
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.FileUtilsFileBuffer;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
+import org.python.pydev.shared_core.callbacks.ICallback0;
+
+/**
+ * On a full build, reads and parses the resources in a pool of threads ahead of the builder thread, which still
+ * calls the visitors for one resource at a time (the visitors share the memo and add markers, so, they're not
+ * called concurrently), so that the parsing of the next resources overlaps with the indexing and analysis of the
+ * current one.
+ *
+ * The workers also call PyDevBuilderVisitor.computeAheadOfVisit for each visitor (i.e.: the TODO scanning), so
+ * that what doesn't depend on the memo nor changes the workspace is also done in parallel.
+ *
+ * The workers don't change the workspace (if a resource is not synchronized, it's left for the builder thread
+ * to refresh it) and if the builder thread gets to a resource whose prefetch didn't start yet, it does it itself
+ * instead of waiting for a worker.
+ */
+public final class PyDevFullBuildPrefetcher {
+
+    /**
+     * The contents and module read for a resource. Used as the document callback for the visitors.
+     */
+    public final class Prefetch implements ICallback0<IDocument> {
+
+        private final IFile file;
+        private final List<PyDevBuilderVisitor> visitors;
+        private final Object[] computedAheadOfVisit;
+        private final FutureTask<SourceModule> task;
+        private volatile IDocument doc;
+        private volatile long modificationStamp = IResource.NULL_STAMP;
+        private boolean gotDoc;
+
+        private Prefetch(final IFile file, final IPythonNature nature, final String moduleName,
+                List<PyDevBuilderVisitor> visitors) {
+            this.file = file;
+            this.visitors = visitors;
+            this.computedAheadOfVisit = new Object[visitors.size()];
+            this.task = new FutureTask<SourceModule>(new Callable<SourceModule>() {
+
+                public SourceModule call() throws Exception {
+                    return doPrefetch(nature, moduleName);
+                }
+            });
+        }
+
+        private SourceModule doPrefetch(IPythonNature nature, String moduleName) throws Exception {
+            if (!file.isSynchronized(IResource.DEPTH_ZERO)) {
+                return null; //The builder thread will refresh it.
+            }
+            long stamp = file.getModificationStamp();
+            IDocument d = FileUtilsFileBuffer.getDocFromResource(file);
+            if (d == null) {
+                return null;
+            }
+            doc = d;
+            modificationStamp = stamp;
+
+            for (int i = 0; i < computedAheadOfVisit.length; i++) {
+                try {
+                    computedAheadOfVisit[i] = visitors.get(i).computeAheadOfVisit(file, d);
+                } catch (Exception e) {
+                    Log.log(e); //The visitor computes it again when visiting.
+                }
+            }
+
+            IPath location = file.getRawLocation();
+            if (location == null) {
+                return null;
+            }
+            return AbstractModule.createModuleFromDoc(moduleName, new File(location.toOSString()), d, nature, true);
+        }
+
+        /**
+         * Waits for the prefetch (or does it in this thread if it didn't start yet).
+         *
+         * @return the module parsed or null if it was not possible to parse it ahead of time.
+         */
+        public SourceModule getModule() {
+            task.run(); //Does nothing if it already started.
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Log.log(e.getCause());
+            } catch (Exception e) {
+                //Cancelled.
+            }
+            return null;
+        }
+
+        /**
+         * Puts in the memo what the visitors computed ahead of the visit (must be called after getModule and only
+         * if isUpToDate).
+         */
+        public void setComputedAheadOfVisit(Map<String, Object> memo) {
+            for (int i = 0; i < computedAheadOfVisit.length; i++) {
+                if (computedAheadOfVisit[i] != null) {
+                    PyDevBuilderVisitor.setComputedAheadOfVisit(memo, visitors.get(i), doc, computedAheadOfVisit[i]);
+                }
+            }
+        }
+
+        /**
+         * @return whether the resource is still the same one which was read by the prefetch (so, its module may be
+         * used by the visitors).
+         */
+        public boolean isUpToDate() {
+            return modificationStamp != IResource.NULL_STAMP && modificationStamp == file.getModificationStamp();
+        }
+
+        public IDocument call() {
+            if (!gotDoc) {
+                gotDoc = true;
+                getModule();
+                if (doc == null || !isUpToDate()) {
+                    doc = FileUtilsFileBuffer.getDocFromResource(file);
+                }
+            }
+            return doc;
+        }
+
+        /**
+         * Cancels a prefetch which will not be visited (i.e.: the build was cancelled).
+         */
+        public void cancel() {
+            task.cancel(false);
+        }
+    }
+
+    private static final class PrefetchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "PyDev: Build Parser " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final int maxAhead;
+
+    /**
+     * @param threads the number of threads which read and parse the resources.
+     */
+    public PyDevFullBuildPrefetcher(int threads) {
+        threads = Math.max(1, threads);
+        pool = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new PrefetchThreadFactory());
+        pool.allowCoreThreadTimeOut(true);
+        //Limit the number of resources ahead (as the parsed modules are kept in memory until they're visited).
+        maxAhead = threads * 4;
+    }
+
+    /**
+     * @return the maximum number of resources which should be prefetched and not visited yet.
+     */
+    public int getMaxAhead() {
+        return maxAhead;
+    }
+
+    /**
+     * Starts reading and parsing the given file (and computing what the visitors need ahead of the visit).
+     */
+    public Prefetch prefetch(IFile file, IPythonNature nature, String moduleName, List<PyDevBuilderVisitor> visitors) {
+        Prefetch prefetch = new Prefetch(file, nature, moduleName, visitors);
+        pool.execute(prefetch.task);
+        return prefetch;
+    }
+
+    /**
+     * Stops the threads after the prefetches already requested finish (or are cancelled).
+     */
+    public void dispose() {
+        pool.shutdown();
+    }
+}
@@ -95,6 +95,10 @@ public class PyLintPrefPage extends FieldEditorPreferencePage implements IWorkbe
 
     public static final int DEFAULT_MAX_PYLINT_DELTA = 4;
 
+    public static final String USE_PYLINT_SERVER = "USE_PYLINT_SERVER";
+
+    public static final boolean DEFAULT_USE_PYLINT_SERVER = true;
+
     public PyLintPrefPage() {
         super(FLAT);
         setPreferenceStore(PydevPlugin.getDefault().getPreferenceStore());
@@ -113,6 +117,8 @@ public class PyLintPrefPage extends FieldEditorPreferencePage implements IWorkbe
         addField(new BooleanFieldEditor(USE_PYLINT, "Use PyLint?", p));
         addField(new BooleanFieldEditor(USE_CONSOLE, "Redirect PyLint output to console?", p));
         addField(new IntegerFieldEditor(MAX_PYLINT_DELTA, "Max simultaneous processes for PyLint?", p));
+        addField(new BooleanFieldEditor(USE_PYLINT_SERVER,
+                "Keep PyLint loaded between runs (only when the location of lint.py is given)?", p));
         FileFieldEditor fileField = new FileFieldEditor(PYLINT_FILE_LOCATION, "Location of the pylint executable:",
                 true, p);
         addField(fileField);
@@ -248,6 +254,10 @@ public class PyLintPrefPage extends FieldEditorPreferencePage implements IWorkbe
         return PydevPrefs.getPreferences().getInt(MAX_PYLINT_DELTA);
     }
 
+    public static boolean usePyLintServer() {
+        return PydevPrefs.getPreferences().getBoolean(USE_PYLINT_SERVER);
+    }
+
     public static int wSeverity() {
         return PydevPrefs.getPreferences().getInt(SEVERITY_WARNINGS);
     }
@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pylint;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.process.ProcessUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Keeps a python process with pylint loaded (pysrc/pydev_pylint_server.py) so that batches of files can be linted
+ * without paying for the startup of pylint (and the inference of the whole import graph) for each file.
+ *
+ * The files of a batch are linted sequentially and the output of each file is passed to the callback as soon as
+ * it's available. If pylint doesn't finish a file in the given timeout, the process is ended (and restarted on the
+ * next request).
+ */
+public final class PyLintServer {
+
+    private static final String FILE_START = "@@PYDEV_PYLINT_FILE\t";
+    private static final String FILE_END = "@@PYDEV_PYLINT_END_FILE";
+    private static final String BATCH_END = "@@PYDEV_PYLINT_END_BATCH";
+
+    /**
+     * The max number of chars kept from the stderr of the process (only used to report errors).
+     */
+    private static final int MAX_STDERR_CHARS = 4096;
+
+    /**
+     * The default time pylint has to lint a single file before the process is considered hung.
+     */
+    public static final long DEFAULT_FILE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Ends the processes which timed out.
+     */
+    private static final Timer watchdog = new Timer("PyLint server watchdog", true);
+
+    /**
+     * key -> server (the key identifies the interpreter/pylint/project used).
+     */
+    private static final Map<String, PyLintServer> servers = new HashMap<String, PyLintServer>();
+
+    private final String[] cmdLine;
+    private final String[] envp;
+
+    /**
+     * Guards the process/reader/writer (so that the process can be ended while a batch is being linted).
+     */
+    private final Object processLock = new Object();
+    private Process process;
+    private BufferedReader reader;
+    private Writer writer;
+
+    private final FastStringBuffer stderr = new FastStringBuffer();
+
+    private volatile int batches;
+    private volatile int filesLinted;
+
+    private volatile long fileTimeoutMillis = DEFAULT_FILE_TIMEOUT_MILLIS;
+
+    /**
+     * @param cmdLine the command line to start the server (interpreter, pydev_pylint_server.py and the directory
+     * with the pylint package).
+     * @param envp the environment for the process (may be null).
+     */
+    public PyLintServer(String[] cmdLine, String[] envp) {
+        this.cmdLine = cmdLine;
+        this.envp = envp;
+    }
+
+    /**
+     * Sets the time pylint has to lint a single file before the process is ended.
+     */
+    /*default*/void setFileTimeoutMillis(long fileTimeoutMillis) {
+        this.fileTimeoutMillis = fileTimeoutMillis;
+    }
+
+    /**
+     * @return whether the given string may be sent in a request (the protocol is line-based and tab-separated, so,
+     * paths/arguments with those chars can't be linted through the server).
+     */
+    public static boolean isProtocolSafe(String s) {
+        return s.indexOf('\t') == -1 && s.indexOf('\n') == -1 && s.indexOf('\r') == -1;
+    }
+
+    private static void checkProtocolSafe(String s) {
+        if (!isProtocolSafe(s)) {
+            throw new IllegalArgumentException("Unable to lint through the PyLint server (tab or new line in: "
+                    + s + ")");
+        }
+    }
+
+    /**
+     * @return a server for the given key (created if still not available or if the command line/environment
+     * changed).
+     */
+    public static PyLintServer getServer(String key, String[] cmdLine, String[] envp) {
+        synchronized (servers) {
+            PyLintServer server = servers.get(key);
+            if (server != null) {
+                if (Arrays.equals(server.cmdLine, cmdLine) && Arrays.equals(server.envp, envp)) {
+                    return server;
+                }
+                server.dispose();
+            }
+            server = new PyLintServer(cmdLine, envp);
+            servers.put(key, server);
+            return server;
+        }
+    }
+
+    /**
+     * Ends all the servers (i.e.: on shutdown).
+     */
+    public static void disposeAll() {
+        synchronized (servers) {
+            for (PyLintServer server : servers.values()) {
+                server.dispose();
+            }
+            servers.clear();
+        }
+    }
+
+    /**
+     * Starts the process if it's still not running.
+     */
+    private void startIfNeeded() throws IOException {
+        synchronized (processLock) {
+            if (process != null) {
+                return;
+            }
+            synchronized (stderr) {
+                stderr.clear();
+            }
+            process = ProcessUtils.createProcess(cmdLine, envp, null);
+            reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+            writer = new OutputStreamWriter(process.getOutputStream(), "UTF-8");
+            startStderrReader(process.getErrorStream());
+        }
+    }
+
+    /**
+     * Keeps the start of the stderr of the process (so that we can report why it failed) and makes sure that the
+     * process doesn't block writing to it.
+     */
+    private void startStderrReader(final InputStream errStream) {
+        Thread errThread = new Thread() {
+            @Override
+            public void run() {
+                char[] buf = new char[1024];
+                try {
+                    InputStreamReader errReader = new InputStreamReader(errStream, "UTF-8");
+                    int read;
+                    while ((read = errReader.read(buf)) != -1) {
+                        synchronized (stderr) {
+                            if (stderr.length() < MAX_STDERR_CHARS) {
+                                stderr.append(buf, 0, Math.min(read, MAX_STDERR_CHARS - stderr.length()));
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    //Process ended.
+                }
+            }
+        };
+        errThread.setName("PyLint server stderr");
+        errThread.setDaemon(true);
+        errThread.start();
+    }
+
+    /**
+     * Lints the given files.
+     *
+     * @param workingDir the directory where pylint should be run.
+     * @param args the arguments passed to pylint (the file to be linted is added after those).
+     * @param onFileLinted called with a tuple with the file and the output of pylint for it for each file linted.
+     *
+     * @throws IOException if the communication with the process failed or pylint timed out on some file (in which
+     * case the process is ended and it'll be restarted on the next request).
+     * @throws IllegalArgumentException if the working dir, some argument or file has a tab or new line char
+     * (see: isProtocolSafe).
+     */
+    public synchronized void lint(File workingDir, String[] args, List<String> files,
+            ICallback<Object, Tuple<String, String>> onFileLinted) throws IOException {
+        if (files.size() == 0) {
+            return;
+        }
+        FastStringBuffer buf = new FastStringBuffer(256);
+        String dir = workingDir.getAbsolutePath();
+        checkProtocolSafe(dir);
+        buf.append("lint\t").append(dir).append('\t').append(args.length);
+        for (String arg : args) {
+            checkProtocolSafe(arg);
+            buf.append('\t').append(arg);
+        }
+        for (String file : files) {
+            checkProtocolSafe(file);
+            buf.append('\t').append(file);
+        }
+        buf.append('\n');
+
+        final AtomicLong lastProgress = new AtomicLong(System.currentTimeMillis());
+        final AtomicBoolean timedOut = new AtomicBoolean(false);
+        TimerTask watchdogTask = null;
+        try {
+            BufferedReader reader;
+            synchronized (processLock) {
+                startIfNeeded();
+                reader = this.reader;
+                watchdogTask = createWatchdogTask(process, lastProgress, timedOut);
+                writer.write(buf.toString());
+                writer.flush();
+            }
+
+            String file = null;
+            FastStringBuffer output = new FastStringBuffer(1024);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lastProgress.set(System.currentTimeMillis());
+                if (file == null) {
+                    if (line.startsWith(FILE_START)) {
+                        file = line.substring(FILE_START.length());
+                        output.clear();
+                    } else if (line.equals(BATCH_END)) {
+                        batches++;
+                        return;
+                    }
+                } else if (line.equals(FILE_END)) {
+                    filesLinted++;
+                    try {
+                        onFileLinted.call(new Tuple<String, String>(file, output.toString()));
+                    } catch (Exception e) {
+                        Log.log(e);
+                    }
+                    file = null;
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+            throw new IOException("PyLint server ended unexpectedly. stderr: " + getStderr());
+        } catch (IOException e) {
+            dispose();
+            if (timedOut.get()) {
+                throw new IOException("PyLint server timed out (no file linted in " + fileTimeoutMillis + " millis).");
+            }
+            throw e;
+        } finally {
+            if (watchdogTask != null) {
+                watchdogTask.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return a task (already scheduled) which ends the given process if no progress is reported in the timeout.
+     */
+    private TimerTask createWatchdogTask(final Process watchedProcess, final AtomicLong lastProgress,
+            final AtomicBoolean timedOut) {
+        long timeout = fileTimeoutMillis;
+        TimerTask task = new TimerTask() {
+
+            @Override
+            public void run() {
+                if (System.currentTimeMillis() - lastProgress.get() < fileTimeoutMillis) {
+                    return;
+                }
+                synchronized (processLock) {
+                    if (process == watchedProcess) {
+                        timedOut.set(true);
+                        dispose(); //the read in lint() fails and the process is restarted on the next request.
+                    }
+                }
+                cancel();
+            }
+        };
+        long period = Math.max(10, timeout / 10);
+        watchdog.schedule(task, period, period);
+        return task;
+    }
+
+    private String getStderr() {
+        synchronized (stderr) {
+            return stderr.toString();
+        }
+    }
+
+    /**
+     * @return the number of batches which were completely linted (for diagnostics).
+     */
+    public int getBatchesCount() {
+        return batches;
+    }
+
+    /**
+     * @return the number of files linted (for diagnostics).
+     */
+    public int getFilesLintedCount() {
+        return filesLinted;
+    }
+
+    /**
+     * Ends the process (a new one is created on the next request).
+     */
+    public void dispose() {
+        synchronized (processLock) {
+            if (process != null) {
+                try {
+                    writer.write("exit\n");
+                    writer.flush();
+                } catch (IOException e) {
+                    //ignore (the process may be already dead).
+                }
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    //ignore
+                }
+                process.destroy(); //if a batch is being linted, its read fails.
+                process = null;
+                reader = null;
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * @param pyLintScript the location of lint.py (inside the pylint package).
+     * @return the directory which should be added to the PYTHONPATH so that the pylint package can be imported.
+     */
+    public static String getPyLintPackageParent(String pyLintScript) {
+        File pylintPackage = new File(pyLintScript).getParentFile();
+        File pylintParent = pylintPackage != null ? pylintPackage.getParentFile() : null;
+        return pylintParent != null ? pylintParent.getAbsolutePath() : "";
+    }
+}
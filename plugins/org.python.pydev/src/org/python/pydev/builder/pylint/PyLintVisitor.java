@@ -15,8 +15,12 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -35,6 +39,7 @@ import org.eclipse.jface.text.IRegion;
 import org.eclipse.ui.console.IOConsoleOutputStream;
 import org.python.pydev.builder.PyDevBuilderVisitor;
 import org.python.pydev.consoles.MessageConsoles;
+import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IInterpreterManager;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
@@ -43,6 +48,7 @@ import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.runners.SimplePythonRunner;
 import org.python.pydev.runners.SimpleRunner;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.callbacks.ICallback0;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.StringUtils;
@@ -112,30 +118,7 @@ public class PyLintVisitor extends PyDevBuilderVisitor {
                     final IDocument doc = document.call();
                     passPyLint(resource, out, doc);
 
-                    new Job("Adding markers") {
-
-                        @Override
-                        protected IStatus run(IProgressMonitor monitor) {
-
-                            ArrayList<MarkerInfo> lst = new ArrayList<PyMarkerUtils.MarkerInfo>();
-
-                            for (Iterator<Object[]> iter = markers.iterator(); iter.hasNext();) {
-                                Object[] el = iter.next();
-
-                                String tok = (String) el[0];
-                                int priority = ((Integer) el[1]).intValue();
-                                String id = (String) el[2];
-                                int line = ((Integer) el[3]).intValue();
-
-                                lst.add(new PyMarkerUtils.MarkerInfo(doc, "ID:" + id + " " + tok,
-                                        PYLINT_PROBLEM_MARKER, priority, false, false, line, 0, line, 0, null));
-                            }
-
-                            PyMarkerUtils.replaceMarkers(lst, resource, PYLINT_PROBLEM_MARKER, true, monitor);
-
-                            return PydevPlugin.makeStatus(Status.OK, "", null);
-                        }
-                    }.schedule();
+                    scheduleReplaceMarkers(resource, doc, markers);
                 }
 
             } catch (final Exception e) {
@@ -155,25 +138,6 @@ public class PyLintVisitor extends PyDevBuilderVisitor {
             }
         }
 
-        private IOConsoleOutputStream getConsoleOutputStream() throws MalformedURLException {
-            if (PyLintPrefPage.useConsole()) {
-                return MessageConsoles.getConsoleOutputStream("PyLint", UIConstants.PY_LINT_ICON);
-            } else {
-                return null;
-            }
-        }
-
-        /**
-         * @param tok
-         * @param type
-         * @param priority
-         * @param id
-         * @param line
-         */
-        private void addToMarkers(String tok, int priority, String id, int line) {
-            markers.add(new Object[] { tok, priority, id, line });
-        }
-
         /**
          * @param resource
          * @param out 
@@ -198,12 +162,7 @@ public class PyLintVisitor extends PyDevBuilderVisitor {
                 cmdList.add(script);
             }
             //user args
-            String userArgs = org.python.pydev.shared_core.string.StringUtils.replaceNewLines(
-                    PyLintPrefPage.getPyLintArgs(), " ");
-            StringTokenizer tokenizer2 = new StringTokenizer(userArgs);
-            while (tokenizer2.hasMoreTokens()) {
-                cmdList.add(tokenizer2.nextToken());
-            }
+            cmdList.addAll(getUserArgs());
             // target file to be linted
             cmdList.add(target);
             String[] cmdArray = cmdList.toArray(new String[0]);
@@ -237,144 +196,414 @@ public class PyLintVisitor extends PyDevBuilderVisitor {
             write("PyLint: The stdout of the command line is:", out, output);
             write("PyLint: The stderr of the command line is:", out, errors);
 
-            StringTokenizer tokenizer = new StringTokenizer(output, "\r\n");
+            addMarkersFromOutput(output, errors, doc, markers);
+        }
+
+    }
 
-            boolean useW = PyLintPrefPage.useWarnings();
-            boolean useE = PyLintPrefPage.useErrors();
-            boolean useF = PyLintPrefPage.useFatal();
-            boolean useC = PyLintPrefPage.useCodingStandard();
-            boolean useR = PyLintPrefPage.useRefactorTips();
+    private static Pattern PYLINT_MATCH_PATTERN = Pattern
+            .compile("\\A[CRWEF]:\\s*(\\d+)(,\\s*\\d+)?:(.*)\\((.*)\\)\\s*\\Z");
 
-            //Set up local values for severity
-            int wSeverity = PyLintPrefPage.wSeverity();
-            int eSeverity = PyLintPrefPage.eSeverity();
-            int fSeverity = PyLintPrefPage.fSeverity();
-            int cSeverity = PyLintPrefPage.cSeverity();
-            int rSeverity = PyLintPrefPage.rSeverity();
+    /**
+     * @return the arguments the user configured to be passed to pylint.
+     */
+    private static List<String> getUserArgs() {
+        ArrayList<String> ret = new ArrayList<String>();
+        String userArgs = org.python.pydev.shared_core.string.StringUtils.replaceNewLines(
+                PyLintPrefPage.getPyLintArgs(), " ");
+        StringTokenizer tokenizer = new StringTokenizer(userArgs);
+        while (tokenizer.hasMoreTokens()) {
+            ret.add(tokenizer.nextToken());
+        }
+        return ret;
+    }
 
-            //System.out.println(output);
-            if (output.indexOf("Traceback (most recent call last):") != -1) {
-                Throwable e = new RuntimeException("PyLint ERROR: \n" + output);
-                Log.log(e);
-                return;
-            }
-            if (errors.indexOf("Traceback (most recent call last):") != -1) {
-                Throwable e = new RuntimeException("PyLint ERROR: \n" + errors);
-                Log.log(e);
-                return;
+    private static IOConsoleOutputStream getConsoleOutputStream() throws MalformedURLException {
+        if (PyLintPrefPage.useConsole()) {
+            return MessageConsoles.getConsoleOutputStream("PyLint", UIConstants.PY_LINT_ICON);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the pylint markers in the resource with the given markers in a job.
+     */
+    private static void scheduleReplaceMarkers(final IResource resource, final IDocument doc,
+            final List<Object[]> markers) {
+        new Job("Adding markers") {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+
+                ArrayList<MarkerInfo> lst = new ArrayList<PyMarkerUtils.MarkerInfo>();
+
+                for (Iterator<Object[]> iter = markers.iterator(); iter.hasNext();) {
+                    Object[] el = iter.next();
+
+                    String tok = (String) el[0];
+                    int priority = ((Integer) el[1]).intValue();
+                    String id = (String) el[2];
+                    int line = ((Integer) el[3]).intValue();
+
+                    lst.add(new PyMarkerUtils.MarkerInfo(doc, "ID:" + id + " " + tok,
+                            PYLINT_PROBLEM_MARKER, priority, false, false, line, 0, line, 0, null));
+                }
+
+                PyMarkerUtils.replaceMarkers(lst, resource, PYLINT_PROBLEM_MARKER, true, monitor);
+
+                return PydevPlugin.makeStatus(Status.OK, "", null);
             }
-            while (tokenizer.hasMoreTokens()) {
-                String tok = tokenizer.nextToken();
+        }.schedule();
+    }
 
-                try {
-                    boolean found = false;
-                    int priority = 0;
-
-                    //W0611:  3: Unused import finalize
-                    //F0001:  0: Unable to load module test.test2 (list index out of range)
-                    //C0321: 25:fdfd: More than one statement on a single line
-                    int indexOfDoublePoints = tok.indexOf(":");
-                    if (indexOfDoublePoints != -1) {
-
-                        if (tok.startsWith("C") && useC) {
-                            found = true;
-                            //priority = IMarker.SEVERITY_WARNING;
-                            priority = cSeverity;
-                        } else if (tok.startsWith("R") && useR) {
-                            found = true;
-                            //priority = IMarker.SEVERITY_WARNING;
-                            priority = rSeverity;
-                        } else if (tok.startsWith("W") && useW) {
-                            found = true;
-                            //priority = IMarker.SEVERITY_WARNING;
-                            priority = wSeverity;
-                        } else if (tok.startsWith("E") && useE) {
-                            found = true;
-                            //priority = IMarker.SEVERITY_ERROR;
-                            priority = eSeverity;
-                        } else if (tok.startsWith("F") && useF) {
-                            found = true;
-                            //priority = IMarker.SEVERITY_ERROR;
-                            priority = fSeverity;
-                        } else {
-                            continue;
-                        }
+    /**
+     * Parses the output of pylint, adding the markers found (tok, priority, id, line) to the given list.
+     */
+    private static void addMarkersFromOutput(String output, String errors, IDocument doc, List<Object[]> markers) {
+        StringTokenizer tokenizer = new StringTokenizer(output, "\r\n");
+
+        boolean useW = PyLintPrefPage.useWarnings();
+        boolean useE = PyLintPrefPage.useErrors();
+        boolean useF = PyLintPrefPage.useFatal();
+        boolean useC = PyLintPrefPage.useCodingStandard();
+        boolean useR = PyLintPrefPage.useRefactorTips();
+
+        //Set up local values for severity
+        int wSeverity = PyLintPrefPage.wSeverity();
+        int eSeverity = PyLintPrefPage.eSeverity();
+        int fSeverity = PyLintPrefPage.fSeverity();
+        int cSeverity = PyLintPrefPage.cSeverity();
+        int rSeverity = PyLintPrefPage.rSeverity();
+
+        //System.out.println(output);
+        if (output.indexOf("Traceback (most recent call last):") != -1) {
+            Throwable e = new RuntimeException("PyLint ERROR: \n" + output);
+            Log.log(e);
+            return;
+        }
+        if (errors.indexOf("Traceback (most recent call last):") != -1) {
+            Throwable e = new RuntimeException("PyLint ERROR: \n" + errors);
+            Log.log(e);
+            return;
+        }
+        while (tokenizer.hasMoreTokens()) {
+            String tok = tokenizer.nextToken();
 
+            try {
+                boolean found = false;
+                int priority = 0;
+
+                //W0611:  3: Unused import finalize
+                //F0001:  0: Unable to load module test.test2 (list index out of range)
+                //C0321: 25:fdfd: More than one statement on a single line
+                int indexOfDoublePoints = tok.indexOf(":");
+                if (indexOfDoublePoints != -1) {
+
+                    if (tok.startsWith("C") && useC) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_WARNING;
+                        priority = cSeverity;
+                    } else if (tok.startsWith("R") && useR) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_WARNING;
+                        priority = rSeverity;
+                    } else if (tok.startsWith("W") && useW) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_WARNING;
+                        priority = wSeverity;
+                    } else if (tok.startsWith("E") && useE) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_ERROR;
+                        priority = eSeverity;
+                    } else if (tok.startsWith("F") && useF) {
+                        found = true;
+                        //priority = IMarker.SEVERITY_ERROR;
+                        priority = fSeverity;
                     } else {
                         continue;
                     }
 
-                    try {
-                        if (found) {
-                            int line = -1;
-                            String id = "";
-                            if (tok.indexOf(':') == 1) {
-                                // PyLint >= 1.0 has symbolic id at end of line, enclosed in parentheses
-                                Pattern p = PYLINT_MATCH_PATTERN;
-                                Matcher m = p.matcher(tok);
-                                if (m.matches()) {
-                                    line = Integer.parseInt(tok.substring(m.start(1), m.end(1)));
-                                    id = tok.substring(m.start(4), m.end(4)).trim();
-                                    tok = tok.substring(m.start(3), m.end(3)).trim();
-                                } else {
-                                    continue;
-                                }
-                            } else {
-                                // PyLint < 1.0 has 'Axxxx' alphanumeric id before first colon
-                                id = tok.substring(0, tok.indexOf(":")).trim();
+                } else {
+                    continue;
+                }
 
-                                int i = tok.indexOf(":");
-                                if (i == -1) {
-                                    continue;
-                                }
+                try {
+                    if (found) {
+                        int line = -1;
+                        String id = "";
+                        if (tok.indexOf(':') == 1) {
+                            // PyLint >= 1.0 has symbolic id at end of line, enclosed in parentheses
+                            Pattern p = PYLINT_MATCH_PATTERN;
+                            Matcher m = p.matcher(tok);
+                            if (m.matches()) {
+                                line = Integer.parseInt(tok.substring(m.start(1), m.end(1)));
+                                id = tok.substring(m.start(4), m.end(4)).trim();
+                                tok = tok.substring(m.start(3), m.end(3)).trim();
+                            } else {
+                                continue;
+                            }
+                        } else {
+                            // PyLint < 1.0 has 'Axxxx' alphanumeric id before first colon
+                            id = tok.substring(0, tok.indexOf(":")).trim();
 
-                                tok = tok.substring(i + 1);
+                            int i = tok.indexOf(":");
+                            if (i == -1) {
+                                continue;
+                            }
 
-                                i = tok.indexOf(":");
-                                if (i == -1) {
-                                    continue;
-                                }
+                            tok = tok.substring(i + 1);
 
-                                final String substring = tok.substring(0, i).trim();
-                                //On PyLint 0.24 it started giving line,col (and not only the line).
-                                line = Integer.parseInt(StringUtils.split(substring, ',').get(0));
+                            i = tok.indexOf(":");
+                            if (i == -1) {
+                                continue;
+                            }
 
-                                i = tok.indexOf(":");
-                                if (i == -1) {
-                                    continue;
-                                }
+                            final String substring = tok.substring(0, i).trim();
+                            //On PyLint 0.24 it started giving line,col (and not only the line).
+                            line = Integer.parseInt(StringUtils.split(substring, ',').get(0));
 
-                                tok = tok.substring(i + 1);
+                            i = tok.indexOf(":");
+                            if (i == -1) {
+                                continue;
                             }
-                            IRegion region = null;
-                            try {
-                                region = doc.getLineInformation(line - 1);
-                            } catch (Exception e) {
-                                region = doc.getLineInformation(line);
-                            }
-                            String lineContents = doc.get(region.getOffset(), region.getLength());
 
-                            int pos = -1;
-                            if ((pos = lineContents.indexOf("IGNORE:")) != -1) {
-                                String lintW = lineContents.substring(pos + "IGNORE:".length());
-                                if (lintW.startsWith(id)) {
-                                    continue;
-                                }
+                            tok = tok.substring(i + 1);
+                        }
+                        IRegion region = null;
+                        try {
+                            region = doc.getLineInformation(line - 1);
+                        } catch (Exception e) {
+                            region = doc.getLineInformation(line);
+                        }
+                        String lineContents = doc.get(region.getOffset(), region.getLength());
+
+                        int pos = -1;
+                        if ((pos = lineContents.indexOf("IGNORE:")) != -1) {
+                            String lintW = lineContents.substring(pos + "IGNORE:".length());
+                            if (lintW.startsWith(id)) {
+                                continue;
                             }
-                            addToMarkers(tok, priority, id, line - 1);
                         }
-                    } catch (RuntimeException e2) {
-                        Log.log(e2);
+                        markers.add(new Object[] { tok, priority, id, line - 1 });
                     }
-                } catch (Exception e1) {
-                    Log.log(e1);
+                } catch (RuntimeException e2) {
+                    Log.log(e2);
                 }
+            } catch (Exception e1) {
+                Log.log(e1);
             }
         }
+    }
 
-        private static Pattern PYLINT_MATCH_PATTERN = Pattern
-                .compile("\\A[CRWEF]:\\s*(\\d+)(,\\s*\\d+)?:(.*)\\((.*)\\)\\s*\\Z");
+    /**
+     * Time to wait for other changed resources before linting a batch.
+     */
+    private static final int BATCH_DELAY_MILLIS = 300;
+
+    /**
+     * The number of times a file may end the PyLint server (crash or time out) before it's linted in a separate
+     * process.
+     */
+    private static final int MAX_SERVER_FAILURES_PER_FILE = 1;
 
+    /**
+     * A resource waiting to be linted in a batch.
+     */
+    private static final class PendingLint {
+
+        private final ICallback0<IDocument> document;
+        private final IPath location;
+
+        /**
+         * The number of times the server failed while linting it.
+         */
+        private final int failures;
+
+        private PendingLint(ICallback0<IDocument> document, IPath location, int failures) {
+            this.document = document;
+            this.location = location;
+            this.failures = failures;
+        }
+    }
+
+    /**
+     * Lints the changed resources in batches through a PyLintServer for each project (which keeps pylint loaded
+     * between the batches), so that linting many files doesn't mean starting pylint for each one of them.
+     *
+     * If the server fails (crashes or times out) in a batch, the file being linted at that point is blamed for it
+     * and the files still not linted are queued again (to be linted by a new server process). A file which made the
+     * server fail more than MAX_SERVER_FAILURES_PER_FILE times is linted in a separate process in the job thread (so,
+     * at most one such process runs at a time).
+     *
+     * @author Fabio Zadrozny
+     */
+    private static final class PyLintBatchJob extends Job {
+
+        private final Map<IResource, PendingLint> pending = new LinkedHashMap<IResource, PendingLint>();
+
+        private PyLintBatchJob() {
+            super("PyLint");
+            setPriority(Job.BUILD);
+            setSystem(true);
+        }
+
+        private void add(IResource resource, ICallback0<IDocument> document, IPath location) {
+            add(resource, new PendingLint(document, location, 0));
+        }
+
+        private void add(IResource resource, PendingLint pendingLint) {
+            synchronized (pending) {
+                PendingLint existing = pending.get(resource);
+                if (existing != null && existing.failures > pendingLint.failures) {
+                    //keep the failures count for a file that is changed again.
+                    pendingLint = new PendingLint(pendingLint.document, pendingLint.location, existing.failures);
+                }
+                pending.put(resource, pendingLint);
+            }
+            schedule(BATCH_DELAY_MILLIS);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            Map<IProject, Map<String, Tuple<IResource, PendingLint>>> projectToFiles = new LinkedHashMap<IProject, Map<String, Tuple<IResource, PendingLint>>>();
+            synchronized (pending) {
+                for (Map.Entry<IResource, PendingLint> entry : pending.entrySet()) {
+                    IResource resource = entry.getKey();
+                    Map<String, Tuple<IResource, PendingLint>> files = projectToFiles.get(resource.getProject());
+                    if (files == null) {
+                        files = new LinkedHashMap<String, Tuple<IResource, PendingLint>>();
+                        projectToFiles.put(resource.getProject(), files);
+                    }
+                    files.put(FileUtils.getFileAbsolutePath(new File(entry.getValue().location.toOSString())),
+                            new Tuple<IResource, PendingLint>(resource, entry.getValue()));
+                }
+                pending.clear();
+            }
+
+            for (Map.Entry<IProject, Map<String, Tuple<IResource, PendingLint>>> entry : projectToFiles.entrySet()) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                try {
+                    lint(entry.getKey(), entry.getValue(), monitor);
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+            }
+            return Status.OK_STATUS;
+        }
+
+        /**
+         * Lints the given file in a separate process (in this thread).
+         */
+        private void lintInSeparateProcess(Tuple<IResource, PendingLint> tup) {
+            PendingLint pendingLint = tup.o2;
+            new PyLintThread(tup.o1, pendingLint.document, pendingLint.location).run();
+        }
+
+        private void lint(IProject project, final Map<String, Tuple<IResource, PendingLint>> files,
+                IProgressMonitor monitor) throws Exception {
+            PythonNature nature = PythonNature.getPythonNature(project);
+            if (nature == null) {
+                Log.log(new RuntimeException("PyLint ERROR: Nature not configured for: " + project));
+                return;
+            }
+            List<String> userArgs = getUserArgs();
+            final String[] args = userArgs.toArray(new String[userArgs.size()]);
+            File workingDir = project.getLocation().toFile();
+
+            //Files which can't be passed to the server (or which made it fail before) get a separate process.
+            boolean argsSafe = PyLintServer.isProtocolSafe(workingDir.getAbsolutePath());
+            for (String arg : args) {
+                argsSafe = argsSafe && PyLintServer.isProtocolSafe(arg);
+            }
+            ArrayList<String> paths = new ArrayList<String>(files.size());
+            for (Map.Entry<String, Tuple<IResource, PendingLint>> entry : files.entrySet()) {
+                if (argsSafe && PyLintServer.isProtocolSafe(entry.getKey())
+                        && entry.getValue().o2.failures <= MAX_SERVER_FAILURES_PER_FILE) {
+                    paths.add(entry.getKey());
+                } else {
+                    if (monitor.isCanceled()) {
+                        return;
+                    }
+                    lintInSeparateProcess(entry.getValue());
+                }
+            }
+            if (paths.size() == 0) {
+                return;
+            }
+
+            IInterpreterInfo interpreterInfo = nature.getProjectInterpreter();
+            String script = FileUtils.getFileAbsolutePath(new File(PyLintPrefPage.getPyLintLocation()));
+            String[] cmdLine = SimplePythonRunner.preparePythonCallParameters(interpreterInfo.getExecutableOrJar(),
+                    FileUtils.getFileAbsolutePath(PydevPlugin.getScriptWithinPySrc("pydev_pylint_server.py")),
+                    new String[] { PyLintServer.getPyLintPackageParent(script) });
+            String[] envp = SimpleRunner.getEnvironment(nature, interpreterInfo,
+                    nature.getRelatedInterpreterManager());
+            PyLintServer server = PyLintServer.getServer(project.getName(), cmdLine, envp);
+
+            final IOConsoleOutputStream out = getConsoleOutputStream();
+            write("PyLint: Linting " + paths.size() + " file(s) with:", out, script, args);
+
+            final Set<String> linted = new HashSet<String>();
+            try {
+                server.lint(workingDir, args, paths, new ICallback<Object, Tuple<String, String>>() {
+
+                    public Object call(Tuple<String, String> arg) {
+                        linted.add(arg.o1);
+                        Tuple<IResource, PendingLint> tup = files.get(arg.o1);
+                        if (tup != null) {
+                            write("PyLint: The output for " + arg.o1 + " is:", out, arg.o2);
+                            IDocument doc = tup.o2.document.call();
+                            List<Object[]> markers = new ArrayList<Object[]>();
+                            addMarkersFromOutput(arg.o2, "", doc, markers);
+                            scheduleReplaceMarkers(tup.o1, doc, markers);
+                        }
+                        return null;
+                    }
+                });
+            } catch (IOException e) {
+                //The server is restarted on the next batch. The files are linted sequentially, so, the first one not
+                //linted is the one which made it fail: the others are just queued again.
+                Log.log(e);
+                boolean blamed = false;
+                for (String path : paths) {
+                    if (!linted.contains(path)) {
+                        Tuple<IResource, PendingLint> tup = files.get(path);
+                        PendingLint pendingLint = tup.o2;
+                        if (!blamed) {
+                            blamed = true;
+                            pendingLint = new PendingLint(pendingLint.document, pendingLint.location,
+                                    pendingLint.failures + 1);
+                        }
+                        add(tup.o1, pendingLint);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final PyLintBatchJob batchJob = new PyLintBatchJob();
+
+    /**
+     * @return whether the changed resources should be linted in batches through a PyLintServer (only possible when
+     * the location of lint.py is given, as pylint must be loaded in the interpreter of the project).
+     */
+    private static boolean usePyLintServer() {
+        if (!PyLintPrefPage.usePyLintServer()) {
+            return false;
+        }
+        String location = PyLintPrefPage.getPyLintLocation();
+        return location.endsWith(".py") || location.endsWith(".pyw");
+    }
+
+    /**
+     * Ends the processes kept for linting.
+     */
+    public static void disposePyLintServers() {
+        batchJob.cancel();
+        PyLintServer.disposeAll();
     }
 
     @Override
@@ -411,8 +640,12 @@ public class PyLintVisitor extends PyDevBuilderVisitor {
             IFile file = (IFile) resource;
             IPath location = file.getRawLocation();
             if (location != null) {
-                PyLintThread thread = new PyLintThread(resource, document, location);
-                thread.start();
+                if (usePyLintServer()) {
+                    batchJob.add(resource, document, location);
+                } else {
+                    PyLintThread thread = new PyLintThread(resource, document, location);
+                    thread.start();
+                }
             }
         }
     }
@@ -450,6 +683,9 @@ public class PyLintVisitor extends PyDevBuilderVisitor {
      */
     @Override
     public int maxResourcesToVisit() {
+        if (usePyLintServer()) {
+            return MAX_TO_VISIT_INFINITE; //a single process lints all the files.
+        }
         int i = PyLintPrefPage.getMaxPyLintDelta();
         if (i < 0) {
             i = 0;
@@ -56,8 +56,12 @@ public class PyTodoVisitor extends PyDevBuilderVisitor {
             }
 
             try {
-                PyMarkerUtils.replaceMarkers(computeTodoMarkers(document.call(), todoTags), resource, IMarker.TASK,
-                        false, monitor);
+                IDocument doc = document.call();
+                List<MarkerInfo> markers = (List<MarkerInfo>) getComputedAheadOfVisit(doc);
+                if (markers == null) {
+                    markers = computeTodoMarkers(doc, todoTags);
+                }
+                PyMarkerUtils.replaceMarkers(markers, resource, IMarker.TASK, false, monitor);
                 //timer.printDiff("Total time to put markers: "+lst.size());
             } catch (Exception e) {
                 Log.log(e);
@@ -66,6 +70,14 @@ public class PyTodoVisitor extends PyDevBuilderVisitor {
 
     }
 
+    /**
+     * Computes the TODO markers in the prefetch thread on a full build.
+     */
+    @Override
+    public Object computeAheadOfVisit(IResource resource, IDocument document) throws Exception {
+        return computeTodoMarkers(document, PyTodoPrefPage.getTodoTags());
+    }
+
     /**
      * Computes the TODO markers available for this document.
      * Considers only TODO flags in strings and comments.
@@ -56,7 +56,6 @@ import org.python.pydev.shared_core.model.ErrorDescription;
 import org.python.pydev.shared_core.model.IModelListener;
 import org.python.pydev.shared_core.model.ISimpleNode;
 import org.python.pydev.shared_core.string.DocIterator;
-import org.python.pydev.shared_core.structure.Tuple;
 
 /**
  * @author Fabio Zadrozny
@@ -117,32 +116,16 @@ public class CodeFoldingSetter implements IModelListener, IPropertyListener {
     /**
      * Given the ast, create the needed marks and set them in the passed model.
      */
-    @SuppressWarnings("unchecked")
     private synchronized void addMarksToModel(SimpleNode root2, ProjectionAnnotationModel model) {
         try {
             if (model != null) {
-                ArrayList<PyProjectionAnnotation> existing = new ArrayList<PyProjectionAnnotation>();
-
-                //get the existing annotations
-                Iterator<PyProjectionAnnotation> iter = model.getAnnotationIterator();
-                while (iter != null && iter.hasNext()) {
-                    PyProjectionAnnotation element = iter.next();
-                    existing.add(element);
-                }
-
-                //now, remove the annotations not used and add the new ones needed
                 IDocument doc = editor.getDocument();
                 if (doc != null) { //this can happen if we change the input of the editor very quickly.
                     List<FoldingEntry> marks = getMarks(doc, root2);
-                    Map<ProjectionAnnotation, Position> annotationsToAdd;
                     if (marks.size() > OptimizationRelatedConstants.MAXIMUM_NUMBER_OF_CODE_FOLDING_MARKS) {
-                        annotationsToAdd = new HashMap<ProjectionAnnotation, Position>();
-
-                    } else {
-                        annotationsToAdd = getAnnotationsToAdd(marks, model, existing);
+                        marks = new ArrayList<FoldingEntry>(); //just remove all the existing ones
                     }
-
-                    model.replaceAnnotations(existing.toArray(new Annotation[existing.size()]), annotationsToAdd);
+                    updateModel(doc, marks, model);
                 }
             }
         } catch (Exception e) {
@@ -151,41 +134,111 @@ public class CodeFoldingSetter implements IModelListener, IPropertyListener {
     }
 
     /**
-     * To add a mark, we have to do the following:
+     * Updates the annotations in the model to match the passed marks.
      * 
-     * Get the current node to add and find the next that is on the same indentation or on an indentation that is lower 
-     * than the current (this will mark the end of the selection).
+     * The existing annotations are matched to the new marks by their start offset (and node), so, only the
+     * annotations that actually changed are removed, added or have their position updated (which is also
+     * important because an annotation that is kept also keeps its collapsed state).
      * 
-     * If we don't find that, the end of the selection is the end of the file.
+     * @return whether the model was changed.
      */
-    private Map<ProjectionAnnotation, Position> getAnnotationsToAdd(List<FoldingEntry> nodes,
-            ProjectionAnnotationModel model, List<PyProjectionAnnotation> existing) {
+    @SuppressWarnings("unchecked")
+    public static boolean updateModel(IDocument doc, List<FoldingEntry> marks, ProjectionAnnotationModel model) {
+        List<Annotation> deletions = new ArrayList<Annotation>();
+
+        //get the existing annotations (by their start offset)
+        Map<Integer, List<PyProjectionAnnotation>> existingByOffset =
+                new HashMap<Integer, List<PyProjectionAnnotation>>();
+        Iterator<Annotation> iter = model.getAnnotationIterator();
+        while (iter != null && iter.hasNext()) {
+            Annotation element = iter.next();
+            Position position = model.getPosition(element);
+            if (!(element instanceof PyProjectionAnnotation) || position == null || position.isDeleted()) {
+                deletions.add(element);
+                continue;
+            }
+            Integer offset = position.getOffset();
+            List<PyProjectionAnnotation> list = existingByOffset.get(offset);
+            if (list == null) {
+                list = new ArrayList<PyProjectionAnnotation>(1);
+                existingByOffset.put(offset, list);
+            }
+            list.add((PyProjectionAnnotation) element);
+        }
 
-        Map<ProjectionAnnotation, Position> annotationsToAdd = new HashMap<ProjectionAnnotation, Position>();
-        try {
-            for (FoldingEntry element : nodes) {
-                if (element.startLine < element.endLine - 1) {
-                    Tuple<ProjectionAnnotation, Position> tup = getAnnotationToAdd(element, element.startLine,
-                            element.endLine, model, existing);
-                    if (tup != null) {
-                        annotationsToAdd.put(tup.o1, tup.o2);
-                    }
+        Map<ProjectionAnnotation, Position> additions = new HashMap<ProjectionAnnotation, Position>();
+        List<Annotation> modifications = new ArrayList<Annotation>();
+        for (FoldingEntry element : marks) {
+            if (element.startLine >= element.endLine - 1) {
+                continue;
+            }
+            Position position = createPosition(doc, element.startLine, element.endLine);
+            if (position == null) {
+                continue;
+            }
+            PyProjectionAnnotation existing = removeMatching(model, existingByOffset, position, element);
+            if (existing == null) {
+                additions.put(new PyProjectionAnnotation(element.getAstEntry()), position);
+            } else {
+                existing.node = element.getAstEntry(); //don't keep a reference to the old ast
+                Position existingPosition = model.getPosition(existing);
+                if (existingPosition.getLength() != position.getLength()) {
+                    //the position is changed in-place (the model notifies about it as a modification).
+                    existingPosition.setLength(position.getLength());
+                    modifications.add(existing);
                 }
             }
-        } catch (BadLocationException e) {
-        } catch (NullPointerException e) {
         }
-        return annotationsToAdd;
+
+        //the ones not matched must be removed
+        for (List<PyProjectionAnnotation> list : existingByOffset.values()) {
+            deletions.addAll(list);
+        }
+
+        if (deletions.size() == 0 && additions.size() == 0 && modifications.size() == 0) {
+            return false; //nothing changed: don't even notify
+        }
+        model.modifyAnnotations(deletions.toArray(new Annotation[deletions.size()]), additions,
+                modifications.toArray(new Annotation[modifications.size()]));
+        return true;
     }
 
     /**
-     * @return an annotation that should be added (or null if that entry already has an annotation
-     * added for it).
+     * @return the annotation which should be kept for the given mark (and removes it from the passed map) or null
+     * if there's no matching annotation (i.e.: one with the same position or one for the same node starting at the
+     * same offset).
      */
-    private Tuple<ProjectionAnnotation, Position> getAnnotationToAdd(FoldingEntry node, int start, int end,
-            ProjectionAnnotationModel model, List<PyProjectionAnnotation> existing) throws BadLocationException {
+    private static PyProjectionAnnotation removeMatching(ProjectionAnnotationModel model,
+            Map<Integer, List<PyProjectionAnnotation>> existingByOffset, Position position, FoldingEntry element) {
+        List<PyProjectionAnnotation> list = existingByOffset.get(position.getOffset());
+        if (list == null) {
+            return null;
+        }
+        for (Iterator<PyProjectionAnnotation> it = list.iterator(); it.hasNext();) {
+            PyProjectionAnnotation annotation = it.next();
+            if (model.getPosition(annotation).getLength() == position.getLength()) {
+                it.remove();
+                return annotation;
+            }
+        }
+        ASTEntry astEntry = element.getAstEntry();
+        if (astEntry != null) {
+            for (Iterator<PyProjectionAnnotation> it = list.iterator(); it.hasNext();) {
+                PyProjectionAnnotation annotation = it.next();
+                if (annotation.node != null && annotation.appearsSame(astEntry)) {
+                    it.remove();
+                    return annotation;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the position from the start line to the end line (or null if it's not valid in the document).
+     */
+    private static Position createPosition(IDocument document, int start, int end) {
         try {
-            IDocument document = editor.getDocumentProvider().getDocument(editor.getEditorInput());
             int offset = document.getLineOffset(start);
             int endOffset = offset;
             try {
@@ -195,9 +248,7 @@ public class CodeFoldingSetter implements IModelListener, IPropertyListener {
                 IRegion lineInformation = document.getLineInformation(end);
                 endOffset = lineInformation.getOffset() + lineInformation.getLength();
             }
-            Position position = new Position(offset, endOffset - offset);
-
-            return getAnnotationToAdd(position, node, model, existing);
+            return new Position(offset, endOffset - offset);
 
         } catch (BadLocationException x) {
             //this could happen
@@ -205,23 +256,6 @@ public class CodeFoldingSetter implements IModelListener, IPropertyListener {
         return null;
     }
 
-    /**
-     * We have to be careful not to remove existing annotations because if this happens, previous code folding is not correct.
-     */
-    private Tuple<ProjectionAnnotation, Position> getAnnotationToAdd(Position position, FoldingEntry node,
-            ProjectionAnnotationModel model, List<PyProjectionAnnotation> existing) {
-        for (Iterator<PyProjectionAnnotation> iter = existing.iterator(); iter.hasNext();) {
-            PyProjectionAnnotation element = iter.next();
-            Position existingPosition = model.getPosition(element);
-            if (existingPosition.equals(position)) {
-                //ok, do nothing to this annotation (neither remove nor add, as it already exists in the correct place).
-                existing.remove(element);
-                return null;
-            }
-        }
-        return new Tuple<ProjectionAnnotation, Position>(new PyProjectionAnnotation(node.getAstEntry()), position);
-    }
-
     /*
      * (non-Javadoc)
      * 
@@ -38,6 +38,9 @@ public class PyProjectionAnnotation extends ProjectionAnnotation {
         if (node2.getClass().equals(node.getClass()) == false)
             return false;
 
+        if (node2.node != null && node.node != null && node2.node.getClass().equals(node.node.getClass()) == false)
+            return false;
+
         if (getCompleteName(node2).equals(getCompleteName(node)) == false)
             return false;
 
@@ -32,12 +32,14 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.python.pydev.builder.pylint.PyLintVisitor;
 import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IInterpreterManager;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.SynchSystemModulesManagerScheduler;
+import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModuleCache;
 import org.python.pydev.editor.codecompletion.shell.AbstractShell;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.plugin.nature.SystemPythonNature;
@@ -272,6 +274,8 @@ public class PydevPlugin extends AbstractUIPlugin {
         try {
             //stop the running shells
             AbstractShell.shutdownAllShells();
+            PyLintVisitor.disposePyLintServers();
+            CompiledModuleCache.saveAll();
 
             //save the natures (code completion stuff) -- and only the ones initialized
             //(no point in getting the ones not initialized)
@@ -124,6 +124,7 @@ public class PydevPrefsInitializer extends AbstractPreferenceInitializer {
                 PyDevBuilderPrefPage.DEFAULT_USE_PYDEV_ONLY_ON_DOC_SAVE);
         node.putInt(PyParserManager.PYDEV_ELAPSE_BEFORE_ANALYSIS,
                 PyDevBuilderPrefPage.DEFAULT_PYDEV_ELAPSE_BEFORE_ANALYSIS);
+        node.putInt(PyDevBuilderPrefPage.PYDEV_ANALYSIS_THREADS, PyDevBuilderPrefPage.DEFAULT_PYDEV_ANALYSIS_THREADS);
         node.putBoolean(PyDevBuilderPrefPage.ANALYZE_ONLY_ACTIVE_EDITOR,
                 PyDevBuilderPrefPage.DEFAULT_ANALYZE_ONLY_ACTIVE_EDITOR);
         node.putBoolean(PyDevBuilderPrefPage.REMOVE_ERRORS_WHEN_EDITOR_IS_CLOSED,
@@ -11,10 +11,15 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -201,6 +206,165 @@ public class PyFileListing {
         return getPyFilesBelow(file, filter, monitor, true, checkHasInit);
     }
 
+    /**
+     * Pool used to list the folders in parallel (its threads are daemon threads and are only created on demand).
+     */
+    private static volatile ForkJoinPool pool;
+
+    /**
+     * @return the pool used to list folders in parallel (also used to scan the pythonpath roots concurrently).
+     */
+    public static ForkJoinPool getPool() {
+        ForkJoinPool p = pool;
+        if (p == null) {
+            synchronized (PyFileListing.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Lists a folder (and forks a new task for each sub-folder that should be listed). The result has the same
+     * contents (and order) that getPyFilesBelow would give.
+     */
+    private static final class ListFolderTask extends RecursiveTask<PyFileListing> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final FileFilter filter;
+        private final IProgressMonitor monitor;
+        private final int level;
+        private final boolean checkHasInit;
+        private final String currModuleRep;
+        private final Set<File> canonicalFolders;
+        private final AtomicInteger filesFound;
+
+        private ListFolderTask(File file, FileFilter filter, IProgressMonitor monitor, int level,
+                boolean checkHasInit, String currModuleRep, Set<File> canonicalFolders, AtomicInteger filesFound) {
+            this.file = file;
+            this.filter = filter;
+            this.monitor = monitor;
+            this.level = level;
+            this.checkHasInit = checkHasInit;
+            this.currModuleRep = currModuleRep;
+            this.canonicalFolders = canonicalFolders;
+            this.filesFound = filesFound;
+        }
+
+        @Override
+        protected PyFileListing compute() {
+            PyFileListing result = new PyFileListing();
+            String moduleRep = currModuleRep;
+            if (level != 0) {
+                FastStringBuffer newModuleRep = new FastStringBuffer(currModuleRep, 128);
+                if (newModuleRep.length() != 0) {
+                    newModuleRep.append('.');
+                }
+                newModuleRep.append(file.getName());
+                moduleRep = newModuleRep.toString();
+            }
+
+            // check if it is a symlink loop
+            try {
+                File canonicalizedDir = file.getCanonicalFile();
+                if (!canonicalFolders.add(canonicalizedDir) && !canonicalizedDir.equals(file)) {
+                    return result;
+                }
+            } catch (IOException e) {
+                Log.log(e);
+            }
+
+            File[] files;
+            if (filter != null) {
+                files = file.listFiles(filter);
+            } else {
+                files = file.listFiles();
+            }
+            if (files == null) {
+                return result;
+            }
+
+            boolean hasInit = false;
+            List<ListFolderTask> foldersLater = new ArrayList<ListFolderTask>();
+
+            for (File file2 : files) {
+                if (monitor.isCanceled()) {
+                    break;
+                }
+
+                if (file2.isFile()) {
+                    result.addPyFileInfo(new PyFileInfo(file2, moduleRep));
+
+                    int found = filesFound.incrementAndGet();
+                    if (found % 50 == 0) {
+                        //The monitor is shared among the threads.
+                        synchronized (monitor) {
+                            monitor.worked(1);
+                            monitor.setTaskName("Found:" + file2.toString());
+                        }
+                    }
+
+                    if (checkHasInit && hasInit == false) {
+                        //only check if it has __init__ if really needed
+                        if (PythonPathHelper.isValidInitFile(file2.getName())) {
+                            hasInit = true;
+                        }
+                    }
+
+                } else if (file2.isDirectory()) {
+                    foldersLater.add(new ListFolderTask(file2, filter, monitor, level + 1, checkHasInit, moduleRep,
+                            canonicalFolders, filesFound));
+                }
+            }
+
+            if (!checkHasInit || hasInit || level == 0) {
+                result.foldersFound.add(file);
+
+                if (!monitor.isCanceled() && foldersLater.size() > 0) {
+                    invokeAll(foldersLater);
+                    for (ListFolderTask task : foldersLater) {
+                        PyFileListing below = task.join();
+                        result.pyFileInfos.addAll(below.pyFileInfos);
+                        result.foldersFound.addAll(below.foldersFound);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Same as getPyFilesBelow(file, filter, monitor, checkHasInit), but the sub-folders are listed in parallel
+     * (which is much faster for big folders such as site-packages, where most of the time is spent waiting on
+     * the filesystem).
+     *
+     * @param monitor may be accessed from multiple threads (but calls to worked/setTaskName are synchronized
+     * on it).
+     */
+    public static PyFileListing getPyFilesBelowInParallel(File file, FileFilter filter, IProgressMonitor monitor,
+            boolean checkHasInit) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        PyFileListing result = new PyFileListing();
+        if (file == null || !file.exists()) {
+            return result;
+        }
+        if (!file.isDirectory()) {
+            result.addPyFileInfo(new PyFileInfo(file, ""));
+            return result;
+        }
+        Set<File> canonicalFolders = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+        return getPool().invoke(
+                new ListFolderTask(file, filter, monitor, 0, checkHasInit, "", canonicalFolders, new AtomicInteger()));
+    }
+
     /**
      * @param includeDirs determines if we can include subdirectories
      * @return a file filter only for python files (and other dirs if specified)
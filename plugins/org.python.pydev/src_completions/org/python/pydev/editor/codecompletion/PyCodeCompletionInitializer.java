@@ -48,6 +48,10 @@ public class PyCodeCompletionInitializer extends AbstractPreferenceInitializer {
         //others
         node.putInt(PyCodeCompletionPreferencesPage.ATTEMPTS_CODECOMPLETION,
                 PyCodeCompletionPreferencesPage.DEFAULT_ATTEMPTS_CODECOMPLETION);
+        node.putInt(PyCodeCompletionPreferencesPage.MAX_COMPLETION_SHELLS,
+                PyCodeCompletionPreferencesPage.DEFAULT_MAX_COMPLETION_SHELLS);
+        node.putInt(PyCodeCompletionPreferencesPage.COMPLETION_SHELL_TIMEOUT,
+                PyCodeCompletionPreferencesPage.DEFAULT_COMPLETION_SHELL_TIMEOUT);
         node.putInt(PyCodeCompletionPreferencesPage.AUTOCOMPLETE_DELAY,
                 PyCodeCompletionPreferencesPage.DEFAULT_AUTOCOMPLETE_DELAY);
         node.putInt(PyCodeCompletionPreferencesPage.ARGUMENTS_DEEP_ANALYSIS_N_CHARS,
@@ -37,6 +37,12 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
     public static final String ATTEMPTS_CODECOMPLETION = "ATTEMPTS_CODECOMPLETION";
     public static final int DEFAULT_ATTEMPTS_CODECOMPLETION = 5;
 
+    public static final String MAX_COMPLETION_SHELLS = "MAX_COMPLETION_SHELLS";
+    public static final int DEFAULT_MAX_COMPLETION_SHELLS = 2;
+
+    public static final String COMPLETION_SHELL_TIMEOUT = "COMPLETION_SHELL_TIMEOUT";
+    public static final int DEFAULT_COMPLETION_SHELL_TIMEOUT = 60;
+
     public static final String AUTOCOMPLETE_ON_DOT = "AUTOCOMPLETE_ON_DOT";
     public static final boolean DEFAULT_AUTOCOMPLETE_ON_DOT = true;
 
@@ -86,6 +92,11 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
         addField(new IntegerFieldEditor(ATTEMPTS_CODECOMPLETION,
                 "Maximum attempts to connect to shell (5 secs each):", p));
 
+        addField(new IntegerFieldEditor(MAX_COMPLETION_SHELLS, "Maximum number of shells per interpreter:", p));
+
+        addField(new IntegerFieldEditor(COMPLETION_SHELL_TIMEOUT,
+                "Timeout for a request to the shell (secs, 0 = no timeout):", p));
+
         addField(new IntegerFieldEditor(AUTOCOMPLETE_DELAY, "Autocompletion delay: ", p));
 
         String tooltip = WrapAndCaseUtils
@@ -176,6 +187,37 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
         return ret;
     }
 
+    /**
+     * @return the maximum number of shells which may be running requests at the same time for an interpreter.
+     */
+    public static int getMaxCompletionShells() {
+        if (SharedCorePlugin.inTestMode()) {
+            return DEFAULT_MAX_COMPLETION_SHELLS;
+        }
+
+        int ret = getPreferences().getInt(PyCodeCompletionPreferencesPage.MAX_COMPLETION_SHELLS);
+        if (ret < 1) {
+            ret = 1;
+        }
+        return ret;
+    }
+
+    /**
+     * @return the time (in millis) after which a request which is still running in a shell is aborted (and the shell
+     * restarted) or 0 to wait for as long as needed.
+     */
+    public static int getCompletionShellTimeoutMillis() {
+        if (SharedCorePlugin.inTestMode()) {
+            return 0;
+        }
+
+        int ret = getPreferences().getInt(PyCodeCompletionPreferencesPage.COMPLETION_SHELL_TIMEOUT);
+        if (ret < 0) {
+            ret = 0;
+        }
+        return ret * 1000;
+    }
+
     public static boolean isToAutocompleteOnDot() {
         return getPreferences().getBoolean(PyCodeCompletionPreferencesPage.AUTOCOMPLETE_ON_DOT);
     }
@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -40,7 +41,6 @@ import org.python.pydev.core.ModulesKeyForZip;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.ModulesFoundStructure.ZipContents;
-import org.python.pydev.editor.codecompletion.revisited.PyPublicTreeMap.Entry;
 import org.python.pydev.editor.codecompletion.revisited.javaintegration.JythonModulesManagerUtils;
 import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModule;
@@ -168,10 +168,20 @@ public abstract class ModulesManager implements IModulesManager {
      * were thrown because of the may size when having too many modules).
      *
      * It is sorted so that we can get things in a 'subtree' faster
+     *
+     * It's a concurrent map so that readers (code-completion, analysis, indexing) don't need any lock. Writers must
+     * still synchronize on modulesKeysLock, and when all the keys change, a new map is published (see
+     * setModulesKeys), so, readers which need a consistent view must get the field only once.
      */
-    protected final PyPublicTreeMap<ModulesKey, ModulesKey> modulesKeys = new PyPublicTreeMap<ModulesKey, ModulesKey>();
+    protected volatile ConcurrentSkipListMap<ModulesKey, ModulesKey> modulesKeys = new ConcurrentSkipListMap<ModulesKey, ModulesKey>();
     protected final Object modulesKeysLock = new Object();
 
+    /**
+     * The number of keys in modulesKeys (kept because ConcurrentSkipListMap.size() needs to traverse all the keys).
+     * Only changed with modulesKeysLock held.
+     */
+    private volatile int modulesKeysSize;
+
     protected static final ModulesManagerCache cache = new ModulesManagerCache();
 
     /**
@@ -183,6 +193,20 @@ public abstract class ModulesManager implements IModulesManager {
         return pythonPathHelper;
     }
 
+    /**
+     * Publishes a new map with the given keys (readers which got the previous map are not affected).
+     *
+     * @param keys the new keys (the new map is built in linear time as they're already sorted).
+     */
+    protected void setModulesKeys(SortedMap<ModulesKey, ModulesKey> keys) {
+        ConcurrentSkipListMap<ModulesKey, ModulesKey> newKeys = new ConcurrentSkipListMap<ModulesKey, ModulesKey>(
+                keys);
+        synchronized (modulesKeysLock) {
+            this.modulesKeys = newKeys;
+            this.modulesKeysSize = newKeys.size();
+        }
+    }
+
     public void saveToFile(File workspaceMetadataFile) {
         if (workspaceMetadataFile.exists() && !workspaceMetadataFile.isDirectory()) {
             try {
@@ -201,7 +225,7 @@ public abstract class ModulesManager implements IModulesManager {
         HashMap<String, Integer> commonTokens = new HashMap<String, Integer>();
 
         synchronized (modulesKeysLock) {
-            buf = new FastStringBuffer(this.modulesKeys.size() * 50);
+            buf = new FastStringBuffer(this.modulesKeysSize * 50);
             buf.append(MODULES_MANAGER_V2);
 
             for (Iterator<ModulesKey> iter = this.modulesKeys.keySet().iterator(); iter.hasNext();) {
@@ -318,10 +342,10 @@ public abstract class ModulesManager implements IModulesManager {
                     + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
         }
 
-        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem...
+        if (modulesManager.modulesKeysSize < 2) { //if we have few modules, that may indicate a problem...
             //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
             //Note: changed to a really low value because we now make a check after it's restored anyways.
-            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
+            throw new IOException("Only " + modulesManager.modulesKeysSize + " modules restored in I/O. "
                     + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
         }
 
@@ -404,7 +428,8 @@ public abstract class ModulesManager implements IModulesManager {
             final int size = lst.size();
             //As we saved in sorted order, we can build in sorted order too (which is MUCH faster than adding items one
             //by one).
-            modulesManager.modulesKeys.buildFromSorted(size, new Iterator() {
+            PyPublicTreeMap<ModulesKey, ModulesKey> keys = new PyPublicTreeMap<ModulesKey, ModulesKey>();
+            keys.buildFromSorted(size, new Iterator() {
 
                 private int i = 0;
 
@@ -435,6 +460,7 @@ public abstract class ModulesManager implements IModulesManager {
                     throw new UnsupportedOperationException();
                 }
             }, null, null);
+            modulesManager.setModulesKeys(keys);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -491,13 +517,7 @@ public abstract class ModulesManager implements IModulesManager {
         ModulesFoundStructure modulesFound = pythonPathHelper.getModulesFoundStructure(monitor);
 
         PyPublicTreeMap<ModulesKey, ModulesKey> keys = buildKeysFromModulesFound(monitor, modulesFound);
-
-        synchronized (modulesKeysLock) {
-            //assign to instance variable
-            this.modulesKeys.clear();
-            this.modulesKeys.putAll(keys);
-        }
-
+        setModulesKeys(keys);
     }
 
     /**
@@ -509,24 +529,23 @@ public abstract class ModulesManager implements IModulesManager {
         ArrayList<ModulesKey> newKeys = new ArrayList<ModulesKey>();
         ArrayList<ModulesKey> removedKeys = new ArrayList<ModulesKey>();
         Iterator<ModulesKey> it = keysFound.keySet().iterator();
-
-        synchronized (modulesKeysLock) {
-            while (it.hasNext()) {
-                ModulesKey next = it.next();
-                ModulesKey modulesKey = modulesKeys.get(next);
-                if (modulesKey == null || modulesKey.getClass() != next.getClass()) {
-                    //Check the class because ModulesKey and ModulesKeyForZip are equal considering only the name.
-                    newKeys.add(next);
-                }
+        ConcurrentSkipListMap<ModulesKey, ModulesKey> currentKeys = this.modulesKeys;
+
+        while (it.hasNext()) {
+            ModulesKey next = it.next();
+            ModulesKey modulesKey = currentKeys.get(next);
+            if (modulesKey == null || modulesKey.getClass() != next.getClass()) {
+                //Check the class because ModulesKey and ModulesKeyForZip are equal considering only the name.
+                newKeys.add(next);
             }
+        }
 
-            it = modulesKeys.keySet().iterator();
-            while (it.hasNext()) {
-                ModulesKey next = it.next();
-                ModulesKey modulesKey = modulesKeys.get(next);
-                if (modulesKey == null || modulesKey.getClass() != next.getClass()) {
-                    removedKeys.add(next);
-                }
+        it = currentKeys.keySet().iterator();
+        while (it.hasNext()) {
+            ModulesKey next = it.next();
+            ModulesKey modulesKey = currentKeys.get(next);
+            if (modulesKey == null || modulesKey.getClass() != next.getClass()) {
+                removedKeys.add(next);
             }
         }
 
@@ -616,7 +635,9 @@ public abstract class ModulesManager implements IModulesManager {
             if (DEBUG_BUILD) {
                 System.out.println("Removing module:" + key + " - " + this.getClass());
             }
-            this.modulesKeys.remove(key);
+            if (this.modulesKeys.remove(key) != null) {
+                modulesKeysSize--;
+            }
             ModulesManager.cache.remove(key, this);
         }
     }
@@ -655,7 +676,9 @@ public abstract class ModulesManager implements IModulesManager {
             System.out.println("Adding module:" + key + " - " + this.getClass());
         }
         synchronized (modulesKeysLock) {
-            this.modulesKeys.put(key, key);
+            if (this.modulesKeys.put(key, key) == null) {
+                modulesKeysSize++;
+            }
             ModulesManager.cache.add(key, n, this);
         }
     }
@@ -667,31 +690,39 @@ public abstract class ModulesManager implements IModulesManager {
      */
     public Set<String> getAllModuleNames(boolean addDependencies, String partStartingWithLowerCase) {
         Set<String> s = new HashSet<String>();
-        synchronized (modulesKeysLock) {
-            for (ModulesKey key : this.modulesKeys.keySet()) {
-                if (key.hasPartStartingWith(partStartingWithLowerCase)) {
-                    s.add(key.name);
-                }
+        for (ModulesKey key : this.modulesKeys.keySet()) {
+            if (key.hasPartStartingWith(partStartingWithLowerCase)) {
+                s.add(key.name);
             }
         }
         return s;
     }
 
     public SortedMap<ModulesKey, ModulesKey> getAllDirectModulesStartingWith(String strStartingWith) {
+        //we don't want it to be backed up by the same map (because it may be changed while it's being used).
         if (strStartingWith.length() == 0) {
-            synchronized (modulesKeysLock) {
-                //we don't want it to be backed up by the same set (because it may be changed, so, we may get
-                //a java.util.ConcurrentModificationException on places that use it)
-                return new PyPublicTreeMap<ModulesKey, ModulesKey>(modulesKeys);
-            }
+            return copyKeys(modulesKeys);
         }
         ModulesKey startingWith = new ModulesKey(strStartingWith, null);
         ModulesKey endingWith = new ModulesKey(startingWith + "z", null);
-        synchronized (modulesKeysLock) {
-            //we don't want it to be backed up by the same set (because it may be changed, so, we may get
-            //a java.util.ConcurrentModificationException on places that use it)
-            return new PyPublicTreeMap<ModulesKey, ModulesKey>(modulesKeys.subMap(startingWith, endingWith));
+        return copyKeys(modulesKeys.subMap(startingWith, endingWith));
+    }
+
+    /**
+     * @return a copy of the passed keys (which may be changed concurrently while being copied).
+     */
+    private static SortedMap<ModulesKey, ModulesKey> copyKeys(SortedMap<ModulesKey, ModulesKey> keys) {
+        //The entries are gathered in a list first: as the keys may be changed while they're iterated, the size of the
+        //map may not match the entries iterated (and computing it would also need to traverse all the keys).
+        List<Map.Entry<ModulesKey, ModulesKey>> entries = new ArrayList<Map.Entry<ModulesKey, ModulesKey>>(
+                keys.entrySet());
+        PyPublicTreeMap<ModulesKey, ModulesKey> ret = new PyPublicTreeMap<ModulesKey, ModulesKey>();
+        try {
+            ret.buildFromSorted(entries.size(), entries.iterator(), null, null);
+        } catch (IOException cannotHappen) {
+        } catch (ClassNotFoundException cannotHappen) {
         }
+        return ret;
     }
 
     public SortedMap<ModulesKey, ModulesKey> getAllModulesStartingWith(String strStartingWith) {
@@ -699,18 +730,14 @@ public abstract class ModulesManager implements IModulesManager {
     }
 
     public ModulesKey[] getOnlyDirectModules() {
-        synchronized (modulesKeysLock) {
-            return this.modulesKeys.keySet().toArray(new ModulesKey[0]);
-        }
+        return this.modulesKeys.keySet().toArray(new ModulesKey[0]);
     }
 
     /**
      * Note: no dependencies at this point (so, just return the keys)
      */
     public int getSize(boolean addDependenciesSize) {
-        synchronized (modulesKeysLock) {
-            return this.modulesKeys.size();
-        }
+        return modulesKeysSize;
     }
 
     public IModule getModule(String name, IPythonNature nature, boolean dontSearchInit) {
@@ -965,13 +992,11 @@ public abstract class ModulesManager implements IModulesManager {
 
     private ModulesKey createModulesKey(String name, File f) {
         ModulesKey newEntry = new ModulesKey(name, f);
-        synchronized (modulesKeysLock) {
-            Entry<ModulesKey, ModulesKey> oldEntry = this.modulesKeys.getEntry(newEntry);
-            if (oldEntry != null) {
-                return oldEntry.getKey();
-            } else {
-                return newEntry;
-            }
+        ModulesKey oldEntry = this.modulesKeys.get(newEntry);
+        if (oldEntry != null) {
+            return oldEntry;
+        } else {
+            return newEntry;
         }
     }
 
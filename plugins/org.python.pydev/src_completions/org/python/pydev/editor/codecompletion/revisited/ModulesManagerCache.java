@@ -33,38 +33,52 @@ final class ModulesManagerCache {
 
     /**
      * Overridden so that if we do not find the key, we have the chance to create it.
+     *
+     * Note that the modules manager keys are not locked (they're in a concurrent map): if the key is removed
+     * while the empty module is created, it's removed from the cache again (writers remove the key from the
+     * modules manager before removing it from the cache).
      */
     public AbstractModule getObj(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
 
-            synchronized (lock) {
-                AbstractModule obj = internalCache.getObj(keyTuple);
-                if (obj == null && modulesManager.modulesKeys.containsKey(key)) {
-                    key = modulesManager.modulesKeys.get(key); //get the 'real' key
-                    obj = AbstractModule.createEmptyModule(key);
-                    internalCache.add(keyTuple, obj);
-                }
+        synchronized (lock) {
+            AbstractModule obj = internalCache.getObj(keyTuple);
+            if (obj != null) {
                 return obj;
             }
         }
-    }
 
-    public void remove(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
+        ModulesKey realKey = modulesManager.modulesKeys.get(key); //get the 'real' key
+        if (realKey == null) {
+            return null;
+        }
+        AbstractModule obj = AbstractModule.createEmptyModule(realKey);
+        synchronized (lock) {
+            AbstractModule existing = internalCache.getObj(keyTuple);
+            if (existing != null) {
+                //Someone added it while we were creating it.
+                return existing;
+            }
+            //Note: the key in the cache is the 'real' key (the one passed may be changed later on by the caller).
+            internalCache.add(new Tuple<ModulesKey, ModulesManager>(realKey, modulesManager), obj);
+            if (!modulesManager.modulesKeys.containsKey(key)) {
                 internalCache.remove(keyTuple);
             }
         }
+        return obj;
+    }
+
+    public void remove(ModulesKey key, ModulesManager modulesManager) {
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        synchronized (lock) {
+            internalCache.remove(keyTuple);
+        }
     }
 
     public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.add(keyTuple, n);
-            }
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        synchronized (lock) {
+            internalCache.add(keyTuple, n);
         }
     }
 
@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -27,6 +28,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -41,11 +45,13 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.ui.ide.IDE;
 import org.python.pydev.core.FullRepIterable;
 import org.python.pydev.core.IPythonPathNature;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.cache.ZipFilesCache;
 import org.python.pydev.core.docutils.StringUtils;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.PyEdit;
@@ -74,6 +80,11 @@ public final class PythonPathHelper implements IPythonPathHelper {
      */
     private volatile List<String> pythonpath = Collections.unmodifiableList(new ArrayList<String>());
 
+    /**
+     * Set to true to print the time (and throughput) of scanning the pythonpath.
+     */
+    public static final boolean DEBUG_SCAN = false;
+
     /**
      * Returns the default path given from the string.
      * @param str
@@ -115,7 +126,7 @@ public final class PythonPathHelper implements IPythonPathHelper {
                 }
 
             };
-            return PyFileListing.getPyFilesBelow(root, filter, monitor, true);
+            return PyFileListing.getPyFilesBelowInParallel(root, filter, monitor, true);
 
         }
         return null;
@@ -140,8 +151,9 @@ public final class PythonPathHelper implements IPythonPathHelper {
             try {
                 String zipFileName = root.getName();
 
-                ZipFile zipFile = new ZipFile(root);
+                ZipFilesCache.Handle handle = ZipFilesCache.acquire(root);
                 try {
+                    ZipFile zipFile = handle.getZipFile();
                     Enumeration<? extends ZipEntry> entries = zipFile.entries();
 
                     int i = 0;
@@ -181,7 +193,7 @@ public final class PythonPathHelper implements IPythonPathHelper {
                         i++;
                     }
                 } finally {
-                    zipFile.close();
+                    handle.release();
                 }
 
                 //now, on to actually filling the structure if we have a zip file (just add the ones that are actually under
@@ -515,33 +527,93 @@ public final class PythonPathHelper implements IPythonPathHelper {
         return pythonpath;
     }
 
+    /**
+     * A monitor which may be used from multiple threads (the pythonpath roots are scanned concurrently).
+     */
+    private static final class SynchronizedProgressMonitor extends ProgressMonitorWrapper {
+
+        private SynchronizedProgressMonitor(IProgressMonitor monitor) {
+            super(monitor);
+        }
+
+        @Override
+        public synchronized void setTaskName(String name) {
+            super.setTaskName(name);
+        }
+
+        @Override
+        public synchronized void subTask(String name) {
+            super.subTask(name);
+        }
+
+        @Override
+        public synchronized void worked(int work) {
+            super.worked(work);
+        }
+
+        @Override
+        public synchronized void internalWorked(double work) {
+            super.internalWorked(work);
+        }
+    }
+
     /**
      * This method should traverse the pythonpath passed and return a structure
      * with the info that could be collected about the files that are related to
      * python modules.
+     *
+     * The roots (folders and zip files) are scanned concurrently (and each folder is also listed in parallel), but
+     * the results are merged in the pythonpath order.
      */
     public ModulesFoundStructure getModulesFoundStructure(IProgressMonitor monitor) {
         if (monitor == null) {
             monitor = new NullProgressMonitor();
         }
+        final IProgressMonitor sharedMonitor = new SynchronizedProgressMonitor(monitor);
         List<String> pythonpathList = getPythonpath();
+        long initialTime = System.currentTimeMillis();
+
+        List<ForkJoinTask<Object>> rootTasks = new ArrayList<ForkJoinTask<Object>>(pythonpathList.size());
+        for (Iterator<String> iter = pythonpathList.iterator(); iter.hasNext();) {
+            final File root = new File(iter.next());
+            rootTasks.add(PyFileListing.getPool().submit(new Callable<Object>() {
+
+                public Object call() throws Exception {
+                    if (sharedMonitor.isCanceled()) {
+                        return null;
+                    }
+                    PyFileListing below = getModulesBelow(root, sharedMonitor);
+                    if (below != null) {
+                        return below;
+                    }
+                    //ok, it was null, so, maybe this is not a folder, but zip file with java classes...
+                    return getFromZip(root, sharedMonitor);
+                }
+            }));
+        }
 
         ModulesFoundStructure ret = new ModulesFoundStructure();
+        int filesFound = 0;
 
         FastStringBuffer tempBuf = new FastStringBuffer();
-        for (Iterator<String> iter = pythonpathList.iterator(); iter.hasNext();) {
-            String element = iter.next();
-
-            if (monitor.isCanceled()) {
+        for (ForkJoinTask<Object> rootTask : rootTasks) {
+            Object found;
+            try {
+                found = rootTask.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 break;
+            } catch (ExecutionException e) {
+                Log.log(e.getCause());
+                continue;
             }
 
-            //the slow part is getting the files... not much we can do (I think).
-            File root = new File(element);
-            PyFileListing below = getModulesBelow(root, monitor);
-            if (below != null) {
+            if (found instanceof PyFileListing) {
+                PyFileListing below = (PyFileListing) found;
+                Collection<PyFileInfo> foundPyFileInfos = below.getFoundPyFileInfos();
+                filesFound += foundPyFileInfos.size();
 
-                Iterator<PyFileInfo> e1 = below.getFoundPyFileInfos().iterator();
+                Iterator<PyFileInfo> e1 = foundPyFileInfos.iterator();
                 while (e1.hasNext()) {
                     PyFileInfo pyFileInfo = e1.next();
                     File file = pyFileInfo.getFile();
@@ -551,13 +623,20 @@ public final class PythonPathHelper implements IPythonPathHelper {
                     }
                 }
 
-            } else { //ok, it was null, so, maybe this is not a folder, but zip file with java classes...
-                ModulesFoundStructure.ZipContents zipContents = getFromZip(root, monitor);
-                if (zipContents != null) {
-                    ret.zipContents.add(zipContents);
-                }
+            } else if (found instanceof ModulesFoundStructure.ZipContents) {
+                ModulesFoundStructure.ZipContents zipContents = (ModulesFoundStructure.ZipContents) found;
+                filesFound += zipContents.foundFileZipPaths.size();
+                ret.zipContents.add(zipContents);
             }
         }
+
+        long delta = Math.max(1, System.currentTimeMillis() - initialTime);
+        String msg = tempBuf.clear().append("Found ").append(filesFound).append(" files in ").append(delta)
+                .append(" millis (").append((filesFound * 1000L) / delta).append(" files/sec)").toString();
+        monitor.setTaskName(msg);
+        if (DEBUG_SCAN) {
+            System.out.println(msg);
+        }
         return ret;
     }
 
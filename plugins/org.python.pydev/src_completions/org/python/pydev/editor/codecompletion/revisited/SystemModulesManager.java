@@ -35,6 +35,7 @@ import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.editor.codecompletion.revisited.modules.CompiledModuleCache;
 import org.python.pydev.editor.codecompletion.revisited.modules.EmptyModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.PredefinedSourceModule;
 import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
@@ -45,6 +46,7 @@ import org.python.pydev.plugin.nature.SystemPythonNature;
 import org.python.pydev.shared_core.cache.LRUCache;
 import org.python.pydev.shared_core.model.ISimpleNode;
 import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.ui.pythonpathconf.InterpreterInfo;
 
@@ -380,6 +382,32 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
 
     }
 
+    /**
+     * Persistent cache for the information gotten from the shell for the compiled modules of this interpreter.
+     */
+    private transient volatile CompiledModuleCache compiledModuleCache;
+
+    private static final Object compiledModuleCacheLock = new Object();
+
+    /**
+     * @return the cache for the compiled modules of this interpreter (created and prewarmed with the forced builtins
+     * on the first call).
+     */
+    public CompiledModuleCache getCompiledModuleCache() {
+        if (compiledModuleCache == null) {
+            synchronized (compiledModuleCacheLock) {
+                if (compiledModuleCache == null) {
+                    CompiledModuleCache cache = new CompiledModuleCache(new File(getIoDirectory(),
+                            "v1_compiled_modules_cache"), new File(info.getExecutableOrJar()),
+                            StringUtils.md5(info.toString()));
+                    compiledModuleCache = cache;
+                    cache.prewarm(this);
+                }
+            }
+        }
+        return compiledModuleCache;
+    }
+
     public File getIoDirectory() {
         final File workspaceMetadataFile = PydevPlugin.getWorkspaceMetadataFile(info.getExeAsFileSystemValidPath());
         return workspaceMetadataFile;
@@ -389,10 +417,7 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
      * @param keysFound
      */
     public void updateKeysAndSave(PyPublicTreeMap<ModulesKey, ModulesKey> keysFound) {
-        synchronized (modulesKeysLock) {
-            modulesKeys.clear();
-            modulesKeys.putAll(keysFound);
-        }
+        setModulesKeys(keysFound);
         this.save();
     }
 
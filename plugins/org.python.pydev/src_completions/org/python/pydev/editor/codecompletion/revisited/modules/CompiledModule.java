@@ -34,8 +34,11 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.IToken;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.CompletionStateFactory;
+import org.python.pydev.editor.codecompletion.revisited.SystemModulesManager;
 import org.python.pydev.editor.codecompletion.revisited.visitors.Definition;
 import org.python.pydev.editor.codecompletion.shell.AbstractShell;
+import org.python.pydev.editor.codecompletion.shell.ShellPool;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.cache.LRUCache;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.structure.Tuple;
@@ -108,6 +111,12 @@ public class CompiledModule extends AbstractModule {
 
     private final boolean isPythonBuiltin;
 
+    /**
+     * Cache (persisted across sessions) for the information gotten from the shell (null if the module was not
+     * created by the modules manager of an interpreter).
+     */
+    private final CompiledModuleCache persistentCache;
+
     @Override
     public File getFile() {
         return file;
@@ -133,6 +142,7 @@ public class CompiledModule extends AbstractModule {
     private CompiledModule(String name, int tokenTypes, IModulesManager manager) {
         super(name);
         isPythonBuiltin = ("__builtin__".equals(name) || "builtins".equals(name));
+        persistentCache = getPersistentCache(manager);
         if (COMPILED_MODULES_ENABLED) {
             try {
                 setTokens(name, manager);
@@ -147,11 +157,7 @@ public class CompiledModule extends AbstractModule {
                 }
 
                 try {
-                    AbstractShell shell = AbstractShell.getServerShell(manager.getNature(),
-                            AbstractShell.COMPLETION_SHELL);
-                    synchronized (shell) {
-                        shell.clearSocket();
-                    }
+                    //the shell where it failed is restarted by the pool.
                     setTokens(name, manager);
                 } catch (Exception e2) {
                     tokens = new HashMap<String, IToken>();
@@ -171,83 +177,102 @@ public class CompiledModule extends AbstractModule {
 
     }
 
+    private static CompiledModuleCache getPersistentCache(IModulesManager manager) {
+        //In tests we always want to get the information from the shell.
+        if (manager instanceof SystemModulesManager && !SharedCorePlugin.inTestMode()) {
+            try {
+                return ((SystemModulesManager) manager).getCompiledModuleCache();
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+        return null;
+    }
+
     private void setTokens(String name, IModulesManager manager) throws IOException, Exception, CoreException {
         if (TRACE_COMPILED_MODULES) {
             Log.log(IStatus.INFO, ("Compiled modules: getting info for:" + name), null);
         }
-        final IPythonNature nature = manager.getNature();
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
-        synchronized (shell) {
-            Tuple<String, List<String[]>> completions = shell.getImportCompletions(name, manager.getCompletePythonPath(
+        Tuple<String, List<String[]>> completions = null;
+        if (persistentCache != null) {
+            completions = persistentCache.getImportCompletions(name, name);
+        }
+        if (completions == null) {
+            final IPythonNature nature = manager.getNature();
+            ShellPool pool = AbstractShell.getServerShellPool(nature, AbstractShell.COMPLETION_SHELL);
+            completions = pool.getImportCompletions(name, manager.getCompletePythonPath(
                     nature.getProjectInterpreter(), nature.getRelatedInterpreterManager())); //default
+            if (persistentCache != null && completions.o2.size() > 0) {
+                persistentCache.putImportCompletions(name, name, completions);
+            }
+        }
 
-            if (TRACE_COMPILED_MODULES) {
-                Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
-                        + completions.o2.size() + " completions."), null);
+        if (TRACE_COMPILED_MODULES) {
+            Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
+                    + completions.o2.size() + " completions."), null);
+        }
+        String fPath = completions.o1;
+        if (fPath != null) {
+            if (!fPath.equals("None")) {
+                this.file = new File(fPath);
             }
-            String fPath = completions.o1;
-            if (fPath != null) {
-                if (!fPath.equals("None")) {
-                    this.file = new File(fPath);
-                }
 
-                String f = fPath;
-                if (f.toLowerCase().endsWith(".pyc")) {
-                    f = f.substring(0, f.length() - 1); //remove the c from pyc
-                    File f2 = new File(f);
-                    if (f2.exists()) {
-                        this.file = f2;
-                    }
+            String f = fPath;
+            if (f.toLowerCase().endsWith(".pyc")) {
+                f = f.substring(0, f.length() - 1); //remove the c from pyc
+                File f2 = new File(f);
+                if (f2.exists()) {
+                    this.file = f2;
                 }
             }
-            ArrayList<IToken> array = new ArrayList<IToken>();
-
-            for (String[] element : completions.o2) {
-                //let's make this less error-prone.
-                try {
-                    String o1 = element[0]; //this one is really, really needed
-                    String o2 = "";
-                    String o3 = "";
+        }
+        ArrayList<IToken> array = new ArrayList<IToken>();
 
-                    if (element.length > 0) {
-                        o2 = element[1];
-                    }
+        for (String[] element : completions.o2) {
+            //let's make this less error-prone.
+            try {
+                String o1 = element[0]; //this one is really, really needed
+                String o2 = "";
+                String o3 = "";
 
-                    if (element.length > 0) {
-                        o3 = element[2];
-                    }
+                if (element.length > 0) {
+                    o2 = element[1];
+                }
 
-                    IToken t;
-                    if (element.length > 0) {
-                        t = new CompiledToken(o1, o2, o3, name, Integer.parseInt(element[3]));
-                    } else {
-                        t = new CompiledToken(o1, o2, o3, name, IToken.TYPE_BUILTIN);
-                    }
+                if (element.length > 0) {
+                    o3 = element[2];
+                }
 
-                    array.add(t);
-                } catch (Exception e) {
-                    String received = "";
-                    for (int i = 0; i < element.length; i++) {
-                        received += element[i];
-                        received += "  ";
-                    }
+                IToken t;
+                if (element.length > 0) {
+                    t = new CompiledToken(o1, o2, o3, name, Integer.parseInt(element[3]));
+                } else {
+                    t = new CompiledToken(o1, o2, o3, name, IToken.TYPE_BUILTIN);
+                }
 
-                    Log.log(IStatus.ERROR, ("Error getting completions for compiled module " + name + " received = '"
-                            + received + "'"), e);
+                array.add(t);
+            } catch (Exception e) {
+                String received = "";
+                for (int i = 0; i < element.length; i++) {
+                    received += element[i];
+                    received += "  ";
                 }
-            }
 
-            //as we will use it for code completion on sources that map to modules, the __file__ should also
-            //be added...
-            if (array.size() > 0 && (name.equals("__builtin__") || name.equals("builtins"))) {
-                array.add(new CompiledToken("__file__", "", "", name, IToken.TYPE_BUILTIN));
-                array.add(new CompiledToken("__name__", "", "", name, IToken.TYPE_BUILTIN));
-                array.add(new CompiledToken("__builtins__", "", "", name, IToken.TYPE_BUILTIN));
-                array.add(new CompiledToken("__dict__", "", "", name, IToken.TYPE_BUILTIN));
+                Log.log(IStatus.ERROR, ("Error getting completions for compiled module " + name + " received = '"
+                        + received + "'"), e);
             }
+        }
 
-            addTokens(array);
+        //as we will use it for code completion on sources that map to modules, the __file__ should also
+        //be added...
+        if (array.size() > 0 && (name.equals("__builtin__") || name.equals("builtins"))) {
+            array.add(new CompiledToken("__file__", "", "", name, IToken.TYPE_BUILTIN));
+            array.add(new CompiledToken("__name__", "", "", name, IToken.TYPE_BUILTIN));
+            array.add(new CompiledToken("__builtins__", "", "", name, IToken.TYPE_BUILTIN));
+            array.add(new CompiledToken("__dict__", "", "", name, IToken.TYPE_BUILTIN));
         }
+
+        addTokens(array);
     }
 
     /**
@@ -310,7 +335,10 @@ public class CompiledModule extends AbstractModule {
             return getGlobalTokens();
         }
 
-        Map<String, IToken> v = cache.get(activationToken);
+        Map<String, IToken> v;
+        synchronized (cache) {
+            v = cache.get(activationToken);
+        }
         if (v != null) {
             Collection<IToken> values = v.values();
             return values.toArray(new IToken[values.size()]);
@@ -322,43 +350,53 @@ public class CompiledModule extends AbstractModule {
             try {
                 final IPythonNature nature = manager.getNature();
 
-                final AbstractShell shell;
-                try {
-                    shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
-                } catch (Exception e) {
-                    throw new RuntimeException("Unable to create shell for CompiledModule: " + this.name, e);
-                }
-                synchronized (shell) {
-                    String act = name + '.' + activationToken;
-                    String tokenToCompletion = act;
-                    if (isPythonBuiltin) {
-                        String replacement = BUILTIN_REPLACEMENTS.get(activationToken);
-                        if (replacement != null) {
-                            tokenToCompletion = name + '.' + replacement;
-                        }
+                String act = name + '.' + activationToken;
+                String tokenToCompletion = act;
+                if (isPythonBuiltin) {
+                    String replacement = BUILTIN_REPLACEMENTS.get(activationToken);
+                    if (replacement != null) {
+                        tokenToCompletion = name + '.' + replacement;
                     }
+                }
 
-                    List<String[]> completions = shell.getImportCompletions(
+                Tuple<String, List<String[]>> importCompletions = null;
+                if (persistentCache != null) {
+                    importCompletions = persistentCache.getImportCompletions(name, tokenToCompletion);
+                }
+                if (importCompletions == null) {
+                    final ShellPool pool;
+                    try {
+                        pool = AbstractShell.getServerShellPool(nature, AbstractShell.COMPLETION_SHELL);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Unable to create shell for CompiledModule: " + this.name, e);
+                    }
+                    importCompletions = pool.getImportCompletions(
                             tokenToCompletion,
                             manager.getModulesManager().getCompletePythonPath(nature.getProjectInterpreter(),
-                                    nature.getRelatedInterpreterManager())).o2;
-
-                    ArrayList<IToken> array = new ArrayList<IToken>();
+                                    nature.getRelatedInterpreterManager()));
+                    if (persistentCache != null && importCompletions.o2.size() > 0) {
+                        persistentCache.putImportCompletions(name, tokenToCompletion, importCompletions);
+                    }
+                }
+                List<String[]> completions = importCompletions.o2;
 
-                    for (Iterator<String[]> iter = completions.iterator(); iter.hasNext();) {
-                        String[] element = iter.next();
-                        if (element.length >= 4) {//it might be a server error
-                            IToken t = new CompiledToken(element[0], element[1], element[2], act,
-                                    Integer.parseInt(element[3]));
-                            array.add(t);
-                        }
+                ArrayList<IToken> array = new ArrayList<IToken>();
 
+                for (Iterator<String[]> iter = completions.iterator(); iter.hasNext();) {
+                    String[] element = iter.next();
+                    if (element.length >= 4) {//it might be a server error
+                        IToken t = new CompiledToken(element[0], element[1], element[2], act,
+                                Integer.parseInt(element[3]));
+                        array.add(t);
                     }
-                    toks = (CompiledToken[]) array.toArray(new CompiledToken[0]);
-                    HashMap<String, IToken> map = new HashMap<String, IToken>();
-                    for (IToken token : toks) {
-                        map.put(token.getRepresentation(), token);
-                    }
+
+                }
+                toks = (CompiledToken[]) array.toArray(new CompiledToken[0]);
+                HashMap<String, IToken> map = new HashMap<String, IToken>();
+                for (IToken token : toks) {
+                    map.put(token.getRepresentation(), token);
+                }
+                synchronized (cache) {
                     cache.put(activationToken, map);
                 }
             } catch (Exception e) {
@@ -410,7 +448,10 @@ public class CompiledModule extends AbstractModule {
         if (TRACE_COMPILED_MODULES) {
             System.out.println("CompiledModule.findDefinition:" + token);
         }
-        Definition[] found = this.definitionsFoundCache.getObj(token);
+        Definition[] found;
+        synchronized (definitionsFoundCache) {
+            found = this.definitionsFoundCache.getObj(token);
+        }
         if (found != null) {
             if (TRACE_COMPILED_MODULES) {
                 System.out.println("CompiledModule.findDefinition: found in cache.");
@@ -418,74 +459,87 @@ public class CompiledModule extends AbstractModule {
             return found;
         }
 
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.COMPLETION_SHELL);
-        synchronized (shell) {
-            Tuple<String[], int[]> def = shell.getLineCol(this.name, token, nature.getAstManager().getModulesManager()
+        Tuple<String[], int[]> def = null;
+        if (persistentCache != null) {
+            def = persistentCache.getLineCol(this.name, token);
+        }
+        if (def == null) {
+            ShellPool pool = AbstractShell.getServerShellPool(nature, AbstractShell.COMPLETION_SHELL);
+            def = pool.getLineCol(this.name, token, nature.getAstManager().getModulesManager()
                     .getCompletePythonPath(nature.getProjectInterpreter(), nature.getRelatedInterpreterManager())); //default
-            if (def == null) {
-                if (TRACE_COMPILED_MODULES) {
-                    System.out.println("CompiledModule.findDefinition:" + token + " = empty");
-                }
-                this.definitionsFoundCache.add(token, EMPTY_DEFINITION);
-                return EMPTY_DEFINITION;
-            }
-            String fPath = def.o1[0];
-            if (fPath.equals("None")) {
-                if (TRACE_COMPILED_MODULES) {
-                    System.out.println("CompiledModule.findDefinition:" + token + " = None");
-                }
-                Definition[] definition = new Definition[] { new Definition(def.o2[0], def.o2[1], token, null, null,
-                        this) };
-                this.definitionsFoundCache.add(token, definition);
-                return definition;
+            if (def != null && persistentCache != null) {
+                persistentCache.putLineCol(this.name, token, def);
             }
-            File f = new File(fPath);
-            String foundModName = nature.resolveModule(f);
-            String foundAs = def.o1[1];
-
-            IModule mod;
-            if (foundModName == null) {
-                //this can happen in a case where we have a definition that's found from a compiled file which actually
-                //maps to a file that's outside of the pythonpath known by Pydev.
-                String n = FullRepIterable.getFirstPart(f.getName());
-                mod = AbstractModule.createModule(n, f, nature, true);
-            } else {
-                mod = nature.getAstManager().getModule(foundModName, nature, true);
+        }
+        if (def == null) {
+            if (TRACE_COMPILED_MODULES) {
+                System.out.println("CompiledModule.findDefinition:" + token + " = empty");
             }
-
+            addDefinitionsFound(token, EMPTY_DEFINITION);
+            return EMPTY_DEFINITION;
+        }
+        String fPath = def.o1[0];
+        if (fPath.equals("None")) {
             if (TRACE_COMPILED_MODULES) {
-                System.out.println("CompiledModule.findDefinition: found at:" + mod.getName());
+                System.out.println("CompiledModule.findDefinition:" + token + " = None");
             }
-            int foundLine = def.o2[0];
-            if (foundLine == 0 && foundAs != null && foundAs.length() > 0 && mod != null
-                    && state.canStillCheckFindSourceFromCompiled(mod, foundAs)) {
-                //TODO: The nature (and so the grammar to be used) must be defined by the file we'll parse
-                //(so, we need to know the system modules manager that actually created it to know the actual nature)
-                IModule sourceMod = AbstractModule.createModuleFromDoc(mod.getName(), f,
-                        new Document(FileUtils.getPyFileContents(f)), nature, true);
-                if (sourceMod instanceof SourceModule) {
-                    Definition[] definitions = (Definition[]) sourceMod.findDefinition(
-                            state.getCopyWithActTok(foundAs), -1, -1, nature);
-                    if (definitions.length > 0) {
-                        this.definitionsFoundCache.add(token, definitions);
-                        return definitions;
-                    }
+            Definition[] definition = new Definition[] { new Definition(def.o2[0], def.o2[1], token, null, null,
+                    this) };
+            addDefinitionsFound(token, definition);
+            return definition;
+        }
+        File f = new File(fPath);
+        String foundModName = nature.resolveModule(f);
+        String foundAs = def.o1[1];
+
+        IModule mod;
+        if (foundModName == null) {
+            //this can happen in a case where we have a definition that's found from a compiled file which actually
+            //maps to a file that's outside of the pythonpath known by Pydev.
+            String n = FullRepIterable.getFirstPart(f.getName());
+            mod = AbstractModule.createModule(n, f, nature, true);
+        } else {
+            mod = nature.getAstManager().getModule(foundModName, nature, true);
+        }
+
+        if (TRACE_COMPILED_MODULES) {
+            System.out.println("CompiledModule.findDefinition: found at:" + mod.getName());
+        }
+        int foundLine = def.o2[0];
+        if (foundLine == 0 && foundAs != null && foundAs.length() > 0 && mod != null
+                && state.canStillCheckFindSourceFromCompiled(mod, foundAs)) {
+            //TODO: The nature (and so the grammar to be used) must be defined by the file we'll parse
+            //(so, we need to know the system modules manager that actually created it to know the actual nature)
+            IModule sourceMod = AbstractModule.createModuleFromDoc(mod.getName(), f,
+                    new Document(FileUtils.getPyFileContents(f)), nature, true);
+            if (sourceMod instanceof SourceModule) {
+                Definition[] definitions = (Definition[]) sourceMod.findDefinition(
+                        state.getCopyWithActTok(foundAs), -1, -1, nature);
+                if (definitions.length > 0) {
+                    addDefinitionsFound(token, definitions);
+                    return definitions;
                 }
             }
-            if (mod == null) {
-                mod = this;
-            }
-            int foundCol = def.o2[1];
-            if (foundCol < 0) {
-                foundCol = 0;
-            }
-            if (TRACE_COMPILED_MODULES) {
-                System.out.println("CompiledModule.findDefinition: found compiled at:" + mod.getName());
-            }
-            Definition[] definitions = new Definition[] { new Definition(foundLine + 1, foundCol + 1, token, null,
-                    null, mod) };
+        }
+        if (mod == null) {
+            mod = this;
+        }
+        int foundCol = def.o2[1];
+        if (foundCol < 0) {
+            foundCol = 0;
+        }
+        if (TRACE_COMPILED_MODULES) {
+            System.out.println("CompiledModule.findDefinition: found compiled at:" + mod.getName());
+        }
+        Definition[] definitions = new Definition[] { new Definition(foundLine + 1, foundCol + 1, token, null,
+                null, mod) };
+        addDefinitionsFound(token, definitions);
+        return definitions;
+    }
+
+    private void addDefinitionsFound(String token, Definition[] definitions) {
+        synchronized (definitionsFoundCache) {
             this.definitionsFoundCache.add(token, definitions);
-            return definitions;
         }
     }
 
@@ -0,0 +1,480 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited.modules;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.revisited.SystemModulesManager;
+import org.python.pydev.shared_core.cache.LRUMap;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Keeps (in memory and on disk) the results of the requests done to the completion shell for the compiled modules
+ * of an interpreter, so that the (slow) round trips to the shell are not done again after a restart.
+ *
+ * The information of a module is discarded when the file backing it (i.e.: the .so/.pyd -- or the interpreter
+ * executable for the modules without a file) has a different modification time from the one when it was gotten. The
+ * whole cache is discarded when the interpreter configuration (PYTHONPATH, environment, forced builtins, etc) changes.
+ *
+ * At most MAX_TOKENS_PER_MODULE activation tokens (and definitions) are kept for each module (the least recently used
+ * are discarded).
+ */
+public final class CompiledModuleCache {
+
+    private static final String VERSION = "PYDEV_COMPILED_MODULES_CACHE_V2";
+
+    /**
+     * The maximum number of activation tokens (and of definitions) kept for each module.
+     */
+    /*default*/static final int MAX_TOKENS_PER_MODULE = 200;
+
+    /**
+     * Time to wait after a change before saving the cache.
+     */
+    private static final int SAVE_DELAY_MILLIS = 5000;
+
+    /**
+     * The information gotten for a module.
+     */
+    private static final class ModuleEntry {
+
+        /**
+         * The file reported by the shell for the module (may be null).
+         */
+        private final String file;
+
+        private final long modified;
+
+        /**
+         * Whether the modification time was already checked in this session.
+         */
+        private boolean checked;
+
+        /**
+         * The completions for the module itself.
+         */
+        private Tuple<String, List<String[]>> moduleCompletions;
+
+        /**
+         * Activation token -> completions (in the order they were used).
+         */
+        private final Map<String, Tuple<String, List<String[]>>> completions = //
+        new LRUMap<String, Tuple<String, List<String[]>>>(MAX_TOKENS_PER_MODULE);
+
+        /**
+         * Token -> line/col (in the order they were used).
+         */
+        private final Map<String, Tuple<String[], int[]>> lineCols = new LRUMap<String, Tuple<String[], int[]>>(
+                MAX_TOKENS_PER_MODULE);
+
+        private ModuleEntry(String file, long modified) {
+            this.file = file;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * The caches with changes still not saved (flushed when the plugin is stopped).
+     */
+    private static final Set<CompiledModuleCache> unsavedCaches = new HashSet<CompiledModuleCache>();
+
+    private final File cacheFile;
+    private final File executable;
+    private final String interpreterInfoHash;
+    private final Map<String, ModuleEntry> modules = new HashMap<String, ModuleEntry>();
+    private final Job saveJob;
+
+    /**
+     * Serializes the saves (the save job and saveAll may save the same cache at the same time and both write the
+     * same temporary file).
+     */
+    private final Object saveLock = new Object();
+
+    /**
+     * @param cacheFile the file where the cache is persisted.
+     * @param executable the interpreter executable (its modification time is used for the modules without a file).
+     * @param interpreterInfoHash a hash of the interpreter configuration (the cache persisted is discarded if it was
+     * saved for a different one).
+     */
+    public CompiledModuleCache(File cacheFile, File executable, String interpreterInfoHash) {
+        this.cacheFile = cacheFile;
+        this.executable = executable;
+        this.interpreterInfoHash = interpreterInfoHash;
+        this.saveJob = new Job("Save compiled modules cache") {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                save();
+                return Status.OK_STATUS;
+            }
+        };
+        this.saveJob.setPriority(Job.DECORATE);
+        this.saveJob.setSystem(true);
+        load();
+    }
+
+    /**
+     * @return the modification time of the file backing a module.
+     */
+    private long getModified(String file) {
+        if (file != null && !file.equals("None")) {
+            String f = file;
+            if (f.toLowerCase().endsWith(".pyc")) {
+                f = f.substring(0, f.length() - 1); //the source is the one that matters
+            }
+            File backing = new File(f);
+            if (backing.exists()) {
+                return backing.lastModified();
+            }
+        }
+        return executable != null ? executable.lastModified() : 0;
+    }
+
+    /**
+     * @return the entry for the module (or null if it's not there or if it's outdated).
+     */
+    private ModuleEntry getEntry(String moduleName) {
+        ModuleEntry entry = modules.get(moduleName);
+        if (entry != null && !entry.checked) {
+            if (entry.modified != getModified(entry.file)) {
+                modules.remove(moduleName); //It'll be saved when the new information is added.
+                return null;
+            }
+            entry.checked = true;
+        }
+        return entry;
+    }
+
+    /**
+     * @return whether there's information on the given module.
+     */
+    public synchronized boolean hasModule(String moduleName) {
+        return getEntry(moduleName) != null;
+    }
+
+    /**
+     * @param moduleName the name of the compiled module.
+     * @param token the token which was passed to the shell (the module name or the module name + the activation
+     * token).
+     * @return the completions previously gotten from the shell (or null if not available).
+     */
+    public synchronized Tuple<String, List<String[]>> getImportCompletions(String moduleName, String token) {
+        ModuleEntry entry = getEntry(moduleName);
+        if (entry == null) {
+            return null;
+        }
+        if (moduleName.equals(token)) {
+            return entry.moduleCompletions;
+        }
+        return getAndMarkUsed(entry.completions, token);
+    }
+
+    /**
+     * @return the value for the key in the map, which is moved to the end of the map (so that it's the last one to
+     * be discarded).
+     */
+    private static <V> V getAndMarkUsed(Map<String, V> map, String key) {
+        V value = map.remove(key);
+        if (value != null) {
+            map.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Adds completions gotten from the shell. The completions for the module itself must be added before the
+     * completions for its tokens (as the file of the module comes from them).
+     */
+    public synchronized void putImportCompletions(String moduleName, String token,
+            Tuple<String, List<String[]>> completions) {
+        ModuleEntry entry;
+        if (moduleName.equals(token)) {
+            entry = new ModuleEntry(completions.o1, getModified(completions.o1));
+            entry.checked = true;
+            entry.moduleCompletions = completions;
+            modules.put(moduleName, entry);
+        } else {
+            entry = getEntry(moduleName);
+            if (entry == null) {
+                return;
+            }
+            entry.completions.remove(token);
+            entry.completions.put(token, completions);
+        }
+        scheduleSave();
+    }
+
+    /**
+     * @return the line/col previously gotten from the shell for a token in the module (or null if not available).
+     */
+    public synchronized Tuple<String[], int[]> getLineCol(String moduleName, String token) {
+        ModuleEntry entry = getEntry(moduleName);
+        if (entry == null) {
+            return null;
+        }
+        return getAndMarkUsed(entry.lineCols, token);
+    }
+
+    /**
+     * Adds the line/col gotten from the shell for a token in the module.
+     */
+    public synchronized void putLineCol(String moduleName, String token, Tuple<String[], int[]> lineCol) {
+        ModuleEntry entry = getEntry(moduleName);
+        if (entry == null) {
+            return;
+        }
+        entry.lineCols.remove(token);
+        entry.lineCols.put(token, lineCol);
+        scheduleSave();
+    }
+
+    /**
+     * Gets the information on the forced builtins of the interpreter which are still not in the cache in a
+     * background job.
+     */
+    public void prewarm(final SystemModulesManager modulesManager) {
+        Job job = new Job("Prewarm compiled modules cache") {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                String[] builtins = modulesManager.getBuiltins();
+                if (builtins != null) {
+                    for (String builtin : builtins) {
+                        if (monitor.isCanceled()) {
+                            return Status.CANCEL_STATUS;
+                        }
+                        if (!hasModule(builtin)) {
+                            try {
+                                modulesManager.getBuiltinModule(builtin, true);
+                            } catch (Throwable e) {
+                                Log.log(e);
+                            }
+                        }
+                    }
+                }
+                return Status.OK_STATUS;
+            }
+        };
+        job.setPriority(Job.DECORATE);
+        job.setSystem(true);
+        job.schedule();
+    }
+
+    private void scheduleSave() {
+        synchronized (unsavedCaches) {
+            unsavedCaches.add(this);
+        }
+        saveJob.schedule(SAVE_DELAY_MILLIS);
+    }
+
+    /**
+     * Saves the caches which still have changes not saved (called when the plugin is stopped, as the delayed save
+     * job may not have run).
+     */
+    public static void saveAll() {
+        List<CompiledModuleCache> caches;
+        synchronized (unsavedCaches) {
+            caches = new ArrayList<CompiledModuleCache>(unsavedCaches);
+        }
+        for (CompiledModuleCache cache : caches) {
+            cache.save();
+        }
+    }
+
+    // Persistence -----------------------------------------------------------------------------------------------------
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+        return strings;
+    }
+
+    private static void writeCompletions(DataOutputStream out, Tuple<String, List<String[]>> completions)
+            throws IOException {
+        writeString(out, completions.o1);
+        List<String[]> list = completions.o2;
+        out.writeInt(list.size());
+        for (String[] element : list) {
+            writeStrings(out, element);
+        }
+    }
+
+    private static Tuple<String, List<String[]>> readCompletions(DataInputStream in) throws IOException {
+        String file = readString(in);
+        int size = in.readInt();
+        List<String[]> list = new ArrayList<String[]>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readStrings(in));
+        }
+        return new Tuple<String, List<String[]>>(file, list);
+    }
+
+    /**
+     * Saves the cache to disk.
+     */
+    public void save() {
+        saveJob.cancel(); //if it was scheduled, it's not needed anymore.
+        synchronized (unsavedCaches) {
+            unsavedCaches.remove(this);
+        }
+        synchronized (saveLock) {
+            File tempFile = new File(cacheFile.getPath() + ".tmp");
+            try {
+                File parent = cacheFile.getParentFile();
+                if (parent != null && !parent.exists()) {
+                    parent.mkdirs();
+                }
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+                try {
+                    synchronized (this) {
+                        out.writeUTF(VERSION);
+                        writeString(out, interpreterInfoHash);
+                        out.writeInt(modules.size());
+                        for (Map.Entry<String, ModuleEntry> e : modules.entrySet()) {
+                            ModuleEntry entry = e.getValue();
+                            writeString(out, e.getKey());
+                            writeString(out, entry.file);
+                            out.writeLong(entry.modified);
+
+                            out.writeBoolean(entry.moduleCompletions != null);
+                            if (entry.moduleCompletions != null) {
+                                writeCompletions(out, entry.moduleCompletions);
+                            }
+
+                            //Note: written from the least to the most recently used (so, that order is kept when
+                            //loaded).
+                            out.writeInt(entry.completions.size());
+                            for (Map.Entry<String, Tuple<String, List<String[]>>> c : entry.completions.entrySet()) {
+                                writeString(out, c.getKey());
+                                writeCompletions(out, c.getValue());
+                            }
+
+                            out.writeInt(entry.lineCols.size());
+                            for (Map.Entry<String, Tuple<String[], int[]>> l : entry.lineCols.entrySet()) {
+                                writeString(out, l.getKey());
+                                writeStrings(out, l.getValue().o1);
+                                int[] ints = l.getValue().o2;
+                                out.writeInt(ints.length);
+                                for (int i : ints) {
+                                    out.writeInt(i);
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    out.close();
+                }
+                cacheFile.delete();
+                if (!tempFile.renameTo(cacheFile)) {
+                    Log.log("Unable to rename: " + tempFile + " to: " + cacheFile);
+                }
+            } catch (IOException e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try {
+                if (!VERSION.equals(in.readUTF())) {
+                    return;
+                }
+                String savedHash = readString(in);
+                if (savedHash == null ? interpreterInfoHash != null : !savedHash.equals(interpreterInfoHash)) {
+                    return; //The interpreter configuration changed: start with an empty cache.
+                }
+                Map<String, ModuleEntry> loaded = new HashMap<String, ModuleEntry>();
+                int nModules = in.readInt();
+                for (int m = 0; m < nModules; m++) {
+                    String moduleName = readString(in);
+                    ModuleEntry entry = new ModuleEntry(readString(in), in.readLong());
+                    if (in.readBoolean()) {
+                        entry.moduleCompletions = readCompletions(in);
+                    }
+
+                    int nCompletions = in.readInt();
+                    for (int c = 0; c < nCompletions; c++) {
+                        String token = readString(in);
+                        entry.completions.put(token, readCompletions(in));
+                    }
+
+                    int nLineCols = in.readInt();
+                    for (int l = 0; l < nLineCols; l++) {
+                        String token = readString(in);
+                        String[] strings = readStrings(in);
+                        int[] ints = new int[in.readInt()];
+                        for (int i = 0; i < ints.length; i++) {
+                            ints[i] = in.readInt();
+                        }
+                        entry.lineCols.put(token, new Tuple<String[], int[]>(strings, ints));
+                    }
+                    loaded.put(moduleName, entry);
+                }
+                synchronized (this) {
+                    modules.putAll(loaded);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            //Corrupted: just start with an empty cache.
+            Log.log("Error loading compiled modules cache from: " + cacheFile, e);
+        }
+    }
+}
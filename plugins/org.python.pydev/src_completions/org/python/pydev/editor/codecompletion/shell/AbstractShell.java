@@ -15,6 +15,7 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
@@ -49,7 +50,8 @@ import org.python.pydev.shared_core.structure.Tuple;
  * This is the shell that 'talks' to the python / jython process (it is intended to be subclassed so that
  * we know how to deal with each).
  *
- * Its methods are synched to prevent concurrent access.
+ * Its methods are synched to prevent concurrent access (the requests which may run concurrently should go through
+ * the ShellPool gotten from getServerShellPool()).
  *
  * @author fabioz
  *
@@ -83,6 +85,16 @@ public abstract class AbstractShell {
     private IInterpreterInfo shellInterpreter;
     private int shellMillis;
 
+    /**
+     * Time after which a read is aborted (0 means no timeout).
+     */
+    private volatile int requestTimeoutMillis = 0;
+
+    /**
+     * Number of reads aborted because of the request timeout.
+     */
+    private volatile int requestTimeouts = 0;
+
     /**
      * Lock to know if there is someone already using this shell for some operation
      */
@@ -108,12 +120,12 @@ public abstract class AbstractShell {
      * this works as follows:
      * we have the interpreter as that the shell is related to as the 1st key
      *
-     * and then we have the id with the shell type that points to the actual shell
+     * and then we have the id with the shell type that points to the pool with the actual shells
      *
      * @see #COMPLETION_SHELL
      * @see #OTHERS_SHELL
      */
-    protected static Map<String, Map<Integer, AbstractShell>> shells = new HashMap<String, Map<Integer, AbstractShell>>();
+    protected static Map<String, Map<Integer, ShellPool>> shells = new HashMap<String, Map<Integer, ShellPool>>();
 
     /**
      * if we are already finished for good, we may not start new shells (this is a static, because this
@@ -126,12 +138,12 @@ public abstract class AbstractShell {
      */
     public synchronized static void stopServerShell(IInterpreterInfo interpreter, int id) {
         synchronized (shells) {
-            Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
-            AbstractShell pythonShell = typeToShell.get(new Integer(id));
+            Map<Integer, ShellPool> typeToShell = getTypeToShellFromId(interpreter);
+            ShellPool pool = typeToShell.get(new Integer(id));
 
-            if (pythonShell != null) {
+            if (pool != null) {
                 try {
-                    pythonShell.endIt();
+                    pool.dispose(false);
                 } catch (Exception e) {
                     // ignore... we are ending it anyway...
                 }
@@ -150,16 +162,16 @@ public abstract class AbstractShell {
                 Log.toLogFile("Shutting down all shells (for good)...", AbstractShell.class);
             }
 
-            for (Iterator<Map<Integer, AbstractShell>> iter = shells.values().iterator(); iter.hasNext();) {
+            for (Iterator<Map<Integer, ShellPool>> iter = shells.values().iterator(); iter.hasNext();) {
                 finishedForGood = true; //we may no longer restart shells
 
-                Map<Integer, AbstractShell> rel = iter.next();
+                Map<Integer, ShellPool> rel = iter.next();
                 if (rel != null) {
-                    for (Iterator<AbstractShell> iter2 = rel.values().iterator(); iter2.hasNext();) {
-                        AbstractShell element = iter2.next();
+                    for (Iterator<ShellPool> iter2 = rel.values().iterator(); iter2.hasNext();) {
+                        ShellPool element = iter2.next();
                         if (element != null) {
                             try {
-                                element.shutdown(); //shutdown
+                                element.dispose(true); //shutdown
                             } catch (Exception e) {
                                 Log.log(e); //let's log it... this should not happen
                             }
@@ -184,10 +196,10 @@ public abstract class AbstractShell {
                     Log.toLogFile("Restarting all shells and clearing caches...", AbstractShell.class);
                 }
 
-                for (Map<Integer, AbstractShell> val : shells.values()) {
-                    for (AbstractShell val2 : val.values()) {
+                for (Map<Integer, ShellPool> val : shells.values()) {
+                    for (ShellPool val2 : val.values()) {
                         if (val2 != null) {
-                            val2.endIt();
+                            val2.endShells();
                         }
                     }
                     IInterpreterManager[] interpreterManagers = PydevPlugin.getAllInterpreterManagers();
@@ -217,12 +229,12 @@ public abstract class AbstractShell {
      * @param interpreter the interpreter whose shell we want.
      * @return a map with the type of the shell mapping to the shell itself
      */
-    private synchronized static Map<Integer, AbstractShell> getTypeToShellFromId(IInterpreterInfo interpreter) {
+    private synchronized static Map<Integer, ShellPool> getTypeToShellFromId(IInterpreterInfo interpreter) {
         synchronized (shells) {
-            Map<Integer, AbstractShell> typeToShell = shells.get(interpreter.getExecutableOrJar());
+            Map<Integer, ShellPool> typeToShell = shells.get(interpreter.getExecutableOrJar());
 
             if (typeToShell == null) {
-                typeToShell = new HashMap<Integer, AbstractShell>();
+                typeToShell = new HashMap<Integer, ShellPool>();
                 shells.put(interpreter.getExecutableOrJar(), typeToShell);
             }
             return typeToShell;
@@ -237,28 +249,57 @@ public abstract class AbstractShell {
      * @see #COMPLETION_SHELL
      * @see #OTHERS_SHELL
      *
-     * @param shell the shell to register
+     * @param shell the shell to register (it'll be the only shell used for the given id -- if null, the shells
+     * are created on demand again)
      */
     public synchronized static void putServerShell(IPythonNature nature, int id, AbstractShell shell) {
         synchronized (shells) {
             try {
-                Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(nature.getProjectInterpreter());
-                typeToShell.put(new Integer(id), shell);
+                Map<Integer, ShellPool> typeToShell = getTypeToShellFromId(nature.getProjectInterpreter());
+                if (shell == null) {
+                    typeToShell.remove(new Integer(id));
+                } else {
+                    typeToShell.put(new Integer(id), new ShellPool(shell));
+                }
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
-    public synchronized static AbstractShell getServerShell(IPythonNature nature, int id) throws IOException,
+    public static AbstractShell getServerShell(IPythonNature nature, int id) throws IOException,
             JDTNotAvailableException, CoreException, MisconfigurationException, PythonNatureWithoutProjectException {
-        return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id);
+        ShellPool pool = getServerShellPool(nature.getProjectInterpreter(), nature.getInterpreterType(), id);
+        try {
+            return pool.getMainShell();
+        } catch (IOException e) {
+            throw e;
+        } catch (JDTNotAvailableException e) {
+            throw e;
+        } catch (CoreException e) {
+            throw e;
+        } catch (MisconfigurationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the pool with the shells for the given id related to the interpreter of the nature (the shells are
+     * only created when needed).
+     */
+    public static ShellPool getServerShellPool(IPythonNature nature, int id) throws MisconfigurationException,
+            PythonNatureWithoutProjectException, CoreException {
+        return getServerShellPool(nature.getProjectInterpreter(), nature.getInterpreterType(), id);
     }
 
     /**
-     * @param interpreter the interpreter that should create the shell
+     * @param interpreter the interpreter that should create the shells
      *
-     * @param relatedTo identifies to which kind of interpreter the shell should be related.
+     * @param relatedTo identifies to which kind of interpreter the shells should be related.
      * @see org.python.pydev.core.IPythonNature#INTERPRETER_TYPE_PYTHON
      * @see org.python.pydev.core.IPythonNature#INTERPRETER_TYPE_JYTHON
      *
@@ -266,19 +307,10 @@ public abstract class AbstractShell {
      * @see #COMPLETION_SHELL
      * @see #OTHERS_SHELL
      *
-     * @return the shell with the given id related to some nature
-     *
-     * @throws CoreException
-     * @throws IOException
-     * @throws MisconfigurationException
+     * @return the pool with the shells with the given id related to some nature
      */
-    private synchronized static AbstractShell getServerShell(IInterpreterInfo interpreter, int relatedTo, int id)
-            throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
-        AbstractShell pythonShell = null;
+    private static ShellPool getServerShellPool(IInterpreterInfo interpreter, int relatedTo, int id) {
         synchronized (shells) {
-            if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                Log.toLogFile("Synchronizing on shells...", AbstractShell.class);
-            }
             if (DebugSettings.DEBUG_CODE_COMPLETION) {
                 String flavor;
                 switch (relatedTo) {
@@ -291,46 +323,24 @@ public abstract class AbstractShell {
                     default:
                         flavor = "Python";
                 }
-                ;
                 Log.toLogFile(
                         "Getting shell related to:" + flavor + " id:" + id + " interpreter: "
                                 + interpreter.getExecutableOrJar(), AbstractShell.class);
             }
-            Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
-            pythonShell = typeToShell.get(new Integer(id));
-
-            if (pythonShell == null) {
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    Log.toLogFile("pythonShell == null", AbstractShell.class);
-                }
-                if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
-                    pythonShell = new PythonShell();
-
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
-                    pythonShell = new JythonShell();
-
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
-                    pythonShell = new IronpythonShell();
-
-                } else {
-                    throw new RuntimeException("unknown related id");
-                }
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    Log.toLogFile("pythonShell.startIt()", AbstractShell.class);
-                    Log.addLogLevel();
-                }
-                pythonShell.startIt(interpreter, AbstractShell.DEFAULT_SLEEP_BETWEEN_ATTEMPTS); //first start it
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    Log.remLogLevel();
-                    Log.toLogFile("Finished pythonShell.startIt()", AbstractShell.class);
-                }
-
-                //then make it accessible
-                typeToShell.put(new Integer(id), pythonShell);
+            if (finishedForGood) {
+                throw new RuntimeException(
+                        "Shells are already finished for good, so, it is an invalid state to try to create a new shell.");
             }
+            Map<Integer, ShellPool> typeToShell = getTypeToShellFromId(interpreter);
+            ShellPool pool = typeToShell.get(new Integer(id));
 
+            if (pool == null) {
+                //only the completion shell may have many shells running at the same time.
+                pool = new ShellPool(interpreter, relatedTo, id == COMPLETION_SHELL ? 0 : 1);
+                typeToShell.put(new Integer(id), pool);
+            }
+            return pool;
         }
-        return pythonShell;
     }
 
     /**
@@ -617,6 +627,37 @@ public abstract class AbstractShell {
         }
     }
 
+    /**
+     * Sets the time after which a read is aborted (with a SocketTimeoutException, which makes the shell restart).
+     *
+     * @param millis the timeout (0 means no timeout).
+     */
+    public void setRequestTimeout(int millis) {
+        this.requestTimeoutMillis = millis;
+    }
+
+    /**
+     * @return the number of reads aborted because they took more time than the request timeout.
+     */
+    public int getRequestTimeouts() {
+        return requestTimeouts;
+    }
+
+    /**
+     * @return whether the shell is connected and its process is still running.
+     */
+    public synchronized boolean isAlive() {
+        if (!isConnected || process == null) {
+            return false;
+        }
+        try {
+            process.exitValue();
+            return false; //if it didn't throw an exception, it's already terminated.
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
     /**
      * @param operation
      * @return
@@ -646,13 +687,34 @@ public abstract class AbstractShell {
 
         isInRead = true;
 
+        int timeout = requestTimeoutMillis;
+        int soTimeout = timeout > 0 ? this.socketToRead.getSoTimeout() : 0;
         try {
+            long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
             StringBuffer str = new StringBuffer();
             int j = 0;
             while (j < 200) {
+                long now = System.currentTimeMillis();
+                if (now > deadline) {
+                    requestTimeouts++;
+                    throw new SocketTimeoutException("Request to the shell took more than: " + timeout + " millis.");
+                }
                 byte[] b = new byte[AbstractShell.BUFFER_SIZE];
 
-                this.socketToRead.getInputStream().read(b);
+                if (timeout > 0) {
+                    //A blocking read must not go past the deadline.
+                    int remaining = (int) Math.max(1, deadline - now);
+                    this.socketToRead.setSoTimeout(soTimeout > 0 ? Math.min(soTimeout, remaining) : remaining);
+                }
+                try {
+                    this.socketToRead.getInputStream().read(b);
+                } catch (SocketTimeoutException e) {
+                    if (System.currentTimeMillis() < deadline) {
+                        throw e;
+                    }
+                    requestTimeouts++;
+                    throw new SocketTimeoutException("Request to the shell took more than: " + timeout + " millis.");
+                }
 
                 String s = new String(b);
 
@@ -712,6 +774,13 @@ public abstract class AbstractShell {
             }
         } finally {
             isInRead = false;
+            if (timeout > 0) {
+                try {
+                    this.socketToRead.setSoTimeout(soTimeout);
+                } catch (SocketException e) {
+                    //Closed: nothing to restore.
+                }
+            }
         }
     }
 
@@ -0,0 +1,472 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.shell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.editor.codecompletion.PyCodeCompletionPreferencesPage;
+import org.python.pydev.logging.DebugSettings;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * The shells which run the requests for an interpreter (for a given shell id).
+ *
+ * Up to PyCodeCompletionPreferencesPage.getMaxCompletionShells() shells are started on demand, so that a slow request
+ * (i.e.: importing a heavy extension module) doesn't stall the requests done from other editors or from the builder.
+ *
+ * - A request for a module goes to the (idle) shell which last worked on that module (as the module is already
+ * imported there) or to any idle shell otherwise.
+ * - A shell whose process is not alive is restarted before being used and a shell where a request failed is ended
+ * (and restarted on the next request which uses it).
+ * - A request taking more than PyCodeCompletionPreferencesPage.getCompletionShellTimeoutMillis() is aborted (and
+ * its shell restarted).
+ * - The time waiting for a shell and the time running in the shell are kept (see getStats()).
+ */
+public class ShellPool {
+
+    /**
+     * Time after which a shell which wasn't used is ended (the first shell is always kept).
+     */
+    private static final long IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Maximum number of modules kept to route the requests.
+     */
+    private static final int MAX_ROUTES = 500;
+
+    private final IInterpreterInfo interpreter;
+    private final int relatedTo;
+
+    /**
+     * 0 means that the maximum number of shells is gotten from the preferences.
+     */
+    private final int fixedMaxShells;
+
+    /**
+     * Whether the shells were registered (and so, new shells may not be created).
+     */
+    private final boolean registered;
+
+    private final Object lock = new Object();
+    private final List<AbstractShell> shells = new ArrayList<AbstractShell>();
+    private final LinkedList<AbstractShell> idle = new LinkedList<AbstractShell>();
+    private final Map<AbstractShell, Long> lastUsed = new HashMap<AbstractShell, Long>();
+    private final Map<String, AbstractShell> routes = new HashMap<String, AbstractShell>();
+    private int starting;
+    private boolean disposed;
+
+    private long requests;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+    private long maxRunNanos;
+    private long timeouts;
+    private long failures;
+    private long restarts;
+
+    /**
+     * Creates a pool whose shells are created on demand.
+     *
+     * @param relatedTo the type of the interpreter (IPythonNature.INTERPRETER_TYPE_XXX).
+     * @param maxShells the maximum number of shells (if 0, it's gotten from the preferences).
+     */
+    public ShellPool(IInterpreterInfo interpreter, int relatedTo, int maxShells) {
+        this.interpreter = interpreter;
+        this.relatedTo = relatedTo;
+        this.fixedMaxShells = maxShells;
+        this.registered = false;
+    }
+
+    /**
+     * Creates a pool which only uses the given (already started) shell.
+     */
+    public ShellPool(AbstractShell shell) {
+        this.interpreter = null;
+        this.relatedTo = -1;
+        this.fixedMaxShells = 1;
+        this.registered = true;
+        shells.add(shell);
+        idle.add(shell);
+    }
+
+    private int getMaxShells() {
+        if (fixedMaxShells > 0) {
+            return fixedMaxShells;
+        }
+        return PyCodeCompletionPreferencesPage.getMaxCompletionShells();
+    }
+
+    private int getTimeoutMillis() {
+        try {
+            return PyCodeCompletionPreferencesPage.getCompletionShellTimeoutMillis();
+        } catch (Throwable e) {
+            //Preferences not available.
+            return 0;
+        }
+    }
+
+    /**
+     * Creates and starts a new shell for the pool.
+     */
+    protected AbstractShell createShell() throws Exception {
+        AbstractShell shell;
+        if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
+            shell = new PythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
+            shell = new JythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
+            shell = new IronpythonShell();
+
+        } else {
+            throw new RuntimeException("unknown related id");
+        }
+        shell.startIt(interpreter, AbstractShell.DEFAULT_SLEEP_BETWEEN_ATTEMPTS);
+        return shell;
+    }
+
+    /**
+     * @return the first shell of the pool (creating it if there's still no shell in the pool).
+     */
+    public AbstractShell getMainShell() throws Exception {
+        synchronized (lock) {
+            checkDisposed();
+            if (shells.size() > 0) {
+                return shells.get(0);
+            }
+        }
+        AbstractShell shell = acquire(null);
+        release(shell, true);
+        return shell;
+    }
+
+    private void checkDisposed() {
+        if (disposed) {
+            throw new RuntimeException("The shells for the interpreter were already stopped.");
+        }
+    }
+
+    /**
+     * @param moduleName the module for which the request will be done (null if not related to a module).
+     * @return the shell (not used by anyone else) which should run the request. It must be given back with
+     * release(shell, ok).
+     */
+    private AbstractShell acquire(String moduleName) throws Exception {
+        String route = getRoute(moduleName);
+        AbstractShell shell = null;
+        boolean create = false;
+        List<AbstractShell> toEnd;
+        synchronized (lock) {
+            while (true) {
+                checkDisposed();
+                if (idle.size() > 0) {
+                    shell = route != null ? routes.get(route) : null;
+                    if (shell == null || !idle.remove(shell)) {
+                        shell = idle.removeFirst();
+                    }
+                    break;
+                }
+                if (!registered && shells.size() + starting < getMaxShells()) {
+                    starting++;
+                    create = true;
+                    break;
+                }
+                lock.wait();
+            }
+            toEnd = removeIdleShells();
+        }
+        endShells(toEnd);
+
+        if (create) {
+            try {
+                shell = createShell();
+            } finally {
+                synchronized (lock) {
+                    starting--;
+                    if (shell != null) {
+                        shells.add(shell);
+                    }
+                    lock.notifyAll();
+                }
+            }
+
+        } else if (!shell.isAlive()) {
+            try {
+                shell.restartShell();
+            } catch (Exception e) {
+                release(shell, false);
+                throw e;
+            }
+            synchronized (lock) {
+                restarts++;
+            }
+        }
+        if (route != null) {
+            synchronized (lock) {
+                if (routes.size() >= MAX_ROUTES) {
+                    routes.clear();
+                }
+                routes.put(route, shell);
+            }
+        }
+        return shell;
+    }
+
+    /**
+     * Gives back a shell gotten from acquire().
+     *
+     * @param ok false if the request failed (in which case the shell is ended).
+     */
+    private void release(AbstractShell shell, boolean ok) {
+        boolean end = !ok;
+        synchronized (lock) {
+            if (disposed || !shells.contains(shell)) {
+                end = true;
+            } else {
+                idle.addFirst(shell);
+                lastUsed.put(shell, System.currentTimeMillis());
+                lock.notifyAll();
+            }
+        }
+        if (end) {
+            try {
+                shell.endIt();
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    /**
+     * Removes from the pool the shells which weren't used for some time. Must be called with the lock held.
+     *
+     * @return the shells removed (which should be ended after releasing the lock, as ending a shell may block).
+     */
+    private List<AbstractShell> removeIdleShells() {
+        List<AbstractShell> removed = new ArrayList<AbstractShell>();
+        if (registered) {
+            return removed;
+        }
+        long now = System.currentTimeMillis();
+        for (Iterator<AbstractShell> it = idle.iterator(); it.hasNext();) {
+            AbstractShell shell = it.next();
+            Long last = lastUsed.get(shell);
+            if (shell != shells.get(0) && last != null && now - last > IDLE_TIMEOUT_MILLIS) {
+                it.remove();
+                shells.remove(shell);
+                lastUsed.remove(shell);
+                routes.values().remove(shell);
+                removed.add(shell);
+            }
+        }
+        return removed;
+    }
+
+    private static void endShells(List<AbstractShell> toEnd) {
+        for (AbstractShell shell : toEnd) {
+            try {
+                shell.endIt();
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    /**
+     * @return the key used to route the requests for the given module (the requests for a module and its
+     * sub-modules/tokens go to the same shell).
+     */
+    private static String getRoute(String moduleName) {
+        if (moduleName == null) {
+            return null;
+        }
+        int i = moduleName.indexOf('.');
+        return i == -1 ? moduleName : moduleName.substring(0, i);
+    }
+
+    private void addStats(long waitNanos, long runNanos, int timeoutsBefore, AbstractShell shell, boolean ok) {
+        int newTimeouts = shell.getRequestTimeouts() - timeoutsBefore;
+        synchronized (lock) {
+            requests++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            totalRunNanos += runNanos;
+            maxRunNanos = Math.max(maxRunNanos, runNanos);
+            timeouts += newTimeouts;
+            if (!ok) {
+                failures++;
+            }
+        }
+        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+            Log.toLogFile(this, "Request: waited: " + (waitNanos / 1000000) + " millis -- ran: "
+                    + (runNanos / 1000000) + " millis -- " + getStats());
+        }
+    }
+
+    /**
+     * @return list with tuples: new String[]{token, description}
+     * @see AbstractShell#getImportCompletions(String, List)
+     */
+    public Tuple<String, List<String[]>> getImportCompletions(String str, List<String> pythonpath)
+            throws Exception {
+        long initial = System.nanoTime();
+        AbstractShell shell = acquire(str);
+        long acquired = System.nanoTime();
+        int timeoutsBefore = shell.getRequestTimeouts();
+        boolean ok = false;
+        try {
+            shell.setRequestTimeout(getTimeoutMillis());
+            Tuple<String, List<String[]>> ret = shell.getImportCompletions(str, pythonpath);
+            ok = true;
+            return ret;
+        } finally {
+            release(shell, ok);
+            addStats(acquired - initial, System.nanoTime() - acquired, timeoutsBefore, shell, ok);
+        }
+    }
+
+    /**
+     * @return the file where the token was defined, its line and its column (or null if it was not found)
+     * @see AbstractShell#getLineCol(String, String, List)
+     */
+    public Tuple<String[], int[]> getLineCol(String moduleName, String token, List<String> pythonpath)
+            throws Exception {
+        long initial = System.nanoTime();
+        AbstractShell shell = acquire(moduleName);
+        long acquired = System.nanoTime();
+        int timeoutsBefore = shell.getRequestTimeouts();
+        boolean ok = false;
+        try {
+            shell.setRequestTimeout(getTimeoutMillis());
+            Tuple<String[], int[]> ret = shell.getLineCol(moduleName, token, pythonpath);
+            ok = true;
+            return ret;
+        } finally {
+            release(shell, ok);
+            addStats(acquired - initial, System.nanoTime() - acquired, timeoutsBefore, shell, ok);
+        }
+    }
+
+    /**
+     * @return all the shells in the pool (even the ones being used).
+     */
+    public List<AbstractShell> getShells() {
+        synchronized (lock) {
+            return new ArrayList<AbstractShell>(shells);
+        }
+    }
+
+    /**
+     * Ends all the shells (they're restarted when needed).
+     */
+    public void endShells() {
+        endShells(getShells());
+    }
+
+    /**
+     * Ends all the shells and doesn't accept new requests anymore (the shells being used are ended when given back).
+     *
+     * @param forGood if true, the processes are just destroyed (intended for shutdowns).
+     */
+    public void dispose(boolean forGood) {
+        List<AbstractShell> toEnd;
+        synchronized (lock) {
+            disposed = true;
+            toEnd = new ArrayList<AbstractShell>(idle);
+            shells.clear();
+            idle.clear();
+            lastUsed.clear();
+            routes.clear();
+            lock.notifyAll();
+        }
+        for (AbstractShell shell : toEnd) {
+            try {
+                if (forGood) {
+                    shell.shutdown();
+                } else {
+                    shell.endIt();
+                }
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests done.
+     */
+    public long getRequestsCount() {
+        synchronized (lock) {
+            return requests;
+        }
+    }
+
+    /**
+     * @return the total time (in nanos) the requests waited for a shell.
+     */
+    public long getTotalWaitNanos() {
+        synchronized (lock) {
+            return totalWaitNanos;
+        }
+    }
+
+    /**
+     * @return the total time (in nanos) the requests ran in a shell.
+     */
+    public long getTotalRunNanos() {
+        synchronized (lock) {
+            return totalRunNanos;
+        }
+    }
+
+    /**
+     * @return the number of requests aborted because they took more than the timeout.
+     */
+    public long getTimeoutsCount() {
+        synchronized (lock) {
+            return timeouts;
+        }
+    }
+
+    /**
+     * @return the number of shells restarted because their process was not alive.
+     */
+    public long getRestartsCount() {
+        synchronized (lock) {
+            return restarts;
+        }
+    }
+
+    /**
+     * @return a string with the metrics of the pool.
+     */
+    public String getStats() {
+        synchronized (lock) {
+            long avgWait = requests > 0 ? totalWaitNanos / requests : 0;
+            long avgRun = requests > 0 ? totalRunNanos / requests : 0;
+            return "shells: " + shells.size() + " (idle: " + idle.size() + ") -- requests: " + requests
+                    + " -- wait avg/max: " + (avgWait / 1000000) + "/" + (maxWaitNanos / 1000000)
+                    + " millis -- run avg/max: " + (avgRun / 1000000) + "/" + (maxRunNanos / 1000000)
+                    + " millis -- timeouts: " + timeouts + " -- failures: " + failures + " -- restarts: " + restarts;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShellPool[" + getStats() + "]";
+    }
+}
@@ -10,7 +10,6 @@
  */
 package org.python.pydev.navigator;
 
-import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,17 +55,12 @@ import org.eclipse.ui.navigator.CommonViewer;
 import org.eclipse.ui.navigator.ICommonContentExtensionSite;
 import org.eclipse.ui.navigator.INavigatorContentService;
 import org.eclipse.ui.navigator.INavigatorFilterService;
-import org.python.pydev.core.ICodeCompletionASTManager;
-import org.python.pydev.core.IModule;
-import org.python.pydev.core.IModulesManager;
-import org.python.pydev.core.IProjectModulesManager;
+import org.eclipse.ui.progress.PendingUpdateAdapter;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
-import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.codecompletion.revisited.PythonPathHelper;
-import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.navigator.elements.IWrappedResource;
 import org.python.pydev.navigator.elements.PythonFile;
 import org.python.pydev.navigator.elements.PythonFolder;
@@ -76,8 +70,6 @@ import org.python.pydev.navigator.elements.PythonResource;
 import org.python.pydev.navigator.elements.PythonSourceFolder;
 import org.python.pydev.navigator.filters.PythonNodeFilter;
 import org.python.pydev.outline.ParsedItem;
-import org.python.pydev.parser.visitors.scope.ASTEntryWithChildren;
-import org.python.pydev.parser.visitors.scope.OutlineCreatorVisitor;
 import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.plugin.nature.IPythonNatureListener;
 import org.python.pydev.plugin.nature.PythonNature;
@@ -136,6 +128,20 @@ public abstract class PythonBaseModelProvider extends BaseWorkbenchContentProvid
 
     public static final boolean DEBUG = false;
 
+    /**
+     * Keeps the outline shown for the python files (computed in a background job). When some outline is computed,
+     * the related file is refreshed so that the placeholder shown while it's being computed is replaced.
+     */
+    private final PythonFileOutlineCache outlineCache = new PythonFileOutlineCache(new ICallback<Object, IFile>() {
+
+        public Object call(IFile file) {
+            Collection<Runnable> runnables = new ArrayList<Runnable>();
+            runnables.add(getRefreshRunnable(file));
+            processRunnables(runnables);
+            return null;
+        }
+    });
+
     /**
      * This callback should return the working sets available.
      *
@@ -698,18 +704,7 @@ public abstract class PythonBaseModelProvider extends BaseWorkbenchContentProvid
      * @return the children (an array of IWrappedResources)
      */
     private Object[] getChildrenForIWrappedResource(IWrappedResource wrappedResourceParent) {
-        //------------------------------------------------------------------- get python nature
-        PythonNature nature = null;
         Object[] childrenToReturn = null;
-        Object obj = wrappedResourceParent.getActualObject();
-        IProject project = null;
-        if (obj instanceof IResource) {
-            IResource resource = (IResource) obj;
-            project = resource.getProject();
-            if (project != null && project.isOpen()) {
-                nature = PythonNature.getPythonNature(project);
-            }
-        }
 
         //------------------------------------------------------------------- treat python nodes
         if (wrappedResourceParent instanceof PythonNode) {
@@ -721,45 +716,12 @@ public abstract class PythonBaseModelProvider extends BaseWorkbenchContentProvid
             // if it's a file, we want to show the classes and methods
             PythonFile file = (PythonFile) wrappedResourceParent;
             if (PythonPathHelper.isValidSourceFile(file.getActualObject())) {
-
-                if (nature != null) {
-                    ICodeCompletionASTManager astManager = nature.getAstManager();
-                    //the nature may still not be completely restored...
-                    if (astManager != null) {
-                        IModulesManager modulesManager = astManager.getModulesManager();
-
-                        if (modulesManager instanceof IProjectModulesManager) {
-                            IProjectModulesManager projectModulesManager = (IProjectModulesManager) modulesManager;
-                            String moduleName = projectModulesManager.resolveModuleInDirectManager(file
-                                    .getActualObject());
-                            if (moduleName != null) {
-                                IModule module = projectModulesManager.getModuleInDirectManager(moduleName, nature,
-                                        true);
-                                if (module == null) {
-                                    //ok, something strange happened... it shouldn't be null... maybe empty, but not null at this point
-                                    //so, if it exists, let's try to create it...
-                                    //TODO: This should be moved to somewhere else.
-                                    String resourceOSString = PydevPlugin.getIResourceOSString(file.getActualObject());
-                                    if (resourceOSString != null) {
-                                        File f = new File(resourceOSString);
-                                        if (f.exists()) {
-                                            projectModulesManager.addModule(new ModulesKey(moduleName, f));
-                                            module = projectModulesManager.getModuleInDirectManager(moduleName, nature,
-                                                    true);
-                                        }
-                                    }
-                                }
-                                if (module instanceof SourceModule) {
-                                    SourceModule sourceModule = (SourceModule) module;
-
-                                    OutlineCreatorVisitor visitor = OutlineCreatorVisitor.create(sourceModule.getAst());
-                                    ParsedItem root = new ParsedItem(visitor.getAll().toArray(
-                                            new ASTEntryWithChildren[0]), null);
-                                    childrenToReturn = getChildrenFromParsedItem(wrappedResourceParent, root, file);
-                                }
-                            }
-                        }
-                    }
+                //Note: the outline is computed in a background job (while it's not available a placeholder is shown).
+                ParsedItem root = outlineCache.getOrRequest(file.getActualObject());
+                if (root != null) {
+                    childrenToReturn = getChildrenFromParsedItem(wrappedResourceParent, root, file);
+                } else {
+                    childrenToReturn = new Object[] { new PendingUpdateAdapter() };
                 }
             }
         }
@@ -842,6 +804,7 @@ public abstract class PythonBaseModelProvider extends BaseWorkbenchContentProvid
     public void dispose() {
         try {
             this.projectToSourceFolders = null;
+            this.outlineCache.clear();
             if (viewer != null) {
                 IWorkspace[] workspace = null;
                 Object obj = viewer.getInput();
@@ -1115,6 +1078,7 @@ public abstract class PythonBaseModelProvider extends BaseWorkbenchContentProvid
             if (resource instanceof IFile) {
                 IFile file = (IFile) resource;
                 if (PythonPathHelper.isValidSourceFile(file)) {
+                    outlineCache.remove(file);
                     runnables.add(getRefreshRunnable(resource));
                 }
             }
@@ -1177,6 +1141,9 @@ public abstract class PythonBaseModelProvider extends BaseWorkbenchContentProvid
             for (int i = 0; i < removedChildren.length; i++) {
                 final IResourceDelta removedChild = removedChildren[i];
                 removedObjects[i] = removedChild.getResource();
+                if (removedObjects[i] instanceof IFile) {
+                    outlineCache.remove((IFile) removedObjects[i]);
+                }
                 if (checkInit(removedObjects[i], runnables)) {
                     return; // If true, it means a refresh for the parent was issued!
                 }
@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.navigator;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.outline.ParsedItem;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.fastparser.FastDefinitionsParser;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.visitors.scope.ASTEntryWithChildren;
+import org.python.pydev.parser.visitors.scope.OutlineCreatorVisitor;
+import org.python.pydev.plugin.nature.PythonNature;
+import org.python.pydev.shared_core.SharedCorePlugin;
+import org.python.pydev.shared_core.cache.LRUMap;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.model.ISimpleNode;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Keeps the outline (the same one shown in the editor outline) shown below the python files in the pydev package
+ * explorer.
+ *
+ * The outline is computed in a background job (so, expanding a file never parses it in the UI thread) and is kept for
+ * the modification stamp of the file it was computed for. The job first creates an outline with the
+ * FastDefinitionsParser (only classes, methods and attributes), which is shown as a placeholder while the file is
+ * fully parsed to create the actual outline. When some outline is available, the callback passed in the constructor
+ * is called (in the job thread) with the related file.
+ */
+public class PythonFileOutlineCache {
+
+    /**
+     * The maximum number of files for which the outline is kept.
+     */
+    public static final int MAX_CACHED_OUTLINES = 200;
+
+    private static final class Entry {
+
+        private final long modificationStamp;
+        private final ParsedItem root;
+
+        /**
+         * False if this is the placeholder created from the FastDefinitionsParser.
+         */
+        private final boolean complete;
+
+        private Entry(long modificationStamp, ParsedItem root, boolean complete) {
+            this.modificationStamp = modificationStamp;
+            this.root = root;
+            this.complete = complete;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    /**
+     * File -> outline computed for it (guarded by the lock).
+     */
+    private final Map<IFile, Entry> cache = new LRUMap<IFile, Entry>(MAX_CACHED_OUTLINES);
+
+    /**
+     * Files whose outline was requested and still wasn't computed (guarded by the lock).
+     */
+    private final Set<IFile> pending = new LinkedHashSet<IFile>();
+
+    /**
+     * The file whose outline is being computed by the job (guarded by the lock).
+     */
+    private IFile computing;
+
+    private final ICallback<Object, IFile> onOutlineComputed;
+
+    private final Job job = new JobComputeOutline();
+
+    private class JobComputeOutline extends Job {
+
+        public JobComputeOutline() {
+            super("Compute outline for package explorer");
+            setSystem(true);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            while (!monitor.isCanceled()) {
+                IFile file;
+                synchronized (lock) {
+                    Iterator<IFile> it = pending.iterator();
+                    if (!it.hasNext()) {
+                        break;
+                    }
+                    file = it.next();
+                    it.remove();
+                    computing = file;
+                }
+                try {
+                    computeAndCache(file, true);
+                } finally {
+                    synchronized (lock) {
+                        computing = null;
+                    }
+                }
+            }
+            return Status.OK_STATUS;
+        }
+    }
+
+    /**
+     * @param onOutlineComputed called when the outline for a file is computed in the background.
+     */
+    public PythonFileOutlineCache(ICallback<Object, IFile> onOutlineComputed) {
+        this.onOutlineComputed = onOutlineComputed;
+    }
+
+    /**
+     * @return the outline for the passed file, the placeholder created from the FastDefinitionsParser (while the
+     * actual outline is still being computed) or null if nothing is available for its current contents. If the actual
+     * outline is not available, it's computed in a background job and the callback is called when it's available.
+     *
+     * Note: in tests, the outline is computed right away.
+     */
+    public ParsedItem getOrRequest(IFile file) {
+        ParsedItem placeholder = null;
+        synchronized (lock) {
+            Entry entry = cache.get(file);
+            if (entry != null && entry.modificationStamp == file.getModificationStamp()) {
+                if (entry.complete) {
+                    return entry.root;
+                }
+                placeholder = entry.root;
+            }
+        }
+        if (SharedCorePlugin.inTestMode()) {
+            return computeAndCache(file, false);
+        }
+        synchronized (lock) {
+            if (placeholder == null || !file.equals(computing)) {
+                pending.add(file);
+            }
+        }
+        job.schedule();
+        return placeholder;
+    }
+
+    /**
+     * Removes the outline kept for the passed file (i.e.: it changed or was removed).
+     */
+    public void remove(IFile file) {
+        synchronized (lock) {
+            cache.remove(file);
+        }
+    }
+
+    /**
+     * Removes all the outlines kept.
+     */
+    public void clear() {
+        synchronized (lock) {
+            cache.clear();
+            pending.clear();
+        }
+        job.cancel();
+    }
+
+    /**
+     * Computes the outline for the passed file and keeps it.
+     *
+     * @param notify if true, the placeholder is computed and kept before the actual outline and the callback is
+     * called when each one of those is available.
+     */
+    private ParsedItem computeAndCache(IFile file, boolean notify) {
+        //Refresh before getting the stamp and get the stamp before the contents: if it changes while we're reading,
+        //the outline is just recomputed later.
+        long modificationStamp;
+        String contents = null;
+        try {
+            if (file.exists() && !file.isSynchronized(IResource.DEPTH_ZERO)) {
+                file.refreshLocal(IResource.DEPTH_ZERO, new NullProgressMonitor());
+            }
+            modificationStamp = file.getModificationStamp();
+            contents = getContents(file);
+        } catch (CoreException e) {
+            //it may have been removed in the meanwhile
+            modificationStamp = file.getModificationStamp();
+        } catch (Exception e) {
+            Log.log(e);
+            modificationStamp = file.getModificationStamp();
+        }
+
+        if (notify && contents != null) {
+            boolean hasPlaceholder;
+            synchronized (lock) {
+                Entry entry = cache.get(file);
+                hasPlaceholder = entry != null && entry.modificationStamp == modificationStamp;
+            }
+            if (!hasPlaceholder) {
+                ParsedItem placeholder = createFastOutline(file, contents);
+                synchronized (lock) {
+                    cache.put(file, new Entry(modificationStamp, placeholder, false));
+                }
+                notifyOutlineComputed(file);
+            }
+        }
+
+        ParsedItem root = createOutline(file, contents);
+        synchronized (lock) {
+            cache.put(file, new Entry(modificationStamp, root, true));
+        }
+        if (notify) {
+            notifyOutlineComputed(file);
+        }
+        return root;
+    }
+
+    private void notifyOutlineComputed(IFile file) {
+        try {
+            onOutlineComputed.call(file);
+        } catch (Exception e) {
+            Log.log(e);
+        }
+    }
+
+    /**
+     * @return the outline for the passed contents (an empty outline if the contents are null). If the contents can't
+     * be parsed, the outline from the FastDefinitionsParser is returned.
+     */
+    private static ParsedItem createOutline(IFile file, String contents) {
+        if (contents == null) {
+            return createOutline((SimpleNode) null);
+        }
+        int grammarVersion = IGrammarVersionProvider.LATEST_GRAMMAR_VERSION;
+        PythonNature nature = PythonNature.getPythonNature(file);
+        if (nature != null) {
+            try {
+                grammarVersion = nature.getGrammarVersion();
+            } catch (MisconfigurationException e) {
+                //use the latest
+            }
+        }
+        SimpleNode ast = null;
+        try {
+            Tuple<ISimpleNode, Throwable> parsed = PyParser.reparseDocument(new PyParser.ParserInfo(new Document(
+                    contents), grammarVersion));
+            ast = (SimpleNode) parsed.o1;
+        } catch (Exception e) {
+            Log.log("Error creating outline for: " + file, e);
+        }
+        if (ast == null) {
+            return createFastOutline(file, contents);
+        }
+        return createOutline(ast);
+    }
+
+    /**
+     * @return the outline with only the classes, methods and attributes (from the FastDefinitionsParser) for the
+     * passed contents.
+     */
+    private static ParsedItem createFastOutline(IFile file, String contents) {
+        SimpleNode ast = null;
+        try {
+            ast = FastDefinitionsParser.parse(contents, file.getName());
+        } catch (Exception e) {
+            Log.log("Error creating outline for: " + file, e);
+        }
+        return createOutline(ast);
+    }
+
+    private static ParsedItem createOutline(SimpleNode ast) {
+        OutlineCreatorVisitor visitor = OutlineCreatorVisitor.create(ast);
+        return new ParsedItem(visitor.getAll().toArray(new ASTEntryWithChildren[0]), null);
+    }
+
+    private static String getContents(IFile file) throws Exception {
+        if (!file.exists()) {
+            return null;
+        }
+        return FileUtils.getStreamContents(file.getContents(true), file.getCharset(), null);
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.builder.pylint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.core.TestDependent;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+public class PyLintServerTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(PyLintServerTest.class);
+    }
+
+    private File baseDir;
+    private PyLintServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File(System.getProperty("java.io.tmpdir")), "pylint_server");
+        File pylintDir = new File(baseDir, "pylint");
+        pylintDir.mkdirs();
+        FileUtils.writeStrToFile("", new File(pylintDir, "__init__.py"));
+
+        //A fake pylint which reports the file linted and how many runs were done in the process.
+        FileUtils.writeStrToFile("" +
+                "import os\n" +
+                "import sys\n" +
+                "import time\n" +
+                "RUNS = []\n" +
+                "class Run(object):\n" +
+                "    def __init__(self, args):\n" +
+                "        f = args[-1]\n" +
+                "        if f.endswith('crash.py'):\n" +
+                "            os._exit(1)\n" +
+                "        if f.endswith('hang.py'):\n" +
+                "            time.sleep(60)\n" +
+                "        RUNS.append(f)\n" +
+                "        sys.stdout.write('W:  1, 0: %s %s (fake-warning)\\n' % (os.path.basename(f), ' '.join(args[:-1])))\n"
+                +
+                "        sys.stderr.write('runs: %s\\n' % (len(RUNS),))\n" +
+                "        sys.exit(1)\n" +
+                "", new File(pylintDir, "lint.py"));
+
+        String[] cmdLine = new String[] { TestDependent.PYTHON_EXE, "-u",
+                TestDependent.TEST_PYDEV_PLUGIN_LOC + "pysrc/pydev_pylint_server.py",
+                PyLintServer.getPyLintPackageParent(new File(pylintDir, "lint.py").getAbsolutePath()) };
+        server = new PyLintServer(cmdLine, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.dispose();
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private List<String> lint(String... files) throws IOException {
+        final List<String> ret = new ArrayList<String>();
+        server.lint(baseDir, new String[] { "--arg" }, Arrays.asList(files),
+                new ICallback<Object, Tuple<String, String>>() {
+
+                    public Object call(Tuple<String, String> arg) {
+                        ret.add(arg.o1 + "->" + arg.o2);
+                        return null;
+                    }
+                });
+        return ret;
+    }
+
+    public void testBatches() throws Exception {
+        List<String> found = lint("a.py", "b.py");
+        assertEquals(2, found.size());
+        assertEquals("a.py->W:  1, 0: a.py --arg (fake-warning)\nruns: 1\n", found.get(0));
+        assertEquals("b.py->W:  1, 0: b.py --arg (fake-warning)\nruns: 2\n", found.get(1));
+
+        //The same process is reused.
+        found = lint("c.py");
+        assertEquals("[c.py->W:  1, 0: c.py --arg (fake-warning)\nruns: 3\n]", found.toString());
+        assertEquals(2, server.getBatchesCount());
+        assertEquals(3, server.getFilesLintedCount());
+    }
+
+    public void testProcessRestarted() throws Exception {
+        lint("a.py");
+        try {
+            lint("b.py", "crash.py", "c.py");
+            fail("Expected the process to end.");
+        } catch (IOException e) {
+            //expected
+        }
+        assertEquals(2, server.getFilesLintedCount());
+
+        //A new process is created.
+        List<String> found = lint("c.py");
+        assertEquals("[c.py->W:  1, 0: c.py --arg (fake-warning)\nruns: 1\n]", found.toString());
+    }
+
+    public void testTimeout() throws Exception {
+        server.setFileTimeoutMillis(1000);
+        lint("a.py");
+        long initial = System.currentTimeMillis();
+        try {
+            lint("b.py", "hang.py", "c.py");
+            fail("Expected the process to time out.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("timed out") != -1);
+        }
+        assertTrue(System.currentTimeMillis() - initial < 30000);
+        assertEquals(2, server.getFilesLintedCount());
+
+        //A new process is created.
+        List<String> found = lint("c.py");
+        assertEquals("[c.py->W:  1, 0: c.py --arg (fake-warning)\nruns: 1\n]", found.toString());
+    }
+
+    public void testPathsNotSafeForProtocol() throws Exception {
+        assertFalse(PyLintServer.isProtocolSafe("a\tb.py"));
+        assertFalse(PyLintServer.isProtocolSafe("a\nb.py"));
+        assertTrue(PyLintServer.isProtocolSafe("a b.py"));
+        try {
+            lint("a.py", "a\tb.py");
+            fail("Expected the path to be rejected.");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        //Nothing was sent to the process.
+        assertEquals(0, server.getFilesLintedCount());
+        List<String> found = lint("a.py");
+        assertEquals("[a.py->W:  1, 0: a.py --arg (fake-warning)\nruns: 1\n]", found.toString());
+    }
+}
@@ -6,6 +6,9 @@
  */
 package org.python.pydev.editor.codefolding;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -14,6 +17,10 @@ import junit.framework.TestCase;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.preference.PreferenceStore;
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelListener;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotationModel;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.parser.PyParser;
 import org.python.pydev.parser.jython.SimpleNode;
@@ -358,6 +365,76 @@ public class CodeFoldingSetterTest extends TestCase {
         assertTrue(it.hasNext() == false);
     }
 
+    public void testUpdateModel() throws Exception {
+        setOptionTrue(PyDevCodeFoldingPrefPage.FOLD_FUNCTIONDEF);
+        setOptionTrue(PyDevCodeFoldingPrefPage.USE_CODE_FOLDING);
+        Document doc = new Document("" +
+                "def m1():\n" +
+                "    a = 1\n" +
+                "    b = 2\n" +
+                "\n" +
+                "def m2():\n" +
+                "    a = 1\n" +
+                "    b = 2\n" +
+                "");
+        ProjectionAnnotationModel model = new ProjectionAnnotationModel();
+        model.connect(doc);
+        final int[] changes = new int[] { 0 };
+        model.addAnnotationModelListener(new IAnnotationModelListener() {
+
+            public void modelChanged(IAnnotationModel model) {
+                changes[0]++;
+            }
+        });
+
+        assertTrue(CodeFoldingSetter.updateModel(doc, getMarks(doc), model));
+        List<PyProjectionAnnotation> annotations = getAnnotations(model);
+        assertEquals(2, annotations.size());
+        PyProjectionAnnotation m1 = annotations.get(0);
+        PyProjectionAnnotation m2 = annotations.get(1);
+        assertEquals(1, changes[0]);
+
+        //nothing changed: no notification
+        assertFalse(CodeFoldingSetter.updateModel(doc, getMarks(doc), model));
+        assertEquals(1, changes[0]);
+
+        //add a line at the end of m1: the same annotation is kept (with the new length) and m2 is unchanged.
+        m1.markCollapsed();
+        doc.replace(doc.getLineOffset(3), 0, "    c = 3\n");
+        assertTrue(CodeFoldingSetter.updateModel(doc, getMarks(doc), model));
+        assertEquals(2, changes[0]);
+        annotations = getAnnotations(model);
+        assertEquals(2, annotations.size());
+        assertSame(m1, annotations.get(0));
+        assertSame(m2, annotations.get(1));
+        assertTrue(m1.isCollapsed());
+        assertEquals(doc.getLineOffset(4), model.getPosition(m1).getLength());
+        assertEquals(doc.getLineOffset(5), model.getPosition(m2).getOffset());
+
+        //remove m2
+        doc.replace(doc.getLineOffset(4), doc.getLength() - doc.getLineOffset(4), "");
+        assertTrue(CodeFoldingSetter.updateModel(doc, getMarks(doc), model));
+        annotations = getAnnotations(model);
+        assertEquals(1, annotations.size());
+        assertSame(m1, annotations.get(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PyProjectionAnnotation> getAnnotations(final ProjectionAnnotationModel model) {
+        List<PyProjectionAnnotation> ret = new ArrayList<PyProjectionAnnotation>();
+        Iterator<Annotation> it = model.getAnnotationIterator();
+        while (it.hasNext()) {
+            ret.add((PyProjectionAnnotation) it.next());
+        }
+        Collections.sort(ret, new Comparator<PyProjectionAnnotation>() {
+
+            public int compare(PyProjectionAnnotation o1, PyProjectionAnnotation o2) {
+                return model.getPosition(o1).getOffset() - model.getPosition(o2).getOffset();
+            }
+        });
+        return ret;
+    }
+
     private List<FoldingEntry> getMarks(Document doc) {
         return getMarks(doc, IPythonNature.LATEST_GRAMMAR_VERSION);
     }
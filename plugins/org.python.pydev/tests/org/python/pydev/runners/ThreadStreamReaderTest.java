@@ -9,6 +9,7 @@ package org.python.pydev.runners;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.ThreadStreamReader;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 
@@ -51,6 +52,50 @@ public class ThreadStreamReaderTest extends TestCase {
 
     }
 
+    public void testBoundedContents() throws Exception {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (int i = 0; i < 10000; i++) {
+            buf.append(i).append('\n');
+        }
+        final String full = buf.toString();
+
+        InputStream is = new ByteArrayInputStream(buf.getBytes());
+        ThreadStreamReader reader = new ThreadStreamReader(is, true, null, 100);
+        final int[] notified = new int[1];
+        reader.setOnContentsAvailable(new ICallback<Object, ThreadStreamReader>() {
+
+            public Object call(ThreadStreamReader arg) {
+                synchronized (notified) {
+                    notified[0]++;
+                }
+                return null;
+            }
+        });
+        assertFalse(reader.hasContents());
+        reader.start();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        synchronized (notified) {
+            assertTrue(notified[0] > 0);
+        }
+        assertTrue(reader.hasContents());
+
+        String contents = reader.getAndClearContents();
+        assertTrue(contents, contents.startsWith("... ("));
+        int i = contents.indexOf(" chars of output dropped) ...\n");
+        int dropped = Integer.parseInt(contents.substring("... (".length(), i));
+        String kept = contents.substring(contents.indexOf('\n') + 1);
+
+        //the oldest contents are dropped and the latest ones are kept.
+        assertTrue(kept.length() >= 100);
+        assertTrue(kept.length() <= 200);
+        assertEquals(full.length(), dropped + kept.length());
+        assertTrue(full.endsWith(kept));
+
+        assertFalse(reader.hasContents());
+        assertEquals("", reader.getContents());
+    }
+
     private void waitABit() {
         synchronized (this) {
             try {
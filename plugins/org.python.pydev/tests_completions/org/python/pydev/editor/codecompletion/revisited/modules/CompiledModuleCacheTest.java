@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+public class CompiledModuleCacheTest extends TestCase {
+
+    private File baseDir;
+    private File cacheFile;
+    private File executable;
+    private File extension;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(CompiledModuleCacheTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File(System.getProperty("java.io.tmpdir")), "compiled_modules_cache");
+        baseDir.mkdirs();
+        cacheFile = new File(new File(baseDir, "metadata"), "cache");
+        executable = new File(baseDir, "python");
+        FileUtils.writeStrToFile("", executable);
+        extension = new File(baseDir, "ext.so");
+        FileUtils.writeStrToFile("", extension);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static Tuple<String, List<String[]>> createCompletions(String file, String... names) {
+        List<String[]> list = new ArrayList<String[]>();
+        for (String name : names) {
+            list.add(new String[] { name, "doc for " + name + " \u00e1", "(a, b)", "2" });
+        }
+        return new Tuple<String, List<String[]>>(file, list);
+    }
+
+    private static void assertCompletionsEqual(Tuple<String, List<String[]>> expected,
+            Tuple<String, List<String[]>> found) {
+        assertNotNull(found);
+        assertEquals(expected.o1, found.o1);
+        assertEquals(expected.o2.size(), found.o2.size());
+        for (int i = 0; i < expected.o2.size(); i++) {
+            assertEquals(Arrays.asList(expected.o2.get(i)), Arrays.asList(found.o2.get(i)));
+        }
+    }
+
+    public void testPersisted() throws Exception {
+        CompiledModuleCache cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        Tuple<String, List<String[]>> extCompletions = createCompletions(extension.getPath(), "Class", "method");
+        Tuple<String, List<String[]>> classCompletions = createCompletions(extension.getPath(), "attr");
+        Tuple<String, List<String[]>> sysCompletions = createCompletions("None", "path", "argv");
+
+        //Tokens are only kept after the module itself.
+        cache.putImportCompletions("ext", "ext.Class", classCompletions);
+        assertNull(cache.getImportCompletions("ext", "ext.Class"));
+
+        cache.putImportCompletions("ext", "ext", extCompletions);
+        cache.putImportCompletions("ext", "ext.Class", classCompletions);
+        cache.putImportCompletions("sys", "sys", sysCompletions);
+        cache.putLineCol("ext", "Class", new Tuple<String[], int[]>(new String[] { extension.getPath(), "" },
+                new int[] { 10, 2 }));
+        cache.save();
+        assertTrue(cacheFile.isFile());
+
+        cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        assertTrue(cache.hasModule("ext"));
+        assertTrue(cache.hasModule("sys"));
+        assertFalse(cache.hasModule("os"));
+        assertCompletionsEqual(extCompletions, cache.getImportCompletions("ext", "ext"));
+        assertCompletionsEqual(classCompletions, cache.getImportCompletions("ext", "ext.Class"));
+        assertCompletionsEqual(sysCompletions, cache.getImportCompletions("sys", "sys"));
+        assertNull(cache.getImportCompletions("ext", "ext.Other"));
+
+        Tuple<String[], int[]> lineCol = cache.getLineCol("ext", "Class");
+        assertEquals(Arrays.asList(extension.getPath(), ""), Arrays.asList(lineCol.o1));
+        assertEquals(10, lineCol.o2[0]);
+        assertEquals(2, lineCol.o2[1]);
+        assertNull(cache.getLineCol("ext", "method"));
+    }
+
+    public void testOutdatedWhenBackingFileChanges() throws Exception {
+        CompiledModuleCache cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        cache.putImportCompletions("ext", "ext", createCompletions(extension.getPath(), "Class"));
+        cache.putImportCompletions("sys", "sys", createCompletions("None", "path"));
+        cache.save();
+
+        //The extension changed (but not the interpreter).
+        extension.setLastModified(extension.lastModified() - 10000);
+        cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        assertNull(cache.getImportCompletions("ext", "ext"));
+        assertNotNull(cache.getImportCompletions("sys", "sys"));
+
+        //The interpreter changed (modules without a file are related to it).
+        executable.setLastModified(executable.lastModified() - 10000);
+        cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        assertNull(cache.getImportCompletions("sys", "sys"));
+    }
+
+    public void testOutdatedWhenInterpreterInfoChanges() throws Exception {
+        CompiledModuleCache cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        cache.putImportCompletions("sys", "sys", createCompletions("None", "path"));
+        cache.save();
+
+        cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        assertTrue(cache.hasModule("sys"));
+
+        cache = new CompiledModuleCache(cacheFile, executable, "other hash");
+        assertFalse(cache.hasModule("sys"));
+    }
+
+    public void testTokensPerModuleBounded() throws Exception {
+        CompiledModuleCache cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        Tuple<String, List<String[]>> extCompletions = createCompletions(extension.getPath(), "Class");
+        cache.putImportCompletions("ext", "ext", extCompletions);
+        int max = CompiledModuleCache.MAX_TOKENS_PER_MODULE;
+        for (int i = 0; i < max; i++) {
+            cache.putImportCompletions("ext", "ext.Class" + i, createCompletions(extension.getPath(), "attr"));
+        }
+        //Use the first one so that it's not the one discarded.
+        assertNotNull(cache.getImportCompletions("ext", "ext.Class0"));
+        cache.putImportCompletions("ext", "ext.Class" + max, createCompletions(extension.getPath(), "attr"));
+
+        assertNotNull(cache.getImportCompletions("ext", "ext.Class0"));
+        assertNull(cache.getImportCompletions("ext", "ext.Class1"));
+        assertNotNull(cache.getImportCompletions("ext", "ext.Class" + max));
+        assertCompletionsEqual(extCompletions, cache.getImportCompletions("ext", "ext"));
+
+        //The order of use is kept when persisted.
+        cache.save();
+        cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        cache.putImportCompletions("ext", "ext.Other", createCompletions(extension.getPath(), "attr"));
+        assertNotNull(cache.getImportCompletions("ext", "ext.Class0"));
+        assertNull(cache.getImportCompletions("ext", "ext.Class2"));
+        assertCompletionsEqual(extCompletions, cache.getImportCompletions("ext", "ext"));
+    }
+
+    public void testConcurrentSaves() throws Exception {
+        final CompiledModuleCache cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        for (int i = 0; i < 2000; i++) {
+            cache.putImportCompletions("mod" + i, "mod" + i, createCompletions("None", "a", "b", "c"));
+        }
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            //Each save has different contents.
+                            cache.putImportCompletions("new" + thread + "_" + j, "new" + thread + "_" + j,
+                                    createCompletions("None", "a"));
+                            cache.save();
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), errors);
+        assertFalse(new File(cacheFile.getPath() + ".tmp").exists());
+
+        CompiledModuleCache loaded = new CompiledModuleCache(cacheFile, executable, "hash");
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(loaded.hasModule("mod" + i));
+        }
+    }
+
+    public void testCorruptedFile() throws Exception {
+        cacheFile.getParentFile().mkdirs();
+        FileUtils.writeStrToFile("not a cache", cacheFile);
+        CompiledModuleCache cache = new CompiledModuleCache(cacheFile, executable, "hash");
+        assertFalse(cache.hasModule("ext"));
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.editor.codecompletion.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.shared_core.structure.Tuple;
+
+public class ShellPoolTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ShellPoolTest.class);
+    }
+
+    private File serverFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        serverFile = File.createTempFile("shell_pool", ".py");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        serverFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * A shell which doesn't start any process (requests for modules starting with 'block' wait for the latch).
+     */
+    private class ShellStub extends AbstractShell {
+
+        private final int id;
+        private boolean alive = true;
+        private int restarted;
+        private int ended;
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+        private ShellStub(File serverFile, int id) throws IOException, CoreException {
+            super(serverFile);
+            this.id = id;
+        }
+
+        @Override
+        protected ProcessCreationInfo createServerProcess(IInterpreterInfo interpreter, int pWrite, int pRead)
+                throws IOException, JDTNotAvailableException, MisconfigurationException {
+            return null;
+        }
+
+        @Override
+        public synchronized boolean isAlive() {
+            return alive;
+        }
+
+        @Override
+        public synchronized void restartShell() throws CoreException {
+            restarted++;
+            alive = true;
+        }
+
+        @Override
+        public synchronized void endIt() {
+            ended++;
+            alive = false;
+        }
+
+        @Override
+        public Tuple<String, List<String[]>> getImportCompletions(String str, List<String> pythonpath)
+                throws CoreException {
+            synchronized (this) {
+                requests.add(str);
+            }
+            if (str.startsWith("block")) {
+                try {
+                    assertTrue(block.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            if (str.startsWith("fail")) {
+                throw new RuntimeException("Failed");
+            }
+            List<String[]> list = new ArrayList<String[]>();
+            list.add(new String[] { str, "shell" + id, "", "1" });
+            return new Tuple<String, List<String[]>>(null, list);
+        }
+    }
+
+    private final CountDownLatch block = new CountDownLatch(1);
+    private final List<ShellStub> created = Collections.synchronizedList(new ArrayList<ShellStub>());
+
+    private ShellPool createPool(int maxShells) {
+        return new ShellPool(null, -1, maxShells) {
+            @Override
+            protected AbstractShell createShell() throws Exception {
+                ShellStub shell = new ShellStub(serverFile, created.size());
+                created.add(shell);
+                return shell;
+            }
+        };
+    }
+
+    private Thread request(final ShellPool pool, final String str, final List<String> results) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    String shell = pool.getImportCompletions(str, new ArrayList<String>()).o2.get(0)[1];
+                    synchronized (results) {
+                        results.add(str + ":" + shell);
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private String getShellId(ShellPool pool, String str) throws Exception {
+        return pool.getImportCompletions(str, new ArrayList<String>()).o2.get(0)[1];
+    }
+
+    public void testSlowRequestDoesNotBlockOthers() throws Exception {
+        ShellPool pool = createPool(2);
+        List<String> results = new ArrayList<String>();
+        Thread blocked = request(pool, "block.mod", results);
+        while (created.size() == 0 || created.get(0).requests.size() == 0) {
+            Thread.sleep(5);
+        }
+
+        //Goes to a new shell while the first one is still working.
+        assertEquals("shell1", getShellId(pool, "os"));
+        assertEquals(1, pool.getRequestsCount());
+
+        block.countDown();
+        blocked.join(5000);
+        assertEquals("[block.mod:shell0]", results.toString());
+        assertEquals(2, pool.getRequestsCount());
+        assertEquals(2, created.size());
+    }
+
+    public void testBounded() throws Exception {
+        ShellPool pool = createPool(2);
+        List<String> results = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 6; i++) {
+            threads.add(request(pool, "block" + i, results));
+        }
+        while (pool.getShells().size() < 2) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        assertEquals(0, pool.getRequestsCount());
+
+        block.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(6, results.size());
+        assertEquals(6, pool.getRequestsCount());
+        assertEquals(2, created.size());
+        assertTrue(pool.getTotalWaitNanos() > 0);
+    }
+
+    public void testRoutedToShellWithModule() throws Exception {
+        ShellPool pool = createPool(2);
+        List<String> results = new ArrayList<String>();
+        Thread blocked = request(pool, "block.a", results);
+        while (created.size() == 0 || created.get(0).requests.size() == 0) {
+            Thread.sleep(5);
+        }
+        assertEquals("shell1", getShellId(pool, "other"));
+        block.countDown();
+        blocked.join(5000);
+        assertEquals("[block.a:shell0]", results.toString());
+
+        //The shell0 was the last one used, but the requests for a module go to the shell which last worked on it.
+        assertEquals("shell1", getShellId(pool, "other.x"));
+        assertEquals("shell0", getShellId(pool, "block"));
+        assertEquals("shell1", getShellId(pool, "other"));
+        assertEquals(2, created.size());
+    }
+
+    public void testDeadShellRestarted() throws Exception {
+        ShellPool pool = createPool(1);
+        getShellId(pool, "os");
+        ShellStub shell = created.get(0);
+        synchronized (shell) {
+            shell.alive = false;
+        }
+        assertEquals("shell0", getShellId(pool, "os"));
+        assertEquals(1, shell.restarted);
+        assertEquals(1, pool.getRestartsCount());
+        assertEquals(1, created.size());
+    }
+
+    public void testFailedRequestEndsShell() throws Exception {
+        ShellPool pool = createPool(1);
+        try {
+            getShellId(pool, "fail");
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            //expected
+        }
+        ShellStub shell = created.get(0);
+        assertEquals(1, shell.ended);
+
+        //Restarted on the next request.
+        assertEquals("shell0", getShellId(pool, "os"));
+        assertEquals(1, shell.restarted);
+        assertEquals(1, created.size());
+    }
+
+    public void testRegisteredShell() throws Exception {
+        ShellStub shell = new ShellStub(serverFile, 10);
+        ShellPool pool = new ShellPool(shell);
+        assertSame(shell, pool.getMainShell());
+        assertEquals("shell10", getShellId(pool, "os"));
+        assertEquals(1, pool.getShells().size());
+    }
+
+    public void testDispose() throws Exception {
+        ShellPool pool = createPool(2);
+        getShellId(pool, "os");
+        pool.dispose(false);
+        assertEquals(1, created.get(0).ended);
+        try {
+            getShellId(pool, "os");
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            //expected
+        }
+    }
+}